@@ -23,3 +23,7 @@
 -keep class com.iqiyi.android.qigsaw.core.extension.ComponentInfo {
     *;
 }
+
+-keep class com.iqiyi.android.qigsaw.core.extension.SplitComponentRegistry {
+    *;
+}
@@ -149,6 +149,7 @@ class QigsawAppBasePlugin extends QigsawPlugin {
                 generateQigsawConfig.versionName = baseVariant.versionName
                 generateQigsawConfig.defaultSplitInfoVersion = completeSplitInfoVersion
                 generateQigsawConfig.dynamicFeatureNames = dynamicFeaturesNames
+                generateQigsawConfig.splitLoadPolicies = QigsawSplitExtensionHelper.getSplitLoadPolicies(project)
                 generateQigsawConfig.outputDir = qigsawConfigDir
                 generateQigsawConfig.buildConfigDir = baseVariant.variantData.scope.buildConfigSourceOutputDir
                 generateQigsawConfig.targetFilesExtractedDir = targetFilesExtractedDir
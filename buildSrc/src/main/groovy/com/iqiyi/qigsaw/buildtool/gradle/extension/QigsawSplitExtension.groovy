@@ -76,4 +76,11 @@ class QigsawSplitExtension {
      * Activities of base apk which would load split's fragments or resources.
      */
     List<String> baseContainerActivities = Collections.emptyList()
+
+    /**
+     * Load policies of splits in each process, the key is process name declared in manifest such as ":push",
+     * empty string for main process. The value maps split name to "never", "lazy" or "eager", "*" matches other splits.
+     * Splits are loaded lazily in processes which are not declared.
+     */
+    Map<String, Map<String, String>> splitLoadPolicies = Collections.emptyMap()
 }
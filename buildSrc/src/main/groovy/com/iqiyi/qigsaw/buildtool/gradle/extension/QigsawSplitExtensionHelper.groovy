@@ -24,6 +24,7 @@
 
 package com.iqiyi.qigsaw.buildtool.gradle.extension
 
+import org.gradle.api.GradleException
 import org.gradle.api.Project
 
 class QigsawSplitExtensionHelper {
@@ -124,4 +125,31 @@ class QigsawSplitExtensionHelper {
         }
         return null
     }
+
+    static final Set<String> SPLIT_LOAD_POLICIES = ["never", "lazy", "eager"] as Set
+
+    /**
+     * @return policies formatted as "process/split=policy", or null if no policy is declared.
+     */
+    static List<String> getSplitLoadPolicies(Project project) {
+        Map<String, Map<String, String>> value
+        try {
+            value = project.extensions.qigsawSplit.splitLoadPolicies
+        } catch (Throwable ignored) {
+            return null
+        }
+        if (value == null || value.isEmpty()) {
+            return null
+        }
+        List<String> policies = new ArrayList<>()
+        value.each { String process, Map<String, String> splitPolicies ->
+            splitPolicies.each { String splitName, String policy ->
+                if (!SPLIT_LOAD_POLICIES.contains(policy)) {
+                    throw new GradleException("Qigsaw Error: Unknown load policy ${policy} of split ${splitName} in process ${process}, expected one of ${SPLIT_LOAD_POLICIES}")
+                }
+                policies.add("${process}/${splitName}=${policy}".toString())
+            }
+        }
+        return policies
+    }
 }
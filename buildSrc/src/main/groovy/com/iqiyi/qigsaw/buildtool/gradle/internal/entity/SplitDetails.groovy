@@ -38,6 +38,12 @@ class SplitDetails {
 
     List<SplitInfo> splits
 
+    /**
+     * For each abi, file name of each native library to the split which owns it,
+     * so the runtime needn't scan lib data of all splits.
+     */
+    Map<String, Map<String, String>> libraryOwners
+
     static class UpdateRecord {
 
         static final int DEFAULT = 0
@@ -66,15 +66,18 @@ class ApkSigner {
     }
 
     boolean signApkIfNeed(File unsignedApk, File signedApk) {
+        return signApkIfNeed(unsignedApk, signedApk, SigningOptions.from(getSigningConfig()))
+    }
+
+    static boolean signApkIfNeed(File unsignedApk, File signedApk, SigningOptions signingOptions) {
         ApkVerifier apkVerifier = new ApkVerifier.Builder(unsignedApk).build()
         if (!apkVerifier.verify().verified) {
-            SigningConfig signingConfig = getSigningConfig()
             CertificateInfo certificateInfo = KeystoreHelper.getCertificateInfo(
-                    signingConfig.getStoreType(),
-                    Preconditions.checkNotNull(signingConfig.getStoreFile()),
-                    Preconditions.checkNotNull(signingConfig.getStorePassword()),
-                    Preconditions.checkNotNull(signingConfig.getKeyPassword()),
-                    Preconditions.checkNotNull(signingConfig.getKeyAlias()))
+                    signingOptions.storeType,
+                    Preconditions.checkNotNull(signingOptions.storeFile),
+                    Preconditions.checkNotNull(signingOptions.storePassword),
+                    Preconditions.checkNotNull(signingOptions.keyPassword),
+                    Preconditions.checkNotNull(signingOptions.keyAlias))
             PrivateKey key = certificateInfo.getKey()
             X509Certificate certificate = certificateInfo.getCertificate()
             com.android.apksig.ApkSigner.SignerConfig signerConfig = new com.android.apksig.ApkSigner.SignerConfig.Builder("CERT", key, [certificate]).build()
@@ -85,8 +88,8 @@ class ApkSigner {
             com.android.apksig.ApkSigner apkSigner = signerBuilder
                     .setInputApk(unsignedApk)
                     .setOutputApk(signedApk)
-                    .setV1SigningEnabled(signingConfig.isV1SigningEnabled())
-                    .setV2SigningEnabled(signingConfig.isV2SigningEnabled())
+                    .setV1SigningEnabled(signingOptions.v1SigningEnabled)
+                    .setV2SigningEnabled(signingOptions.v2SigningEnabled)
                     .build()
             apkSigner.sign()
             return true
@@ -94,4 +97,43 @@ class ApkSigner {
         return false
     }
 
+    /**
+     * Serializable copy of {@link SigningConfig}, so signing can run in gradle workers.
+     */
+    static class SigningOptions implements Serializable {
+
+        String storeType
+
+        File storeFile
+
+        String storePassword
+
+        String keyAlias
+
+        String keyPassword
+
+        boolean v1SigningEnabled
+
+        boolean v2SigningEnabled
+
+        static SigningOptions from(SigningConfig signingConfig) {
+            SigningOptions signingOptions = new SigningOptions()
+            signingOptions.storeType = signingConfig.getStoreType()
+            signingOptions.storeFile = signingConfig.getStoreFile()
+            signingOptions.storePassword = signingConfig.getStorePassword()
+            signingOptions.keyAlias = signingConfig.getKeyAlias()
+            signingOptions.keyPassword = signingConfig.getKeyPassword()
+            signingOptions.v1SigningEnabled = signingConfig.isV1SigningEnabled()
+            signingOptions.v2SigningEnabled = signingConfig.isV2SigningEnabled()
+            return signingOptions
+        }
+
+        /**
+         * Identifies signing key and schemes without secrets, used as task input.
+         */
+        String getIdentity() {
+            return "${storeFile != null ? storeFile.name : null}:${keyAlias}:${v1SigningEnabled}:${v2SigningEnabled}"
+        }
+    }
+
 }
@@ -0,0 +1,305 @@
+package com.iqiyi.qigsaw.buildtool.gradle.internal.tool
+
+import groovy.transform.CompileStatic
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+import java.util.zip.ZipEntry
+
+/**
+ * Copies kept entries of a zip file into a new one without inflating or deflating them.
+ * The central directory of source is parsed once, so that an instance can produce several outputs concurrently.
+ * Zip64 archives are not supported, check {@link #isSupported()} before use.
+ */
+@CompileStatic
+class ZipStreamingFilter {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50
+
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50
+
+    private static final int END_OF_CENTRAL_DIR_SIGNATURE = 0x06054b50
+
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50
+
+    private static final int LOCAL_HEADER_SIZE = 30
+
+    private static final int CENTRAL_HEADER_SIZE = 46
+
+    private static final int END_OF_CENTRAL_DIR_SIZE = 22
+
+    private static final int FLAG_DATA_DESCRIPTOR = 0x08
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL
+
+    private static final int ALIGNMENT = 4
+
+    private static final int NATIVE_LIBRARY_ALIGNMENT = 4096
+
+    final File source
+
+    private final List<Entry> entries = new ArrayList<>()
+
+    private boolean supported = true
+
+    ZipStreamingFilter(File source) {
+        this.source = source
+        readCentralDirectory()
+    }
+
+    boolean isSupported() {
+        return supported
+    }
+
+    List<String> getEntryNames() {
+        List<String> names = new ArrayList<>(entries.size())
+        for (Entry entry : entries) {
+            names.add(entry.name)
+        }
+        return names
+    }
+
+    /**
+     * Write entries accepted by {@code keep} to {@code output}, in the order of source archive.
+     * Uncompressed entries are aligned as zipalign does.
+     *
+     * @param keep receives entry name, returns {@code true} to keep it.
+     * @param replacements new content of kept entries, compressed with the method of source entry.
+     */
+    void writeTo(File output, Closure<Boolean> keep, Map<String, byte[]> replacements) {
+        FileChannel sourceChannel = FileChannel.open(source.toPath(), StandardOpenOption.READ)
+        FileChannel outputChannel = FileChannel.open(output.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+        try {
+            ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream()
+            int count = 0
+            for (Entry entry : entries) {
+                if (!keep.call(entry.name)) {
+                    continue
+                }
+                long localHeaderOffset = outputChannel.position()
+                byte[] replacement = replacements.get(entry.name)
+                byte[] central = entry.centralHeader.clone()
+                if (replacement != null) {
+                    writeReplacedEntry(outputChannel, entry, replacement, central)
+                } else {
+                    copyRawEntry(sourceChannel, outputChannel, entry)
+                }
+                ByteBuffer.wrap(central).order(ByteOrder.LITTLE_ENDIAN).putInt(42, (int) localHeaderOffset)
+                centralDirectory.write(central)
+                count++
+            }
+            long centralDirectoryOffset = outputChannel.position()
+            writeFully(outputChannel, ByteBuffer.wrap(centralDirectory.toByteArray()))
+            ByteBuffer end = ByteBuffer.allocate(END_OF_CENTRAL_DIR_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+            end.putInt(END_OF_CENTRAL_DIR_SIGNATURE)
+            end.putShort((short) 0)
+            end.putShort((short) 0)
+            end.putShort((short) count)
+            end.putShort((short) count)
+            end.putInt(centralDirectory.size())
+            end.putInt((int) centralDirectoryOffset)
+            end.putShort((short) 0)
+            end.flip()
+            writeFully(outputChannel, end)
+        } finally {
+            sourceChannel.close()
+            outputChannel.close()
+        }
+    }
+
+    private void readCentralDirectory() {
+        RandomAccessFile raf = new RandomAccessFile(source, "r")
+        try {
+            long length = raf.length()
+            int tailLength = (int) Math.min(length, END_OF_CENTRAL_DIR_SIZE + 0xFFFF)
+            byte[] tail = new byte[tailLength]
+            raf.seek(length - tailLength)
+            raf.readFully(tail)
+            ByteBuffer tailBuffer = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN)
+            int endOffset = -1
+            for (int i = tailLength - END_OF_CENTRAL_DIR_SIZE; i >= 0; i--) {
+                if (tailBuffer.getInt(i) == END_OF_CENTRAL_DIR_SIGNATURE) {
+                    endOffset = i
+                    break
+                }
+            }
+            if (endOffset < 0) {
+                throw new IOException("End of central directory not found in " + source)
+            }
+            int entryCount = tailBuffer.getShort(endOffset + 10) & 0xFFFF
+            long centralDirectorySize = tailBuffer.getInt(endOffset + 12) & ZIP64_MAGIC
+            long centralDirectoryOffset = tailBuffer.getInt(endOffset + 16) & ZIP64_MAGIC
+            if (entryCount == 0xFFFF || centralDirectorySize == ZIP64_MAGIC || centralDirectoryOffset == ZIP64_MAGIC) {
+                supported = false
+                return
+            }
+            byte[] centralDirectory = new byte[(int) centralDirectorySize]
+            raf.seek(centralDirectoryOffset)
+            raf.readFully(centralDirectory)
+            ByteBuffer buffer = ByteBuffer.wrap(centralDirectory).order(ByteOrder.LITTLE_ENDIAN)
+            int position = 0
+            for (int i = 0; i < entryCount; i++) {
+                if (buffer.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                    throw new IOException("Bad central directory header in " + source)
+                }
+                int nameLength = buffer.getShort(position + 28) & 0xFFFF
+                int extraLength = buffer.getShort(position + 30) & 0xFFFF
+                int commentLength = buffer.getShort(position + 32) & 0xFFFF
+                int recordLength = CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength
+                Entry entry = new Entry()
+                entry.flags = buffer.getShort(position + 8) & 0xFFFF
+                entry.method = buffer.getShort(position + 10) & 0xFFFF
+                entry.compressedSize = buffer.getInt(position + 20) & ZIP64_MAGIC
+                entry.size = buffer.getInt(position + 24) & ZIP64_MAGIC
+                entry.localHeaderOffset = buffer.getInt(position + 42) & ZIP64_MAGIC
+                entry.name = new String(centralDirectory, position + CENTRAL_HEADER_SIZE, nameLength, "UTF-8")
+                entry.centralHeader = Arrays.copyOfRange(centralDirectory, position, position + recordLength)
+                if (entry.compressedSize == ZIP64_MAGIC || entry.size == ZIP64_MAGIC || entry.localHeaderOffset == ZIP64_MAGIC) {
+                    supported = false
+                    return
+                }
+                entries.add(entry)
+                position += recordLength
+            }
+        } finally {
+            raf.close()
+        }
+    }
+
+    private static void copyRawEntry(FileChannel sourceChannel, FileChannel outputChannel, Entry entry) {
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+        readFully(sourceChannel, header, entry.localHeaderOffset)
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new IOException("Bad local header of entry " + entry.name)
+        }
+        int nameLength = header.getShort(26) & 0xFFFF
+        int extraLength = header.getShort(28) & 0xFFFF
+        ByteBuffer nameAndExtra = ByteBuffer.allocate(nameLength + extraLength)
+        readFully(sourceChannel, nameAndExtra, entry.localHeaderOffset + LOCAL_HEADER_SIZE)
+        byte[] extra
+        if (entry.method == ZipEntry.STORED) {
+            // drop previous alignment padding and pad again for new offset.
+            extra = new byte[padding(outputChannel.position() + LOCAL_HEADER_SIZE + nameLength, alignment(entry.name))]
+        } else {
+            extra = Arrays.copyOfRange(nameAndExtra.array(), nameLength, nameLength + extraLength)
+        }
+        header.putShort(28, (short) extra.length)
+        header.rewind()
+        writeFully(outputChannel, header)
+        writeFully(outputChannel, ByteBuffer.wrap(nameAndExtra.array(), 0, nameLength))
+        writeFully(outputChannel, ByteBuffer.wrap(extra))
+
+        long dataOffset = entry.localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength
+        long dataLength = entry.compressedSize
+        if ((entry.flags & FLAG_DATA_DESCRIPTOR) != 0) {
+            ByteBuffer signature = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN)
+            readFully(sourceChannel, signature, dataOffset + dataLength)
+            dataLength += signature.getInt(0) == DATA_DESCRIPTOR_SIGNATURE ? 16 : 12
+        }
+        long transferred = 0
+        while (transferred < dataLength) {
+            long count = sourceChannel.transferTo(dataOffset + transferred, dataLength - transferred, outputChannel)
+            if (count <= 0) {
+                throw new IOException("Unexpected end of entry " + entry.name)
+            }
+            transferred += count
+        }
+    }
+
+    private static void writeReplacedEntry(FileChannel outputChannel, Entry entry, byte[] content, byte[] central) {
+        CRC32 crc32 = new CRC32()
+        crc32.update(content)
+        byte[] data = entry.method == ZipEntry.DEFLATED ? deflate(content) : content
+        byte[] name = entry.name.getBytes("UTF-8")
+        int flags = entry.flags & ~FLAG_DATA_DESCRIPTOR
+        ByteBuffer centralBuffer = ByteBuffer.wrap(central).order(ByteOrder.LITTLE_ENDIAN)
+        centralBuffer.putShort(8, (short) flags)
+        centralBuffer.putInt(16, (int) crc32.getValue())
+        centralBuffer.putInt(20, data.length)
+        centralBuffer.putInt(24, content.length)
+
+        int extraLength = entry.method == ZipEntry.STORED ?
+                padding(outputChannel.position() + LOCAL_HEADER_SIZE + name.length, alignment(entry.name)) : 0
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE + name.length + extraLength).order(ByteOrder.LITTLE_ENDIAN)
+        header.putInt(LOCAL_HEADER_SIGNATURE)
+        header.putShort(centralBuffer.getShort(6))
+        header.putShort((short) flags)
+        header.putShort((short) entry.method)
+        header.putShort(centralBuffer.getShort(12))
+        header.putShort(centralBuffer.getShort(14))
+        header.putInt((int) crc32.getValue())
+        header.putInt(data.length)
+        header.putInt(content.length)
+        header.putShort((short) name.length)
+        header.putShort((short) extraLength)
+        header.put(name)
+        header.position(header.capacity())
+        header.flip()
+        writeFully(outputChannel, header)
+        writeFully(outputChannel, ByteBuffer.wrap(data))
+    }
+
+    private static byte[] deflate(byte[] content) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true)
+        try {
+            deflater.setInput(content)
+            deflater.finish()
+            ByteArrayOutputStream out = new ByteArrayOutputStream(content.length)
+            byte[] buffer = new byte[8192]
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer)
+                out.write(buffer, 0, length)
+            }
+            return out.toByteArray()
+        } finally {
+            deflater.end()
+        }
+    }
+
+    private static int alignment(String name) {
+        return name.startsWith("lib/") && name.endsWith(".so") ? NATIVE_LIBRARY_ALIGNMENT : ALIGNMENT
+    }
+
+    private static int padding(long dataOffset, int alignment) {
+        return (int) ((alignment - (dataOffset % alignment)) % alignment)
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) {
+        long offset = position
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset)
+            if (read < 0) {
+                throw new EOFException("Unexpected end of zip file")
+            }
+            offset += read
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer)
+        }
+    }
+
+    private static class Entry {
+
+        String name
+
+        int flags
+
+        int method
+
+        long compressedSize
+
+        long size
+
+        long localHeaderOffset
+
+        byte[] centralHeader
+    }
+}
@@ -147,7 +147,7 @@ class CreateSplitDetailsFileTask extends ProcessOldOutputsBaseTask {
                         File sourceSplitApk
                         if (splitDetails.updateRecord.updateSplits != null && splitDetails.updateRecord.updateSplits.contains(info.splitName)) {
                             //Built-in apk version has been changed.
-                            sourceSplitApk = new File(splitApksDir, "${info.splitName}-${it.abi + SdkConstants.DOT_ANDROID_PACKAGE}")
+                            sourceSplitApk = getSplitApk(info.splitName, it.abi)
                         } else {
                             sourceSplitApk = getOldSplitApk(info.splitName, it.abi)
                         }
@@ -156,7 +156,7 @@ class CreateSplitDetailsFileTask extends ProcessOldOutputsBaseTask {
                         }
                         FileUtils.copyFile(sourceSplitApk, destSplitApk)
                     } else {
-                        File sourceSplitApk = new File(splitApksDir, "${info.splitName}-${it.abi + SdkConstants.DOT_ANDROID_PACKAGE}")
+                        File sourceSplitApk = getSplitApk(info.splitName, it.abi)
                         if (!sourceSplitApk.exists()) {
                             throw new GradleException("Split apk ${sourceSplitApk.absolutePath} is not found, mode defalut!")
                         }
@@ -167,6 +167,13 @@ class CreateSplitDetailsFileTask extends ProcessOldOutputsBaseTask {
         }
     }
 
+    /**
+     * Split apks are outputs of {@link ProcessSplitApkTask}, each split has its own directory.
+     */
+    File getSplitApk(String splitName, String abi) {
+        return new File(splitApksDir, "${splitName}/${splitName}-${abi + SdkConstants.DOT_ANDROID_PACKAGE}")
+    }
+
     Set<String> getMergedAbiFilters() {
         File mergedJniLibsDir = getMergedJniLibsDirCompat()
         Set<String> realABIs = new HashSet<>()
@@ -228,16 +235,42 @@ class CreateSplitDetailsFileTask extends ProcessOldOutputsBaseTask {
         splitDetails.updateSplits = updateRecord.updateSplits
         splitDetails.splitEntryFragments = splitEntryFragments
         splitDetails.splits = splitInfoList
+        splitDetails.libraryOwners = createLibraryOwners(splitInfoList)
         return splitDetails
     }
 
+    /**
+     * Owners are indexed by abi, a library may be shipped by different splits for different abis.
+     */
+    static Map<String, Map<String, String>> createLibraryOwners(List<SplitInfo> splitInfoList) {
+        Map<String, Map<String, String>> libraryOwners = new TreeMap<>()
+        splitInfoList.each { SplitInfo info ->
+            info.libData?.each { SplitInfo.SplitLibData libData ->
+                Map<String, String> abiOwners = libraryOwners.get(libData.abi)
+                if (abiOwners == null) {
+                    abiOwners = new TreeMap<>()
+                    libraryOwners.put(libData.abi, abiOwners)
+                }
+                libData.jniLibs?.each { SplitInfo.SplitLibData.Lib lib ->
+                    String owner = abiOwners.get(lib.name)
+                    if (owner == null) {
+                        abiOwners.put(lib.name, info.splitName)
+                    } else if (owner != info.splitName) {
+                        SplitLogger.w("Native library ${libData.abi}/${lib.name} is found in both split ${owner} and ${info.splitName}, ${owner} owns it.")
+                    }
+                }
+            }
+        }
+        return libraryOwners
+    }
+
     void uploadSplitApkIfNeed(SplitInfo info) {
         if (!info.builtIn) {
             SplitApkUploader uploader = SplitApkUploaderInstance.get()
             if (uploader != null) {
                 for (SplitInfo.SplitApkData data : info.apkData) {
                     if (!data.url.startsWith("http")) {
-                        File apkFile = new File(splitApksDir, info.splitName + "-${data.abi + SdkConstants.DOT_ANDROID_PACKAGE}")
+                        File apkFile = getSplitApk(info.splitName, data.abi)
                         if (!apkFile.exists()) {
                             throw new GradleException("Split apk ${apkFile.absolutePath} is not existing!")
                         }
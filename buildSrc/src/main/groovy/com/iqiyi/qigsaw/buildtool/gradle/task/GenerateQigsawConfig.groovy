@@ -31,6 +31,7 @@ import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.SplitLogger
 import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.TypeClassFileParser
 import org.gradle.api.GradleException
 import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.Optional
 import org.gradle.api.tasks.OutputDirectory
 import org.gradle.api.tasks.TaskAction
 
@@ -54,6 +55,10 @@ class GenerateQigsawConfig extends ProcessOldOutputsBaseTask {
     @Input
     Set<String> dynamicFeatureNames
 
+    @Input
+    @Optional
+    List<String> splitLoadPolicies
+
     @OutputDirectory
     File outputDir
 
@@ -90,6 +95,13 @@ class GenerateQigsawConfig extends ProcessOldOutputsBaseTask {
                 .addField("String", "VERSION_NAME", '"' + versionName + '"')
                 .addField("String", "DEFAULT_SPLIT_INFO_VERSION", '"' + defaultSplitInfoVersion + '"')
                 .addField("String[]", "DYNAMIC_FEATURES", "{" + jointList.join(",") + "}")
+        if (splitLoadPolicies != null) {
+            List<String> policyList = new ArrayList<>()
+            for (String policy : splitLoadPolicies) {
+                policyList.add("\"" + policy + "\"")
+            }
+            generator.addField("String[]", "SPLIT_LOAD_POLICIES", "{" + policyList.join(",") + "}")
+        }
         generator.generate()
         File destDir = new File(buildConfigDir, applicationId.replace(".", File.separator))
         if (!destDir.exists()) {
@@ -25,26 +25,56 @@
 package com.iqiyi.qigsaw.buildtool.gradle.task
 
 import com.android.SdkConstants
-import com.android.tools.build.bundletool.model.Aapt2Command
 import com.android.tools.build.bundletool.model.AndroidManifest
 import com.iqiyi.qigsaw.buildtool.gradle.internal.entity.SplitInfo
 import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.FileUtils
 import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.ManifestReader
 import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.ApkSigner
+import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.SplitLogger
 import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.ZipUtils
+import org.gradle.api.Action
 import org.gradle.api.DefaultTask
 import org.gradle.api.GradleException
+import org.gradle.api.tasks.CacheableTask
 import org.gradle.api.tasks.Input
-import org.gradle.api.tasks.InputDirectory
+import org.gradle.api.tasks.InputFile
 import org.gradle.api.tasks.InputFiles
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.LocalState
 import org.gradle.api.tasks.Optional
 import org.gradle.api.tasks.OutputDirectory
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
 import org.gradle.api.tasks.TaskAction
+import org.gradle.workers.IsolationMode
+import org.gradle.workers.WorkerConfiguration
+import org.gradle.workers.WorkerExecutor
 
+import javax.inject.Inject
+import java.security.MessageDigest
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+
+/**
+ * Split apk of a dynamic feature into master apk and config apks of each abi.
+ * Every apk is built by a {@link SplitApkWorker} in parallel, and is reused while its fingerprint is unchanged.
+ * Outputs of each split live in their own directories, so splits which are not changed stay up-to-date.
+ */
+@CacheableTask
 class ProcessSplitApkTask extends DefaultTask {
 
+    static final String MASTER = "master"
+
+    static final String FINGERPRINT_SUFFIX = ".fingerprint"
+
+    @Internal
+    final WorkerExecutor workerExecutor
+
+    @Internal
     ApkSigner apkSigner
 
+    @Internal
     File aapt2File
 
     @Input
@@ -70,26 +100,61 @@ class ProcessSplitApkTask extends DefaultTask {
     Set<String> splitProjectDependencies
 
     @InputFiles
+    @PathSensitive(PathSensitivity.NONE)
     List<File> splitApks
 
-    @InputDirectory
+    @Internal
     File splitManifestDir
 
-    @OutputDirectory
+    @Internal
     File splitApksDir
 
-    @OutputDirectory
+    @Internal
     File splitInfoDir
 
-    @OutputDirectory
+    @Internal
     File unzipSplitApkBaseDir
 
+    @Inject
+    ProcessSplitApkTask(WorkerExecutor workerExecutor) {
+        this.workerExecutor = workerExecutor
+    }
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    File getSplitManifestFile() {
+        return new File(splitManifestDir, project.name + SdkConstants.DOT_XML)
+    }
+
+    @Input
+    String getSigningIdentity() {
+        return ApkSigner.SigningOptions.from(apkSigner.getSigningConfig()).identity
+    }
+
+    /**
+     * Apks of this split, see {@link CreateSplitDetailsFileTask#getSplitApk(String, String)}.
+     */
+    @OutputDirectory
+    File getSplitApkOutputDir() {
+        return new File(splitApksDir, project.name)
+    }
+
+    @OutputFile
+    File getSplitInfoFile() {
+        return new File(splitInfoDir, project.name + SdkConstants.DOT_JSON)
+    }
+
+    @LocalState
+    File getUnzipSplitApkDir() {
+        return new File(unzipSplitApkBaseDir, project.name)
+    }
+
     @TaskAction
     void processSplitApk() {
         if (splitApks.size() > 1) {
             throw new GradleException("Qigsaw Error: Qigsaw don't support multi-apks.")
         }
-        File unzipSplitApkDir = new File(unzipSplitApkBaseDir, project.name)
+        File unzipSplitApkDir = getUnzipSplitApkDir()
         if (unzipSplitApkDir.exists()) {
             FileUtils.deleteDir(unzipSplitApkDir)
         }
@@ -109,59 +174,63 @@ class ProcessSplitApkTask extends DefaultTask {
                 }
             })
         }
-        List<SplitInfo.SplitApkData> apkDataList = new ArrayList<>()
-        Aapt2Command aapt2 = Aapt2Command.createFromExecutablePath(aapt2File.toPath())
-        File tmpDir = new File(splitApksDir, "tmp/${project.name}")
-        tmpDir.mkdirs()
-        supportedABIs.each { String abi ->
-            File protoAbiApk = new File(tmpDir, project.name + "-${abi}-proto" + SdkConstants.DOT_ANDROID_PACKAGE)
-            File binaryAbiApk = new File(tmpDir, project.name + "-${abi}-binary" + SdkConstants.DOT_ANDROID_PACKAGE)
-            File configAndroidManifest = new File(tmpDir, SdkConstants.ANDROID_MANIFEST_XML)
-            createSplitConfigApkAndroidManifest(project.name, abi, configAndroidManifest)
-            println("ProcessSplitApkTask:protoAbiApk=$protoAbiApk")
-            println("ProcessSplitApkTask:binaryAbiApk=:$binaryAbiApk")
-            println("ProcessSplitApkTask:configAndroidManifest=$configAndroidManifest")
-            Collection<File> resFiles = new ArrayList<>()
-            resFiles.add(new File(splitLibsDir, abi))
-            resFiles.add(configAndroidManifest)
-            ZipUtils.zipFiles(resFiles, unzipSplitApkDir, protoAbiApk, compressData)
-            aapt2.convertApkProtoToBinary(protoAbiApk.toPath(), binaryAbiApk.toPath())
-            File signedAbiApk = new File(splitApksDir, project.name + "-${abi}" + SdkConstants.DOT_ANDROID_PACKAGE)
-            if (signedAbiApk.exists()) {
-                signedAbiApk.delete()
+        //config apks of abis first, master apk at last.
+        List<String> apkNames = new ArrayList<>(supportedABIs)
+        apkNames.add(MASTER)
+        ApkSigner.SigningOptions signingOptions = ApkSigner.SigningOptions.from(apkSigner.getSigningConfig())
+        Map<String, String> fingerprints = createFingerprints(sourceSplitApk, apkNames, signingOptions)
+        File splitApkOutputDir = getSplitApkOutputDir()
+        splitApkOutputDir.mkdirs()
+        deleteStaleOutputs(splitApkOutputDir, apkNames)
+        File tmpDir = new File(getTemporaryDir(), project.name)
+        apkNames.each { String apkName ->
+            File signedApk = new File(splitApkOutputDir, project.name + "-${apkName + SdkConstants.DOT_ANDROID_PACKAGE}")
+            File fingerprintFile = new File(splitApkOutputDir, signedApk.name + FINGERPRINT_SUFFIX)
+            String fingerprint = fingerprints.get(apkName)
+            if (signedApk.exists() && fingerprintFile.exists() && fingerprintFile.text == fingerprint) {
+                println("ProcessSplitApkTask:upToDateApk=$signedApk")
+                return
             }
-            println("ProcessSplitApkTask:signedAbiApk=$signedAbiApk")
-            apkSigner.signApkIfNeed(binaryAbiApk, signedAbiApk)
-            SplitInfo.SplitApkData configApkData = new SplitInfo.SplitApkData()
-            configApkData.abi = abi
-            configApkData.url = "assets://qigsaw/${project.name}-${abi + SdkConstants.DOT_ZIP}"
-            configApkData.size = signedAbiApk.length()
-            configApkData.md5 = FileUtils.getMD5(signedAbiApk)
-            apkDataList.add(configApkData)
-        }
-        //create split master apk
-        Collection<File> resFiles = new ArrayList<>()
-        File[] files = unzipSplitApkDir.listFiles(new FileFilter() {
-            @Override
-            boolean accept(File file) {
-                return file.name != "lib"
+            if (fingerprintFile.exists()) {
+                fingerprintFile.delete()
             }
-        })
-        Collections.addAll(resFiles, files)
-        File unsignedMasterApk = new File(tmpDir, project.name + "-master-unsigned" + SdkConstants.DOT_ANDROID_PACKAGE)
-        ZipUtils.zipFiles(resFiles, unzipSplitApkDir, unsignedMasterApk, compressData)
-        File signedMasterApk = new File(splitApksDir, project.name + "-master" + SdkConstants.DOT_ANDROID_PACKAGE)
-        apkSigner.signApkIfNeed(unsignedMasterApk, signedMasterApk)
-        SplitInfo.SplitApkData masterApkData = new SplitInfo.SplitApkData()
-        masterApkData.abi = "master"
-        masterApkData.url = "assets://qigsaw/${project.name}-master${SdkConstants.DOT_ZIP}"
-        masterApkData.size = signedMasterApk.length()
-        masterApkData.md5 = FileUtils.getMD5(signedMasterApk)
-        apkDataList.add(masterApkData)
+            println("ProcessSplitApkTask:signedApk=$signedApk")
+            SplitApkWorker.WorkUnit workUnit = new SplitApkWorker.WorkUnit()
+            workUnit.abi = apkName == MASTER ? null : apkName
+            workUnit.splitName = project.name
+            workUnit.applicationId = applicationId
+            workUnit.splitVersion = splitVersion
+            workUnit.aapt2File = aapt2File
+            workUnit.unzipSplitApkDir = unzipSplitApkDir
+            workUnit.compressData = compressData
+            workUnit.tmpDir = tmpDir
+            workUnit.signedApk = signedApk
+            workUnit.signingOptions = signingOptions
+            workUnit.fingerprint = fingerprint
+            workUnit.fingerprintFile = fingerprintFile
+            workerExecutor.submit(SplitApkWorker, new Action<WorkerConfiguration>() {
+                @Override
+                void execute(WorkerConfiguration config) {
+                    config.isolationMode = IsolationMode.NONE
+                    config.params(workUnit)
+                }
+            })
+        }
+        workerExecutor.await()
+        List<SplitInfo.SplitApkData> apkDataList = new ArrayList<>()
+        apkNames.each { String apkName ->
+            File signedApk = new File(splitApkOutputDir, project.name + "-${apkName + SdkConstants.DOT_ANDROID_PACKAGE}")
+            SplitInfo.SplitApkData apkData = new SplitInfo.SplitApkData()
+            apkData.abi = apkName
+            apkData.url = "assets://qigsaw/${project.name}-${apkName + SdkConstants.DOT_ZIP}"
+            apkData.size = signedApk.length()
+            apkData.md5 = FileUtils.getMD5(signedApk)
+            apkDataList.add(apkData)
+        }
         //create split native-library data list.
         List<SplitInfo.SplitLibData> libDataList = createSplitLibInfo(unzipSplitApkDir)
         //create split-info json file
-        File splitInfoFile = new File(splitInfoDir, project.name + SdkConstants.DOT_JSON)
+        File splitInfoFile = getSplitInfoFile()
         if (splitInfoFile.exists()) {
             splitInfoFile.delete()
         }
@@ -171,7 +240,66 @@ class ProcessSplitApkTask extends DefaultTask {
         FileUtils.deleteDir(tmpDir)
     }
 
-    void createSplitConfigApkAndroidManifest(String splitName, String abi, File androidManifestFile) {
+    /**
+     * Fingerprint of every apk is digested from names, crc and compress methods of the source entries it contains,
+     * and everything else written into it, so source entries don't need to be read.
+     */
+    Map<String, String> createFingerprints(File sourceSplitApk, List<String> apkNames, ApkSigner.SigningOptions signingOptions) {
+        Map<String, MessageDigest> digests = new HashMap<>()
+        apkNames.each { String apkName ->
+            MessageDigest digest = MessageDigest.getInstance("MD5")
+            digest.update("${signingOptions.identity}\n".getBytes("UTF-8"))
+            if (apkName != MASTER) {
+                digest.update("${applicationId}\n${splitVersion}\n${aapt2File.parentFile.name}\n".getBytes("UTF-8"))
+            }
+            digests.put(apkName, digest)
+        }
+        List<ZipEntry> entries = new ArrayList<>()
+        ZipFile zipFile = new ZipFile(sourceSplitApk)
+        try {
+            entries.addAll(Collections.list(zipFile.entries()))
+        } finally {
+            zipFile.close()
+        }
+        //entry order is not relevant to apk contents.
+        entries.sort { ZipEntry entry -> entry.name }
+        entries.each { ZipEntry entry ->
+            if (entry.isDirectory()) {
+                return
+            }
+            String apkName = MASTER
+            if (entry.name.startsWith("lib/")) {
+                String[] segments = entry.name.split("/")
+                apkName = segments.length > 2 ? segments[1] : null
+            }
+            MessageDigest digest = apkName == null ? null : digests.get(apkName)
+            if (digest != null) {
+                digest.update("${entry.name}:${entry.crc}:${entry.method}\n".getBytes("UTF-8"))
+            }
+        }
+        Map<String, String> fingerprints = new HashMap<>()
+        digests.each { String apkName, MessageDigest digest ->
+            fingerprints.put(apkName, new BigInteger(1, digest.digest()).toString(16))
+        }
+        return fingerprints
+    }
+
+    void deleteStaleOutputs(File splitApkOutputDir, List<String> apkNames) {
+        Set<String> outputNames = new HashSet<>()
+        apkNames.each { String apkName ->
+            String apkFileName = project.name + "-${apkName + SdkConstants.DOT_ANDROID_PACKAGE}"
+            outputNames.add(apkFileName)
+            outputNames.add(apkFileName + FINGERPRINT_SUFFIX)
+        }
+        splitApkOutputDir.listFiles().each { File file ->
+            if (!outputNames.contains(file.name)) {
+                SplitLogger.w("Delete stale split output ${file.absolutePath}")
+                FileUtils.deleteDir(file)
+            }
+        }
+    }
+
+    static void createSplitConfigApkAndroidManifest(String applicationId, String splitVersion, String splitName, String abi, File androidManifestFile) {
         AndroidManifest androidManifest
         try {
             androidManifest = AndroidManifest.createForConfigSplit(
@@ -185,6 +313,7 @@ class ProcessSplitApkTask extends DefaultTask {
             it.write(androidManifest.manifestRoot.proto.toByteArray())
         }
     }
+
     /**
      *
      * @param apkDataList apk数据
@@ -199,7 +328,7 @@ class ProcessSplitApkTask extends DefaultTask {
                 dependencies.add(name.split(":")[1])
             }
         }
-        File manifest = new File(splitManifestDir, project.name + SdkConstants.DOT_XML)
+        File manifest = getSplitManifestFile()
         if (!manifest.exists()) {
             throw new GradleException("Qigsaw Error: Split manifest ${manifest.absolutePath} is not existing!")
         }
@@ -40,7 +40,9 @@ class QigsawProguardConfigTask extends DefaultTask {
             "-keep class com.google.android.play.core.**{\n *;\n }\n" +
                     "-keep class com.split.signature.**{\n *;\n }\n" +
                     "-keep class com.iqiyi.android.qigsaw.core.extension.ComponentInfo{\n *;\n }\n" +
-                    "-keep class com.iqiyi.android.qigsaw.core.splitlib.**{\n *;\n }\n"
+                    "-keep class com.iqiyi.android.qigsaw.core.extension.SplitComponentRegistry{\n *;\n }\n" +
+                    "-keep class com.iqiyi.android.qigsaw.core.splitlib.**{\n *;\n }\n" +
+                    "-keep interface com.iqiyi.android.qigsaw.core.splitload.SplitLibraryLoader{\n *;\n }\n"
 
     @OutputFile
     File outputFile
@@ -0,0 +1,126 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.iqiyi.qigsaw.buildtool.gradle.task
+
+import com.android.SdkConstants
+import com.android.tools.build.bundletool.model.Aapt2Command
+import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.ApkSigner
+import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.FileUtils
+import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.ZipUtils
+
+import javax.inject.Inject
+
+/**
+ * Build one signed apk of a split, either its master apk or the config apk of an abi.
+ * Runs in gradle workers, see {@link ProcessSplitApkTask}.
+ */
+class SplitApkWorker implements Runnable {
+
+    final WorkUnit workUnit
+
+    @Inject
+    SplitApkWorker(WorkUnit workUnit) {
+        this.workUnit = workUnit
+    }
+
+    @Override
+    void run() {
+        File tmpDir = new File(workUnit.tmpDir, workUnit.isMaster() ? "master" : workUnit.abi)
+        if (tmpDir.exists()) {
+            FileUtils.deleteDir(tmpDir)
+        }
+        tmpDir.mkdirs()
+        File unsignedApk
+        if (workUnit.isMaster()) {
+            Collection<File> resFiles = new ArrayList<>()
+            File[] files = workUnit.unzipSplitApkDir.listFiles(new FileFilter() {
+                @Override
+                boolean accept(File file) {
+                    return file.name != "lib"
+                }
+            })
+            Collections.addAll(resFiles, files)
+            unsignedApk = new File(tmpDir, workUnit.splitName + "-master-unsigned" + SdkConstants.DOT_ANDROID_PACKAGE)
+            ZipUtils.zipFiles(resFiles, workUnit.unzipSplitApkDir, unsignedApk, workUnit.compressData)
+        } else {
+            File protoAbiApk = new File(tmpDir, workUnit.splitName + "-${workUnit.abi}-proto" + SdkConstants.DOT_ANDROID_PACKAGE)
+            unsignedApk = new File(tmpDir, workUnit.splitName + "-${workUnit.abi}-binary" + SdkConstants.DOT_ANDROID_PACKAGE)
+            File configAndroidManifest = new File(tmpDir, SdkConstants.ANDROID_MANIFEST_XML)
+            ProcessSplitApkTask.createSplitConfigApkAndroidManifest(
+                    workUnit.applicationId, workUnit.splitVersion, workUnit.splitName, workUnit.abi, configAndroidManifest)
+            Collection<File> resFiles = new ArrayList<>()
+            resFiles.add(new File(workUnit.unzipSplitApkDir, "lib/${workUnit.abi}"))
+            resFiles.add(configAndroidManifest)
+            ZipUtils.zipFiles(resFiles, workUnit.unzipSplitApkDir, protoAbiApk, workUnit.compressData)
+            Aapt2Command aapt2 = Aapt2Command.createFromExecutablePath(workUnit.aapt2File.toPath())
+            aapt2.convertApkProtoToBinary(protoAbiApk.toPath(), unsignedApk.toPath())
+        }
+        if (workUnit.signedApk.exists()) {
+            workUnit.signedApk.delete()
+        }
+        ApkSigner.signApkIfNeed(unsignedApk, workUnit.signedApk, workUnit.signingOptions)
+        //record fingerprint only when apk is created successfully.
+        workUnit.fingerprintFile.write(workUnit.fingerprint)
+        FileUtils.deleteDir(tmpDir)
+    }
+
+    static class WorkUnit implements Serializable {
+
+        /**
+         * abi of config apk, {@code null} for master apk.
+         */
+        String abi
+
+        String splitName
+
+        String applicationId
+
+        String splitVersion
+
+        File aapt2File
+
+        File unzipSplitApkDir
+
+        HashMap<String, Integer> compressData
+
+        File tmpDir
+
+        File signedApk
+
+        ApkSigner.SigningOptions signingOptions
+
+        /**
+         * Digest of everything the apk is built from, the apk is reused while it is unchanged.
+         */
+        String fingerprint
+
+        File fingerprintFile
+
+        boolean isMaster() {
+            return abi == null
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.CommandUtils
 import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.FileUtils
 import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.ApkSigner
 import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.SplitLogger
+import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.ZipStreamingFilter
 import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.ZipUtils
 import org.gradle.api.DefaultTask
 import org.gradle.api.GradleException
@@ -15,6 +16,11 @@ import org.gradle.api.tasks.InputFiles
 import org.gradle.api.tasks.OutputDirectory
 import org.gradle.api.tasks.TaskAction
 
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
 class SplitBaseApkForABIsTask extends DefaultTask {
 
     static final List<String> SUPPORTED_ABIS = ["armeabi", "armeabi-v7a", "arm64-v8a", "x86", "x86_64"]
@@ -83,64 +89,146 @@ class SplitBaseApkForABIsTask extends DefaultTask {
 
         }
         boolean isSigningNeed = signingConfig != null && signingConfig.isSigningReady()
-        abiList.each { String abi ->
-            File unzipBaseApkDirForAbi = new File(unzipBaseApkDir, abi)
-            if (unzipBaseApkDirForAbi.exists()) {
-                FileUtils.deleteDir(unzipBaseApkDirForAbi)
-            }
-            unzipBaseApkDirForAbi.mkdirs()
-            HashMap<String, Integer> compress = ZipUtils.unzipApk(baseApk, unzipBaseApkDirForAbi)
-            if (SUPPORTED_ABIS.contains(abi)) {
-                File baseAppCpuAbiListFileForAbi = new File(unzipBaseApkDirForAbi, "assets/${baseAppCpuAbiListFile.name}")
-                baseAppCpuAbiListFileForAbi.write("abiList=${abi}")
-                File[] libDirs = new File(unzipBaseApkDirForAbi, "lib").listFiles()
-                libDirs.each { File abiDir ->
-                    if (abiDir.name != abi) {
-                        FileUtils.deleteDir(abiDir)
-                    }
-                }
-                dynamicFeaturesNames.each { String splitName ->
-                    File baseApkQigsawAssetsDir = new File(unzipBaseApkDirForAbi, "assets/qigsaw")
-                    File[] splitApkFiles = baseApkQigsawAssetsDir.listFiles(new FileFilter() {
-                        @Override
-                        boolean accept(File file) {
-                            return file.name.endsWith(SdkConstants.DOT_ZIP)
+        ZipStreamingFilter zipFilter = use7z ? null : new ZipStreamingFilter(baseApk)
+        if (zipFilter != null && !zipFilter.isSupported()) {
+            SplitLogger.w("Base apk ${baseApk.absolutePath} is a zip64 archive, fall back to unzip and rezip.")
+            zipFilter = null
+        }
+        if (zipFilter != null && !zipFilter.getEntryNames().contains("assets/${baseAppCpuAbiListFile.name}".toString())) {
+            SplitLogger.w("Base apk ${baseApk.absolutePath} has no ${baseAppCpuAbiListFile.name}, fall back to unzip and rezip.")
+            zipFilter = null
+        }
+        final ZipStreamingFilter baseApkFilter = zipFilter
+        //ABI variants only read base apk, so they are produced concurrently.
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(abiList.size(), Runtime.getRuntime().availableProcessors()))
+        try {
+            List<Future<?>> futures = new ArrayList<>()
+            abiList.each { String abi ->
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    void run() {
+                        File unsignedBaseApk = new File(baseApksDir, "${project.name}-${baseVariant.name.uncapitalize()}-${abi}-${use7z ? "7z" : "non7z"}-unsigned${SdkConstants.DOT_ANDROID_PACKAGE}")
+                        if (!unsignedBaseApk.parentFile.exists()) {
+                            unsignedBaseApk.parentFile.mkdirs()
+                        }
+                        if (baseApkFilter != null) {
+                            filterBaseApk(baseApkFilter, abi, unsignedBaseApk)
+                        } else {
+                            unzipAndRezipBaseApk(baseApk, abi, unsignedBaseApk)
                         }
-                    })
-                    if (splitApkFiles != null) {
-                        splitApkFiles.each { File file ->
-                            if (file.name.startsWith(splitName) && !file.name.contains(abi) && !file.name.startsWith("${splitName}-master")) {
-                                file.delete()
+                        File destBaseApk
+                        if (isSigningNeed) {
+                            File signedBaseApk = new File(baseApksDir, "${project.name}-${baseVariant.name.uncapitalize()}-${abi}-${use7z ? "7z" : "non7z"}-signed${SdkConstants.DOT_ANDROID_PACKAGE}")
+                            apkSigner.signApkIfNeed(unsignedBaseApk, signedBaseApk)
+                            destBaseApk = new File(packageAppDir, signedBaseApk.name)
+                            if (destBaseApk.exists()) {
+                                destBaseApk.delete()
                             }
+                            FileUtils.copyFile(signedBaseApk, destBaseApk)
+                        } else {
+                            destBaseApk = new File(packageAppDir, unsignedBaseApk.name)
+                            if (destBaseApk.exists()) {
+                                destBaseApk.delete()
+                            }
+                            FileUtils.copyFile(unsignedBaseApk, destBaseApk)
                         }
                     }
+                }))
+            }
+            futures.each { Future<?> future ->
+                try {
+                    future.get()
+                } catch (ExecutionException e) {
+                    throw new GradleException("Failed to split base apk for ABIs", e.getCause())
                 }
             }
-            File unsignedBaseApk = new File(baseApksDir, "${project.name}-${baseVariant.name.uncapitalize()}-${abi}-${use7z ? "7z" : "non7z"}-unsigned${SdkConstants.DOT_ANDROID_PACKAGE}")
-            if (!unsignedBaseApk.parentFile.exists()) {
-                unsignedBaseApk.parentFile.mkdirs()
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    /**
+     * Copy compressed entries of base apk to {@code unsignedBaseApk} without inflating them,
+     * except the abi list file which is rewritten for the given abi.
+     */
+    private void filterBaseApk(ZipStreamingFilter baseApkFilter, String abi, File unsignedBaseApk) {
+        Map<String, byte[]> replacements = new HashMap<>()
+        boolean filterAbi = SUPPORTED_ABIS.contains(abi)
+        if (filterAbi) {
+            replacements.put("assets/${baseAppCpuAbiListFile.name}".toString(), "abiList=${abi}".toString().getBytes())
+        }
+        baseApkFilter.writeTo(unsignedBaseApk, { String entryName ->
+            if (entryName.endsWith("/")) {
+                return false
             }
-            if (use7z) {
-                run7zCmd("7za", "a", "-tzip", unsignedBaseApk.absolutePath, unzipBaseApkDirForAbi.absolutePath + File.separator + "*", "-mx9")
-            } else {
-                ZipUtils.zipFiles(Arrays.asList(unzipBaseApkDirForAbi.listFiles()), unzipBaseApkDirForAbi, unsignedBaseApk, compress)
+            if (filterAbi) {
+                return !isForeignAbiEntry(entryName, abi)
             }
-            if (isSigningNeed) {
-                File signedBaseApk = new File(baseApksDir, "${project.name}-${baseVariant.name.uncapitalize()}-${abi}-${use7z ? "7z" : "non7z"}-signed${SdkConstants.DOT_ANDROID_PACKAGE}")
-                apkSigner.signApkIfNeed(unsignedBaseApk, signedBaseApk)
-                File destBaseApk = new File(packageAppDir, signedBaseApk.name)
-                if (destBaseApk.exists()) {
-                    destBaseApk.delete()
+            return true
+        }, replacements)
+    }
+
+    /**
+     * @return {@code true} if the entry is native library of another abi or split apk of another abi,
+     * see {@link #unzipAndRezipBaseApk(File, String, File)}.
+     */
+    private boolean isForeignAbiEntry(String entryName, String abi) {
+        if (entryName.startsWith("lib/")) {
+            int abiEnd = entryName.indexOf('/', "lib/".length())
+            String abiDirName = abiEnd < 0 ? entryName.substring("lib/".length()) : entryName.substring("lib/".length(), abiEnd)
+            return abiDirName != abi
+        }
+        String qigsawAssetsPrefix = "assets/qigsaw/"
+        if (entryName.startsWith(qigsawAssetsPrefix) && entryName.endsWith(SdkConstants.DOT_ZIP)) {
+            String fileName = entryName.substring(qigsawAssetsPrefix.length())
+            if (fileName.contains("/")) {
+                return false
+            }
+            return dynamicFeaturesNames.any { String splitName ->
+                fileName.startsWith(splitName) && !fileName.contains(abi) && !fileName.startsWith("${splitName}-master")
+            }
+        }
+        return false
+    }
+
+    private void unzipAndRezipBaseApk(File baseApk, String abi, File unsignedBaseApk) {
+        File unzipBaseApkDirForAbi = new File(unzipBaseApkDir, abi)
+        if (unzipBaseApkDirForAbi.exists()) {
+            FileUtils.deleteDir(unzipBaseApkDirForAbi)
+        }
+        unzipBaseApkDirForAbi.mkdirs()
+        HashMap<String, Integer> compress = ZipUtils.unzipApk(baseApk, unzipBaseApkDirForAbi)
+        if (SUPPORTED_ABIS.contains(abi)) {
+            File baseAppCpuAbiListFileForAbi = new File(unzipBaseApkDirForAbi, "assets/${baseAppCpuAbiListFile.name}")
+            baseAppCpuAbiListFileForAbi.write("abiList=${abi}")
+            File[] libDirs = new File(unzipBaseApkDirForAbi, "lib").listFiles()
+            libDirs.each { File abiDir ->
+                if (abiDir.name != abi) {
+                    FileUtils.deleteDir(abiDir)
                 }
-                FileUtils.copyFile(signedBaseApk, destBaseApk)
-            } else {
-                File destBaseApk = new File(packageAppDir, unsignedBaseApk.name)
-                if (destBaseApk.exists()) {
-                    destBaseApk.delete()
+            }
+            dynamicFeaturesNames.each { String splitName ->
+                File baseApkQigsawAssetsDir = new File(unzipBaseApkDirForAbi, "assets/qigsaw")
+                File[] splitApkFiles = baseApkQigsawAssetsDir.listFiles(new FileFilter() {
+                    @Override
+                    boolean accept(File file) {
+                        return file.name.endsWith(SdkConstants.DOT_ZIP)
+                    }
+                })
+                if (splitApkFiles != null) {
+                    splitApkFiles.each { File file ->
+                        if (file.name.startsWith(splitName) && !file.name.contains(abi) && !file.name.startsWith("${splitName}-master")) {
+                            file.delete()
+                        }
+                    }
                 }
-                FileUtils.copyFile(unsignedBaseApk, destBaseApk)
             }
         }
+        if (use7z) {
+            run7zCmd("7za", "a", "-tzip", unsignedBaseApk.absolutePath, unzipBaseApkDirForAbi.absolutePath + File.separator + "*", "-mx9")
+        } else {
+            ZipUtils.zipFiles(Arrays.asList(unzipBaseApkDirForAbi.listFiles()), unzipBaseApkDirForAbi, unsignedBaseApk, compress)
+        }
     }
 
     static void run7zCmd(String... cmd) {
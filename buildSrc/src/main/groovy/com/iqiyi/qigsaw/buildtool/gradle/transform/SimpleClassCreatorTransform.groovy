@@ -27,9 +27,11 @@ package com.iqiyi.qigsaw.buildtool.gradle.transform
 import com.android.build.api.transform.DirectoryInput
 import com.android.build.api.transform.Format
 import com.android.build.api.transform.JarInput
+import com.android.build.api.transform.Status
 import com.android.build.api.transform.Transform
 import com.android.build.api.transform.TransformInput
 import com.android.build.api.transform.TransformInvocation
+import com.android.ide.common.internal.WaitableExecutor
 import org.apache.commons.io.FileUtils
 import org.objectweb.asm.ClassWriter
 import org.objectweb.asm.MethodVisitor
@@ -39,32 +41,73 @@ import java.security.MessageDigest
 
 abstract class SimpleClassCreatorTransform extends Transform {
 
+    final WaitableExecutor waitableExecutor = WaitableExecutor.useGlobalSharedThreadPool()
+
     static String getStringMD5(String str) {
         return MessageDigest.getInstance("MD5").digest(str.bytes).encodeHex().toString()
     }
 
+    @Override
+    boolean isIncremental() {
+        return true
+    }
+
+    /**
+     * Copy inputs to outputs, only changed inputs are copied in incremental mode.
+     * Classes created by this transform are always created again, so their directory is cleared.
+     */
     String prepareToCreateClass(TransformInvocation transformInvocation) {
+        boolean incremental = transformInvocation.isIncremental()
+        if (!incremental) {
+            transformInvocation.outputProvider.deleteAll()
+        }
         transformInvocation.inputs.each { TransformInput input ->
             input.jarInputs.each { JarInput jarInput ->
                 def jarName = jarInput.name
                 def md5 = getStringMD5(jarInput.file.getAbsolutePath())
                 File dest = transformInvocation.outputProvider.getContentLocation(jarName + md5,
                         jarInput.contentTypes, jarInput.scopes, Format.JAR)
-                FileUtils.copyFile(jarInput.file, dest)
+                Status status = incremental ? jarInput.status : Status.ADDED
+                if (status == Status.REMOVED) {
+                    FileUtils.deleteQuietly(dest)
+                } else if (status != Status.NOTCHANGED) {
+                    waitableExecutor.execute {
+                        FileUtils.copyFile(jarInput.file, dest)
+                        return null
+                    }
+                }
             }
             input.directoryInputs.each { DirectoryInput directoryInput ->
                 File dest = transformInvocation.outputProvider.getContentLocation(directoryInput.name,
                         directoryInput.contentTypes, directoryInput.scopes,
                         Format.DIRECTORY)
-                FileUtils.copyDirectory(directoryInput.file, dest)
+                if (incremental) {
+                    directoryInput.changedFiles.each { File file, Status status ->
+                        File destFile = new File(dest, directoryInput.file.toPath().relativize(file.toPath()).toString())
+                        if (status == Status.REMOVED) {
+                            FileUtils.deleteQuietly(destFile)
+                        } else if (status != Status.NOTCHANGED && file.isFile()) {
+                            FileUtils.copyFile(file, destFile)
+                        }
+                    }
+                } else {
+                    FileUtils.copyDirectory(directoryInput.file, dest)
+                }
             }
         }
-        return transformInvocation.outputProvider.getContentLocation("main",
+        waitableExecutor.waitForTasksWithQuickFail(true)
+        File createdClassesDir = transformInvocation.outputProvider.getContentLocation("main",
                 getOutputTypes(), getScopes(),
                 Format.DIRECTORY)
+        FileUtils.deleteQuietly(createdClassesDir)
+        return createdClassesDir
     }
 
     static void createSimpleClass(def dest, String className, String superName, OnVisitListener listener) {
+        createSimpleClass(dest, className, superName, null, listener)
+    }
+
+    static void createSimpleClass(def dest, String className, String superName, String[] interfaces, OnVisitListener listener) {
         //println("createSimpleClass:$dest:$className")
         ClassWriter cw = new ClassWriter(0)
         String folderName = className.replace(".", File.separator)
@@ -77,7 +120,7 @@ abstract class SimpleClassCreatorTransform extends Transform {
                 Opcodes.ACC_PUBLIC,
                 className.replace(".", "/"), null,
                 superNameSpec,
-                null)
+                interfaces == null ? null : interfaces.collect { it.replace(".", "/") } as String[])
 
         MethodVisitor mw = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V",
                 null, null)
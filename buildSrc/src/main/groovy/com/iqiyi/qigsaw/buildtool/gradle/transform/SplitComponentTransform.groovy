@@ -33,12 +33,15 @@ import org.gradle.api.GradleException
 import org.gradle.api.Project
 import org.gradle.api.file.FileCollection
 import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.MethodVisitor
 import org.objectweb.asm.Opcodes
 //com.iqiyi.android.qigsaw.core.extension.ComponentInfo
-//public class ComponentInfo {
-//    public static final String native_ACTIVITIES = "com.iqiyi.qigsaw.sample.ccode.NativeSampleActivity";
-//    public static final String java_ACTIVITIES = "com.iqiyi.qigsaw.sample.java.JavaSampleActivity";
-//    public static final String java_APPLICATION = "com.iqiyi.qigsaw.sample.java.JavaSampleApplication";
+//public class ComponentInfo extends SplitComponentRegistry {
+//    public ComponentInfo() {
+//        register("java", "com.iqiyi.qigsaw.sample.java.JavaSampleApplication",
+//                new String[]{"com.iqiyi.qigsaw.sample.java.JavaSampleActivity"}, new String[0], new String[0], new String[0]);
+//        register("native", null, new String[]{"com.iqiyi.qigsaw.sample.ccode.NativeSampleActivity"}, new String[0], new String[0], new String[0]);
+//    }
 //}
 //$ContentProviderName_Decorated_$featureName继承SplitContentProvider
 //public class JavaContentProvider_Decorated_java extends SplitContentProvider {}
@@ -46,6 +49,10 @@ class SplitComponentTransform extends SimpleClassCreatorTransform {
 
     static final String NAME = "processSplitComponent"
 
+    static final String COMPONENT_INFO_CLASS = "com/iqiyi/android/qigsaw/core/extension/ComponentInfo"
+
+    static final String COMPONENT_REGISTRY_CLASS = "com/iqiyi/android/qigsaw/core/extension/SplitComponentRegistry"
+
     Project project
 
     File splitManifestParentDir
@@ -77,20 +84,14 @@ class SplitComponentTransform extends SimpleClassCreatorTransform {
         return TransformManager.SCOPE_FULL_PROJECT
     }
 
-    @Override
-    boolean isIncremental() {
-        return false
-    }
-
     @Override
     void transform(TransformInvocation transformInvocation) throws TransformException, InterruptedException, IOException {
         super.transform(transformInvocation)
-        transformInvocation.getOutputProvider().deleteAll()
         File splitManifestDir = new File(splitManifestParentDir, transformInvocation.context.variantName.uncapitalize())
         if (!splitManifestDir.exists()) {
             throw new GradleException("${splitManifestDir.absolutePath} is not existing!")
         }
-        Map<String, Set> addFieldMap = new HashMap<>()
+        Map<String, SplitComponents> splitComponentsMap = new TreeMap<>()
         dynamicFeatureNames.each { String name ->
             //println("tanzhenxing:SplitComponentTransform:$name")
             File splitManifest = new File(splitManifestDir, name + SdkConstants.DOT_XML)
@@ -98,54 +99,96 @@ class SplitComponentTransform extends SimpleClassCreatorTransform {
                 throw new GradleException("Project ${name} manifest file ${splitManifest.absolutePath} is not found!")
             }
             ManifestReader manifestReader = new ManifestReader(splitManifest)
-            Set<String> activities = manifestReader.readActivityNames()
-            Set<String> services = manifestReader.readServiceNames()
-            Set<String> receivers = manifestReader.readReceiverNames()
-            Set<String> providers = manifestReader.readProviderNames()
-            Set<String> applications = new HashSet<>()
+            SplitComponents components = new SplitComponents()
             String applicationName = manifestReader.readApplicationName()
             if (applicationName != null && applicationName.length() > 0) {
-                applications.add(applicationName)
+                components.applicationName = applicationName
             }
-            addFieldMap.put(name + "_APPLICATION", applications)
-            addFieldMap.put(name + "_ACTIVITIES", activities)
-            addFieldMap.put(name + "_SERVICES", services)
-            addFieldMap.put(name + "_RECEIVERS", receivers)
-            addFieldMap.put(name + "_PROVIDERS", providers)
+            components.activities = manifestReader.readActivityNames().sort()
+            components.services = manifestReader.readServiceNames().sort()
+            components.receivers = manifestReader.readReceiverNames().sort()
+            components.providers = manifestReader.readProviderNames().sort()
+            splitComponentsMap.put(name, components)
         }
 
         def dest = prepareToCreateClass(transformInvocation)
-        createSimpleClass(dest, "com.iqiyi.android.qigsaw.core.extension.ComponentInfo", "java.lang.Object", new SimpleClassCreatorTransform.OnVisitListener() {
-
-            @Override
-            void onVisit(ClassWriter cw) {
-                injectCommonInfo(dest, cw, addFieldMap)
+        createComponentInfoClass(dest, splitComponentsMap)
+        splitComponentsMap.each { String splitName, SplitComponents components ->
+            //create proxy provider.
+            components.providers.each { String providerName ->
+                String providerClassName = providerName + "_Decorated_" + splitName
+                createSimpleClass(dest, providerClassName, "com.iqiyi.android.qigsaw.core.splitload.SplitContentProvider", null)
             }
-        })
+        }
     }
 
-    static void injectCommonInfo(def dest, ClassWriter cw, Map<String, Set> addFieldMap) {
-        addFieldMap.each { entry ->
-            Set value = entry.value
-            if (value.size() > 0) {
-                String name = entry.getKey()
-                if (name.endsWith("APPLICATION")) {
-                    //为什么value.getAt(0)).visitEnd?
-                    cw.visitField(Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL + Opcodes.ACC_STATIC,
-                            name, "Ljava/lang/String;", null, value.getAt(0)).visitEnd()
-                } else if (name.endsWith("PROVIDERS")) {
-                    //create proxy provider.
-                    for (String providerName : value) {
-                        String splitName = name.split("_PROVIDERS")[0]
-                        String providerClassName = providerName + "_Decorated_" + splitName
-                        createSimpleClass(dest, providerClassName, "com.iqiyi.android.qigsaw.core.splitload.SplitContentProvider", null)
-                    }
-                } else {
-                    cw.visitField(Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL + Opcodes.ACC_STATIC,
-                            name, "Ljava/lang/String;", null,
-                            (value as String[]).join(",")).visitEnd()
-                }
+    static void createComponentInfoClass(def dest, Map<String, SplitComponents> splitComponentsMap) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS)
+        File classFile = new File(dest + File.separator + COMPONENT_INFO_CLASS.replace("/", File.separator) + SdkConstants.DOT_CLASS)
+        if (!classFile.getParentFile().exists()) {
+            classFile.getParentFile().mkdirs()
+        }
+        cw.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, COMPONENT_INFO_CLASS, null, COMPONENT_REGISTRY_CLASS, null)
+        MethodVisitor mw = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null)
+        mw.visitVarInsn(Opcodes.ALOAD, 0)
+        mw.visitMethodInsn(Opcodes.INVOKESPECIAL, COMPONENT_REGISTRY_CLASS, "<init>", "()V", false)
+        splitComponentsMap.each { String splitName, SplitComponents components ->
+            mw.visitVarInsn(Opcodes.ALOAD, 0)
+            mw.visitLdcInsn(splitName)
+            if (components.applicationName != null) {
+                mw.visitLdcInsn(components.applicationName)
+            } else {
+                mw.visitInsn(Opcodes.ACONST_NULL)
             }
+            visitStringArray(mw, components.activities)
+            visitStringArray(mw, components.services)
+            visitStringArray(mw, components.receivers)
+            visitStringArray(mw, components.providers)
+            mw.visitMethodInsn(Opcodes.INVOKEVIRTUAL, COMPONENT_INFO_CLASS, "register",
+                    "(Ljava/lang/String;Ljava/lang/String;[Ljava/lang/String;[Ljava/lang/String;[Ljava/lang/String;[Ljava/lang/String;)V", false)
+        }
+        mw.visitInsn(Opcodes.RETURN)
+        mw.visitMaxs(0, 0)
+        mw.visitEnd()
+        cw.visitEnd()
+        classFile.withOutputStream { os ->
+            os.write(cw.toByteArray())
+        }
+    }
+
+    static void visitStringArray(MethodVisitor mw, List<String> values) {
+        visitInt(mw, values.size())
+        mw.visitTypeInsn(Opcodes.ANEWARRAY, "java/lang/String")
+        values.eachWithIndex { String value, int index ->
+            mw.visitInsn(Opcodes.DUP)
+            visitInt(mw, index)
+            mw.visitLdcInsn(value)
+            mw.visitInsn(Opcodes.AASTORE)
+        }
+    }
+
+    static void visitInt(MethodVisitor mw, int value) {
+        if (value <= 5) {
+            mw.visitInsn(Opcodes.ICONST_0 + value)
+        } else if (value <= Byte.MAX_VALUE) {
+            mw.visitIntInsn(Opcodes.BIPUSH, value)
+        } else if (value <= Short.MAX_VALUE) {
+            mw.visitIntInsn(Opcodes.SIPUSH, value)
+        } else {
+            mw.visitLdcInsn(value)
         }
     }
+
+    static class SplitComponents {
+
+        String applicationName
+
+        List<String> activities
+
+        List<String> services
+
+        List<String> receivers
+
+        List<String> providers
+    }
 }
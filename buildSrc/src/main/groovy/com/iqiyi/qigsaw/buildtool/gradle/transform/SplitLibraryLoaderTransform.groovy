@@ -34,7 +34,7 @@ import org.objectweb.asm.MethodVisitor
 import org.objectweb.asm.Opcodes
 
 //创建com.iqiyi.android.qigsaw.core.splitlib(project.name)SplitLibraryLoader.java
-//public class nativeSplitLibraryLoader {
+//public class nativeSplitLibraryLoader implements com.iqiyi.android.qigsaw.core.splitload.SplitLibraryLoader {
 //    public nativeSplitLibraryLoader() {
 //    }
 //
@@ -65,19 +65,14 @@ class SplitLibraryLoaderTransform extends SimpleClassCreatorTransform {
         return TransformManager.SCOPE_FULL_PROJECT
     }
 
-    @Override
-    boolean isIncremental() {
-        return false
-    }
-
     @Override
     void transform(TransformInvocation transformInvocation) throws TransformException, InterruptedException, IOException {
         super.transform(transformInvocation)
-        transformInvocation.getOutputProvider().deleteAll()
         def dest = prepareToCreateClass(transformInvocation)
         //println("SplitLibraryLoaderTransform:transform:$dest")
         createSimpleClass(dest, "com.iqiyi.android.qigsaw.core.splitlib." + project.name + "SplitLibraryLoader",
-                "java.lang.Object", new SimpleClassCreatorTransform.OnVisitListener() {
+                "java.lang.Object", ["com.iqiyi.android.qigsaw.core.splitload.SplitLibraryLoader"] as String[],
+                new SimpleClassCreatorTransform.OnVisitListener() {
             @Override
             void onVisit(ClassWriter cw) {
                 MethodVisitor mw = cw.visitMethod(Opcodes.ACC_PUBLIC, "loadSplitLibrary", "(Ljava/lang/String;)V", null, null)
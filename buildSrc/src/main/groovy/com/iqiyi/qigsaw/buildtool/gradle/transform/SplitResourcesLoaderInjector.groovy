@@ -30,7 +30,12 @@ import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.FileUtils
 import com.iqiyi.qigsaw.buildtool.gradle.internal.tool.SplitLogger
 
 import java.nio.file.*
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
 import java.util.regex.Matcher
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
 
 class SplitResourcesLoaderInjector {
 
@@ -48,12 +53,20 @@ class SplitResourcesLoaderInjector {
 
     SplitReceiverWeaver receiverWeaver
 
-    SplitResourcesLoaderInjector(WaitableExecutor waitableExecutor, Set<String> activities) {
-        this(waitableExecutor, activities, null, null)
+    /**
+     * Woven classes keyed by weaver and md5 of source class, unchanged classes are never woven again.
+     */
+    File wovenClassesCacheDir
+
+    Set<String> usedCacheKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>())
+
+    SplitResourcesLoaderInjector(WaitableExecutor waitableExecutor, File wovenClassesCacheDir, Set<String> activities) {
+        this(waitableExecutor, wovenClassesCacheDir, activities, null, null)
     }
 
-    SplitResourcesLoaderInjector(WaitableExecutor waitableExecutor, Set<String> activities, Set<String> services, Set<String> receivers) {
+    SplitResourcesLoaderInjector(WaitableExecutor waitableExecutor, File wovenClassesCacheDir, Set<String> activities, Set<String> services, Set<String> receivers) {
         this.waitableExecutor = waitableExecutor
+        this.wovenClassesCacheDir = wovenClassesCacheDir
         this.activities = activities
         this.services = services
         this.receivers = receivers
@@ -66,69 +79,148 @@ class SplitResourcesLoaderInjector {
         Files.walk(outputDir.toPath(), Integer.MAX_VALUE).filter {
             Files.isRegularFile(it)
         }.each { Path path ->
-            File file = path.toFile()
-            if (file.name.endsWith(SdkConstants.DOT_JAR)) {
-                injectJar(file)
-            } else if (file.name.endsWith(SdkConstants.DOT_CLASS)) {
-                this.waitableExecutor.execute {
-                    String className = file.absolutePath.substring(outputDir.absolutePath.length() + 1, file.absolutePath.length() - SdkConstants.DOT_CLASS.length())
-                            .replaceAll(Matcher.quoteReplacement(File.separator), '.')
-                    //println("SplitResourcesLoaderInjector:$className")
-                    byte[] bytes = injectClass(path, className)
-                    if (bytes != null) {
-                        Files.write(path, bytes, StandardOpenOption.WRITE)
-                    }
+            injectFile(outputDir, path.toFile())
+        }
+    }
+
+    /**
+     * Inject a class or jar file which is copied to {@code outputDir}.
+     */
+    void injectFile(File outputDir, File file) {
+        if (file.name.endsWith(SdkConstants.DOT_JAR)) {
+            injectJar(file, file)
+        } else if (file.name.endsWith(SdkConstants.DOT_CLASS)) {
+            String className = file.absolutePath.substring(outputDir.absolutePath.length() + 1, file.absolutePath.length() - SdkConstants.DOT_CLASS.length())
+                    .replaceAll(Matcher.quoteReplacement(File.separator), '.')
+            if (!isComponent(className)) {
+                return
+            }
+            this.waitableExecutor.execute {
+                //println("SplitResourcesLoaderInjector:$className")
+                byte[] bytes = injectClass(file.bytes, className)
+                if (bytes != null) {
+                    file.bytes = bytes
                 }
+                return null
             }
         }
     }
 
-    void injectJar(File jar) {
+    /**
+     * Write {@code inputJar} with injected classes to {@code outputJar}, they may be the same file.
+     * Jars without any component are copied as they are.
+     */
+    void injectJar(File inputJar, File outputJar) {
         this.waitableExecutor.execute {
-            Map<String, String> zipProperties = ['create': 'false']
-            URI zipDisk = URI.create("jar:${jar.toURI().toString()}")
-            FileSystem zipFs = null
+            File tmpJar = new File(outputJar.absolutePath + ".tmp")
+            tmpJar.parentFile.mkdirs()
+            ZipFile zipFile = null
             try {
-                zipFs = FileSystems.newFileSystem(zipDisk, zipProperties)
-                Path root = zipFs.rootDirectories.iterator().next()
-                Files.walk(root, Integer.MAX_VALUE).filter {
-                    Files.isRegularFile(it)
-                }.each { Path path ->
-                    String pathString = path.toString().substring(1).replace("\\", "/")
-                    if (!pathString.endsWith(SdkConstants.DOT_CLASS)) {
-                        return
+                zipFile = new ZipFile(inputJar)
+                List<? extends ZipEntry> entries = Collections.list(zipFile.entries())
+                boolean hasComponent = entries.any { ZipEntry entry ->
+                    entry.name.endsWith(SdkConstants.DOT_CLASS) && isComponent(getClassName(entry.name))
+                }
+                if (!hasComponent) {
+                    if (inputJar != outputJar) {
+                        org.apache.commons.io.FileUtils.copyFile(inputJar, outputJar)
                     }
-                    String className = pathString.replaceAll("/", '.').replace(SdkConstants.DOT_CLASS, "")
-                    //println("SplitResourcesLoaderInjector:$className")
-                    byte[] bytes = injectClass(path, className)
-                    if (bytes != null) {
-                        Files.write(path, bytes, StandardOpenOption.WRITE)
+                    return null
+                }
+                ZipOutputStream zipOut = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(tmpJar)))
+                try {
+                    entries.each { ZipEntry entry ->
+                        ZipEntry newEntry = new ZipEntry(entry.name)
+                        newEntry.time = entry.time
+                        zipOut.putNextEntry(newEntry)
+                        if (!entry.isDirectory()) {
+                            byte[] bytes = zipFile.getInputStream(entry).withStream { it.bytes }
+                            byte[] injectedBytes = null
+                            if (entry.name.endsWith(SdkConstants.DOT_CLASS)) {
+                                injectedBytes = injectClass(bytes, getClassName(entry.name))
+                            }
+                            zipOut.write(injectedBytes != null ? injectedBytes : bytes)
+                        }
+                        zipOut.closeEntry()
                     }
+                } finally {
+                    zipOut.close()
                 }
+                FileUtils.closeQuietly(zipFile)
+                zipFile = null
+                Files.move(tmpJar.toPath(), outputJar.toPath(), StandardCopyOption.REPLACE_EXISTING)
             } catch (e) {
-                e.printStackTrace()
+                SplitLogger.e("Failed to inject jar ${inputJar.absolutePath}", e)
+                FileUtils.closeQuietly(zipFile)
+                zipFile = null
+                tmpJar.delete()
+                if (inputJar != outputJar) {
+                    org.apache.commons.io.FileUtils.copyFile(inputJar, outputJar)
+                }
             } finally {
-                FileUtils.closeQuietly(zipFs)
+                FileUtils.closeQuietly(zipFile)
             }
+            return null
         }
     }
 
-    byte[] injectClass(Path path, String className) {
-        byte[] ret = null
+    static String getClassName(String entryName) {
+        return entryName.replace("\\", "/").replaceAll("/", '.').replace(SdkConstants.DOT_CLASS, "")
+    }
+
+    boolean isComponent(String className) {
+        return isActivity(className) || isService(className) || isReceiver(className)
+    }
+
+    byte[] injectClass(byte[] classBytes, String className) {
+        SplitComponentWeaver weaver
+        String weaverName
         if (isActivity(className)) {
             SplitLogger.w("Inject activity " + className)
-            SplitLogger.w("Inject activity path " + path)
-            ret = new SplitActivityWeaver().weave(path.newInputStream())
+            weaver = activityWeaver
+            weaverName = "activity"
         } else if (isService(className)) {
             SplitLogger.w("Inject service " + className)
-            ret = serviceWeaver.weave(path.newInputStream())
+            weaver = serviceWeaver
+            weaverName = "service"
         } else if (isReceiver(className)) {
             SplitLogger.w("Inject receiver " + className)
-            ret = receiverWeaver.weave(path.newInputStream())
+            weaver = receiverWeaver
+            weaverName = "receiver"
+        } else {
+            return null
+        }
+        String cacheKey = weaverName + "-" + MessageDigest.getInstance("MD5").digest(classBytes).encodeHex().toString()
+        usedCacheKeys.add(cacheKey)
+        File cachedClass = wovenClassesCacheDir == null ? null : new File(wovenClassesCacheDir, cacheKey + SdkConstants.DOT_CLASS)
+        if (cachedClass != null && cachedClass.exists()) {
+            return cachedClass.bytes
+        }
+        byte[] ret = weaver.weave(new ByteArrayInputStream(classBytes))
+        if (cachedClass != null) {
+            cachedClass.parentFile.mkdirs()
+            File tmpClass = new File(wovenClassesCacheDir, cacheKey + ".tmp" + Thread.currentThread().id)
+            tmpClass.bytes = ret
+            Files.move(tmpClass.toPath(), cachedClass.toPath(), StandardCopyOption.REPLACE_EXISTING)
         }
         return ret
     }
 
+    /**
+     * Delete woven classes which are not used since this injector is created, call it after a full transform.
+     */
+    void pruneCache() {
+        File[] cachedClasses = wovenClassesCacheDir == null ? null : wovenClassesCacheDir.listFiles()
+        if (cachedClasses == null) {
+            return
+        }
+        cachedClasses.each { File cachedClass ->
+            if (!usedCacheKeys.contains(cachedClass.name - SdkConstants.DOT_CLASS)) {
+                cachedClass.delete()
+            }
+        }
+    }
+
     boolean isActivity(String className) {
         boolean isActivity = false
         if (activities != null && !activities.isEmpty()) {
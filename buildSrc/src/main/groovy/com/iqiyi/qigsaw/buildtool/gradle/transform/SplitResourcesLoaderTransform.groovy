@@ -29,10 +29,12 @@ import com.android.build.api.transform.Format
 import com.android.build.api.transform.JarInput
 import com.android.build.api.transform.QualifiedContent
 import com.android.build.api.transform.SecondaryFile
+import com.android.build.api.transform.Status
 import com.android.build.api.transform.Transform
 import com.android.build.api.transform.TransformException
 import com.android.build.api.transform.TransformInvocation
 import com.android.build.gradle.internal.pipeline.TransformManager
+import com.android.builder.model.AndroidProject
 import com.android.ide.common.internal.WaitableExecutor
 import com.google.common.collect.ImmutableSet
 import com.iqiyi.qigsaw.buildtool.gradle.extension.QigsawSplitExtensionHelper
@@ -81,7 +83,7 @@ class SplitResourcesLoaderTransform extends Transform {
 
     @Override
     boolean isIncremental() {
-        return false
+        return true
     }
 
     @Override
@@ -108,13 +110,17 @@ class SplitResourcesLoaderTransform extends Transform {
     void transform(TransformInvocation transformInvocation) throws TransformException, InterruptedException, IOException {
         super.transform(transformInvocation)
         long startTime = System.currentTimeMillis()
-        transformInvocation.getOutputProvider().deleteAll()
+        boolean incremental = transformInvocation.isIncremental()
+        if (!incremental) {
+            transformInvocation.getOutputProvider().deleteAll()
+        }
+        File wovenClassesCacheDir = new File(project.buildDir, "${AndroidProject.FD_INTERMEDIATES}/qigsaw/woven-classes/${transformInvocation.context.variantName}")
         SplitResourcesLoaderInjector resourcesLoaderInjector = null
         if (isBaseModule) {
             Map<String, List<String>> baseContainerActivitiesMap = getParameterInputs()
             Set<String> baseContainerActivities = baseContainerActivitiesMap.get("base_container_activities")
             if (baseContainerActivities != null && !baseContainerActivities.isEmpty()) {
-                resourcesLoaderInjector = new SplitResourcesLoaderInjector(waitableExecutor, baseContainerActivities)
+                resourcesLoaderInjector = new SplitResourcesLoaderInjector(waitableExecutor, wovenClassesCacheDir, baseContainerActivities)
             }
         } else {
             Task processManifest = AGPCompat.getProcessManifestTask(project, transformInvocation.context.variantName.capitalize())
@@ -124,32 +130,55 @@ class SplitResourcesLoaderTransform extends Transform {
             Set<String> activities = manifestReader.readActivityNames()
             Set<String> services = manifestReader.readServiceNames()
             Set<String> receivers = manifestReader.readReceiverNames()
-            resourcesLoaderInjector = new SplitResourcesLoaderInjector(waitableExecutor, activities, services, receivers)
+            resourcesLoaderInjector = new SplitResourcesLoaderInjector(waitableExecutor, wovenClassesCacheDir, activities, services, receivers)
         }
         transformInvocation.inputs.each {
             Collection<DirectoryInput> directoryInputs = it.directoryInputs
 
             if (directoryInputs != null) {
-                directoryInputs.each {
-                    File outputDir = transformInvocation.outputProvider.getContentLocation(it.file.absolutePath, it.contentTypes, it.scopes, Format.DIRECTORY)
-                    FileUtils.copyDirectory(it.file, outputDir)
-                    if (resourcesLoaderInjector != null) {
-                        resourcesLoaderInjector.injectDir(outputDir)
+                directoryInputs.each { DirectoryInput directoryInput ->
+                    File outputDir = transformInvocation.outputProvider.getContentLocation(directoryInput.file.absolutePath, directoryInput.contentTypes, directoryInput.scopes, Format.DIRECTORY)
+                    if (incremental) {
+                        directoryInput.changedFiles.each { File file, Status status ->
+                            File outputFile = new File(outputDir, directoryInput.file.toPath().relativize(file.toPath()).toString())
+                            if (status == Status.REMOVED) {
+                                FileUtils.deleteQuietly(outputFile)
+                            } else if (status != Status.NOTCHANGED && file.isFile()) {
+                                FileUtils.copyFile(file, outputFile)
+                                if (resourcesLoaderInjector != null) {
+                                    resourcesLoaderInjector.injectFile(outputDir, outputFile)
+                                }
+                            }
+                        }
+                    } else {
+                        FileUtils.copyDirectory(directoryInput.file, outputDir)
+                        if (resourcesLoaderInjector != null) {
+                            resourcesLoaderInjector.injectDir(outputDir)
+                        }
                     }
                 }
             }
             Collection<JarInput> jarInputs = it.jarInputs
             if (jarInputs != null) {
-                jarInputs.each {
-                    File outputJar = transformInvocation.outputProvider.getContentLocation(it.file.absolutePath, it.contentTypes, it.scopes, Format.JAR)
-                    FileUtils.copyFile(it.file, outputJar)
-                    if (resourcesLoaderInjector != null) {
-                        resourcesLoaderInjector.injectJar(outputJar)
+                jarInputs.each { JarInput jarInput ->
+                    File outputJar = transformInvocation.outputProvider.getContentLocation(jarInput.file.absolutePath, jarInput.contentTypes, jarInput.scopes, Format.JAR)
+                    Status status = incremental ? jarInput.status : Status.ADDED
+                    if (status == Status.REMOVED) {
+                        FileUtils.deleteQuietly(outputJar)
+                    } else if (status != Status.NOTCHANGED) {
+                        if (resourcesLoaderInjector != null) {
+                            resourcesLoaderInjector.injectJar(jarInput.file, outputJar)
+                        } else {
+                            FileUtils.copyFile(jarInput.file, outputJar)
+                        }
                     }
                 }
             }
         }
         waitableExecutor.waitForTasksWithQuickFail(true)
-        System.out.println("SplitComponentTransform cost " + (System.currentTimeMillis() - startTime) + " ms")
+        if (!incremental && resourcesLoaderInjector != null) {
+            resourcesLoaderInjector.pruneCache()
+        }
+        System.out.println("SplitResourcesLoaderTransform cost " + (System.currentTimeMillis() - startTime) + " ms")
     }
 }
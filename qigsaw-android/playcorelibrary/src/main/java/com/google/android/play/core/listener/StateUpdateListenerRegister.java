@@ -1,9 +1,5 @@
 package com.google.android.play.core.listener;
 
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
-
 import androidx.annotation.RestrictTo;
 
 import com.google.android.play.core.splitcompat.util.PlayCore;
@@ -22,18 +18,10 @@ public abstract class StateUpdateListenerRegister<StateT> {
 
     private final Set<StateUpdatedListener<StateT>> mStateUpdatedListeners = Collections.newSetFromMap(new ConcurrentHashMap());
 
-    private final Context context;
-
-    private final IntentFilter intentFilter;
-
-    private final StateUpdatedReceiver receiver = new StateUpdatedReceiver(this);
-
     private final Object mLock = new Object();
 
-    protected StateUpdateListenerRegister(PlayCore playCore, IntentFilter intentFilter, Context context) {
+    protected StateUpdateListenerRegister(PlayCore playCore) {
         this.playCore = playCore;
-        this.intentFilter = intentFilter;
-        this.context = context;
     }
 
     public final void registerListener(StateUpdatedListener<StateT> listener) {
@@ -45,11 +33,7 @@ public abstract class StateUpdateListenerRegister<StateT> {
             }
             mStateUpdatedListeners.add(listener);
             if (mStateUpdatedListeners.size() == 1) {
-                try {
-                    context.registerReceiver(receiver, intentFilter);
-                } catch (Throwable e) {
-                    //maybe occur DeadSystemException
-                }
+                onFirstListenerRegistered();
             }
         }
     }
@@ -59,16 +43,17 @@ public abstract class StateUpdateListenerRegister<StateT> {
             this.playCore.debug("unregisterListener");
             boolean contained = mStateUpdatedListeners.remove(listener);
             if (mStateUpdatedListeners.isEmpty() && contained) {
-                try {
-                    context.unregisterReceiver(receiver);
-                } catch (IllegalArgumentException e) {
-                    playCore.error(e, "Receiver not registered: " + intentFilter.getAction(0));
-                }
+                onLastListenerUnregistered();
             }
         }
     }
 
-    protected abstract void onReceived(Intent intent);
+    /**
+     * Start receiving state updates, only processes with listeners receive them.
+     */
+    protected abstract void onFirstListenerRegistered();
+
+    protected abstract void onLastListenerUnregistered();
 
     public final void notifyListeners(StateT result) {
         Iterator iterator = mStateUpdatedListeners.iterator();
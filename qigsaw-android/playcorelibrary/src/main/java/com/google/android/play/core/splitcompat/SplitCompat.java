@@ -1,14 +1,21 @@
 package com.google.android.play.core.splitcompat;
 
+import android.annotation.SuppressLint;
 import android.content.Context;
 
+import androidx.annotation.NonNull;
+
 import com.google.android.play.core.splitinstall.LoadedSplitFetcherSingleton;
 import com.google.android.play.core.splitinstall.SplitSessionLoaderSingleton;
-import com.google.android.play.core.tasks.TaskExecutors;
 import com.iqiyi.android.qigsaw.core.splitload.SplitLoadManager;
 import com.iqiyi.android.qigsaw.core.splitload.SplitLoadManagerService;
 
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class SplitCompat {
@@ -27,12 +34,29 @@ public class SplitCompat {
     private static boolean installInternal(final Context context) {
         if (sSplitCompatReference.compareAndSet(null, new SplitCompat())) {
             final SplitCompat compat = sSplitCompatReference.get();
-            SplitSessionLoaderSingleton.set(new SplitSessionLoaderImpl(TaskExecutors.MAIN_THREAD));
+            SplitSessionLoaderSingleton.set(new SplitSessionLoaderImpl(createLoadExecutor()));
             LoadedSplitFetcherSingleton.set(new LoadedSplitFetcherImpl(compat));
         }
         return true;
     }
 
+    /**
+     * Installed splits are loaded one session after another off main thread,
+     * only publishing loaded splits is posted to main thread.
+     */
+    private static Executor createLoadExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                30L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @SuppressLint("NewThreadDirectly")
+            @Override
+            public Thread newThread(@NonNull Runnable r) {
+                return new Thread(r, "split_load_thread");
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     static boolean hasInstance() {
         return sSplitCompatReference.get() != null;
     }
@@ -0,0 +1,38 @@
+package com.google.android.play.core.splitinstall;
+
+import android.os.RemoteException;
+
+import com.google.android.play.core.remote.RemoteTask;
+import com.google.android.play.core.splitinstall.protocol.ISplitInstallSessionListenerProxy;
+
+final class SessionListenerTask extends RemoteTask {
+
+    private final SplitInstallService mSplitInstallService;
+
+    private final ISplitInstallSessionListenerProxy mListener;
+
+    private final boolean register;
+
+    SessionListenerTask(SplitInstallService installService, ISplitInstallSessionListenerProxy listener, boolean register) {
+        super(null);
+        this.mSplitInstallService = installService;
+        this.mListener = listener;
+        this.register = register;
+    }
+
+    @Override
+    protected void execute() {
+        try {
+            if (register) {
+                mSplitInstallService.mSplitRemoteManager.getIInterface().registerSessionListener(mSplitInstallService.mPackageName, mListener);
+            } else {
+                mSplitInstallService.mSplitRemoteManager.getIInterface().unregisterSessionListener(mSplitInstallService.mPackageName, mListener);
+            }
+        } catch (RemoteException e) {
+            SplitInstallService.playCore.error(e, register ? "registerSessionListener" : "unregisterSessionListener");
+        } finally {
+            //listener is held by remote service, connection is not needed any more.
+            mSplitInstallService.mSplitRemoteManager.unbindService();
+        }
+    }
+}
@@ -1,34 +1,59 @@
 package com.google.android.play.core.splitinstall;
 
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 
 import com.google.android.play.core.listener.StateUpdateListenerRegister;
 import com.google.android.play.core.splitcompat.util.PlayCore;
 
+import java.util.List;
+
 final class SplitInstallListenerRegistry extends StateUpdateListenerRegister<SplitInstallSessionState> {
 
     final Handler mMainHandler;
 
     private final SplitSessionLoader mLoader;
 
-    SplitInstallListenerRegistry(Context context) {
-        this(context, SplitSessionLoaderSingleton.get());
+    private final SplitInstallService mInstallService;
+
+    private final SplitInstallSessionListenerImpl mSessionListener;
+
+    SplitInstallListenerRegistry(SplitInstallService installService) {
+        this(installService, SplitSessionLoaderSingleton.get());
     }
 
-    private SplitInstallListenerRegistry(Context context, SplitSessionLoader loader) {
-        super(new PlayCore("SplitInstallListenerRegistry"), new IntentFilter("com.iqiyi.android.play.core.splitinstall.receiver.SplitInstallUpdateIntentService"), context);
+    private SplitInstallListenerRegistry(SplitInstallService installService, SplitSessionLoader loader) {
+        super(new PlayCore("SplitInstallListenerRegistry"));
         this.mMainHandler = new Handler(Looper.getMainLooper());
         this.mLoader = loader;
+        this.mInstallService = installService;
+        this.mSessionListener = new SplitInstallSessionListenerImpl(this);
+    }
+
+    @Override
+    protected void onFirstListenerRegistered() {
+        mInstallService.registerSessionListener(mSessionListener);
     }
 
     @Override
-    protected void onReceived(Intent intent) {
-        SplitInstallSessionState sessionState = SplitInstallSessionState.createFrom(intent.getBundleExtra("session_state"));
-        this.playCore.info("ListenerRegistryBroadcastReceiver.onReceive: %s", sessionState);
+    protected void onLastListenerUnregistered() {
+        mInstallService.unregisterSessionListener(mSessionListener);
+    }
+
+    void onSessionStatesUpdated(final List<Bundle> sessionStates) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Bundle bundle : sessionStates) {
+                    onReceived(SplitInstallSessionState.createFrom(bundle));
+                }
+            }
+        });
+    }
+
+    private void onReceived(SplitInstallSessionState sessionState) {
+        this.playCore.info("ListenerRegistry.onSessionStateUpdated: %s", sessionState);
         if (sessionState.status() == 10 && mLoader != null) {
             mLoader.load(sessionState.splitFileIntents, new SplitSessionStatusChanger(this, sessionState));
         } else {
@@ -45,7 +45,7 @@ final class SplitInstallManagerImpl implements SplitInstallManager {
         this.packageName = packageName;
         this.mInstallService = installService;
         this.mMainHandler = new Handler(Looper.getMainLooper());
-        this.mRegistry = new SplitInstallListenerRegistry(context);
+        this.mRegistry = new SplitInstallListenerRegistry(installService);
     }
 
     @Override
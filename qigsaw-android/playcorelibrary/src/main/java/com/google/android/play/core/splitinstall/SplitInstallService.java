@@ -2,7 +2,6 @@ package com.google.android.play.core.splitinstall;
 
 import android.content.Context;
 import android.content.Intent;
-import android.os.Build;
 import android.os.Bundle;
 
 import com.google.android.play.core.remote.OnBinderDiedListener;
@@ -11,30 +10,33 @@ import com.google.android.play.core.splitcompat.util.PlayCore;
 import com.google.android.play.core.splitinstall.model.SplitInstallErrorCode;
 import com.google.android.play.core.splitinstall.model.SplitInstallSessionStatus;
 import com.google.android.play.core.splitinstall.protocol.ISplitInstallServiceProxy;
+import com.google.android.play.core.splitinstall.protocol.ISplitInstallSessionListenerProxy;
 import com.google.android.play.core.tasks.Task;
 import com.google.android.play.core.tasks.TaskWrapper;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 final class SplitInstallService {
 
     static final PlayCore playCore = new PlayCore(SplitInstallService.class.getSimpleName());
 
-    private final Context mContext;
-
     final String mPackageName;
 
     final RemoteManager<ISplitInstallServiceProxy> mSplitRemoteManager;
 
+    private ISplitInstallSessionListenerProxy mSessionListener;
+
+    private boolean mSessionListenerLost;
+
     SplitInstallService(Context context) {
         this(context, context.getPackageName());
     }
 
     private SplitInstallService(Context context, String packageName) {
         final OnBinderDiedListener onBinderDiedListener = new OnBinderDiedListenerImpl(this);
-        this.mContext = context;
         this.mPackageName = packageName;
         Intent splitInstallServiceIntent = new Intent("com.iqiyi.android.play.core.splitinstall.BIND_SPLIT_INSTALL_SERVICE").setPackage(packageName);
         this.mSplitRemoteManager = new RemoteManager<ISplitInstallServiceProxy>(context.getApplicationContext(), playCore, "SplitInstallService", splitInstallServiceIntent, SplitRemoteImpl.sInstance, onBinderDiedListener);
@@ -42,6 +44,7 @@ final class SplitInstallService {
 
     Task<Integer> startInstall(List<String> moduleNames) {
         playCore.info("startInstall(%s)", moduleNames);
+        restoreSessionListener();
         TaskWrapper<Integer> taskWrapper = new TaskWrapper<>();
         mSplitRemoteManager.bindService(new StartInstallTask(this, taskWrapper, moduleNames, taskWrapper));
         return taskWrapper.getTask();
@@ -49,6 +52,7 @@ final class SplitInstallService {
 
     Task<Void> deferredInstall(List<String> moduleNames) {
         playCore.info("deferredInstall(%s)", moduleNames);
+        restoreSessionListener();
         TaskWrapper<Void> taskWrapper = new TaskWrapper<>();
         mSplitRemoteManager.bindService(new DeferredInstallTask(this, taskWrapper, moduleNames, taskWrapper));
         return taskWrapper.getTask();
@@ -56,6 +60,7 @@ final class SplitInstallService {
 
     Task<Void> deferredUninstall(List<String> moduleNames) {
         playCore.info("deferredUninstall(%s)", moduleNames);
+        restoreSessionListener();
         TaskWrapper<Void> taskWrapper = new TaskWrapper<>();
         mSplitRemoteManager.bindService(new DeferredUninstallTask(this, taskWrapper, moduleNames, taskWrapper));
         return taskWrapper.getTask();
@@ -63,6 +68,7 @@ final class SplitInstallService {
 
     Task<SplitInstallSessionState> getSessionState(int sessionId) {
         playCore.info("getSessionState(%d)", sessionId);
+        restoreSessionListener();
         TaskWrapper<SplitInstallSessionState> taskWrapper = new TaskWrapper<>();
         mSplitRemoteManager.bindService(new GetSessionStateTask(this, taskWrapper, sessionId, taskWrapper));
         return taskWrapper.getTask();
@@ -70,6 +76,7 @@ final class SplitInstallService {
 
     Task<List<SplitInstallSessionState>> getSessionStates() {
         playCore.info("getSessionStates");
+        restoreSessionListener();
         TaskWrapper<List<SplitInstallSessionState>> taskWrapper = new TaskWrapper<>();
         mSplitRemoteManager.bindService(new GetSessionStatesTask(this, taskWrapper, taskWrapper));
         return taskWrapper.getTask();
@@ -77,6 +84,7 @@ final class SplitInstallService {
 
     Task<Void> cancelInstall(int sessionId) {
         playCore.info("cancelInstall(%d)", sessionId);
+        restoreSessionListener();
         TaskWrapper<Void> taskWrapper = new TaskWrapper<>();
         mSplitRemoteManager.bindService(new CancelInstallTask(this, taskWrapper, sessionId, taskWrapper));
         return taskWrapper.getTask();
@@ -98,22 +106,43 @@ final class SplitInstallService {
         return bundle;
     }
 
+    synchronized void registerSessionListener(ISplitInstallSessionListenerProxy listener) {
+        playCore.info("registerSessionListener");
+        mSessionListener = listener;
+        mSplitRemoteManager.bindService(new SessionListenerTask(this, listener, true));
+    }
+
+    synchronized void unregisterSessionListener(ISplitInstallSessionListenerProxy listener) {
+        playCore.info("unregisterSessionListener");
+        mSessionListener = null;
+        mSplitRemoteManager.bindService(new SessionListenerTask(this, listener, false));
+    }
+
     void onBinderDied() {
         playCore.info("onBinderDied");
-        Bundle bundle = new Bundle();
-        bundle.putInt("session_id", -1);
-        bundle.putInt("status", SplitInstallSessionStatus.FAILED);
-        bundle.putInt("error_code", SplitInstallErrorCode.SERVICE_DIED);
-        Intent intent = new Intent();
-        intent.setPackage(this.mPackageName);
-        intent.setAction("com.google.android.play.core.splitinstall.receiver.SplitInstallUpdateIntentService");
-        intent.putExtra("session_state", bundle);
-        intent.addFlags(Intent.FLAG_RECEIVER_REGISTERED_ONLY);
-        if (Build.VERSION.SDK_INT >= 26) {
-            intent.addFlags(Intent.FLAG_RECEIVER_VISIBLE_TO_INSTANT_APPS);
+        ISplitInstallSessionListenerProxy sessionListener;
+        synchronized (this) {
+            //death recipient may be linked by each connection.
+            sessionListener = mSessionListenerLost ? null : mSessionListener;
+            mSessionListenerLost = true;
+        }
+        if (sessionListener != null) {
+            Bundle bundle = new Bundle();
+            bundle.putInt("session_id", -1);
+            bundle.putInt("status", SplitInstallSessionStatus.FAILED);
+            bundle.putInt("error_code", SplitInstallErrorCode.SERVICE_DIED);
+            sessionListener.onSessionStatesUpdated(Collections.singletonList(bundle));
         }
-        this.mContext.sendBroadcast(intent);
     }
 
+    /**
+     * Listener registered to a dead service process is lost, register it again before next request.
+     */
+    private synchronized void restoreSessionListener() {
+        if (mSessionListenerLost && mSessionListener != null) {
+            mSplitRemoteManager.bindService(new SessionListenerTask(this, mSessionListener, true));
+        }
+        mSessionListenerLost = false;
+    }
 
 }
@@ -0,0 +1,22 @@
+package com.google.android.play.core.splitinstall;
+
+import android.os.Bundle;
+
+import com.google.android.play.core.splitinstall.protocol.SplitInstallSessionListener;
+
+import java.util.List;
+
+final class SplitInstallSessionListenerImpl extends SplitInstallSessionListener {
+
+    private final SplitInstallListenerRegistry mRegistry;
+
+    SplitInstallSessionListenerImpl(SplitInstallListenerRegistry registry) {
+        this.mRegistry = registry;
+    }
+
+    @Override
+    public void onSessionStatesUpdated(List<Bundle> sessionStates) {
+        SplitInstallService.playCore.info("onSessionStatesUpdated(%d)", sessionStates.size());
+        mRegistry.onSessionStatesUpdated(sessionStates);
+    }
+}
@@ -76,4 +76,20 @@ public class ISplitInstallServiceImpl extends IInterfaceProxy implements ISplitI
         ParcelHelper.writeStrongBinder(data, callback);
         this.transact(6, data);
     }
+
+    @Override
+    public void registerSessionListener(String packageName, ISplitInstallSessionListenerProxy listener) throws RemoteException {
+        Parcel data;
+        (data = this.obtainData()).writeString(packageName);
+        ParcelHelper.writeStrongBinder(data, listener);
+        this.transact(7, data);
+    }
+
+    @Override
+    public void unregisterSessionListener(String packageName, ISplitInstallSessionListenerProxy listener) throws RemoteException {
+        Parcel data;
+        (data = this.obtainData()).writeString(packageName);
+        ParcelHelper.writeStrongBinder(data, listener);
+        this.transact(8, data);
+    }
 }
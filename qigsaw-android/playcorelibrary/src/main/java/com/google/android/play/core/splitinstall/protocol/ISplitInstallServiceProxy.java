@@ -25,4 +25,8 @@ public interface ISplitInstallServiceProxy extends IInterface {
 
     void deferredUninstall(String packageName, List<Bundle> moduleNames, Bundle versionCode, ISplitInstallServiceCallbackProxy callback) throws RemoteException;
 
+    void registerSessionListener(String packageName, ISplitInstallSessionListenerProxy listener) throws RemoteException;
+
+    void unregisterSessionListener(String packageName, ISplitInstallSessionListenerProxy listener) throws RemoteException;
+
 }
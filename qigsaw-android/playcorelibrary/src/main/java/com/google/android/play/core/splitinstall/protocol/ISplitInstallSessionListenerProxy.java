@@ -0,0 +1,16 @@
+package com.google.android.play.core.splitinstall.protocol;
+
+import android.os.Bundle;
+import android.os.IInterface;
+import androidx.annotation.RestrictTo;
+
+import java.util.List;
+
+import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+
+@RestrictTo(LIBRARY_GROUP)
+public interface ISplitInstallSessionListenerProxy extends IInterface {
+
+    void onSessionStatesUpdated(List<Bundle> sessionStates);
+
+}
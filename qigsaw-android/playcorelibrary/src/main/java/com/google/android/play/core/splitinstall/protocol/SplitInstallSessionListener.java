@@ -0,0 +1,30 @@
+package com.google.android.play.core.splitinstall.protocol;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import androidx.annotation.RestrictTo;
+
+import com.google.android.binder.BinderWrapper;
+
+import java.util.ArrayList;
+
+import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+
+@RestrictTo(LIBRARY_GROUP)
+public abstract class SplitInstallSessionListener extends BinderWrapper implements ISplitInstallSessionListenerProxy {
+
+    protected SplitInstallSessionListener() {
+        super("com.iqiyi.android.qigsaw.core.splitinstall.protocol.ISplitInstallSessionListener");
+    }
+
+    @Override
+    protected final boolean dispatchTransact(int code, Parcel data) {
+        //onSessionStatesUpdated
+        if (code == 1) {
+            ArrayList<Bundle> sessionStates = data.createTypedArrayList(Bundle.CREATOR);
+            this.onSessionStatesUpdated(sessionStates);
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,442 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.benchmark;
+
+import com.android.apksig.ApkSigner;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates synthetic fixtures for benchmarks, content is derived from a fixed seed so that
+ * every build produces identical files.
+ */
+public final class BenchmarkFixtures {
+
+    public static final String FIXTURES_DIR_PROPERTY = "qigsaw.benchmark.fixtures";
+
+    public static final String SPLIT_APK = "split.apk";
+
+    public static final String SIGNED_SPLIT_APK = "split-signed.apk";
+
+    public static final String OAT_32 = "oat32.dex";
+
+    public static final String OAT_64 = "oat64.dex";
+
+    public static final String ODEX = "odex.dex";
+
+    public static final String BENCHMARK_SPLIT = "benchmark";
+
+    public static final String LIB_ABI = "arm64-v8a";
+
+    public static final int[] SPLIT_DETAILS_COUNTS = {8, 64};
+
+    static final int SECONDARY_DEX_NUMBER = 3;
+
+    private static final String[] ABIS = {"armeabi-v7a", "arm64-v8a"};
+
+    private static final int LIB_NUMBER = 6;
+
+    private static final String KEY_ALIAS = "qigsawtest";
+
+    private static final String KEY_PASSWORD = "qigsawtest";
+
+    private final File outputDir;
+
+    private final Random random = new Random(0x715a5L);
+
+    private BenchmarkFixtures(File outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: BenchmarkFixtures <output dir> <keystore>");
+        }
+        File outputDir = new File(args[0]);
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            throw new IOException("Failed to create " + outputDir);
+        }
+        BenchmarkFixtures fixtures = new BenchmarkFixtures(outputDir);
+        List<Lib> libs = fixtures.writeSplitApk(new File(outputDir, SPLIT_APK));
+        fixtures.signApk(new File(outputDir, SPLIT_APK), new File(outputDir, SIGNED_SPLIT_APK), new File(args[1]));
+        fixtures.writeElf(new File(outputDir, OAT_32), false);
+        fixtures.writeElf(new File(outputDir, OAT_64), true);
+        fixtures.writeOdex(new File(outputDir, ODEX));
+        for (int count : SPLIT_DETAILS_COUNTS) {
+            fixtures.writeSplitDetails(new File(outputDir, splitDetailsName(count)), count, libs);
+        }
+    }
+
+    public static File dir() {
+        String path = System.getProperty(FIXTURES_DIR_PROPERTY);
+        if (path == null) {
+            throw new IllegalStateException("System property " + FIXTURES_DIR_PROPERTY + " is not set, run benchmarks by gradle task 'jmh'");
+        }
+        return new File(path);
+    }
+
+    public static File file(String name) {
+        return new File(dir(), name);
+    }
+
+    public static String splitDetailsName(int count) {
+        return "qigsaw_split_details_" + count + ".json";
+    }
+
+    /**
+     * Split apk with a primary and {@link #SECONDARY_DEX_NUMBER} secondary dex files,
+     * {@link #LIB_NUMBER} libs for each abi, resources and assets.
+     */
+    private List<Lib> writeSplitApk(File apk) throws IOException {
+        List<Lib> libs = new ArrayList<>();
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(apk))) {
+            putEntry(zos, "AndroidManifest.xml", bytes(4 * 1024), false);
+            putEntry(zos, "classes.dex", bytes(2 * 1024 * 1024), false);
+            for (int i = 2; i <= SECONDARY_DEX_NUMBER + 1; i++) {
+                putEntry(zos, "classes" + i + ".dex", bytes(1024 * 1024), false);
+            }
+            putEntry(zos, "resources.arsc", bytes(512 * 1024), true);
+            for (int i = 0; i < 300; i++) {
+                putEntry(zos, "res/layout/layout_" + i + ".xml", bytes(2 * 1024), false);
+            }
+            for (int i = 0; i < 100; i++) {
+                putEntry(zos, "res/drawable-xxhdpi-v4/image_" + i + ".png", bytes(8 * 1024), true);
+            }
+            for (int i = 0; i < 20; i++) {
+                putEntry(zos, "assets/asset_" + i + ".bin", bytes(16 * 1024), false);
+            }
+            for (String abi : ABIS) {
+                for (int i = 0; i < LIB_NUMBER; i++) {
+                    String name = "libbenchmark" + i + ".so";
+                    byte[] content = bytes(256 * 1024);
+                    putEntry(zos, "lib/" + abi + "/" + name, content, false);
+                    if (LIB_ABI.equals(abi)) {
+                        libs.add(new Lib(name, md5(content), content.length));
+                    }
+                }
+            }
+        }
+        return libs;
+    }
+
+    private void signApk(File input, File output, File keystore) throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream is = new FileInputStream(keystore)) {
+            keyStore.load(is, KEY_PASSWORD.toCharArray());
+        }
+        PrivateKey privateKey = (PrivateKey) keyStore.getKey(KEY_ALIAS, KEY_PASSWORD.toCharArray());
+        X509Certificate certificate = (X509Certificate) keyStore.getCertificate(KEY_ALIAS);
+        ApkSigner.SignerConfig signerConfig = new ApkSigner.SignerConfig.Builder(
+                "CERT", privateKey, Collections.singletonList(certificate)).build();
+        try {
+            new ApkSigner.Builder(Collections.singletonList(signerConfig))
+                    .setInputApk(input)
+                    .setOutputApk(output)
+                    .setMinSdkVersion(14)
+                    .setV1SigningEnabled(true)
+                    .setV2SigningEnabled(true)
+                    .setV3SigningEnabled(false)
+                    .build()
+                    .sign();
+        } catch (Exception e) {
+            throw new IOException("Failed to sign " + input, e);
+        }
+    }
+
+    /**
+     * ELF file laid out like an oat file, with a few program headers and sections named by a string table.
+     */
+    private void writeElf(File file, boolean is64) throws IOException {
+        String[] sectionNames = {"", ".dynsym", ".dynstr", ".hash", ".rodata", ".text", ".bss", ".dynamic", ".shstrtab"};
+        int[] sectionSizes = {0, 4 * 1024, 1024, 1024, 256 * 1024, 256 * 1024, 0, 256, 0};
+        int programHeaderNumber = 5;
+        int ehSize = is64 ? 64 : 52;
+        int phEntSize = is64 ? 56 : 32;
+        int shEntSize = is64 ? 64 : 40;
+
+        ByteBuffer shStrTab = ByteBuffer.allocate(256);
+        int[] nameOffsets = new int[sectionNames.length];
+        for (int i = 0; i < sectionNames.length; i++) {
+            nameOffsets[i] = shStrTab.position();
+            shStrTab.put(sectionNames[i].getBytes("ASCII"));
+            shStrTab.put((byte) 0);
+        }
+        sectionSizes[sectionSizes.length - 1] = shStrTab.position();
+
+        long[] sectionOffsets = new long[sectionNames.length];
+        long offset = ehSize + (long) phEntSize * programHeaderNumber;
+        for (int i = 0; i < sectionNames.length; i++) {
+            sectionOffsets[i] = offset;
+            offset += sectionSizes[i];
+        }
+        long shOff = offset;
+        int fileSize = (int) (shOff + (long) shEntSize * sectionNames.length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(fileSize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(new byte[]{0x7F, 'E', 'L', 'F', (byte) (is64 ? 2 : 1), 1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+        buffer.putShort((short) 3);
+        buffer.putShort((short) (is64 ? 183 : 40));
+        buffer.putInt(1);
+        putWord(buffer, is64, 0);
+        putWord(buffer, is64, ehSize);
+        putWord(buffer, is64, shOff);
+        buffer.putInt(0);
+        buffer.putShort((short) ehSize);
+        buffer.putShort((short) phEntSize);
+        buffer.putShort((short) programHeaderNumber);
+        buffer.putShort((short) shEntSize);
+        buffer.putShort((short) sectionNames.length);
+        buffer.putShort((short) (sectionNames.length - 1));
+
+        for (int i = 0; i < programHeaderNumber; i++) {
+            int section = Math.min(i + 1, sectionNames.length - 1);
+            long pOffset = sectionOffsets[section];
+            long pSize = sectionSizes[section];
+            int type = i == 0 ? 6 : (i == programHeaderNumber - 1 ? 2 : 1);
+            if (is64) {
+                buffer.putInt(type);
+                buffer.putInt(0x4 | (i == 2 ? 0x1 : 0));
+                buffer.putLong(pOffset);
+                buffer.putLong(pOffset);
+                buffer.putLong(pOffset);
+                buffer.putLong(pSize);
+                buffer.putLong(pSize);
+                buffer.putLong(0x1000);
+            } else {
+                buffer.putInt(type);
+                buffer.putInt((int) pOffset);
+                buffer.putInt((int) pOffset);
+                buffer.putInt((int) pOffset);
+                buffer.putInt((int) pSize);
+                buffer.putInt((int) pSize);
+                buffer.putInt(0x4 | (i == 2 ? 0x1 : 0));
+                buffer.putInt(0x1000);
+            }
+        }
+        for (int i = 0; i < sectionNames.length; i++) {
+            if (i == sectionNames.length - 1) {
+                buffer.put(shStrTab.array(), 0, sectionSizes[i]);
+            } else {
+                buffer.put(bytes(sectionSizes[i]));
+            }
+        }
+        for (int i = 0; i < sectionNames.length; i++) {
+            buffer.putInt(nameOffsets[i]);
+            buffer.putInt(i == 0 ? 0 : (i == sectionNames.length - 1 ? 3 : 1));
+            putWord(buffer, is64, i == 0 ? 0 : 0x2);
+            putWord(buffer, is64, sectionOffsets[i]);
+            putWord(buffer, is64, sectionOffsets[i]);
+            putWord(buffer, is64, sectionSizes[i]);
+            buffer.putInt(0);
+            buffer.putInt(0);
+            putWord(buffer, is64, i == 0 ? 0 : 4);
+            putWord(buffer, is64, 0);
+        }
+        write(file, buffer.array());
+    }
+
+    private void writeOdex(File file) throws IOException {
+        byte[] content = bytes(64 * 1024);
+        content[0] = 'd';
+        content[1] = 'e';
+        content[2] = 'y';
+        content[3] = '\n';
+        write(file, content);
+    }
+
+    /**
+     * Split details in the format produced by qigsaw gradle plugin, the first split describes {@link #SPLIT_APK}.
+     */
+    private void writeSplitDetails(File file, int count, List<Lib> libs) throws IOException, JSONException {
+        File splitApk = new File(outputDir, SPLIT_APK);
+        String splitApkMd5 = md5(splitApk);
+        JSONObject details = new JSONObject();
+        details.put("qigsawId", "1.0.0_benchmark");
+        details.put("appVersionName", "1.0.0");
+        JSONArray updateSplits = new JSONArray();
+        JSONArray entryFragments = new JSONArray();
+        JSONArray splits = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            String splitName = i == 0 ? BENCHMARK_SPLIT : "split" + i;
+            if (i % 4 == 1) {
+                updateSplits.put(splitName);
+            }
+            entryFragments.put("com.iqiyi.qigsaw." + splitName + ".EntryFragment");
+            JSONObject split = new JSONObject();
+            split.put("splitName", splitName);
+            split.put("version", "1.0@" + i);
+            split.put("builtIn", i % 2 == 0);
+            split.put("minSdkVersion", 14);
+            split.put("dexNumber", SECONDARY_DEX_NUMBER + 1);
+            split.put("workProcesses", new JSONArray().put(":qigsaw").put(":" + splitName));
+            if (i > 1) {
+                split.put("dependencies", new JSONArray().put("split" + (i - 1)));
+            }
+            JSONArray apkData = new JSONArray();
+            JSONArray libData = new JSONArray();
+            for (String abi : ABIS) {
+                JSONObject apk = new JSONObject();
+                apk.put("abi", abi);
+                apk.put("url", "assets://qigsaw/" + splitName + "-" + abi + ".zip");
+                apk.put("md5", i == 0 ? splitApkMd5 : md5(bytes(16)));
+                apk.put("size", i == 0 ? splitApk.length() : 1024 * 1024 + i);
+                apkData.put(apk);
+                JSONArray jniLibs = new JSONArray();
+                for (int k = 0; k < LIB_NUMBER; k++) {
+                    JSONObject lib = new JSONObject();
+                    if (i == 0 && LIB_ABI.equals(abi)) {
+                        lib.put("name", libs.get(k).name);
+                        lib.put("md5", libs.get(k).md5);
+                        lib.put("size", libs.get(k).size);
+                    } else {
+                        lib.put("name", "lib" + splitName + k + ".so");
+                        lib.put("md5", md5(bytes(16)));
+                        lib.put("size", 256 * 1024);
+                    }
+                    jniLibs.put(lib);
+                }
+                libData.put(new JSONObject().put("abi", abi).put("jniLibs", jniLibs));
+            }
+            split.put("apkData", apkData);
+            split.put("libData", libData);
+            splits.put(split);
+        }
+        details.put("updateSplits", updateSplits);
+        details.put("splitEntryFragments", entryFragments);
+        details.put("splits", splits);
+        write(file, details.toString(2).getBytes("UTF-8"));
+    }
+
+    /**
+     * Bytes from a small alphabet, so that they compress about as well as dex and resource files.
+     */
+    private byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) random.nextInt(16);
+        }
+        return bytes;
+    }
+
+    private static void putEntry(ZipOutputStream zos, String name, byte[] content, boolean stored) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (stored) {
+            CRC32 crc32 = new CRC32();
+            crc32.update(content);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(content.length);
+            entry.setCompressedSize(content.length);
+            entry.setCrc(crc32.getValue());
+        }
+        zos.putNextEntry(entry);
+        zos.write(content);
+        zos.closeEntry();
+    }
+
+    private static void putWord(ByteBuffer buffer, boolean is64, long value) {
+        if (is64) {
+            buffer.putLong(value);
+        } else {
+            buffer.putInt((int) value);
+        }
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        try (OutputStream os = new FileOutputStream(file)) {
+            os.write(content);
+        }
+    }
+
+    private static String md5(File file) throws IOException {
+        try (InputStream is = new FileInputStream(file)) {
+            MessageDigest md = messageDigest();
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                md.update(buffer, 0, read);
+            }
+            return hex(md.digest());
+        }
+    }
+
+    private static String md5(byte[] content) {
+        return hex(messageDigest().digest(content));
+    }
+
+    private static MessageDigest messageDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+        }
+        return sb.toString();
+    }
+
+    private static final class Lib {
+
+        final String name;
+
+        final String md5;
+
+        final long size;
+
+        Lib(String name, String md5, long size) {
+            this.name = name;
+            this.md5 = md5;
+            this.size = size;
+        }
+    }
+}
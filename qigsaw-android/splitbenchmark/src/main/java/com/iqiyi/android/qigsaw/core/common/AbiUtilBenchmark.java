@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.common;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Abi resolution of base apk and splits, supported abis of device are provided by the {@code Build} shim.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AbiUtilBenchmark {
+
+    private static final String[] BASE_ABIS = {"armeabi", "armeabi-v7a", "arm64-v8a", "x86", "x86_64"};
+
+    private static final List<List<String>> SPLIT_ABIS = Arrays.asList(
+            Arrays.asList("armeabi"),
+            Arrays.asList("armeabi-v7a", "arm64-v8a"),
+            Arrays.asList("armeabi", "armeabi-v7a", "arm64-v8a", "x86", "x86_64")
+    );
+
+    private Method sortAbis;
+
+    private Method findBasePrimaryAbi;
+
+    private Set<String> apkAbis;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        SplitLog.setSplitLogImp(null);
+        sortAbis = AbiUtil.class.getDeclaredMethod("sortAbis", Set.class);
+        sortAbis.setAccessible(true);
+        findBasePrimaryAbi = AbiUtil.class.getDeclaredMethod("findBasePrimaryAbi", Collection.class);
+        findBasePrimaryAbi.setAccessible(true);
+        apkAbis = new HashSet<>(Arrays.asList("armeabi-v7a", "arm64-v8a", "x86"));
+    }
+
+    @Benchmark
+    public void findSplitPrimaryAbi(Blackhole blackhole) {
+        for (String baseAbi : BASE_ABIS) {
+            for (List<String> splitAbis : SPLIT_ABIS) {
+                blackhole.consume(AbiUtil.findSplitPrimaryAbi(baseAbi, splitAbis));
+            }
+        }
+    }
+
+    @Benchmark
+    public Object findBasePrimaryAbi() throws Exception {
+        return findBasePrimaryAbi.invoke(null, sortAbis.invoke(null, apkAbis));
+    }
+}
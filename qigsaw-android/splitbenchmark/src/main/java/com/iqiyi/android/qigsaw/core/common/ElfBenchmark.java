@@ -0,0 +1,97 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.common;
+
+import com.iqiyi.android.qigsaw.benchmark.BenchmarkFixtures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Oat file validation, which runs for every split installation and load on OEM devices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElfBenchmark {
+
+    @Param({BenchmarkFixtures.OAT_32, BenchmarkFixtures.OAT_64, BenchmarkFixtures.ODEX})
+    public String oatFileName;
+
+    private File oatFile;
+
+    @Setup
+    public void setup() {
+        SplitLog.setSplitLogImp(null);
+        oatFile = BenchmarkFixtures.file(oatFileName);
+    }
+
+    @Benchmark
+    public int getFileTypeByMagic() throws IOException {
+        return SplitElfFile.getFileTypeByMagic(oatFile);
+    }
+
+    /**
+     * Verdict is cached beside oat file after the first invocation.
+     */
+    @Benchmark
+    public boolean checkOatFile() {
+        return OEMCompat.checkOatFile(oatFile);
+    }
+
+    @Benchmark
+    public boolean validateElfHeaders() throws IOException {
+        return SplitElfValidator.validate(oatFile);
+    }
+
+    @Benchmark
+    public boolean parseElfFile() {
+        SplitElfFile elfFile = null;
+        try {
+            elfFile = new SplitElfFile(oatFile);
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            FileUtil.closeQuietly(elfFile);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitinstall;
+
+import com.iqiyi.android.qigsaw.benchmark.BenchmarkFixtures;
+import com.iqiyi.android.qigsaw.core.common.FileUtil;
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfo;
+import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfoFixtures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zip scanning and extraction of split apk, as done by {@link SplitLibExtractor} and {@link SplitMultiDexExtractor}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZipScanBenchmark {
+
+    private File splitApk;
+
+    private File workDir;
+
+    private File libDir;
+
+    private File dexDir;
+
+    private SplitInfo.LibData libData;
+
+    private Method performDexExtractions;
+
+    @Setup
+    public void setup() throws Exception {
+        SplitLog.setSplitLogImp(null);
+        splitApk = BenchmarkFixtures.file(BenchmarkFixtures.SPLIT_APK);
+        workDir = Files.createTempDirectory("qigsaw-zip").toFile();
+        SplitInfoFixtures.installPathManager(workDir);
+        libDir = new File(workDir, "lib");
+        dexDir = new File(workDir, "dex");
+        if (!libDir.mkdirs() || !dexDir.mkdirs()) {
+            throw new IOException("Failed to create work dirs in " + workDir);
+        }
+        libData = SplitInfoFixtures.benchmarkLibData(SplitInfoFixtures.benchmarkSplitInfo());
+        performDexExtractions = SplitMultiDexExtractor.class.getDeclaredMethod("performExtractions");
+        performDexExtractions.setAccessible(true);
+        // extracted libs for verifyExtractedLibs
+        extractLibs();
+    }
+
+    @TearDown
+    public void tearDown() {
+        FileUtil.deleteDir(workDir);
+    }
+
+    @Benchmark
+    public long getZipCrc() throws IOException {
+        return SplitMultiDexExtractor.ZipCrcUtil.getZipCrc(splitApk);
+    }
+
+    // extractors are closed quietly as installer does, SplitLibExtractor releases its lock after closing the channel.
+    @Benchmark
+    public List<File> extractLibs() throws IOException {
+        SplitLibExtractor extractor = new SplitLibExtractor(splitApk, libDir);
+        try {
+            return extractor.load(libData, true);
+        } finally {
+            FileUtil.closeQuietly(extractor);
+        }
+    }
+
+    @Benchmark
+    public List<File> verifyExtractedLibs() throws IOException {
+        SplitLibExtractor extractor = new SplitLibExtractor(splitApk, libDir);
+        try {
+            return extractor.load(libData, false);
+        } finally {
+            FileUtil.closeQuietly(extractor);
+        }
+    }
+
+    @Benchmark
+    public Object extractSecondaryDexes() throws Exception {
+        SplitMultiDexExtractor extractor = new SplitMultiDexExtractor(splitApk, dexDir);
+        try {
+            return performDexExtractions.invoke(extractor);
+        } finally {
+            FileUtil.closeQuietly(extractor);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitload;
+
+import com.iqiyi.android.qigsaw.core.common.FileUtil;
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Injecting code of splits into host class loader in single class loader mode, one split after another
+ * versus all splits at once, and the cost of capturing a snapshot to roll back a failed batch. Class loader is a JVM stand-in with the fields and methods of DexPathList that are reflected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SplitCodeInjectionBenchmark {
+
+    private static final int HOST_DEX_COUNT = 10;
+
+    private static final int SPLIT_DEX_COUNT = 2;
+
+    @Param({"1", "10", "50"})
+    public int splitCount;
+
+    private File workDir;
+
+    private SplitCodeBatch codeBatch;
+
+    @Setup
+    public void setup() throws IOException {
+        SplitLog.setSplitLogImp(null);
+        workDir = Files.createTempDirectory("qigsaw-inject").toFile();
+        codeBatch = new SplitCodeBatch();
+        for (int i = 0; i < splitCount; i++) {
+            File splitDir = new File(workDir, "split" + i);
+            File libDir = new File(splitDir, "nativeLib");
+            if (!libDir.mkdirs()) {
+                throw new IOException("Failed to create " + libDir);
+            }
+            List<String> dexPaths = new ArrayList<>(SPLIT_DEX_COUNT);
+            for (int j = 0; j < SPLIT_DEX_COUNT; j++) {
+                dexPaths.add(new File(splitDir, "classes" + j + ".dex").getAbsolutePath());
+            }
+            codeBatch.add("split" + i, dexPaths, new File(splitDir, "oat"), libDir);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        FileUtil.deleteDir(workDir);
+    }
+
+    @Benchmark
+    public Object injectOneByOne() throws Throwable {
+        HostClassLoader classLoader = new HostClassLoader();
+        for (SplitCodeBatch.Entry entry : codeBatch.getEntries()) {
+            SplitCodeBatch singleBatch = new SplitCodeBatch();
+            singleBatch.add(entry.splitName, entry.dexPaths, entry.optimizedDirectory, entry.librarySearchPath);
+            SplitCompatLibraryLoader.load(classLoader, singleBatch.getLibraryDirs());
+            SplitCompatDexLoader.load(classLoader, singleBatch);
+        }
+        return classLoader.pathList.dexElements;
+    }
+
+    @Benchmark
+    public Object injectBatched() throws Throwable {
+        HostClassLoader classLoader = new HostClassLoader();
+        SplitCompatLibraryLoader.load(classLoader, codeBatch.getLibraryDirs());
+        SplitCompatDexLoader.load(classLoader, codeBatch);
+        return classLoader.pathList.dexElements;
+    }
+
+    /**
+     * Batched injection as done by {@code SplitLoaderImpl2}, members of DexPathList are captured first to roll back a failure.
+     */
+    @Benchmark
+    public Object injectBatchedWithSnapshot() throws Throwable {
+        HostClassLoader classLoader = new HostClassLoader();
+        DexPathListSnapshot.capture(classLoader);
+        SplitCompatLibraryLoader.load(classLoader, codeBatch.getLibraryDirs());
+        SplitCompatDexLoader.load(classLoader, codeBatch);
+        return classLoader.pathList.dexElements;
+    }
+
+    static final class HostClassLoader extends ClassLoader {
+
+        final DexPathList pathList = new DexPathList();
+    }
+
+    /**
+     * Mirrors members of {@code dalvik.system.DexPathList} on API 26+.
+     */
+    @SuppressWarnings("unused")
+    static final class DexPathList {
+
+        Element[] dexElements;
+
+        final List<File> nativeLibraryDirectories = new ArrayList<>();
+
+        final List<File> systemNativeLibraryDirectories = new ArrayList<>();
+
+        Element[] nativeLibraryPathElements;
+
+        DexPathList() {
+            dexElements = new Element[HOST_DEX_COUNT];
+            for (int i = 0; i < HOST_DEX_COUNT; i++) {
+                dexElements[i] = new Element(new File("base" + i + ".dex"));
+            }
+            nativeLibraryDirectories.add(new File("lib"));
+            Collections.addAll(systemNativeLibraryDirectories, new File("/system/lib64"), new File("/vendor/lib64"));
+            nativeLibraryPathElements = makePathElements(new ArrayList<File>());
+        }
+
+        private static Element[] makePathElements(List<File> files, File optimizedDirectory, List<IOException> suppressedExceptions) {
+            return makePathElements(files);
+        }
+
+        private static Element[] makePathElements(List<File> files) {
+            Element[] elements = new Element[files.size()];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = new Element(files.get(i));
+            }
+            return elements;
+        }
+    }
+
+    static final class Element {
+
+        final File path;
+
+        Element(File path) {
+            this.path = path;
+        }
+    }
+}
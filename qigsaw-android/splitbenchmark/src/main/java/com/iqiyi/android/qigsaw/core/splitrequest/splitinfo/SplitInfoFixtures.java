@@ -0,0 +1,102 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitrequest.splitinfo;
+
+import com.iqiyi.android.qigsaw.benchmark.BenchmarkFixtures;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Access to package-private split info classes for benchmarks in other packages.
+ */
+public final class SplitInfoFixtures {
+
+    private static final Method PARSE_SPLITS_CONTENT;
+
+    private static final Method READ_INPUT_STREAM_CONTENT;
+
+    static {
+        try {
+            PARSE_SPLITS_CONTENT = SplitInfoManagerImpl.class.getDeclaredMethod("parseSplitsContent", String.class);
+            PARSE_SPLITS_CONTENT.setAccessible(true);
+            READ_INPUT_STREAM_CONTENT = SplitInfoManagerImpl.class.getDeclaredMethod("readInputStreamContent", java.io.InputStream.class);
+            READ_INPUT_STREAM_CONTENT.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private SplitInfoFixtures() {
+
+    }
+
+    static SplitDetails parseSplitsContent(String content) throws Exception {
+        return (SplitDetails) PARSE_SPLITS_CONTENT.invoke(null, content);
+    }
+
+    static String readContent(File file) throws Exception {
+        return (String) READ_INPUT_STREAM_CONTENT.invoke(null, new FileInputStream(file));
+    }
+
+    /**
+     * @return split info of {@link BenchmarkFixtures#SPLIT_APK}.
+     */
+    public static SplitInfo benchmarkSplitInfo() throws Exception {
+        String content = readContent(BenchmarkFixtures.file(BenchmarkFixtures.splitDetailsName(BenchmarkFixtures.SPLIT_DETAILS_COUNTS[0])));
+        return parseSplitsContent(content).getSplitInfoListing().getSplitInfoMap().get(BenchmarkFixtures.BENCHMARK_SPLIT);
+    }
+
+    public static SplitInfo.LibData benchmarkLibData(SplitInfo info) throws Exception {
+        Field field = SplitInfo.class.getDeclaredField("libDataList");
+        field.setAccessible(true);
+        @SuppressWarnings("unchecked")
+        Iterable<SplitInfo.LibData> libDataList = (Iterable<SplitInfo.LibData>) field.get(info);
+        for (SplitInfo.LibData libData : libDataList) {
+            if (BenchmarkFixtures.LIB_ABI.equals(libData.getAbi())) {
+                return libData;
+            }
+        }
+        throw new IllegalStateException("No lib data of " + BenchmarkFixtures.LIB_ABI);
+    }
+
+    /**
+     * Install {@link SplitPathManager} rooted at the given directory instead of app's private directory.
+     */
+    @SuppressWarnings("unchecked")
+    public static SplitPathManager installPathManager(File rootDir) throws Exception {
+        Constructor<SplitPathManager> constructor = SplitPathManager.class.getDeclaredConstructor(File.class, String.class);
+        constructor.setAccessible(true);
+        SplitPathManager pathManager = constructor.newInstance(rootDir, "benchmark");
+        Field field = SplitPathManager.class.getDeclaredField("sSplitPathManagerRef");
+        field.setAccessible(true);
+        ((AtomicReference<SplitPathManager>) field.get(null)).set(pathManager);
+        return pathManager;
+    }
+}
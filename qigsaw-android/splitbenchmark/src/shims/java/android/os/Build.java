@@ -0,0 +1,62 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package android.os;
+
+/**
+ * JVM replacement of framework {@code Build}, describes an arm64 device of API 28.
+ * Override ABIs by system property {@code qigsaw.benchmark.abis}, e.g. "armeabi-v7a,armeabi".
+ */
+public class Build {
+
+    public static final String MANUFACTURER = "qigsaw";
+
+    public static final String[] SUPPORTED_ABIS = System.getProperty("qigsaw.benchmark.abis", "arm64-v8a,armeabi-v7a,armeabi").split(",");
+
+    public static final String CPU_ABI = SUPPORTED_ABIS[0];
+
+    public static final String CPU_ABI2 = SUPPORTED_ABIS.length > 1 ? SUPPORTED_ABIS[1] : "";
+
+    public static class VERSION {
+
+        public static final int SDK_INT = Integer.getInteger("qigsaw.benchmark.sdk", 28);
+
+        public static final int PREVIEW_SDK_INT = 0;
+    }
+
+    public static class VERSION_CODES {
+
+        public static final int JELLY_BEAN_MR2 = 18;
+
+        public static final int KITKAT = 19;
+
+        public static final int KITKAT_WATCH = 20;
+
+        public static final int LOLLIPOP = 21;
+
+        public static final int N = 24;
+
+        public static final int O = 26;
+    }
+}
@@ -199,6 +199,15 @@ public class AbiUtil {
         if (!TextUtils.isEmpty(basePrimaryAbi.get())) {
             return basePrimaryAbi.get();
         }
+        SplitTrace.beginSection(SplitTrace.RESOLVE_ABI);
+        try {
+            return resolveBasePrimaryAbi(context);
+        } finally {
+            SplitTrace.endSection();
+        }
+    }
+
+    private static String resolveBasePrimaryAbi(@NonNull Context context) throws IOException {
         synchronized (AbiUtil.class) {
             ApplicationInfo info = context.getApplicationInfo();
             try {
@@ -29,7 +29,11 @@ import android.os.Build;
 import androidx.annotation.NonNull;
 import androidx.annotation.RestrictTo;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 
 import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
@@ -39,6 +43,14 @@ public class OEMCompat {
 
     private static final String TAG = "Split.OEMCompat";
 
+    private static final String OAT_VERDICT_SUFFIX = ".verdict";
+
+    private static final int OAT_VERDICT_UNKNOWN = 0;
+
+    private static final int OAT_VERDICT_VALID = 1;
+
+    private static final int OAT_VERDICT_INVALID = 2;
+
     public static boolean isSpecialManufacturer() {
         return "vivo".equalsIgnoreCase(Build.MANUFACTURER) || "oppo".equalsIgnoreCase(Build.MANUFACTURER) || "EEBBK".equalsIgnoreCase(Build.MANUFACTURER);
     }
@@ -66,29 +78,77 @@ public class OEMCompat {
 
     /**
      * Check oat file whether is ELF format or not.
+     * Verdict is stored beside oat file and keyed by its size and modification time,
+     * so that the same oat file is never read again.
      *
      * @param oatFile oat file of split apk
      * @return {@code true} is a valid oat file, otherwise {@code false}.
      */
     public static boolean checkOatFile(@NonNull File oatFile) {
-        int returnType;
+        long length = oatFile.length();
+        long lastModified = oatFile.lastModified();
+        File verdictFile = getOatVerdictFile(oatFile);
+        int cachedVerdict = readOatVerdict(verdictFile, length, lastModified);
+        if (cachedVerdict != OAT_VERDICT_UNKNOWN) {
+            return cachedVerdict == OAT_VERDICT_VALID;
+        }
+        boolean valid;
         try {
-            returnType = SplitElfFile.getFileTypeByMagic(oatFile);
+            valid = SplitElfValidator.validate(oatFile);
         } catch (IOException e) {
             // read error just continue
             return true;
         }
-        if (returnType == SplitElfFile.FILE_TYPE_ELF) {
-            SplitElfFile elfFile = null;
-            try {
-                elfFile = new SplitElfFile(oatFile);
-                return true;
-            } catch (Throwable e) {
-                SplitLog.e(TAG, "final parallel dex optimizer file %s is not elf format, return false", oatFile.getName());
-            } finally {
-                FileUtil.closeQuietly(elfFile);
+        if (!valid) {
+            SplitLog.e(TAG, "final parallel dex optimizer file %s is not elf format, return false", oatFile.getName());
+        }
+        writeOatVerdict(verdictFile, length, lastModified, valid);
+        return valid;
+    }
+
+    private static File getOatVerdictFile(File oatFile) {
+        return new File(oatFile.getParentFile(), oatFile.getName() + OAT_VERDICT_SUFFIX);
+    }
+
+    private static int readOatVerdict(File verdictFile, long length, long lastModified) {
+        if (!verdictFile.isFile()) {
+            return OAT_VERDICT_UNKNOWN;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(verdictFile));
+            if (in.readLong() != length || in.readLong() != lastModified) {
+                return OAT_VERDICT_UNKNOWN;
+            }
+            return in.readBoolean() ? OAT_VERDICT_VALID : OAT_VERDICT_INVALID;
+        } catch (IOException e) {
+            return OAT_VERDICT_UNKNOWN;
+        } finally {
+            FileUtil.closeQuietly(in);
+        }
+    }
+
+    private static void writeOatVerdict(File verdictFile, long length, long lastModified, boolean valid) {
+        File tmp = null;
+        DataOutputStream out = null;
+        try {
+            tmp = File.createTempFile(verdictFile.getName(), null, verdictFile.getParentFile());
+            out = new DataOutputStream(new FileOutputStream(tmp));
+            out.writeLong(length);
+            out.writeLong(lastModified);
+            out.writeBoolean(valid);
+            out.close();
+            out = null;
+            if (!tmp.renameTo(verdictFile)) {
+                SplitLog.w(TAG, "Failed to rename oat verdict file " + verdictFile.getName());
+            }
+        } catch (IOException e) {
+            SplitLog.w(TAG, "Failed to write oat verdict file " + verdictFile.getName());
+        } finally {
+            FileUtil.closeQuietly(out);
+            if (tmp != null && tmp.exists()) {
+                FileUtil.deleteFileSafely(tmp);
             }
         }
-        return false;
     }
 }
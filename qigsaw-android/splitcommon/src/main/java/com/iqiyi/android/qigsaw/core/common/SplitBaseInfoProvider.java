@@ -49,6 +49,8 @@ public class SplitBaseInfoProvider {
 
     private static final String QIGSAW_MODE = "QIGSAW_MODE";
 
+    private static final String SPLIT_LOAD_POLICIES = "SPLIT_LOAD_POLICIES";
+
     private static final String DEFAULT_VALUE = "unknown";
 
     private static final String DEFAULT_SPLIT_INFO_VERSION_VALUE = "unknown_1.0.0";
@@ -147,5 +149,19 @@ public class SplitBaseInfoProvider {
         return null;
     }
 
-
+    @Nullable
+    public static String[] getSplitLoadPolicies() {
+        try {
+            Field field = getQigsawConfigClass().getField(SPLIT_LOAD_POLICIES);
+            field.setAccessible(true);
+            return (String[]) field.get(null);
+        } catch (NoSuchFieldException e) {
+            //
+        } catch (IllegalAccessException e) {
+            //
+        } catch (ClassNotFoundException e) {
+            //
+        }
+        return null;
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Validates only the ELF header, program/section header table bounds and the section-name table of an oat file.
+ * Unlike {@link SplitElfFile}, it reads just the ELF header and the section header of the section-name table,
+ * by positional reads into small buffers, so nothing is mapped and nothing else of the file is read.
+ */
+final class SplitElfValidator {
+
+    private static final int EI_NIDENT = 16;
+
+    private static final int EHDR_SIZE_32 = 52;
+
+    private static final int EHDR_SIZE_64 = 64;
+
+    private static final int PHDR_SIZE_32 = 32;
+
+    private static final int PHDR_SIZE_64 = 56;
+
+    private static final int SHDR_SIZE_32 = 40;
+
+    private static final int SHDR_SIZE_64 = 64;
+
+    private SplitElfValidator() {
+
+    }
+
+    /**
+     * @return {@code true} if headers of the given elf file are consistent with its length.
+     * @throws IOException if the file can't be read.
+     */
+    static boolean validate(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            if (length < EHDR_SIZE_32) {
+                return false;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(EHDR_SIZE_64);
+            readFully(channel, buffer, 0, (int) Math.min(length, EHDR_SIZE_64));
+            if (buffer.get(0) != 0x7F || buffer.get(1) != 'E' || buffer.get(2) != 'L' || buffer.get(3) != 'F') {
+                return false;
+            }
+            int elfClass = buffer.get(SplitElfFile.ElfHeader.EI_CLASS);
+            int elfData = buffer.get(SplitElfFile.ElfHeader.EI_DATA);
+            if (elfClass != SplitElfFile.ElfHeader.ELFCLASS32 && elfClass != SplitElfFile.ElfHeader.ELFCLASS64) {
+                return false;
+            }
+            if (elfData != SplitElfFile.ElfHeader.ELFDATA2LSB && elfData != SplitElfFile.ElfHeader.ELFDATA2MSB) {
+                return false;
+            }
+            boolean is64 = elfClass == SplitElfFile.ElfHeader.ELFCLASS64;
+            if (is64 && length < EHDR_SIZE_64) {
+                return false;
+            }
+            buffer.order(elfData == SplitElfFile.ElfHeader.ELFDATA2LSB ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            // e_version follows e_type and e_machine.
+            if (buffer.getInt(EI_NIDENT + 4) != SplitElfFile.ElfHeader.EV_CURRENT) {
+                return false;
+            }
+            long phOff = is64 ? buffer.getLong(32) : unsigned(buffer.getInt(28));
+            long shOff = is64 ? buffer.getLong(40) : unsigned(buffer.getInt(32));
+            int tableIndex = is64 ? 54 : 42;
+            int phEntSize = unsigned(buffer.getShort(tableIndex));
+            int phNum = unsigned(buffer.getShort(tableIndex + 2));
+            int shEntSize = unsigned(buffer.getShort(tableIndex + 4));
+            int shNum = unsigned(buffer.getShort(tableIndex + 6));
+            int shStrNdx = unsigned(buffer.getShort(tableIndex + 8));
+            if (phNum > 0 && (phEntSize < (is64 ? PHDR_SIZE_64 : PHDR_SIZE_32) || !inRange(phOff, (long) phEntSize * phNum, length))) {
+                return false;
+            }
+            if (shNum > 0 && (shEntSize < (is64 ? SHDR_SIZE_64 : SHDR_SIZE_32) || !inRange(shOff, (long) shEntSize * shNum, length))) {
+                return false;
+            }
+            if (shStrNdx > 0) {
+                if (shStrNdx >= shNum) {
+                    return false;
+                }
+                // shStrNdx < shNum, so the section header lies in the table checked above.
+                ByteBuffer shStrTab = ByteBuffer.allocate(is64 ? SHDR_SIZE_64 : SHDR_SIZE_32).order(buffer.order());
+                readFully(channel, shStrTab, shOff + (long) shEntSize * shStrNdx, shStrTab.capacity());
+                long offset = is64 ? shStrTab.getLong(24) : unsigned(shStrTab.getInt(16));
+                long size = is64 ? shStrTab.getLong(32) : unsigned(shStrTab.getInt(20));
+                return inRange(offset, size, length);
+            }
+            return true;
+        } finally {
+            FileUtil.closeQuietly(raf);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, int size) throws IOException {
+        buffer.clear();
+        buffer.limit(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of elf file at " + (position + buffer.position()));
+            }
+        }
+    }
+
+    private static boolean inRange(long offset, long size, long length) {
+        return offset >= 0 && size >= 0 && offset <= length && size <= length - offset;
+    }
+
+    private static long unsigned(int value) {
+        return value & 0xFFFFFFFFL;
+    }
+
+    private static int unsigned(short value) {
+        return value & 0xFFFF;
+    }
+}
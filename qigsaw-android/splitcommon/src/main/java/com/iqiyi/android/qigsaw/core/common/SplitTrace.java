@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.common;
+
+import android.os.Build;
+
+/**
+ * Trace sections around qigsaw lifecycle, disabled by default.
+ * Section names are stable across releases, so that traces of different versions can be compared.
+ * Every {@link #beginSection(String)} must be paired with {@link #endSection()} on the same thread.
+ */
+public class SplitTrace {
+
+    public static final String INSTALL = "Qigsaw.install";
+
+    public static final String INJECT_CLASSLOADER = "Qigsaw.injectPathClassloader";
+
+    public static final String PARSE_SPLIT_DETAILS = "Qigsaw.parseSplitDetails";
+
+    public static final String RESOLVE_ABI = "Qigsaw.resolveAbi";
+
+    public static final String LOAD_SPLITS = "SplitLoad.loadSplits";
+
+    public static final String LOAD_CODE = "SplitLoad.loadCode";
+
+    public static final String PUBLISH_SPLITS = "SplitLoad.publishSplits";
+
+    public static final String CREATE_APPLICATION = "SplitLoad.createApplication";
+
+    public static final String LOAD_RESOURCES = "SplitLoad.loadResources";
+
+    public static final String ATTACH_APPLICATION = "SplitLoad.attachApplication";
+
+    public static final String CREATE_PROVIDERS = "SplitLoad.createProviders";
+
+    public static final String INVOKE_ON_CREATE = "SplitLoad.invokeOnCreate";
+
+    public static final String INSTALL_SPLITS = "SplitInstall.installSplits";
+
+    public static final String INSTALL_SPLIT = "SplitInstall.installSplit";
+
+    public static final String VERIFY_SIGNATURE = "SplitInstall.verifySignature";
+
+    public static final String CHECK_MD5 = "SplitInstall.checkMD5";
+
+    public static final String EXTRACT_LIB = "SplitInstall.extractLib";
+
+    public static final String EXTRACT_MULTI_DEX = "SplitInstall.extractMultiDex";
+
+    public static final String DEX_OPT = "SplitInstall.dexOpt";
+
+    public static final String CHECK_OAT = "SplitInstall.checkOat";
+
+    public static final String INJECT_RESOURCES = "SplitResources.inject";
+
+    private SplitTrace() {
+
+    }
+
+    private static final Tracer systraceTracer = new Tracer() {
+
+        @Override
+        public void beginSection(String sectionName) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                android.os.Trace.beginSection(sectionName);
+            }
+        }
+
+        @Override
+        public void endSection() {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                android.os.Trace.endSection();
+            }
+        }
+    };
+
+    private static volatile Tracer splitTraceImp;
+
+    /**
+     * @return a {@link Tracer} backed by {@link android.os.Trace}, sections are visible in systrace and perfetto.
+     */
+    public static Tracer systrace() {
+        return systraceTracer;
+    }
+
+    public static void setSplitTraceImp(Tracer imp) {
+        splitTraceImp = imp;
+    }
+
+    public static Tracer getImpl() {
+        return splitTraceImp;
+    }
+
+    public static boolean isEnabled() {
+        return splitTraceImp != null;
+    }
+
+    public static void beginSection(String sectionName) {
+        Tracer imp = splitTraceImp;
+        if (imp != null) {
+            imp.beginSection(sectionName);
+        }
+    }
+
+    public static void endSection() {
+        Tracer imp = splitTraceImp;
+        if (imp != null) {
+            imp.endSection();
+        }
+    }
+
+    public interface Tracer {
+
+        void beginSection(String sectionName);
+
+        void endSection();
+    }
+}
@@ -0,0 +1,90 @@
+package com.iqiyi.android.qigsaw.core.common;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SplitElfValidatorTest {
+
+    private static final int SECTION_COUNT = 2;
+
+    private static final int STRING_TABLE_OFFSET = 64 + 64 * SECTION_COUNT;
+
+    private static final int STRING_TABLE_SIZE = 10;
+
+    private File elfFile;
+
+    @Before
+    public void setUp() throws IOException {
+        elfFile = File.createTempFile("split", ".odex");
+    }
+
+    @After
+    public void tearDown() {
+        elfFile.delete();
+    }
+
+    @Test
+    public void acceptsConsistentHeaders() throws IOException {
+        write(createElf64(SECTION_COUNT, STRING_TABLE_SIZE), STRING_TABLE_OFFSET + STRING_TABLE_SIZE);
+        assertTrue(SplitElfValidator.validate(elfFile));
+    }
+
+    @Test
+    public void rejectsSectionTableBeyondFile() throws IOException {
+        write(createElf64(SECTION_COUNT + 8, STRING_TABLE_SIZE), STRING_TABLE_OFFSET + STRING_TABLE_SIZE);
+        assertFalse(SplitElfValidator.validate(elfFile));
+    }
+
+    @Test
+    public void rejectsStringTableBeyondFile() throws IOException {
+        write(createElf64(SECTION_COUNT, STRING_TABLE_SIZE + 1), STRING_TABLE_OFFSET + STRING_TABLE_SIZE);
+        assertFalse(SplitElfValidator.validate(elfFile));
+    }
+
+    @Test
+    public void rejectsFileWithoutElfMagic() throws IOException {
+        ByteBuffer elf = createElf64(SECTION_COUNT, STRING_TABLE_SIZE);
+        elf.put(1, (byte) 'X');
+        write(elf, STRING_TABLE_OFFSET + STRING_TABLE_SIZE);
+        assertFalse(SplitElfValidator.validate(elfFile));
+    }
+
+    /**
+     * Little-endian ELF64 with no program headers, whose last section is the section-name table.
+     */
+    private static ByteBuffer createElf64(int sectionCount, int stringTableSize) {
+        ByteBuffer elf = ByteBuffer.allocate(STRING_TABLE_OFFSET).order(ByteOrder.LITTLE_ENDIAN);
+        elf.put(0, (byte) 0x7F).put(1, (byte) 'E').put(2, (byte) 'L').put(3, (byte) 'F');
+        elf.put(SplitElfFile.ElfHeader.EI_CLASS, (byte) SplitElfFile.ElfHeader.ELFCLASS64);
+        elf.put(SplitElfFile.ElfHeader.EI_DATA, (byte) SplitElfFile.ElfHeader.ELFDATA2LSB);
+        elf.putInt(20, SplitElfFile.ElfHeader.EV_CURRENT);
+        elf.putLong(40, 64);
+        elf.putShort(58, (short) 64);
+        elf.putShort(60, (short) sectionCount);
+        elf.putShort(62, (short) (SECTION_COUNT - 1));
+        int stringTableHeader = 64 + 64 * (SECTION_COUNT - 1);
+        elf.putLong(stringTableHeader + 24, STRING_TABLE_OFFSET);
+        elf.putLong(stringTableHeader + 32, stringTableSize);
+        return elf;
+    }
+
+    private void write(ByteBuffer elf, int length) throws IOException {
+        FileOutputStream os = new FileOutputStream(elfFile);
+        try {
+            os.write(elf.array());
+            os.write(new byte[length - elf.capacity()]);
+        } finally {
+            os.close();
+        }
+    }
+}
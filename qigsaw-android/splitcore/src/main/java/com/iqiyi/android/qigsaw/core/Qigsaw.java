@@ -25,8 +25,10 @@
 package com.iqiyi.android.qigsaw.core;
 
 import android.app.Application;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.Intent;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.os.Looper;
 import android.os.MessageQueue;
@@ -38,6 +40,7 @@ import com.google.android.play.core.splitcompat.SplitCompat;
 import com.iqiyi.android.qigsaw.core.common.ProcessUtil;
 import com.iqiyi.android.qigsaw.core.common.SplitBaseInfoProvider;
 import com.iqiyi.android.qigsaw.core.common.SplitConstants;
+import com.iqiyi.android.qigsaw.core.common.SplitTrace;
 import com.iqiyi.android.qigsaw.core.extension.AABExtension;
 import com.iqiyi.android.qigsaw.core.splitdownload.Downloader;
 import com.iqiyi.android.qigsaw.core.splitinstall.SplitApkInstaller;
@@ -47,6 +50,7 @@ import com.iqiyi.android.qigsaw.core.splitload.SplitLoadManagerService;
 import com.iqiyi.android.qigsaw.core.splitload.SplitLoadReporterManager;
 import com.iqiyi.android.qigsaw.core.splitreport.DefaultSplitInstallReporter;
 import com.iqiyi.android.qigsaw.core.splitreport.DefaultSplitLoadReporter;
+import com.iqiyi.android.qigsaw.core.splitreport.SplitReportDispatcher;
 import com.iqiyi.android.qigsaw.core.splitreport.DefaultSplitUninstallReporter;
 import com.iqiyi.android.qigsaw.core.splitreport.DefaultSplitUpdateReporter;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitUpdateReporterManager;
@@ -71,6 +75,8 @@ public class Qigsaw {
 
     private boolean onApplicationCreated = false;
 
+    private SplitPrefetchScheduler prefetchScheduler;
+
     private Qigsaw(Context context,
                    Downloader downloader,
                    @NonNull SplitConfiguration splitConfiguration) {
@@ -109,11 +115,16 @@ public class Qigsaw {
     public static void install(@NonNull Context context,
                                @NonNull Downloader downloader,
                                @NonNull SplitConfiguration configuration) {
-        //Qigsaw instance may be cached.
-        if (sReference.get() == null) {
-            sReference.set(new Qigsaw(context, downloader, configuration));
+        SplitTrace.beginSection(SplitTrace.INSTALL);
+        try {
+            //Qigsaw instance may be cached.
+            if (sReference.get() == null) {
+                sReference.set(new Qigsaw(context, downloader, configuration));
+            }
+            Qigsaw.instance().onBaseContextAttached();
+        } finally {
+            SplitTrace.endSection();
         }
-        Qigsaw.instance().onBaseContextAttached();
     }
 
     private void onBaseContextAttached() {
@@ -133,7 +144,12 @@ public class Qigsaw {
                 splitConfiguration.forbiddenWorkProcesses);
         //data may be cached.
         SplitLoadManagerService.getInstance().clear();
-        SplitLoadManagerService.getInstance().injectPathClassloader();
+        SplitTrace.beginSection(SplitTrace.INJECT_CLASSLOADER);
+        try {
+            SplitLoadManagerService.getInstance().injectPathClassloader();
+        } finally {
+            SplitTrace.endSection();
+        }
         //data may be cached.
         AABExtension.getInstance().clear();
         AABExtension.getInstance().createAndActiveSplitApplication(context, qigsawMode);
@@ -143,6 +159,32 @@ public class Qigsaw {
     private void onCreated() {
         AABExtension.getInstance().onApplicationCreate();
         SplitLoadReporterManager.install(splitConfiguration.loadReporter == null ? new DefaultSplitLoadReporter(context) : splitConfiguration.loadReporter);
+        if (splitConfiguration.unloadIdleSplits && context instanceof Application) {
+            SplitLoadManagerService.getInstance().enableSplitUnloading((Application) context);
+        }
+        //splits declared as eager by qigsawSplit.splitLoadPolicies for this process.
+        SplitLoadManagerService.getInstance().loadEagerSplits();
+        //report events are delivered in batches, deliver pending ones before process is likely to be killed.
+        context.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_UI_HIDDEN) {
+                    SplitReportDispatcher.flush();
+                    //app is backgrounded, resume maintenance left by last run.
+                    SplitApkInstaller.scheduleMaintenance();
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(@NonNull Configuration newConfig) {
+
+            }
+
+            @Override
+            public void onLowMemory() {
+                SplitReportDispatcher.flush();
+            }
+        });
         //only work in main process!
         if (isMainProcess) {
             SplitInstallReporterManager.install(splitConfiguration.installReporter == null ? new DefaultSplitInstallReporter(context) : splitConfiguration.installReporter);
@@ -152,18 +194,30 @@ public class Qigsaw {
                     downloader,
                     splitConfiguration.obtainUserConfirmationDialogClass,
                     splitConfiguration.verifySignature);
-            SplitApkInstaller.startUninstallSplits(context);
+            //disk maintenance is deferred until app is idle or backgrounded.
+            SplitApkInstaller.prepareMaintenance(context);
+            if (splitConfiguration.prefetchByteBudget > 0 && context instanceof Application) {
+                prefetchScheduler = new SplitPrefetchScheduler(context, splitConfiguration.prefetchByteBudget);
+                ((Application) context).registerActivityLifecycleCallbacks(new SplitUsageRecorder(prefetchScheduler));
+                prefetchScheduler.registerChargingReceiver();
+            }
             if (Looper.myLooper() != null) {
                 Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
 
                     @Override
                     public boolean queueIdle() {
-                        cleanStaleSplits(context);
+                        SplitApkInstaller.scheduleMaintenance();
+                        if (prefetchScheduler != null) {
+                            prefetchScheduler.schedulePrefetch();
+                        }
                         return false;
                     }
                 });
             } else {
-                cleanStaleSplits(context);
+                SplitApkInstaller.scheduleMaintenance();
+                if (prefetchScheduler != null) {
+                    prefetchScheduler.schedulePrefetch();
+                }
             }
         }
         onApplicationCreated = true;
@@ -235,17 +289,4 @@ public class Qigsaw {
         return true;
     }
 
-    /**
-     * Clean stale disk cache of all splits.
-     */
-    private static void cleanStaleSplits(Context context) {
-        try {
-            Intent intent = new Intent();
-            intent.setClassName(context, "com.iqiyi.android.qigsaw.core.splitinstall.SplitCleanService");
-            context.startService(intent);
-        } catch (Exception e) {
-            //ignored
-        }
-    }
-
 }
@@ -27,9 +27,11 @@ package com.iqiyi.android.qigsaw.core;
 import androidx.annotation.NonNull;
 
 import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.common.SplitTrace;
 import com.iqiyi.android.qigsaw.core.splitload.SplitLoad;
 import com.iqiyi.android.qigsaw.core.splitreport.SplitInstallReporter;
 import com.iqiyi.android.qigsaw.core.splitreport.SplitLoadReporter;
+import com.iqiyi.android.qigsaw.core.splitreport.SplitMetrics;
 import com.iqiyi.android.qigsaw.core.splitreport.SplitUninstallReporter;
 import com.iqiyi.android.qigsaw.core.splitreport.SplitUpdateReporter;
 
@@ -53,6 +55,10 @@ public class SplitConfiguration {
 
     final boolean verifySignature;
 
+    final long prefetchByteBudget;
+
+    final boolean unloadIdleSplits;
+
     public static SplitConfiguration.Builder newBuilder() {
         return new SplitConfiguration.Builder();
     }
@@ -70,6 +76,8 @@ public class SplitConfiguration {
         this.obtainUserConfirmationDialogClass = builder.obtainUserConfirmationDialogClass;
         this.workProcesses = builder.workProcesses;
         this.verifySignature = builder.verifySignature;
+        this.prefetchByteBudget = builder.prefetchByteBudget;
+        this.unloadIdleSplits = builder.unloadIdleSplits;
     }
 
     public static class Builder {
@@ -92,6 +100,10 @@ public class SplitConfiguration {
 
         private boolean verifySignature = true;
 
+        private long prefetchByteBudget;
+
+        private boolean unloadIdleSplits;
+
         private Builder() {
             this.obtainUserConfirmationDialogClass = DefaultObtainUserConfirmationDialog.class;
         }
@@ -104,6 +116,22 @@ public class SplitConfiguration {
             return this;
         }
 
+        /**
+         * Customized tracer for {@link SplitTrace}, use {@link SplitTrace#systrace()} to record sections with systrace or perfetto.
+         */
+        public Builder tracer(@NonNull SplitTrace.Tracer tracer) {
+            SplitTrace.setSplitTraceImp(tracer);
+            return this;
+        }
+
+        /**
+         * Whether to record {@link SplitMetrics} of this process, hosts can pull them by {@link SplitMetrics#snapshot()}.
+         */
+        public Builder enableMetrics(boolean enabled) {
+            SplitMetrics.setEnabled(enabled);
+            return this;
+        }
+
         /**
          * You can decide to use single or multiple class loader mode to load splits, see {@link SplitLoad} to know more details.
          */
@@ -183,6 +211,28 @@ public class SplitConfiguration {
             return this;
         }
 
+        /**
+         * Max bytes per day to prefetch splits which the user is likely to open soon, predicted by how often
+         * and how recently split activities are opened. Splits are only prefetched on unmetered network,
+         * {@code 0} by default to disable prefetching. Application context is required for {@link Qigsaw#install}.
+         */
+        public Builder prefetchByteBudget(long prefetchByteBudget) {
+            this.prefetchByteBudget = Math.max(0, prefetchByteBudget);
+            return this;
+        }
+
+        /**
+         * Whether to unload splits whose activities are all destroyed, when they are idle for a while or memory is trimmed.
+         * Splits with running services, recently started receivers or content-providers are kept loaded.
+         * Unloaded split is loaded again when its component is started, classes of split shouldn't be
+         * accessed by reflection from base apk. Only works for {@link SplitLoad#MULTIPLE_CLASSLOADER},
+         * {@code false} by default. Application context is required for {@link Qigsaw#install}.
+         */
+        public Builder unloadIdleSplits(boolean unloadIdleSplits) {
+            this.unloadIdleSplits = unloadIdleSplits;
+            return this;
+        }
+
         public SplitConfiguration build() {
             return new SplitConfiguration(this);
         }
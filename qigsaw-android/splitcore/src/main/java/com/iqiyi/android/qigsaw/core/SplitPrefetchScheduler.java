@@ -0,0 +1,221 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core;
+
+import android.annotation.SuppressLint;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.play.core.splitinstall.SplitInstallManagerFactory;
+import com.iqiyi.android.qigsaw.core.common.SplitConstants;
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.splitreport.SplitMetrics;
+import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfo;
+import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfoManager;
+import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfoManagerService;
+import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitPathManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prefetch splits which the user is likely to open soon via {@code SplitInstallManager#deferredInstall},
+ * according to {@link SplitUsageStore}. Prefetch runs when main thread is idle after launch or charger is connected,
+ * only on unmetered network and within a daily byte budget.
+ */
+final class SplitPrefetchScheduler {
+
+    private static final String TAG = "SplitPrefetchScheduler";
+
+    private static final String USAGE_FILE_NAME = "split_usage";
+
+    private static final long MIN_PREFETCH_INTERVAL = 6 * 60 * 60 * 1000L;
+
+    /**
+     * Prefetched split which is not opened within this time is counted as a miss.
+     */
+    private static final long PREFETCH_EXPIRATION = 7 * 24 * 60 * 60 * 1000L;
+
+    /**
+     * Split must be opened at least twice within a few days to be prefetched.
+     */
+    private static final float MIN_PREFETCH_SCORE = 1.5f;
+
+    /**
+     * Free space left on data partition after prefetching.
+     */
+    private static final long MIN_FREE_SPACE = 200 * 1024 * 1024L;
+
+    private final Context context;
+
+    private final long byteBudget;
+
+    private final SplitUsageStore usageStore;
+
+    private final ExecutorService executor;
+
+    SplitPrefetchScheduler(Context context, long byteBudget) {
+        this.context = context;
+        this.byteBudget = byteBudget;
+        this.usageStore = new SplitUsageStore(new File(context.getDir(SplitConstants.QIGSAW, Context.MODE_PRIVATE), USAGE_FILE_NAME));
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                30L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @SuppressLint("NewThreadDirectly")
+            @Override
+            public Thread newThread(@NonNull Runnable r) {
+                return new Thread(r, "split_prefetch_thread");
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+    }
+
+    void recordSplitOpened(final String splitName) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                usageStore.load();
+                if (usageStore.recordOpen(splitName, System.currentTimeMillis())) {
+                    SplitLog.i(TAG, "Prefetched split %s is opened.", splitName);
+                    SplitMetrics.increment(SplitMetrics.PREFETCH_HIT);
+                    SplitMetrics.increment(SplitMetrics.PREFETCH_HIT, splitName);
+                }
+                usageStore.save();
+            }
+        });
+    }
+
+    /**
+     * Prefetch again when charger is connected, while the app is alive.
+     */
+    void registerChargingReceiver() {
+        try {
+            context.registerReceiver(new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    schedulePrefetch();
+                }
+            }, new IntentFilter(Intent.ACTION_POWER_CONNECTED));
+        } catch (Exception e) {
+            SplitLog.w(TAG, "Failed to register charging receiver", e);
+        }
+    }
+
+    void schedulePrefetch() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    prefetch();
+                } catch (Throwable e) {
+                    SplitLog.w(TAG, "Failed to prefetch splits", e);
+                }
+            }
+        });
+    }
+
+    private void prefetch() {
+        usageStore.load();
+        long now = System.currentTimeMillis();
+        int expired = usageStore.expirePrefetched(now, PREFETCH_EXPIRATION);
+        if (expired > 0) {
+            SplitMetrics.add(SplitMetrics.PREFETCH_MISS, expired);
+            usageStore.save();
+        }
+        if (now - usageStore.getLastPrefetchTime() < MIN_PREFETCH_INTERVAL) {
+            return;
+        }
+        if (!isUnmeteredNetworkConnected()) {
+            SplitLog.d(TAG, "Network is metered or not connected, skip prefetching.");
+            return;
+        }
+        long remainingBytes = byteBudget - usageStore.getPrefetchedBytesOfDay(now);
+        SplitInfoManager infoManager = SplitInfoManagerService.getInstance();
+        if (remainingBytes <= 0 || infoManager == null) {
+            return;
+        }
+        long freeSpace = context.getFilesDir().getUsableSpace();
+        List<String> prefetchSplits = new ArrayList<>();
+        long prefetchBytes = 0;
+        for (String splitName : usageStore.rankSplits(now, MIN_PREFETCH_SCORE)) {
+            SplitInfo splitInfo = infoManager.getSplitInfo(context, splitName);
+            if (splitInfo == null || splitInfo.isBuiltIn() || usageStore.isPrefetched(splitName)) {
+                continue;
+            }
+            try {
+                if (SplitPathManager.require().getSplitInstallJournal(splitInfo).read().isInstalled(splitInfo.obtainInstalledMark(context))) {
+                    continue;
+                }
+                long size = splitInfo.getApkTotalSize(context);
+                if (size > remainingBytes - prefetchBytes || freeSpace - prefetchBytes - size < MIN_FREE_SPACE) {
+                    continue;
+                }
+                prefetchSplits.add(splitName);
+                prefetchBytes += size;
+            } catch (IOException e) {
+                SplitLog.w(TAG, "Failed to get apk data of split " + splitName, e);
+            }
+        }
+        if (prefetchSplits.isEmpty()) {
+            usageStore.setLastPrefetchTime(now);
+        } else {
+            SplitLog.i(TAG, "Prefetch splits %s, %d bytes", prefetchSplits, prefetchBytes);
+            SplitInstallManagerFactory.create(context).deferredInstall(prefetchSplits);
+            SplitMetrics.add(SplitMetrics.PREFETCH_REQUESTED, prefetchSplits.size());
+            SplitMetrics.add(SplitMetrics.PREFETCH_BYTES, prefetchBytes);
+            usageStore.markPrefetched(prefetchSplits, prefetchBytes, now);
+        }
+        usageStore.save();
+    }
+
+    private boolean isUnmeteredNetworkConnected() {
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) {
+            return false;
+        }
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            return false;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return !connectivityManager.isActiveNetworkMetered();
+        }
+        return networkInfo.getType() != ConnectivityManager.TYPE_MOBILE;
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core;
+
+import com.iqiyi.android.qigsaw.core.common.FileUtil;
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How often and how recently each split is opened, kept in a small file of main process.
+ * Open count decays with a half-life, so splits used long ago are gradually forgotten.
+ */
+final class SplitUsageStore {
+
+    private static final String TAG = "SplitUsageStore";
+
+    private static final int FILE_VERSION = 1;
+
+    /**
+     * Splits with lowest score are dropped beyond this count.
+     */
+    private static final int MAX_ENTRIES = 32;
+
+    private static final long SCORE_HALF_LIFE = 7 * 24 * 60 * 60 * 1000L;
+
+    private final File usageFile;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private boolean loaded;
+
+    private long lastPrefetchTime;
+
+    private long budgetDay;
+
+    private long prefetchedBytesOfDay;
+
+    SplitUsageStore(File usageFile) {
+        this.usageFile = usageFile;
+    }
+
+    synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!usageFile.exists()) {
+            return;
+        }
+        DataInputStream is = null;
+        try {
+            is = new DataInputStream(new BufferedInputStream(new FileInputStream(usageFile)));
+            if (is.readInt() != FILE_VERSION) {
+                return;
+            }
+            lastPrefetchTime = is.readLong();
+            budgetDay = is.readLong();
+            prefetchedBytesOfDay = is.readLong();
+            int count = is.readInt();
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry(is.readUTF());
+                entry.score = is.readFloat();
+                entry.lastOpenTime = is.readLong();
+                entry.prefetchTime = is.readLong();
+                entries.put(entry.splitName, entry);
+            }
+        } catch (IOException e) {
+            SplitLog.w(TAG, "Failed to read split usage, start over.", e);
+            entries.clear();
+        } finally {
+            FileUtil.closeQuietly(is);
+        }
+    }
+
+    synchronized void save() {
+        File tmpFile = new File(usageFile.getAbsolutePath() + ".tmp");
+        DataOutputStream os = null;
+        try {
+            os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            os.writeInt(FILE_VERSION);
+            os.writeLong(lastPrefetchTime);
+            os.writeLong(budgetDay);
+            os.writeLong(prefetchedBytesOfDay);
+            os.writeInt(entries.size());
+            for (Entry entry : entries.values()) {
+                os.writeUTF(entry.splitName);
+                os.writeFloat(entry.score);
+                os.writeLong(entry.lastOpenTime);
+                os.writeLong(entry.prefetchTime);
+            }
+            os.flush();
+        } catch (IOException e) {
+            SplitLog.w(TAG, "Failed to write split usage.", e);
+            FileUtil.closeQuietly(os);
+            FileUtil.deleteFileSafely(tmpFile);
+            return;
+        }
+        FileUtil.closeQuietly(os);
+        if (!tmpFile.renameTo(usageFile)) {
+            FileUtil.deleteFileSafely(tmpFile);
+        }
+    }
+
+    /**
+     * @return {@code true} if the split was prefetched and has not been opened since then.
+     */
+    synchronized boolean recordOpen(String splitName, long now) {
+        Entry entry = entries.get(splitName);
+        if (entry == null) {
+            if (entries.size() >= MAX_ENTRIES) {
+                entries.remove(rankEntries(now).get(entries.size() - 1).splitName);
+            }
+            entry = new Entry(splitName);
+            entries.put(splitName, entry);
+        }
+        entry.score = entry.decayedScore(now) + 1;
+        entry.lastOpenTime = now;
+        boolean prefetched = entry.prefetchTime > 0;
+        entry.prefetchTime = 0;
+        return prefetched;
+    }
+
+    /**
+     * @return names of splits whose score is not less than {@code minScore}, most used first.
+     */
+    synchronized List<String> rankSplits(long now, float minScore) {
+        List<String> splitNames = new ArrayList<>();
+        for (Entry entry : rankEntries(now)) {
+            if (entry.decayedScore(now) < minScore) {
+                break;
+            }
+            splitNames.add(entry.splitName);
+        }
+        return splitNames;
+    }
+
+    /**
+     * @return number of prefetched splits which have not been opened within {@code expiration}.
+     */
+    synchronized int expirePrefetched(long now, long expiration) {
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.prefetchTime > 0 && now - entry.prefetchTime > expiration) {
+                entry.prefetchTime = 0;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    synchronized boolean isPrefetched(String splitName) {
+        Entry entry = entries.get(splitName);
+        return entry != null && entry.prefetchTime > 0;
+    }
+
+    synchronized void markPrefetched(Collection<String> splitNames, long bytes, long now) {
+        for (String splitName : splitNames) {
+            Entry entry = entries.get(splitName);
+            if (entry != null) {
+                entry.prefetchTime = now;
+            }
+        }
+        prefetchedBytesOfDay = getPrefetchedBytesOfDay(now) + bytes;
+        lastPrefetchTime = now;
+    }
+
+    synchronized long getLastPrefetchTime() {
+        return lastPrefetchTime;
+    }
+
+    synchronized void setLastPrefetchTime(long lastPrefetchTime) {
+        this.lastPrefetchTime = lastPrefetchTime;
+    }
+
+    /**
+     * @return bytes prefetched on the day of {@code now}.
+     */
+    synchronized long getPrefetchedBytesOfDay(long now) {
+        long day = now / (24 * 60 * 60 * 1000L);
+        if (day != budgetDay) {
+            budgetDay = day;
+            prefetchedBytesOfDay = 0;
+        }
+        return prefetchedBytesOfDay;
+    }
+
+    private List<Entry> rankEntries(final long now) {
+        List<Entry> rankedEntries = new ArrayList<>(entries.values());
+        Collections.sort(rankedEntries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry o1, Entry o2) {
+                return Float.compare(o2.decayedScore(now), o1.decayedScore(now));
+            }
+        });
+        return rankedEntries;
+    }
+
+    private static final class Entry {
+
+        final String splitName;
+
+        float score;
+
+        long lastOpenTime;
+
+        /**
+         * Time of last prefetch, {@code 0} if split has been opened since then.
+         */
+        long prefetchTime;
+
+        Entry(String splitName) {
+            this.splitName = splitName;
+        }
+
+        float decayedScore(long now) {
+            long elapsed = Math.max(0, now - lastOpenTime);
+            return (float) (score * Math.pow(0.5, (double) elapsed / SCORE_HALF_LIFE));
+        }
+    }
+}
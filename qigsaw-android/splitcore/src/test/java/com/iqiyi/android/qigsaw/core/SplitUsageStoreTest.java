@@ -0,0 +1,107 @@
+package com.iqiyi.android.qigsaw.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SplitUsageStoreTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private static final long NOW = 1000 * DAY;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void ranksMostUsedSplitsFirst() throws Exception {
+        SplitUsageStore store = newStore();
+        store.recordOpen("java", NOW);
+        store.recordOpen("native", NOW);
+        store.recordOpen("native", NOW);
+        store.recordOpen("assets", NOW);
+        store.recordOpen("assets", NOW);
+        store.recordOpen("assets", NOW);
+
+        assertEquals(Arrays.asList("assets", "native", "java"), store.rankSplits(NOW, 0));
+        assertEquals(Arrays.asList("assets", "native"), store.rankSplits(NOW, 2));
+    }
+
+    @Test
+    public void scoreHalvesEveryWeek() throws Exception {
+        SplitUsageStore store = newStore();
+        store.recordOpen("java", NOW);
+        store.recordOpen("java", NOW);
+
+        assertEquals(Collections.singletonList("java"), store.rankSplits(NOW + 7 * DAY, 1));
+        assertTrue(store.rankSplits(NOW + 8 * DAY, 1).isEmpty());
+    }
+
+    @Test
+    public void prefetchIsClearedByOpenOrExpiration() throws Exception {
+        SplitUsageStore store = newStore();
+        store.recordOpen("java", NOW);
+        store.recordOpen("native", NOW);
+        store.markPrefetched(Arrays.asList("java", "native"), 100, NOW);
+
+        assertTrue(store.recordOpen("java", NOW + 1));
+        assertFalse(store.recordOpen("java", NOW + 2));
+        assertEquals(1, store.expirePrefetched(NOW + 3 * DAY, 2 * DAY));
+        assertFalse(store.isPrefetched("native"));
+    }
+
+    @Test
+    public void prefetchedBytesAreCountedPerDay() throws Exception {
+        SplitUsageStore store = newStore();
+        store.markPrefetched(Collections.<String>emptyList(), 100, NOW);
+        store.markPrefetched(Collections.<String>emptyList(), 50, NOW + 1);
+
+        assertEquals(150, store.getPrefetchedBytesOfDay(NOW + 2));
+        assertEquals(0, store.getPrefetchedBytesOfDay(NOW + DAY));
+    }
+
+    @Test
+    public void dropsLowestScoreBeyondMaxEntries() throws Exception {
+        SplitUsageStore store = newStore();
+        store.recordOpen("split0", NOW);
+        for (int i = 1; i < 32; i++) {
+            store.recordOpen("split" + i, NOW);
+            store.recordOpen("split" + i, NOW);
+        }
+        store.recordOpen("split32", NOW);
+
+        assertEquals(32, store.rankSplits(NOW, 0).size());
+        assertFalse(store.rankSplits(NOW, 0).contains("split0"));
+        assertTrue(store.rankSplits(NOW, 0).contains("split32"));
+    }
+
+    @Test
+    public void keepsUsageAcrossSaveAndLoad() throws Exception {
+        SplitUsageStore store = newStore();
+        store.recordOpen("java", NOW);
+        store.recordOpen("native", NOW);
+        store.recordOpen("native", NOW);
+        store.markPrefetched(Collections.singletonList("java"), 100, NOW);
+        store.save();
+
+        SplitUsageStore loaded = newStore();
+        assertEquals(Arrays.asList("native", "java"), loaded.rankSplits(NOW, 0));
+        assertTrue(loaded.isPrefetched("java"));
+        assertEquals(NOW, loaded.getLastPrefetchTime());
+        assertEquals(100, loaded.getPrefetchedBytesOfDay(NOW));
+    }
+
+    private SplitUsageStore newStore() {
+        SplitUsageStore store = new SplitUsageStore(new File(folder.getRoot(), "usage"));
+        store.load();
+        return store;
+    }
+}
@@ -39,12 +39,15 @@ public final class DownloadRequest implements Parcelable {
 
     private final String fileMD5;
 
+    private final long fileSize;
+
     private DownloadRequest(Parcel in) {
         url = in.readString();
         fileDir = in.readString();
         fileName = in.readString();
         moduleName = in.readString();
         fileMD5 = in.readString();
+        fileSize = in.readLong();
     }
 
     public static final Creator<DownloadRequest> CREATOR = new Creator<DownloadRequest>() {
@@ -69,6 +72,7 @@ public final class DownloadRequest implements Parcelable {
         this.fileName = builder.fileName;
         this.moduleName = builder.moduleName;
         this.fileMD5 = builder.fileMD5;
+        this.fileSize = builder.fileSize;
     }
 
     public String getUrl() {
@@ -91,6 +95,13 @@ public final class DownloadRequest implements Parcelable {
         return fileMD5;
     }
 
+    /**
+     * @return expected size of downloaded file in bytes, or {@code 0} if unknown.
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
     @Override
     public int describeContents() {
         return 0;
@@ -102,6 +113,8 @@ public final class DownloadRequest implements Parcelable {
         dest.writeString(fileDir);
         dest.writeString(fileName);
         dest.writeString(moduleName);
+        dest.writeString(fileMD5);
+        dest.writeLong(fileSize);
     }
 
     public static class Builder {
@@ -116,6 +129,8 @@ public final class DownloadRequest implements Parcelable {
 
         private String fileMD5;
 
+        private long fileSize;
+
         public Builder url(String url) {
             this.url = url;
             return this;
@@ -136,6 +151,11 @@ public final class DownloadRequest implements Parcelable {
             return this;
         }
 
+        public Builder fileSize(long fileSize) {
+            this.fileSize = fileSize;
+            return this;
+        }
+
         public Builder moduleName(String moduleName) {
             this.moduleName = moduleName;
             return this;
@@ -30,6 +30,8 @@ import java.util.List;
 
 /**
  * Interface used to download splits, you are expected to implement it with your own downloader lib.
+ * Implementations which keep partially downloaded content and resume it with HTTP range requests
+ * should implement {@link ResumableDownloader}, {@link RangedDownloader} is a reference implementation.
  */
 @Keep
 public interface Downloader {
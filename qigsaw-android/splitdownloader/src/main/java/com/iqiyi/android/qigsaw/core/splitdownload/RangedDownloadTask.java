@@ -0,0 +1,683 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitdownload;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Download a single {@link DownloadRequest} into {@code fileName.tmp}, and rename it when it is intact.
+ * Large files are fetched in several segments concurrently with HTTP range requests. Progress of every
+ * segment is recorded in {@code fileName.tmp.state}, so a failed or canceled download resumes
+ * where it stopped instead of starting from zero.
+ * <p>
+ * Every response of a segment is checked before its bytes are written: it must cover exactly the requested
+ * offset within the segment, and the file size on server must be the expected one. Segments are requested with
+ * {@code If-Range} of the validator (strong ETag or Last-Modified) of the first response, so a file changed on
+ * server is detected by the segment which hits it, instead of by md5 after all segments are downloaded.
+ * Split details only carry md5 of the whole file, so content of a single segment can't be verified by checksum.
+ */
+final class RangedDownloadTask {
+
+    static final String TEMP_SUFFIX = ".tmp";
+
+    static final String STATE_SUFFIX = ".state";
+
+    private static final int STATE_MAGIC = 0x51534453;
+
+    private static final int STATE_VERSION = 2;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private static final long STATE_SAVE_INTERVAL = 256 * 1024;
+
+    private static final long RETRY_BACKOFF_MS = 500;
+
+    interface ProgressListener {
+
+        /**
+         * @param bytes newly downloaded bytes, including bytes restored from a previous download, never negative.
+         */
+        void onBytesDownloaded(long bytes);
+
+        /**
+         * Bytes reported before are thrown away, and the file is downloaded again from byte 0.
+         *
+         * @param discardedBytes all bytes reported before by this task.
+         */
+        void onDownloadRestarted(long discardedBytes);
+    }
+
+    private final DownloadRequest request;
+
+    private final RangedDownloader.Options options;
+
+    private final ExecutorService segmentExecutor;
+
+    private final AtomicBoolean canceled;
+
+    private final ProgressListener listener;
+
+    private final AtomicBoolean aborted = new AtomicBoolean(false);
+
+    private final Object stateLock = new Object();
+
+    private File tmpFile;
+
+    private File stateFile;
+
+    private long totalLength;
+
+    private Segment[] segments;
+
+    private long unsavedBytes;
+
+    /**
+     * Validator of the file on server which downloaded bytes belong to, guarded by {@link #stateLock}.
+     */
+    private String validator;
+
+    RangedDownloadTask(DownloadRequest request,
+                       RangedDownloader.Options options,
+                       ExecutorService segmentExecutor,
+                       AtomicBoolean canceled,
+                       ProgressListener listener) {
+        this.request = request;
+        this.options = options;
+        this.segmentExecutor = segmentExecutor;
+        this.canceled = canceled;
+        this.listener = listener;
+    }
+
+    void execute() throws IOException {
+        File destFile = new File(request.getFileDir(), request.getFileName());
+        if (destFile.exists() && isIntact(destFile)) {
+            listener.onBytesDownloaded(destFile.length());
+            return;
+        }
+        File dir = destFile.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs() && !dir.exists()) {
+            throw new IOException("Failed to create dir " + dir.getAbsolutePath());
+        }
+        tmpFile = new File(destFile.getPath() + TEMP_SUFFIX);
+        stateFile = new File(tmpFile.getPath() + STATE_SUFFIX);
+        totalLength = request.getFileSize() > 0 ? request.getFileSize() : -1;
+        if (!restoreState()) {
+            createSegments(options.maxSegments);
+        }
+        long restoredBytes = 0;
+        for (Segment segment : segments) {
+            restoredBytes += segment.done;
+        }
+        if (restoredBytes > 0) {
+            listener.onBytesDownloaded(restoredBytes);
+        }
+        try {
+            try {
+                downloadSegments();
+            } catch (RangeNotSupportedException e) {
+                //server ignores range requests, or the file on server is changed, start over with a single plain request.
+                listener.onDownloadRestarted(downloadedBytes());
+                synchronized (stateLock) {
+                    validator = null;
+                }
+                createSegments(1);
+                downloadSegments();
+            }
+        } catch (IntegrityException e) {
+            deleteTempFiles();
+            throw e;
+        } finally {
+            if (tmpFile.exists()) {
+                saveState();
+            }
+        }
+        if (totalLength > 0 && tmpFile.length() != totalLength) {
+            deleteTempFiles();
+            throw new IntegrityException("Size of " + tmpFile.getName() + " is " + tmpFile.length() + ", expected " + totalLength);
+        }
+        if (!isMD5Matched(tmpFile)) {
+            deleteTempFiles();
+            throw new IntegrityException("MD5 of " + tmpFile.getName() + " is not matched");
+        }
+        if (destFile.exists() && !destFile.delete()) {
+            throw new IOException("Failed to delete " + destFile.getAbsolutePath());
+        }
+        if (!tmpFile.renameTo(destFile)) {
+            throw new IOException("Failed to rename " + tmpFile.getAbsolutePath());
+        }
+        stateFile.delete();
+    }
+
+    private void downloadSegments() throws IOException {
+        List<Future<?>> futures = new ArrayList<>(segments.length);
+        for (int i = 1; i < segments.length; i++) {
+            final Segment segment = segments[i];
+            if (segment.isFinished()) {
+                continue;
+            }
+            futures.add(segmentExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    downloadSegment(segment);
+                    return null;
+                }
+            }));
+        }
+        IOException error = null;
+        try {
+            downloadSegment(segments[0]);
+        } catch (IOException e) {
+            error = e;
+            aborted.set(true);
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                aborted.set(true);
+                if (error == null || error instanceof CanceledException) {
+                    error = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                aborted.set(true);
+                if (error == null) {
+                    error = new CanceledException();
+                }
+            }
+        }
+        aborted.set(false);
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void downloadSegment(Segment segment) throws IOException {
+        int failures = 0;
+        while (!segment.isFinished()) {
+            checkCanceled();
+            long doneBefore = segment.done;
+            try {
+                transfer(segment);
+            } catch (CanceledException | RangeNotSupportedException | IntegrityException e) {
+                throw e;
+            } catch (IOException e) {
+                checkCanceled();
+                //progress resets the retry budget, so a flaky network only fails on consecutive errors.
+                failures = segment.done > doneBefore ? 1 : failures + 1;
+                if (failures > options.maxRetries) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(RETRY_BACKOFF_MS * failures);
+                } catch (InterruptedException ie) {
+                    throw new CanceledException();
+                }
+            }
+        }
+    }
+
+    private void transfer(Segment segment) throws IOException {
+        long offset = segment.start + segment.done;
+        HttpURLConnection connection = (HttpURLConnection) new URL(request.getUrl()).openConnection();
+        connection.setConnectTimeout(options.connectTimeout);
+        connection.setReadTimeout(options.readTimeout);
+        boolean ranged = offset > 0 || segments.length > 1;
+        if (ranged) {
+            connection.setRequestProperty("Range", "bytes=" + offset + "-" + (segment.end >= 0 ? segment.end : ""));
+            String expectedValidator = getValidator();
+            if (expectedValidator != null) {
+                //server sends the whole file instead of the range if it is changed.
+                connection.setRequestProperty("If-Range", expectedValidator);
+            }
+        }
+        RandomAccessFile raf = null;
+        InputStream is = null;
+        try {
+            int code = connection.getResponseCode();
+            long remaining;
+            if (code == HttpURLConnection.HTTP_PARTIAL) {
+                remaining = checkContentRange(connection.getHeaderField("Content-Range"), segment, offset);
+            } else if (code == HttpURLConnection.HTTP_OK) {
+                if (ranged) {
+                    throw new RangeNotSupportedException();
+                }
+                long contentLength = getContentLength(connection);
+                if (totalLength > 0 && contentLength >= 0 && contentLength != totalLength) {
+                    throw new IntegrityException("Content length " + contentLength + " is not matched, expected " + totalLength);
+                }
+                if (segment.end < 0 && contentLength > 0) {
+                    totalLength = contentLength;
+                    segment.end = contentLength - 1;
+                }
+                remaining = segment.end >= 0 ? segment.end - offset + 1 : -1;
+            } else if (code == 416) {
+                //local progress is beyond the file on server.
+                throw new RangeNotSupportedException();
+            } else {
+                throw new IOException("Unexpected response code " + code + " for " + request.getUrl());
+            }
+            checkValidator(connection);
+            raf = new RandomAccessFile(tmpFile, "rw");
+            raf.seek(offset);
+            is = connection.getInputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (remaining != 0) {
+                checkCanceled();
+                int len = is.read(buffer, 0, remaining < 0 ? buffer.length : (int) Math.min(buffer.length, remaining));
+                if (len == -1) {
+                    if (remaining > 0) {
+                        throw new EOFException("Connection closed with " + remaining + " bytes remaining");
+                    }
+                    //length is unknown until the end of stream.
+                    segment.end = segment.start + segment.done - 1;
+                    totalLength = segment.end + 1;
+                    break;
+                }
+                raf.write(buffer, 0, len);
+                if (remaining > 0) {
+                    remaining -= len;
+                }
+                onSegmentProgress(segment, len);
+            }
+        } finally {
+            closeQuietly(is);
+            closeQuietly(raf);
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Each segment must be served exactly from where it stopped, and the file on server must have the expected size.
+     *
+     * @return length of content.
+     */
+    private long checkContentRange(String contentRange, Segment segment, long offset) throws IOException {
+        //bytes first-last/total
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            throw new RangeNotSupportedException();
+        }
+        long first;
+        long last;
+        long total;
+        try {
+            int dash = contentRange.indexOf('-');
+            int slash = contentRange.indexOf('/');
+            first = Long.parseLong(contentRange.substring("bytes ".length(), dash).trim());
+            last = Long.parseLong(contentRange.substring(dash + 1, slash).trim());
+            String totalString = contentRange.substring(slash + 1).trim();
+            total = "*".equals(totalString) ? -1 : Long.parseLong(totalString);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed Content-Range " + contentRange);
+        }
+        if (first != offset || last < first || (segment.end >= 0 && last > segment.end)) {
+            throw new RangeNotSupportedException();
+        }
+        if (total > 0) {
+            if (totalLength > 0 && total != totalLength) {
+                throw new IntegrityException("File size on server is " + total + ", expected " + totalLength);
+            }
+            if (segment.end < 0) {
+                totalLength = total;
+                segment.end = total - 1;
+            }
+        }
+        return last - first + 1;
+    }
+
+    /**
+     * The first response decides the validator, every later one must come from the same file.
+     */
+    private void checkValidator(HttpURLConnection connection) throws IOException {
+        String etag = connection.getHeaderField("ETag");
+        //weak ETags can't be used by If-Range.
+        String current = etag != null && !etag.startsWith("W/") ? etag : connection.getHeaderField("Last-Modified");
+        synchronized (stateLock) {
+            if (validator == null) {
+                validator = current;
+                return;
+            }
+            if (current == null || validator.equals(current)) {
+                return;
+            }
+        }
+        throw new ContentChangedException(validator, current);
+    }
+
+    private String getValidator() {
+        synchronized (stateLock) {
+            return validator;
+        }
+    }
+
+    private void onSegmentProgress(Segment segment, int len) {
+        boolean save = false;
+        synchronized (stateLock) {
+            segment.done += len;
+            unsavedBytes += len;
+            if (unsavedBytes >= STATE_SAVE_INTERVAL) {
+                unsavedBytes = 0;
+                save = true;
+            }
+        }
+        listener.onBytesDownloaded(len);
+        if (save) {
+            saveState();
+        }
+    }
+
+    private void checkCanceled() throws CanceledException {
+        if (canceled.get() || aborted.get() || Thread.currentThread().isInterrupted()) {
+            throw new CanceledException();
+        }
+    }
+
+    private void createSegments(int maxSegments) throws IOException {
+        deleteTempFiles();
+        int count = 1;
+        if (totalLength > 0 && maxSegments > 1 && totalLength >= 2 * options.minSegmentSize) {
+            count = (int) Math.min(maxSegments, totalLength / options.minSegmentSize);
+        }
+        if (count > 1) {
+            long segmentSize = totalLength / count;
+            segments = new Segment[count];
+            for (int i = 0; i < count; i++) {
+                long start = i * segmentSize;
+                long end = i == count - 1 ? totalLength - 1 : start + segmentSize - 1;
+                segments[i] = new Segment(start, end, 0);
+            }
+            //state must exist before temp file is pre-sized, otherwise the zero-filled file
+            //would be restored as a finished plain download after a crash.
+            if (saveState()) {
+                //segments write at their own offsets.
+                RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw");
+                try {
+                    raf.setLength(totalLength);
+                } finally {
+                    closeQuietly(raf);
+                }
+                return;
+            }
+        }
+        segments = new Segment[]{new Segment(0, totalLength > 0 ? totalLength - 1 : -1, 0)};
+    }
+
+    private boolean restoreState() {
+        if (!tmpFile.exists()) {
+            stateFile.delete();
+            return false;
+        }
+        if (stateFile.exists()) {
+            DataInputStream dis = null;
+            try {
+                dis = new DataInputStream(new FileInputStream(stateFile));
+                if (dis.readInt() != STATE_MAGIC || dis.readInt() != STATE_VERSION
+                        || !request.getUrl().equals(dis.readUTF())) {
+                    return false;
+                }
+                String restoredValidator = dis.readUTF();
+                long total = dis.readLong();
+                if (totalLength > 0 && total != totalLength) {
+                    return false;
+                }
+                int count = dis.readInt();
+                if (count <= 0) {
+                    return false;
+                }
+                Segment[] restored = new Segment[count];
+                for (int i = 0; i < count; i++) {
+                    long start = dis.readLong();
+                    long end = dis.readLong();
+                    long done = dis.readLong();
+                    if (done < 0 || (end >= 0 && done > end - start + 1)) {
+                        return false;
+                    }
+                    restored[i] = new Segment(start, end, done);
+                }
+                if (count > 1 && tmpFile.length() != total) {
+                    return false;
+                }
+                totalLength = total;
+                segments = restored;
+                validator = restoredValidator.length() > 0 ? restoredValidator : null;
+                return true;
+            } catch (IOException e) {
+                return false;
+            } finally {
+                closeQuietly(dis);
+            }
+        }
+        //no state, but a plain download can resume from the length of temp file,
+        //segmented downloads always save state before temp file is created.
+        long length = tmpFile.length();
+        if (totalLength > 0 && length > totalLength) {
+            return false;
+        }
+        segments = new Segment[]{new Segment(0, totalLength > 0 ? totalLength - 1 : -1, length)};
+        return true;
+    }
+
+    /**
+     * @return {@code true} if state is saved.
+     */
+    private boolean saveState() {
+        File tmpStateFile = new File(stateFile.getPath() + TEMP_SUFFIX);
+        DataOutputStream dos = null;
+        try {
+            dos = new DataOutputStream(new FileOutputStream(tmpStateFile));
+            dos.writeInt(STATE_MAGIC);
+            dos.writeInt(STATE_VERSION);
+            dos.writeUTF(request.getUrl());
+            synchronized (stateLock) {
+                dos.writeUTF(validator == null ? "" : validator);
+                dos.writeLong(totalLength);
+                dos.writeInt(segments.length);
+                for (Segment segment : segments) {
+                    dos.writeLong(segment.start);
+                    dos.writeLong(segment.end);
+                    dos.writeLong(segment.done);
+                }
+            }
+            dos.close();
+            dos = null;
+            if (tmpStateFile.renameTo(stateFile)) {
+                return true;
+            }
+            tmpStateFile.delete();
+        } catch (IOException e) {
+            tmpStateFile.delete();
+        } finally {
+            closeQuietly(dos);
+        }
+        return false;
+    }
+
+    private long downloadedBytes() {
+        long bytes = 0;
+        synchronized (stateLock) {
+            for (Segment segment : segments) {
+                bytes += segment.done;
+            }
+        }
+        return bytes;
+    }
+
+    private void deleteTempFiles() {
+        if (tmpFile.exists()) {
+            tmpFile.delete();
+        }
+        if (stateFile.exists()) {
+            stateFile.delete();
+        }
+    }
+
+    private boolean isIntact(File file) throws IOException {
+        boolean sizeKnown = request.getFileSize() > 0;
+        boolean md5Known = request.getFileMD5() != null && request.getFileMD5().length() > 0;
+        if (!sizeKnown && !md5Known) {
+            return false;
+        }
+        if (sizeKnown && file.length() != request.getFileSize()) {
+            return false;
+        }
+        return isMD5Matched(file);
+    }
+
+    private boolean isMD5Matched(File file) throws IOException {
+        String expected = request.getFileMD5();
+        if (expected == null || expected.length() == 0) {
+            return true;
+        }
+        return expected.equalsIgnoreCase(getMD5(file));
+    }
+
+    private static String getMD5(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        InputStream is = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int len;
+            while ((len = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, len);
+            }
+        } finally {
+            closeQuietly(is);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+
+    private static long getContentLength(HttpURLConnection connection) {
+        String value = connection.getHeaderField("Content-Length");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+
+            }
+        }
+    }
+
+    private static final class Segment {
+
+        final long start;
+
+        /**
+         * Inclusive, or {@code -1} while length of file is unknown.
+         */
+        volatile long end;
+
+        volatile long done;
+
+        Segment(long start, long end, long done) {
+            this.start = start;
+            this.end = end;
+            this.done = done;
+        }
+
+        boolean isFinished() {
+            return end >= 0 && done >= end - start + 1;
+        }
+    }
+
+    static class CanceledException extends IOException {
+
+        CanceledException() {
+            super("Download is canceled");
+        }
+    }
+
+    /**
+     * Server doesn't serve ranges as requested.
+     */
+    static class RangeNotSupportedException extends IOException {
+
+        RangeNotSupportedException() {
+            super("Range request is not supported");
+        }
+
+        RangeNotSupportedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * File on server is not the one which downloaded segments belong to.
+     */
+    static class ContentChangedException extends RangeNotSupportedException {
+
+        ContentChangedException(String expected, String actual) {
+            super("File on server is changed, validator " + actual + ", expected " + expected);
+        }
+    }
+
+    /**
+     * Downloaded content doesn't match expected size or md5, it is discarded.
+     */
+    static class IntegrityException extends IOException {
+
+        IntegrityException(String message) {
+            super(message);
+        }
+    }
+}
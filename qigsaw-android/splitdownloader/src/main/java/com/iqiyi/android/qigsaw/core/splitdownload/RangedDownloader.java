@@ -0,0 +1,434 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitdownload;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Downloader} based on {@link java.net.HttpURLConnection}, which resumes interrupted downloads
+ * and fetches large splits in several segments concurrently with HTTP range requests.
+ * Partial content is kept in {@code fileName.tmp} until the whole file is verified by its size and md5.
+ * Deferred sessions which are not permitted to use mobile data wait until an unmetered network is connected,
+ * network type is checked before each file is downloaded.
+ */
+public final class RangedDownloader implements ResumableDownloader {
+
+    public static final int ERROR_DOWNLOAD = -1;
+
+    public static final int ERROR_VERIFY = -2;
+
+    private static final long PROGRESS_INTERVAL_MS = 100;
+
+    private static final long NETWORK_CHECK_INTERVAL_MS = 5000;
+
+    private static final String URL_ASSETS = "assets://";
+
+    private static final String URL_NATIVE = "native://";
+
+    private final Options options;
+
+    private final long downloadSizeThresholdWhenUsingMobileData;
+
+    private final boolean deferredDownloadOnlyWhenUsingWifiData;
+
+    private final NetworkChecker networkChecker;
+
+    private final ExecutorService sessionExecutor;
+
+    private final ExecutorService deferredExecutor;
+
+    private final ExecutorService segmentExecutor;
+
+    private final ConcurrentHashMap<Integer, AtomicBoolean> sessions = new ConcurrentHashMap<>();
+
+    private final Object activeLock = new Object();
+
+    private int activeSessions;
+
+    private RangedDownloader(Builder builder) {
+        this.options = new Options(builder);
+        this.downloadSizeThresholdWhenUsingMobileData = builder.downloadSizeThresholdWhenUsingMobileData;
+        this.deferredDownloadOnlyWhenUsingWifiData = builder.deferredDownloadOnlyWhenUsingWifiData;
+        this.networkChecker = builder.networkChecker;
+        this.sessionExecutor = createExecutor(builder.maxConcurrentSessions, "split_download_thread");
+        this.deferredExecutor = createExecutor(1, "split_deferred_download_thread");
+        this.segmentExecutor = createExecutor(Math.max(1, builder.maxConcurrentSessions * (builder.maxSegments - 1)), "split_download_segment_thread");
+    }
+
+    @Override
+    public void startDownload(int sessionId, List<DownloadRequest> requests, DownloadCallback callback) {
+        AtomicBoolean canceled = new AtomicBoolean(false);
+        sessions.put(sessionId, canceled);
+        synchronized (activeLock) {
+            activeSessions++;
+        }
+        sessionExecutor.execute(new SessionTask(sessionId, requests, callback, canceled, false, true));
+    }
+
+    @Override
+    public void deferredDownload(int sessionId, List<DownloadRequest> requests, DownloadCallback callback, boolean usingMobileDataPermitted) {
+        AtomicBoolean canceled = new AtomicBoolean(false);
+        sessions.put(sessionId, canceled);
+        deferredExecutor.execute(new SessionTask(sessionId, requests, callback, canceled, true, usingMobileDataPermitted));
+    }
+
+    @Override
+    public boolean cancelDownloadSync(int sessionId) {
+        AtomicBoolean canceled = sessions.get(sessionId);
+        if (canceled == null) {
+            return false;
+        }
+        canceled.set(true);
+        return true;
+    }
+
+    @Override
+    public long getDownloadSizeThresholdWhenUsingMobileData() {
+        return downloadSizeThresholdWhenUsingMobileData;
+    }
+
+    @Override
+    public boolean isDeferredDownloadOnlyWhenUsingWifiData() {
+        return deferredDownloadOnlyWhenUsingWifiData;
+    }
+
+    private void awaitActiveSessions(AtomicBoolean canceled) throws InterruptedException {
+        synchronized (activeLock) {
+            while (activeSessions > 0 && !canceled.get()) {
+                activeLock.wait(PROGRESS_INTERVAL_MS);
+            }
+        }
+    }
+
+    private void awaitUnmeteredNetwork(AtomicBoolean canceled) throws InterruptedException {
+        long waited = NETWORK_CHECK_INTERVAL_MS;
+        while (!canceled.get()) {
+            if (waited >= NETWORK_CHECK_INTERVAL_MS) {
+                if (networkChecker.isUnmeteredNetworkConnected()) {
+                    return;
+                }
+                waited = 0;
+            }
+            Thread.sleep(PROGRESS_INTERVAL_MS);
+            waited += PROGRESS_INTERVAL_MS;
+        }
+    }
+
+    private void onActiveSessionFinished() {
+        synchronized (activeLock) {
+            activeSessions--;
+            activeLock.notifyAll();
+        }
+    }
+
+    private static ExecutorService createExecutor(int threads, String threadName) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                30L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DownloadThreadFactory(threadName));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private final class SessionTask implements Runnable {
+
+        private final int sessionId;
+
+        private final List<DownloadRequest> requests;
+
+        private final DownloadCallback callback;
+
+        private final AtomicBoolean canceled;
+
+        private final boolean deferred;
+
+        private final boolean usingMobileDataPermitted;
+
+        private final AtomicLong currentBytes = new AtomicLong();
+
+        private volatile long lastProgressTime;
+
+        SessionTask(int sessionId, List<DownloadRequest> requests, DownloadCallback callback,
+                    AtomicBoolean canceled, boolean deferred, boolean usingMobileDataPermitted) {
+            this.sessionId = sessionId;
+            this.requests = requests;
+            this.callback = callback;
+            this.canceled = canceled;
+            this.deferred = deferred;
+            this.usingMobileDataPermitted = usingMobileDataPermitted;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (deferred) {
+                    //deferred sessions run when all started sessions are finished.
+                    awaitActiveSessions(canceled);
+                }
+                download();
+            } catch (InterruptedException e) {
+                callback.onCanceling();
+                callback.onCanceled();
+            } finally {
+                //the same session may have been canceled and started again.
+                sessions.remove(sessionId, canceled);
+                if (!deferred) {
+                    onActiveSessionFinished();
+                }
+            }
+        }
+
+        private void download() throws InterruptedException {
+            if (canceled.get()) {
+                callback.onCanceling();
+                callback.onCanceled();
+                return;
+            }
+            callback.onStart();
+            RangedDownloadTask.ProgressListener listener = new RangedDownloadTask.ProgressListener() {
+                @Override
+                public void onBytesDownloaded(long bytes) {
+                    long current = currentBytes.addAndGet(bytes);
+                    long now = System.currentTimeMillis();
+                    if (now - lastProgressTime >= PROGRESS_INTERVAL_MS) {
+                        lastProgressTime = now;
+                        callback.onProgress(current);
+                    }
+                }
+
+                @Override
+                public void onDownloadRestarted(long discardedBytes) {
+                    //progress goes back at once, instead of growing beyond the size of session.
+                    lastProgressTime = System.currentTimeMillis();
+                    callback.onProgress(currentBytes.addAndGet(-discardedBytes));
+                }
+            };
+            for (DownloadRequest request : requests) {
+                String url = request.getUrl();
+                if (url.startsWith(URL_ASSETS) || url.startsWith(URL_NATIVE)) {
+                    continue;
+                }
+                if (!usingMobileDataPermitted) {
+                    awaitUnmeteredNetwork(canceled);
+                }
+                try {
+                    new RangedDownloadTask(request, options, segmentExecutor, canceled, listener).execute();
+                } catch (RangedDownloadTask.CanceledException e) {
+                    callback.onCanceling();
+                    callback.onCanceled();
+                    return;
+                } catch (RangedDownloadTask.IntegrityException e) {
+                    callback.onError(ERROR_VERIFY);
+                    return;
+                } catch (IOException e) {
+                    if (canceled.get()) {
+                        callback.onCanceling();
+                        callback.onCanceled();
+                    } else {
+                        callback.onError(ERROR_DOWNLOAD);
+                    }
+                    return;
+                }
+            }
+            callback.onProgress(currentBytes.get());
+            callback.onCompleted();
+        }
+    }
+
+    private static final class DownloadThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        private final String name;
+
+        DownloadThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @SuppressLint("NewThreadDirectly")
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            return new Thread(r, name + "_" + count.incrementAndGet());
+        }
+    }
+
+    /**
+     * Tells whether deferred sessions which are not permitted to use mobile data could download now.
+     */
+    interface NetworkChecker {
+
+        boolean isUnmeteredNetworkConnected();
+    }
+
+    private static final class ConnectivityNetworkChecker implements NetworkChecker {
+
+        private final Context context;
+
+        ConnectivityNetworkChecker(Context context) {
+            this.context = context.getApplicationContext();
+        }
+
+        @Override
+        public boolean isUnmeteredNetworkConnected() {
+            ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+            if (connectivityManager == null) {
+                return false;
+            }
+            NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+            if (networkInfo == null || !networkInfo.isConnected()) {
+                return false;
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                return !connectivityManager.isActiveNetworkMetered();
+            }
+            return networkInfo.getType() != ConnectivityManager.TYPE_MOBILE;
+        }
+    }
+
+    static final class Options {
+
+        final int maxSegments;
+
+        final long minSegmentSize;
+
+        final int maxRetries;
+
+        final int connectTimeout;
+
+        final int readTimeout;
+
+        Options(Builder builder) {
+            this.maxSegments = builder.maxSegments;
+            this.minSegmentSize = builder.minSegmentSize;
+            this.maxRetries = builder.maxRetries;
+            this.connectTimeout = builder.connectTimeout;
+            this.readTimeout = builder.readTimeout;
+        }
+    }
+
+    public static class Builder {
+
+        private int maxConcurrentSessions = 2;
+
+        private int maxSegments = 3;
+
+        private long minSegmentSize = 1024 * 1024;
+
+        private int maxRetries = 3;
+
+        private int connectTimeout = 15000;
+
+        private int readTimeout = 15000;
+
+        private long downloadSizeThresholdWhenUsingMobileData = 10 * 1024 * 1024;
+
+        private boolean deferredDownloadOnlyWhenUsingWifiData = true;
+
+        private final NetworkChecker networkChecker;
+
+        /**
+         * @param context used to check network type for deferred sessions.
+         */
+        public Builder(@NonNull Context context) {
+            this.networkChecker = new ConnectivityNetworkChecker(context);
+        }
+
+        Builder(NetworkChecker networkChecker) {
+            this.networkChecker = networkChecker;
+        }
+
+        /**
+         * Max number of sessions downloaded at the same time.
+         */
+        public Builder maxConcurrentSessions(int maxConcurrentSessions) {
+            this.maxConcurrentSessions = Math.max(1, maxConcurrentSessions);
+            return this;
+        }
+
+        /**
+         * Max number of ranges downloaded concurrently for one split apk, {@code 1} to disable segmented downloading.
+         */
+        public Builder maxSegments(int maxSegments) {
+            this.maxSegments = Math.max(1, maxSegments);
+            return this;
+        }
+
+        /**
+         * Files smaller than twice of this size are downloaded in one range.
+         */
+        public Builder minSegmentSize(long minSegmentSize) {
+            this.minSegmentSize = Math.max(1, minSegmentSize);
+            return this;
+        }
+
+        /**
+         * Max number of consecutive failures of a range before the download fails.
+         */
+        public Builder maxRetries(int maxRetries) {
+            this.maxRetries = Math.max(0, maxRetries);
+            return this;
+        }
+
+        public Builder connectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        public Builder readTimeout(int readTimeout) {
+            this.readTimeout = readTimeout;
+            return this;
+        }
+
+        public Builder downloadSizeThresholdWhenUsingMobileData(long threshold) {
+            this.downloadSizeThresholdWhenUsingMobileData = threshold;
+            return this;
+        }
+
+        public Builder deferredDownloadOnlyWhenUsingWifiData(boolean onlyWifi) {
+            this.deferredDownloadOnlyWhenUsingWifiData = onlyWifi;
+            return this;
+        }
+
+        public RangedDownloader build() {
+            return new RangedDownloader(this);
+        }
+    }
+}
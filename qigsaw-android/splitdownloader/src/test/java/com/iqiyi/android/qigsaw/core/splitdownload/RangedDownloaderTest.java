@@ -0,0 +1,329 @@
+package com.iqiyi.android.qigsaw.core.splitdownload;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RangedDownloaderTest {
+
+    private static final int FILE_SIZE = 256 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private byte[] content;
+
+    private TestHttpServer server;
+
+    private final AtomicBoolean unmetered = new AtomicBoolean(true);
+
+    private final RangedDownloader.NetworkChecker networkChecker = new RangedDownloader.NetworkChecker() {
+        @Override
+        public boolean isUnmeteredNetworkConnected() {
+            return unmetered.get();
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[FILE_SIZE];
+        new Random(42).nextBytes(content);
+        server = new TestHttpServer(content);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void resumesSegmentsAfterDisconnects() throws Exception {
+        RangedDownloader downloader = newBuilder().maxSegments(4).build();
+        //first connection of every segment is closed after 10KB.
+        server.disconnect(4, 10 * 1024);
+        TestCallback callback = new TestCallback();
+        downloader.startDownload(1, request("split.zip", true), callback);
+        callback.await();
+
+        assertEquals(1, callback.completed);
+        assertEquals(FILE_SIZE, callback.lastProgress);
+        assertContent(new File(folder.getRoot(), "split.zip"));
+        assertEquals(8, server.requests());
+        assertEquals(FILE_SIZE, server.servedBytes());
+        assertFalse(new File(folder.getRoot(), "split.zip.tmp").exists());
+        assertFalse(new File(folder.getRoot(), "split.zip.tmp.state").exists());
+    }
+
+    @Test
+    public void resumesPlainDownloadAfterDisconnects() throws Exception {
+        RangedDownloader downloader = newBuilder().maxSegments(1).build();
+        server.disconnect(2, 50 * 1024);
+        TestCallback callback = new TestCallback();
+        downloader.startDownload(1, request("split.zip", true), callback);
+        callback.await();
+
+        assertEquals(1, callback.completed);
+        assertContent(new File(folder.getRoot(), "split.zip"));
+        assertEquals(3, server.requests());
+        assertEquals(2, server.rangeRequests());
+        assertEquals(FILE_SIZE, server.servedBytes());
+    }
+
+    @Test
+    public void resumesFailedDownloadInNextSession() throws Exception {
+        RangedDownloader downloader = newBuilder().maxSegments(4).maxRetries(0).build();
+        server.disconnect(1, 20 * 1024);
+        TestCallback failed = new TestCallback();
+        downloader.startDownload(1, request("split.zip", false), failed);
+        failed.await();
+        assertEquals(RangedDownloader.ERROR_DOWNLOAD, failed.errorCode);
+        assertTrue(new File(folder.getRoot(), "split.zip.tmp").exists());
+        assertTrue(new File(folder.getRoot(), "split.zip.tmp.state").exists());
+
+        TestCallback resumed = new TestCallback();
+        downloader.startDownload(2, request("split.zip", false), resumed);
+        resumed.await();
+        assertEquals(1, resumed.completed);
+        //without md5, content is only correct if restored segments are downloaded again.
+        assertContent(new File(folder.getRoot(), "split.zip"));
+        assertTrue(server.servedBytes() < 2 * FILE_SIZE);
+    }
+
+    @Test
+    public void savesStateBeforeTempFileIsPreSized() throws Exception {
+        RangedDownloader downloader = newBuilder().maxSegments(4).build();
+        server.throttle(1024, 20);
+        TestCallback callback = new TestCallback();
+        downloader.startDownload(1, request("split.zip", false), callback);
+        File tmpFile = new File(folder.getRoot(), "split.zip.tmp");
+        File stateFile = new File(folder.getRoot(), "split.zip.tmp.state");
+        long deadline = System.currentTimeMillis() + 1000;
+        while (System.currentTimeMillis() < deadline) {
+            //a pre-sized temp file without state would be restored as a finished download after a crash.
+            if (tmpFile.exists()) {
+                assertTrue(stateFile.exists());
+            }
+            Thread.sleep(1);
+        }
+        assertTrue(downloader.cancelDownloadSync(1));
+        callback.await();
+        assertEquals(1, callback.canceled);
+        assertTrue(tmpFile.exists());
+        assertTrue(stateFile.exists());
+    }
+
+    @Test
+    public void fallsBackToPlainRequestIfRangeIsIgnored() throws Exception {
+        RangedDownloader downloader = newBuilder().maxSegments(4).build();
+        server.setRangeSupported(false);
+        TestCallback callback = new TestCallback();
+        downloader.startDownload(1, request("split.zip", true), callback);
+        callback.await();
+
+        assertEquals(1, callback.completed);
+        assertEquals(FILE_SIZE, callback.lastProgress);
+        assertEquals(0, callback.minProgress);
+        assertEquals(FILE_SIZE, callback.maxProgress);
+        assertContent(new File(folder.getRoot(), "split.zip"));
+    }
+
+    @Test
+    public void restartsIfFileIsChangedBetweenSegments() throws Exception {
+        RangedDownloader downloader = newBuilder().maxSegments(4).build();
+        server.throttle(1024, 5);
+        //the first segment is resumed after the file is changed.
+        server.disconnect(1, 10 * 1024);
+        TestCallback callback = new TestCallback();
+        downloader.startDownload(1, request("split.zip", false), callback);
+        Thread.sleep(200);
+        byte[] changed = new byte[FILE_SIZE];
+        new Random(7).nextBytes(changed);
+        server.replaceContent(changed);
+        content = changed;
+        callback.await();
+
+        assertEquals(1, callback.completed);
+        assertEquals(FILE_SIZE, callback.lastProgress);
+        assertEquals(0, callback.minProgress);
+        //bytes of the old file are taken back instead of being added up.
+        assertEquals(FILE_SIZE, callback.maxProgress);
+        assertContent(new File(folder.getRoot(), "split.zip"));
+    }
+
+    @Test
+    public void restartedSessionIsNotRemovedByCanceledOne() throws Exception {
+        RangedDownloader downloader = newBuilder().maxSegments(1).build();
+        server.throttle(1024, 20);
+        TestCallback canceled = new TestCallback();
+        TestCallback restarted = new TestCallback();
+        downloader.startDownload(1, request("first.zip", true), canceled);
+        assertTrue(downloader.cancelDownloadSync(1));
+        downloader.startDownload(1, request("second.zip", true), restarted);
+        canceled.await();
+        assertEquals(1, canceled.canceled);
+        //callback is invoked before the canceled session is cleaned up.
+        Thread.sleep(200);
+
+        assertTrue(downloader.cancelDownloadSync(1));
+        restarted.await();
+        assertEquals(1, restarted.canceled);
+        Thread.sleep(200);
+        assertFalse(downloader.cancelDownloadSync(1));
+    }
+
+    @Test
+    public void deferredSessionWaitsForUnmeteredNetwork() throws Exception {
+        RangedDownloader downloader = newBuilder().build();
+        unmetered.set(false);
+        TestCallback callback = new TestCallback();
+        downloader.deferredDownload(1, request("split.zip", true), callback, false);
+        assertFalse(callback.done.await(500, TimeUnit.MILLISECONDS));
+        assertEquals(0, server.requests());
+
+        unmetered.set(true);
+        callback.await();
+        assertEquals(1, callback.completed);
+        assertContent(new File(folder.getRoot(), "split.zip"));
+    }
+
+    @Test
+    public void deferredSessionUsesMobileDataIfPermitted() throws Exception {
+        RangedDownloader downloader = newBuilder().build();
+        unmetered.set(false);
+        TestCallback callback = new TestCallback();
+        downloader.deferredDownload(1, request("split.zip", true), callback, true);
+        callback.await();
+        assertEquals(1, callback.completed);
+    }
+
+    @Test
+    public void canceledWhileWaitingForNetwork() throws Exception {
+        RangedDownloader downloader = newBuilder().build();
+        unmetered.set(false);
+        TestCallback callback = new TestCallback();
+        downloader.deferredDownload(1, request("split.zip", true), callback, false);
+        Thread.sleep(200);
+        assertTrue(downloader.cancelDownloadSync(1));
+        callback.await();
+        assertEquals(1, callback.canceled);
+        assertEquals(0, server.requests());
+    }
+
+    private RangedDownloader.Builder newBuilder() {
+        return new RangedDownloader.Builder(networkChecker)
+                .minSegmentSize(16 * 1024)
+                .maxRetries(3)
+                .connectTimeout(5000)
+                .readTimeout(5000);
+    }
+
+    private List<DownloadRequest> request(String fileName, boolean withMD5) throws Exception {
+        return Collections.singletonList(DownloadRequest.newBuilder()
+                .url(server.url())
+                .fileDir(folder.getRoot().getAbsolutePath())
+                .fileName(fileName)
+                .moduleName("split")
+                .fileMD5(withMD5 ? md5(content) : null)
+                .fileSize(FILE_SIZE)
+                .build());
+    }
+
+    private void assertContent(File file) throws IOException {
+        assertTrue(file.exists());
+        byte[] bytes = new byte[(int) file.length()];
+        InputStream is = new FileInputStream(file);
+        try {
+            int offset = 0;
+            int len;
+            while (offset < bytes.length && (len = is.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += len;
+            }
+        } finally {
+            is.close();
+        }
+        assertArrayEquals(content, bytes);
+    }
+
+    private static String md5(byte[] bytes) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("MD5").digest(bytes)) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+
+    private static final class TestCallback implements DownloadCallback {
+
+        final CountDownLatch done = new CountDownLatch(1);
+
+        volatile int completed;
+
+        volatile int canceled;
+
+        volatile int errorCode;
+
+        volatile long lastProgress;
+
+        volatile long minProgress;
+
+        volatile long maxProgress;
+
+        void await() throws InterruptedException {
+            assertTrue("Session is not finished", done.await(30, TimeUnit.SECONDS));
+        }
+
+        @Override
+        public void onStart() {
+
+        }
+
+        @Override
+        public void onCanceled() {
+            canceled++;
+            done.countDown();
+        }
+
+        @Override
+        public void onCanceling() {
+
+        }
+
+        @Override
+        public void onProgress(long currentBytes) {
+            lastProgress = currentBytes;
+            minProgress = Math.min(minProgress, currentBytes);
+            maxProgress = Math.max(maxProgress, currentBytes);
+        }
+
+        @Override
+        public void onCompleted() {
+            completed++;
+            done.countDown();
+        }
+
+        @Override
+        public void onError(int errorCode) {
+            this.errorCode = errorCode;
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.iqiyi.android.qigsaw.core.splitdownload;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A minimal HTTP server serving one file, which could ignore range requests, throttle responses,
+ * close connections in the middle of a response to simulate a broken network, and replace the file.
+ */
+final class TestHttpServer implements Closeable {
+
+    private volatile byte[] content;
+
+    private volatile String etag = "\"1\"";
+
+    private final ServerSocket serverSocket;
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+
+    private final AtomicLong servedBytes = new AtomicLong();
+
+    private final AtomicInteger disconnectsLeft = new AtomicInteger();
+
+    private volatile boolean rangeSupported = true;
+
+    private volatile long disconnectAfterBytes = -1;
+
+    private volatile int chunkSize = 8 * 1024;
+
+    private volatile long chunkDelayMs;
+
+    private volatile boolean closed;
+
+    TestHttpServer(byte[] content) throws IOException {
+        this.content = content;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        }, "test_http_server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/split.zip";
+    }
+
+    /**
+     * Close the next {@code count} connections after {@code bytes} bytes of content are sent.
+     */
+    void disconnect(int count, long bytes) {
+        disconnectsLeft.set(count);
+        disconnectAfterBytes = bytes;
+    }
+
+    void setRangeSupported(boolean rangeSupported) {
+        this.rangeSupported = rangeSupported;
+    }
+
+    /**
+     * Later requests get {@code content} with a new ETag, responses being sent keep the old one.
+     */
+    void replaceContent(byte[] content) {
+        this.content = content;
+        this.etag = "\"" + (Integer.parseInt(etag.substring(1, etag.length() - 1)) + 1) + "\"";
+    }
+
+    void throttle(int chunkSize, long chunkDelayMs) {
+        this.chunkSize = chunkSize;
+        this.chunkDelayMs = chunkDelayMs;
+    }
+
+    int requests() {
+        return requests.get();
+    }
+
+    int rangeRequests() {
+        return rangeRequests.get();
+    }
+
+    long servedBytes() {
+        return servedBytes.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        serve(socket);
+                    } catch (IOException ignored) {
+
+                    } finally {
+                        try {
+                            socket.close();
+                        } catch (IOException ignored) {
+
+                        }
+                    }
+                }
+            }, "test_http_connection");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+        String requestLine = reader.readLine();
+        if (requestLine == null) {
+            return;
+        }
+        requests.incrementAndGet();
+        byte[] content = this.content;
+        String etag = this.etag;
+        String range = null;
+        String ifRange = null;
+        String line;
+        while ((line = reader.readLine()) != null && line.length() > 0) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim();
+            if (name.equalsIgnoreCase("Range")) {
+                range = line.substring(colon + 1).trim();
+            } else if (name.equalsIgnoreCase("If-Range")) {
+                ifRange = line.substring(colon + 1).trim();
+            }
+        }
+        long first = 0;
+        long last = content.length - 1;
+        boolean partial = false;
+        //a changed file is sent as a whole.
+        if (range != null && rangeSupported && (ifRange == null || ifRange.equals(etag))) {
+            //bytes=first-[last]
+            rangeRequests.incrementAndGet();
+            String spec = range.substring("bytes=".length());
+            int dash = spec.indexOf('-');
+            first = Long.parseLong(spec.substring(0, dash));
+            if (dash < spec.length() - 1) {
+                last = Math.min(last, Long.parseLong(spec.substring(dash + 1)));
+            }
+            partial = true;
+        }
+        OutputStream os = socket.getOutputStream();
+        StringBuilder headers = new StringBuilder();
+        if (partial) {
+            headers.append("HTTP/1.1 206 Partial Content\r\n");
+            headers.append("Content-Range: bytes ").append(first).append('-').append(last).append('/').append(content.length).append("\r\n");
+        } else {
+            headers.append("HTTP/1.1 200 OK\r\n");
+        }
+        headers.append("ETag: ").append(etag).append("\r\n");
+        headers.append("Content-Length: ").append(last - first + 1).append("\r\n");
+        headers.append("Connection: close\r\n\r\n");
+        os.write(headers.toString().getBytes("ISO-8859-1"));
+        os.flush();
+        long limit = -1;
+        if (disconnectAfterBytes >= 0 && disconnectsLeft.getAndDecrement() > 0) {
+            limit = disconnectAfterBytes;
+        }
+        long sent = 0;
+        long offset = first;
+        while (offset <= last) {
+            int len = (int) Math.min(chunkSize, last - offset + 1);
+            if (limit >= 0 && sent + len > limit) {
+                len = (int) (limit - sent);
+                os.write(content, (int) offset, len);
+                os.flush();
+                servedBytes.addAndGet(len);
+                //close the connection in the middle of response.
+                return;
+            }
+            os.write(content, (int) offset, len);
+            os.flush();
+            servedBytes.addAndGet(len);
+            sent += len;
+            offset += len;
+            if (chunkDelayMs > 0) {
+                try {
+                    Thread.sleep(chunkDelayMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
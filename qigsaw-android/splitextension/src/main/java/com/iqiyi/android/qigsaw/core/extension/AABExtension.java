@@ -132,6 +132,15 @@ public class AABExtension {
         }
     }
 
+    public boolean hasSplitContentProviders(String splitName) {
+        List<ContentProviderProxy> providerProxies = sSplitContentProviderMap.get(splitName);
+        return providerProxies != null && !providerProxies.isEmpty();
+    }
+
+    public List<String> getSplitServices(String splitName) {
+        return Arrays.asList(ComponentInfoManager.getSplitServices(splitName));
+    }
+
     void put(String splitName, ContentProviderProxy providerProxy) {
         List<ContentProviderProxy> providerProxies = sSplitContentProviderMap.get(splitName);
         if (providerProxies == null) {
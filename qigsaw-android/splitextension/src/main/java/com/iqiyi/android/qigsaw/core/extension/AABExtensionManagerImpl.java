@@ -31,20 +31,23 @@ import android.text.TextUtils;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 final class AABExtensionManagerImpl implements AABExtensionManager {
 
+    private static Method sAttachMethod;
+
     private SplitComponentInfoProvider infoProvider;
 
-    private List<String> splitActivities;
+    private Set<String> splitActivities;
 
-    private List<String> splitServices;
+    private Set<String> splitServices;
 
-    private List<String> splitReceivers;
+    private Set<String> splitReceivers;
 
     private Map<String, List<String>> splitActivitiesMap;
 
@@ -81,9 +84,7 @@ final class AABExtensionManagerImpl implements AABExtensionManager {
         if (app != null) {
             Throwable error = null;
             try {
-                Method method = Application.class.getDeclaredMethod("attach", Context.class);
-                method.setAccessible(true);
-                method.invoke(app, appContext);
+                getAttachMethod().invoke(app, appContext);
             } catch (NoSuchMethodException e) {
                 error = e;
             } catch (IllegalAccessException e) {
@@ -97,6 +98,15 @@ final class AABExtensionManagerImpl implements AABExtensionManager {
         }
     }
 
+    private static synchronized Method getAttachMethod() throws NoSuchMethodException {
+        if (sAttachMethod == null) {
+            Method method = Application.class.getDeclaredMethod("attach", Context.class);
+            method.setAccessible(true);
+            sAttachMethod = method;
+        }
+        return sAttachMethod;
+    }
+
     @Override
     public Map<String, List<String>> getSplitActivitiesMap() {
         if (splitActivitiesMap == null) {
@@ -109,7 +119,7 @@ final class AABExtensionManagerImpl implements AABExtensionManager {
     public boolean isSplitActivity(String name) {
         if (splitActivities == null) {
             Collection<List<String>> values = getSplitActivitiesMap().values();
-            List<String> allSplitActivities = new ArrayList<>(0);
+            Set<String> allSplitActivities = new HashSet<>();
             if (!values.isEmpty()) {
                 for (List<String> activities : values) {
                     allSplitActivities.addAll(activities);
@@ -123,7 +133,7 @@ final class AABExtensionManagerImpl implements AABExtensionManager {
     @Override
     public boolean isSplitService(String name) {
         if (splitServices == null) {
-            splitServices = infoProvider.getSplitServices();
+            splitServices = new HashSet<>(infoProvider.getSplitServices());
         }
         return splitServices.contains(name);
     }
@@ -131,7 +141,7 @@ final class AABExtensionManagerImpl implements AABExtensionManager {
     @Override
     public boolean isSplitReceiver(String name) {
         if (splitReceivers == null) {
-            splitReceivers = infoProvider.getSplitReceivers();
+            splitReceivers = new HashSet<>(infoProvider.getSplitReceivers());
         }
         return splitReceivers.contains(name);
     }
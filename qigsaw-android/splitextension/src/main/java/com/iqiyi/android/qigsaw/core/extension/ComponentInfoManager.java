@@ -24,98 +24,61 @@
 
 package com.iqiyi.android.qigsaw.core.extension;
 
-import java.lang.reflect.Field;
+import androidx.annotation.NonNull;
 
 final class ComponentInfoManager {
 
     /**
-     * ComponentInfo is created by qigsaw-gradlew-plugin automatically.
+     * ComponentInfo is created by qigsaw-gradlew-plugin automatically, see {@link SplitComponentRegistry}.
      */
     private static final String CLASS_ComponentInfo = "com.iqiyi.android.qigsaw.core.extension.ComponentInfo";
 
-    private static final String ACTIVITIES_SUFFIX = "_ACTIVITIES";
+    private static volatile SplitComponentRegistry sRegistry;
 
-    private static final String SERVICES_SUFFIX = "_SERVICES";
-
-    private static final String RECEIVERS_SUFFIX = "_RECEIVERS";
-
-    private static final String APPLICATION_SUFFIX = "_APPLICATION";
-
-    private static Class getComponentInfoClass() throws ClassNotFoundException {
-        return Class.forName(CLASS_ComponentInfo);
+    @NonNull
+    static SplitComponentRegistry getRegistry() {
+        if (sRegistry == null) {
+            synchronized (ComponentInfoManager.class) {
+                if (sRegistry == null) {
+                    sRegistry = createRegistry();
+                }
+            }
+        }
+        return sRegistry;
     }
 
-    static String getSplitApplication(String splitName) {
-        String fieldName = splitName + APPLICATION_SUFFIX;
+    private static SplitComponentRegistry createRegistry() {
         try {
-            Field field = getComponentInfoClass().getField(fieldName);
-            field.setAccessible(true);
-            return (String) field.get(null);
-        } catch (NoSuchFieldException e) {
-            //
-        } catch (IllegalAccessException e) {
-            //
+            return (SplitComponentRegistry) Class.forName(CLASS_ComponentInfo).newInstance();
         } catch (ClassNotFoundException e) {
             e.printStackTrace();
+        } catch (InstantiationException e) {
+            e.printStackTrace();
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+        } catch (ClassCastException e) {
+            e.printStackTrace();
         }
-        return null;
+        //no split components.
+        return new SplitComponentRegistry() {
+
+        };
+    }
+
+    static String getSplitApplication(String splitName) {
+        return getRegistry().getSplitApplication(splitName);
     }
 
     static String[] getSplitActivities(String splitName) {
-        String fieldName = splitName + ACTIVITIES_SUFFIX;
-        try {
-            Field field = getComponentInfoClass().getField(fieldName);
-            field.setAccessible(true);
-            String result = (String) field.get(null);
-            if (result != null) {
-                return result.split(",");
-            }
-        } catch (NoSuchFieldException e) {
-            //
-        } catch (IllegalAccessException e) {
-            //
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-        }
-        return null;
+        return getRegistry().getSplitActivities(splitName);
     }
 
     static String[] getSplitServices(String splitName) {
-        String fieldName = splitName + SERVICES_SUFFIX;
-        try {
-            Field field = getComponentInfoClass().getField(fieldName);
-            field.setAccessible(true);
-            String result = (String) field.get(null);
-            if (result != null) {
-                return result.split(",");
-            }
-        } catch (NoSuchFieldException e) {
-            //
-        } catch (IllegalAccessException e) {
-            //
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-        }
-        return null;
+        return getRegistry().getSplitServices(splitName);
     }
 
     static String[] getSplitReceivers(String splitName) {
-        String fieldName = splitName + RECEIVERS_SUFFIX;
-        try {
-            Field field = getComponentInfoClass().getField(fieldName);
-            field.setAccessible(true);
-            String result = (String) field.get(null);
-            if (result != null) {
-                return result.split(",");
-            }
-        } catch (NoSuchFieldException e) {
-            //
-        } catch (IllegalAccessException e) {
-            //
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-        }
-        return null;
+        return getRegistry().getSplitReceivers(splitName);
     }
 
 }
@@ -43,7 +43,7 @@ final class SplitComponentInfoProvider {
 
     /**
      * Gets split's application name by split name.
-     * Qigsaw-Gradle-Plugin would write split application name in Class ComponentInfo.
+     * Qigsaw-Gradle-Plugin would register split application name in Class ComponentInfo.
      *
      * @param splitName name of split.
      * @return application name of split.
@@ -57,7 +57,7 @@ final class SplitComponentInfoProvider {
         Map<String, List<String>> splitActivitiesMap = new HashMap<>(0);
         for (String splitName : splitNames) {
             String[] result = ComponentInfoManager.getSplitActivities(splitName);
-            if (result != null && result.length > 0) {
+            if (result.length > 0) {
                 List<String> activities = new ArrayList<>();
                 Collections.addAll(activities, result);
                 splitActivitiesMap.put(splitName, activities);
@@ -71,7 +71,7 @@ final class SplitComponentInfoProvider {
         List<String> services = new ArrayList<>();
         for (String splitName : splitNames) {
             String[] result = ComponentInfoManager.getSplitServices(splitName);
-            if (result != null && result.length > 0) {
+            if (result.length > 0) {
                 Collections.addAll(services, result);
             }
         }
@@ -83,7 +83,7 @@ final class SplitComponentInfoProvider {
         List<String> receivers = new ArrayList<>();
         for (String splitName : splitNames) {
             String[] result = ComponentInfoManager.getSplitReceivers(splitName);
-            if (result != null && result.length > 0) {
+            if (result.length > 0) {
                 Collections.addAll(receivers, result);
             }
         }
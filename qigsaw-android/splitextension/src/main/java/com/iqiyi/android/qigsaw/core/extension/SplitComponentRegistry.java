@@ -0,0 +1,115 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.extension;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+
+/**
+ * Components of all splits, resolved from split manifests at build time.
+ * Qigsaw-Gradle-Plugin creates class ComponentInfo extending this class, whose constructor
+ * registers components of every split, so nothing is parsed or reflected at runtime.
+ */
+@RestrictTo(LIBRARY_GROUP)
+@Keep
+public abstract class SplitComponentRegistry {
+
+    private static final String[] EMPTY = new String[0];
+
+    private final Map<String, SplitComponents> splitComponentsMap = new HashMap<>();
+
+    protected final void register(String splitName,
+                                  String applicationName,
+                                  String[] activities,
+                                  String[] services,
+                                  String[] receivers,
+                                  String[] providers) {
+        splitComponentsMap.put(splitName, new SplitComponents(applicationName, activities, services, receivers, providers));
+    }
+
+    @NonNull
+    Set<String> getSplitNames() {
+        return splitComponentsMap.keySet();
+    }
+
+    @Nullable
+    String getSplitApplication(String splitName) {
+        SplitComponents components = splitComponentsMap.get(splitName);
+        return components != null ? components.applicationName : null;
+    }
+
+    @NonNull
+    String[] getSplitActivities(String splitName) {
+        SplitComponents components = splitComponentsMap.get(splitName);
+        return components != null ? components.activities : EMPTY;
+    }
+
+    @NonNull
+    String[] getSplitServices(String splitName) {
+        SplitComponents components = splitComponentsMap.get(splitName);
+        return components != null ? components.services : EMPTY;
+    }
+
+    @NonNull
+    String[] getSplitReceivers(String splitName) {
+        SplitComponents components = splitComponentsMap.get(splitName);
+        return components != null ? components.receivers : EMPTY;
+    }
+
+    @NonNull
+    String[] getSplitProviders(String splitName) {
+        SplitComponents components = splitComponentsMap.get(splitName);
+        return components != null ? components.providers : EMPTY;
+    }
+
+    private static final class SplitComponents {
+
+        final String applicationName;
+
+        final String[] activities;
+
+        final String[] services;
+
+        final String[] receivers;
+
+        final String[] providers;
+
+        SplitComponents(String applicationName, String[] activities, String[] services, String[] receivers, String[] providers) {
+            this.applicationName = applicationName;
+            this.activities = activities != null ? activities : EMPTY;
+            this.services = services != null ? services : EMPTY;
+            this.receivers = receivers != null ? receivers : EMPTY;
+            this.providers = providers != null ? providers : EMPTY;
+        }
+    }
+}
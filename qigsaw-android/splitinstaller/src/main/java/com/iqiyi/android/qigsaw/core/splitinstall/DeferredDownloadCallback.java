@@ -35,10 +35,17 @@ final class DeferredDownloadCallback implements DownloadCallback {
 
     private final List<SplitInfo> splitInfoList;
 
+    private final Runnable finishedCallback;
+
+    /**
+     * @param finishedCallback run after splits are installed, or download is failed or canceled.
+     */
     DeferredDownloadCallback(SplitInstaller splitInstaller,
-                             List<SplitInfo> splitInfoList) {
+                             List<SplitInfo> splitInfoList,
+                             Runnable finishedCallback) {
         this.splitInfoList = splitInfoList;
         this.splitInstaller = splitInstaller;
+        this.finishedCallback = finishedCallback;
     }
 
     @Override
@@ -48,7 +55,7 @@ final class DeferredDownloadCallback implements DownloadCallback {
 
     @Override
     public void onCanceled() {
-
+        finishedCallback.run();
     }
 
     @Override
@@ -63,11 +70,21 @@ final class DeferredDownloadCallback implements DownloadCallback {
 
     @Override
     public void onCompleted() {
-        SplitInstallerExecutor.getExecutor().execute(new SplitDeferredInstallTask(splitInstaller, splitInfoList));
+        final SplitDeferredInstallTask installTask = new SplitDeferredInstallTask(splitInstaller, splitInfoList);
+        SplitInstallerExecutor.getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    installTask.run();
+                } finally {
+                    finishedCallback.run();
+                }
+            }
+        });
     }
 
     @Override
     public void onError(int errorCode) {
-
+        finishedCallback.run();
     }
 }
@@ -52,7 +52,7 @@ public final class SplitApkInstaller {
         if (sSplitApkInstallerRef.get() == null) {
             sSplitApkInstallerRef.set(new SplitInstallSupervisorImpl(
                     context,
-                    new SplitInstallSessionManagerImpl(context),
+                    new SplitInstallSessionManagerImpl(),
                     downloader,
                     obtainUserConfirmationActivityClass,
                     verifySignature)
@@ -65,10 +65,17 @@ public final class SplitApkInstaller {
         return sSplitApkInstallerRef.get();
     }
 
-    public static void startUninstallSplits(Context context) {
+    public static void prepareMaintenance(Context context) {
         if (sSplitApkInstallerRef.get() == null) {
             throw new RuntimeException("Have you install SplitApkInstaller?");
         }
-        sSplitApkInstallerRef.get().startUninstall(context);
+        sSplitApkInstallerRef.get().prepareMaintenance(context);
+    }
+
+    public static void scheduleMaintenance() {
+        SplitInstallSupervisor supervisor = sSplitApkInstallerRef.get();
+        if (supervisor != null) {
+            supervisor.scheduleMaintenance();
+        }
     }
 }
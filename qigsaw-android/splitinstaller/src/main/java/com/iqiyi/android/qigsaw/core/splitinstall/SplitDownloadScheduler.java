@@ -0,0 +1,413 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitinstall;
+
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.splitdownload.DownloadCallback;
+import com.iqiyi.android.qigsaw.core.splitdownload.DownloadRequest;
+import com.iqiyi.android.qigsaw.core.splitdownload.Downloader;
+import com.iqiyi.android.qigsaw.core.splitdownload.ResumableDownloader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Schedule download sessions of {@link Downloader} by priority.
+ * User-blocking sessions start immediately up to a concurrency cap, background sessions run one at a time and
+ * only while no user-blocking session is waiting or running.
+ * <p>
+ * If downloader is a {@link ResumableDownloader}, a running background session is paused
+ * via {@link Downloader#cancelDownloadSync(int)} and queued again to resume later. Other downloaders
+ * would restart a paused session from byte 0, so their background sessions are left running
+ * and share bandwidth with user-blocking ones. The exception is a background session which becomes user-blocking
+ * itself, it is always restarted by {@link Downloader#startDownload}, because deferred transport may be waiting
+ * for unmetered network.
+ */
+final class SplitDownloadScheduler {
+
+    private static final String TAG = "Split:SplitDownloadScheduler";
+
+    /**
+     * Sessions started by {@code startInstall}, user is waiting for them.
+     */
+    static final int PRIORITY_USER_BLOCKING = 0;
+
+    /**
+     * Sessions started by {@code deferredInstall}.
+     */
+    static final int PRIORITY_DEFERRED = 1;
+
+    private static final int MAX_USER_BLOCKING_DOWNLOADS = 2;
+
+    private static final int MAX_BACKGROUND_DOWNLOADS = 1;
+
+    private final Downloader downloader;
+
+    private final boolean pausable;
+
+    private final Object lock = new Object();
+
+    private final List<Job> pendingJobs = new ArrayList<>();
+
+    private final Map<Integer, Job> runningJobs = new HashMap<>();
+
+    private long sequence;
+
+    SplitDownloadScheduler(Downloader downloader) {
+        this.downloader = downloader;
+        this.pausable = downloader instanceof ResumableDownloader;
+    }
+
+    /**
+     * Schedule a download session. If the same session is already scheduled, callback is attached to it,
+     * and its priority is raised if needed. Smaller sessions are preferred within the same priority.
+     */
+    void schedule(int sessionId,
+                  int priority,
+                  List<DownloadRequest> requests,
+                  boolean usingMobileDataPermitted,
+                  DownloadCallback callback) {
+        Job jobToPause = null;
+        synchronized (lock) {
+            Job job = findJob(sessionId);
+            if (job != null) {
+                SplitLog.i(TAG, "Session %d has been scheduled, attach to it", sessionId);
+                job.callbacks.add(callback);
+                if (priority < job.priority) {
+                    job.priority = priority;
+                    job.usingMobileDataPermitted |= usingMobileDataPermitted;
+                    if (job.state == Job.STATE_RUNNING && !job.userBlocking) {
+                        //restart it as an user-blocking session, from byte 0 if downloader is not resumable.
+                        job.state = Job.STATE_PAUSING;
+                        jobToPause = job;
+                    }
+                    Collections.sort(pendingJobs, JOB_COMPARATOR);
+                }
+            } else {
+                job = new Job(sessionId, priority, requests, getTotalFileSize(requests), usingMobileDataPermitted, sequence++);
+                job.callbacks.add(callback);
+                pendingJobs.add(job);
+                Collections.sort(pendingJobs, JOB_COMPARATOR);
+            }
+        }
+        if (jobToPause != null) {
+            pause(jobToPause);
+        }
+        scheduleNext();
+    }
+
+    /**
+     * Cancel a scheduled session.
+     *
+     * @return {@code true} if session is canceled or being canceled.
+     */
+    boolean cancel(int sessionId) {
+        Job canceledJob = null;
+        synchronized (lock) {
+            for (Job job : pendingJobs) {
+                if (job.sessionId == sessionId) {
+                    canceledJob = job;
+                    break;
+                }
+            }
+            if (canceledJob != null) {
+                pendingJobs.remove(canceledJob);
+                canceledJob.state = Job.STATE_FINISHED;
+            } else {
+                Job job = runningJobs.get(sessionId);
+                if (job == null) {
+                    return false;
+                }
+                job.canceled = true;
+            }
+        }
+        if (canceledJob != null) {
+            for (DownloadCallback callback : canceledJob.callbacks) {
+                callback.onCanceling();
+                callback.onCanceled();
+            }
+            return true;
+        }
+        return downloader.cancelDownloadSync(sessionId);
+    }
+
+    private static long getTotalFileSize(List<DownloadRequest> requests) {
+        long totalFileSize = 0;
+        for (DownloadRequest request : requests) {
+            totalFileSize += request.getFileSize();
+        }
+        return totalFileSize;
+    }
+
+    private Job findJob(int sessionId) {
+        Job job = runningJobs.get(sessionId);
+        if (job != null) {
+            return job;
+        }
+        for (Job pendingJob : pendingJobs) {
+            if (pendingJob.sessionId == sessionId) {
+                return pendingJob;
+            }
+        }
+        return null;
+    }
+
+    private void scheduleNext() {
+        List<Job> jobsToStart = new ArrayList<>(0);
+        List<Job> jobsToPause = new ArrayList<>(0);
+        synchronized (lock) {
+            int userBlockingCount = 0;
+            int backgroundCount = 0;
+            for (Job job : runningJobs.values()) {
+                if (job.userBlocking) {
+                    userBlockingCount++;
+                } else {
+                    backgroundCount++;
+                }
+            }
+            boolean userBlockingWaiting = false;
+            for (Job job : pendingJobs) {
+                if (job.priority != PRIORITY_USER_BLOCKING) {
+                    break;
+                }
+                userBlockingWaiting = true;
+                if (userBlockingCount < MAX_USER_BLOCKING_DOWNLOADS) {
+                    jobsToStart.add(job);
+                    userBlockingCount++;
+                }
+            }
+            if (userBlockingCount > 0 || userBlockingWaiting) {
+                //background downloads must not share bandwidth with user-blocking ones.
+                if (pausable) {
+                    for (Job job : runningJobs.values()) {
+                        if (!job.userBlocking && job.state == Job.STATE_RUNNING) {
+                            jobsToPause.add(job);
+                        }
+                    }
+                }
+            } else {
+                for (Job job : pendingJobs) {
+                    if (backgroundCount >= MAX_BACKGROUND_DOWNLOADS) {
+                        break;
+                    }
+                    jobsToStart.add(job);
+                    backgroundCount++;
+                }
+            }
+            for (Job job : jobsToStart) {
+                pendingJobs.remove(job);
+                job.state = Job.STATE_RUNNING;
+                job.userBlocking = job.priority == PRIORITY_USER_BLOCKING;
+                runningJobs.put(job.sessionId, job);
+            }
+            for (Job job : jobsToPause) {
+                job.state = Job.STATE_PAUSING;
+            }
+        }
+        for (Job job : jobsToPause) {
+            pause(job);
+        }
+        for (Job job : jobsToStart) {
+            start(job);
+        }
+    }
+
+    private void pause(Job job) {
+        SplitLog.i(TAG, "Pause session %d", job.sessionId);
+        if (!downloader.cancelDownloadSync(job.sessionId)) {
+            synchronized (lock) {
+                if (job.state == Job.STATE_PAUSING) {
+                    job.state = Job.STATE_RUNNING;
+                }
+            }
+        }
+    }
+
+    private void start(Job job) {
+        JobCallback callback = new JobCallback(job);
+        if (job.userBlocking) {
+            SplitLog.i(TAG, "Start session %d", job.sessionId);
+            downloader.startDownload(job.sessionId, job.requests, callback);
+        } else {
+            SplitLog.i(TAG, "Start background session %d with priority %d", job.sessionId, job.priority);
+            downloader.deferredDownload(job.sessionId, job.requests, callback, job.usingMobileDataPermitted);
+        }
+    }
+
+    /**
+     * @return {@code true} if job is paused and queued again.
+     */
+    private boolean onJobStopped(Job job, boolean canceled) {
+        synchronized (lock) {
+            if (runningJobs.get(job.sessionId) == job) {
+                runningJobs.remove(job.sessionId);
+            }
+            if (canceled && job.state == Job.STATE_PAUSING && !job.canceled) {
+                job.state = Job.STATE_PENDING;
+                pendingJobs.add(job);
+                Collections.sort(pendingJobs, JOB_COMPARATOR);
+                return true;
+            }
+            job.state = Job.STATE_FINISHED;
+            return false;
+        }
+    }
+
+    private final class JobCallback implements DownloadCallback {
+
+        private final Job job;
+
+        JobCallback(Job job) {
+            this.job = job;
+        }
+
+        private List<DownloadCallback> callbacks() {
+            synchronized (lock) {
+                return new ArrayList<>(job.callbacks);
+            }
+        }
+
+        private boolean isPausing() {
+            synchronized (lock) {
+                return job.state == Job.STATE_PAUSING && !job.canceled;
+            }
+        }
+
+        @Override
+        public void onStart() {
+            for (DownloadCallback callback : callbacks()) {
+                callback.onStart();
+            }
+        }
+
+        @Override
+        public void onCanceled() {
+            boolean paused = onJobStopped(job, true);
+            if (paused) {
+                SplitLog.i(TAG, "Session %d is paused", job.sessionId);
+            } else {
+                for (DownloadCallback callback : callbacks()) {
+                    callback.onCanceled();
+                }
+            }
+            scheduleNext();
+        }
+
+        @Override
+        public void onCanceling() {
+            if (!isPausing()) {
+                for (DownloadCallback callback : callbacks()) {
+                    callback.onCanceling();
+                }
+            }
+        }
+
+        @Override
+        public void onProgress(long currentBytes) {
+            for (DownloadCallback callback : callbacks()) {
+                callback.onProgress(currentBytes);
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            onJobStopped(job, false);
+            for (DownloadCallback callback : callbacks()) {
+                callback.onCompleted();
+            }
+            scheduleNext();
+        }
+
+        @Override
+        public void onError(int errorCode) {
+            onJobStopped(job, false);
+            for (DownloadCallback callback : callbacks()) {
+                callback.onError(errorCode);
+            }
+            scheduleNext();
+        }
+    }
+
+    private static final Comparator<Job> JOB_COMPARATOR = new Comparator<Job>() {
+        @Override
+        public int compare(Job o1, Job o2) {
+            if (o1.priority != o2.priority) {
+                return o1.priority < o2.priority ? -1 : 1;
+            }
+            if (o1.totalBytes != o2.totalBytes) {
+                return o1.totalBytes < o2.totalBytes ? -1 : 1;
+            }
+            return o1.sequence < o2.sequence ? -1 : (o1.sequence == o2.sequence ? 0 : 1);
+        }
+    };
+
+    private static final class Job {
+
+        static final int STATE_PENDING = 0;
+
+        static final int STATE_RUNNING = 1;
+
+        static final int STATE_PAUSING = 2;
+
+        static final int STATE_FINISHED = 3;
+
+        final int sessionId;
+
+        final List<DownloadRequest> requests;
+
+        final long totalBytes;
+
+        final long sequence;
+
+        final List<DownloadCallback> callbacks = new ArrayList<>(1);
+
+        int priority;
+
+        boolean usingMobileDataPermitted;
+
+        int state = STATE_PENDING;
+
+        /**
+         * Whether it is running by {@link Downloader#startDownload}.
+         */
+        boolean userBlocking;
+
+        boolean canceled;
+
+        Job(int sessionId, int priority, List<DownloadRequest> requests,
+            long totalBytes, boolean usingMobileDataPermitted, long sequence) {
+            this.sessionId = sessionId;
+            this.priority = priority;
+            this.requests = requests;
+            this.totalBytes = totalBytes;
+            this.usingMobileDataPermitted = usingMobileDataPermitted;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -57,14 +57,28 @@ final class SplitInstallInternalSessionState {
 
     final List<DownloadRequest> downloadRequests;
 
+    /**
+     * Splits which are being downloaded by earlier sessions, they are not in {@link #downloadRequests}.
+     */
+    final List<SplitInfo> sharedSplits;
+
+    /**
+     * Earlier sessions downloading {@link #sharedSplits}, this session installs its splits after they are finished.
+     */
+    final List<Integer> sharedSessionIds;
+
     SplitInstallInternalSessionState(int sessionId,
                                      List<String> moduleNames,
                                      List<SplitInfo> needInstalledSplits,
-                                     List<DownloadRequest> downloadRequests) {
+                                     List<DownloadRequest> downloadRequests,
+                                     List<SplitInfo> sharedSplits,
+                                     List<Integer> sharedSessionIds) {
         this.sessionId = sessionId;
         this.moduleNames = moduleNames;
         this.needInstalledSplits = needInstalledSplits;
         this.downloadRequests = downloadRequests;
+        this.sharedSplits = sharedSplits;
+        this.sharedSessionIds = sharedSessionIds;
     }
 
     List<String> moduleNames() {
@@ -77,6 +91,10 @@ final class SplitInstallInternalSessionState {
         }
     }
 
+    long totalBytesToDownload() {
+        return totalBytesToDownload;
+    }
+
     void setTotalBytesToDownload(long totalBytesToDownload) {
         this.totalBytesToDownload = totalBytesToDownload;
     }
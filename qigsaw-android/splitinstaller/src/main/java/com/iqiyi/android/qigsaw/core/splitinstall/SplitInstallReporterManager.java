@@ -28,6 +28,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
+import com.iqiyi.android.qigsaw.core.splitreport.AsyncSplitInstallReporter;
 import com.iqiyi.android.qigsaw.core.splitreport.SplitInstallReporter;
 
 import java.util.concurrent.atomic.AtomicReference;
@@ -40,7 +41,7 @@ public class SplitInstallReporterManager {
     private static final AtomicReference<SplitInstallReporter> sInstallReporterRef = new AtomicReference<>();
 
     public static void install(@NonNull SplitInstallReporter installReporter) {
-        sInstallReporterRef.compareAndSet(null, installReporter);
+        sInstallReporterRef.compareAndSet(null, new AsyncSplitInstallReporter(installReporter));
     }
 
     @Nullable
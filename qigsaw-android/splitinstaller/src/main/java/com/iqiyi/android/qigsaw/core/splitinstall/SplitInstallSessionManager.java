@@ -24,6 +24,9 @@
 
 package com.iqiyi.android.qigsaw.core.splitinstall;
 
+import com.iqiyi.android.qigsaw.core.splitinstall.protocol.ISplitInstallSessionListener;
+
+import java.util.Collection;
 import java.util.List;
 
 interface SplitInstallSessionManager {
@@ -34,14 +37,37 @@ interface SplitInstallSessionManager {
 
     void removeSessionState(int sessionId);
 
-    boolean isActiveSessionsLimitExceeded();
-
     SplitInstallInternalSessionState getSessionState(int sessionId);
 
     List<SplitInstallInternalSessionState> getSessionStates();
 
-    boolean isIncompatibleWithExistingSession(List<String> moduleNames);
+    /**
+     * @return an active session which installs all of given splits and is not being canceled, or {@code null}.
+     */
+    SplitInstallInternalSessionState getSessionCoveringSplits(Collection<String> splitNames);
+
+    /**
+     * @return active sessions which install any of given splits.
+     */
+    List<SplitInstallInternalSessionState> getSessionsOverlappingSplits(Collection<String> splitNames);
+
+    /**
+     * Notify listener once all given sessions are finished, immediately if none of them is active.
+     */
+    void awaitSessions(Collection<Integer> sessionIds, OnSessionsFinishedListener listener);
 
     void emitSessionState(SplitInstallInternalSessionState sessionState);
 
+    void registerSessionListener(ISplitInstallSessionListener listener);
+
+    void unregisterSessionListener(ISplitInstallSessionListener listener);
+
+    interface OnSessionsFinishedListener {
+
+        /**
+         * @param allInstalled {@code true} if all awaited sessions have installed their splits.
+         */
+        void onSessionsFinished(boolean allInstalled);
+    }
+
 }
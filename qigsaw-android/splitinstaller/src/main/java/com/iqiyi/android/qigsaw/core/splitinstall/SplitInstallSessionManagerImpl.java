@@ -24,29 +24,28 @@
 
 package com.iqiyi.android.qigsaw.core.splitinstall;
 
-import android.content.Context;
-import android.content.Intent;
-import android.os.Bundle;
 import android.util.SparseArray;
 
+import com.iqiyi.android.qigsaw.core.splitinstall.protocol.ISplitInstallSessionListener;
+import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfo;
+
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 final class SplitInstallSessionManagerImpl implements SplitInstallSessionManager {
 
     private final SparseArray<SplitInstallInternalSessionState> mActiveSessionStates = new SparseArray<>();
 
-    private final Context mContext;
+    private final List<SessionsWaiter> mSessionsWaiters = new ArrayList<>();
 
-    private final String mPackageName;
+    private final SplitSessionStateDispatcher mDispatcher = new SplitSessionStateDispatcher();
 
     private final Object mLock = new Object();
 
-    SplitInstallSessionManagerImpl(Context context) {
-        this.mContext = context;
-        this.mPackageName = context.getPackageName();
-    }
-
     @Override
     public void setSessionState(int sessionId, SplitInstallInternalSessionState sessionState) {
         synchronized (mLock) {
@@ -60,6 +59,7 @@ final class SplitInstallSessionManagerImpl implements SplitInstallSessionManager
 
     @Override
     public void changeSessionState(int sessionId, int status) {
+        List<SessionsWaiter> finishedWaiters = null;
         synchronized (mLock) {
             SplitInstallInternalSessionState sessionState = mActiveSessionStates.get(sessionId);
             if (sessionState != null) {
@@ -68,9 +68,15 @@ final class SplitInstallSessionManagerImpl implements SplitInstallSessionManager
                         || status == SplitInstallInternalSessionStatus.FAILED
                         || status == SplitInstallInternalSessionStatus.POST_INSTALLED) {
                     removeSessionState(sessionId);
+                    finishedWaiters = onSessionFinished(sessionId, status == SplitInstallInternalSessionStatus.POST_INSTALLED);
                 }
             }
         }
+        if (finishedWaiters != null) {
+            for (SessionsWaiter waiter : finishedWaiters) {
+                waiter.listener.onSessionsFinished(waiter.allInstalled);
+            }
+        }
     }
 
     @Override
@@ -83,61 +89,111 @@ final class SplitInstallSessionManagerImpl implements SplitInstallSessionManager
     }
 
     @Override
-    public boolean isActiveSessionsLimitExceeded() {
+    public SplitInstallInternalSessionState getSessionState(int sessionId) {
         synchronized (mLock) {
-            for (int i = 0; i < mActiveSessionStates.size(); i++) {
-                SplitInstallInternalSessionState state = mActiveSessionStates.valueAt(i);
-                if (state.status() == SplitInstallInternalSessionStatus.DOWNLOADING) {
-                    return true;
-                }
-            }
-            return false;
+            return mActiveSessionStates.get(sessionId);
         }
     }
 
     @Override
-    public SplitInstallInternalSessionState getSessionState(int sessionId) {
+    public List<SplitInstallInternalSessionState> getSessionStates() {
         synchronized (mLock) {
-            return mActiveSessionStates.get(sessionId);
+            return asList(mActiveSessionStates);
         }
     }
 
     @Override
-    public List<SplitInstallInternalSessionState> getSessionStates() {
+    public SplitInstallInternalSessionState getSessionCoveringSplits(Collection<String> splitNames) {
         synchronized (mLock) {
-            return asList(mActiveSessionStates);
+            for (int i = 0; i < mActiveSessionStates.size(); i++) {
+                SplitInstallInternalSessionState sessionState = mActiveSessionStates.valueAt(i);
+                if (sessionState.status() != SplitInstallInternalSessionStatus.CANCELING
+                        && getSplitNames(sessionState).containsAll(splitNames)) {
+                    return sessionState;
+                }
+            }
+            return null;
         }
     }
 
     @Override
-    public boolean isIncompatibleWithExistingSession(List<String> moduleNames) {
+    public List<SplitInstallInternalSessionState> getSessionsOverlappingSplits(Collection<String> splitNames) {
         synchronized (mLock) {
-            boolean incompatibleWithExistingSession = false;
-            List<SplitInstallInternalSessionState> sessionStates = getSessionStates();
-            for (int i = 0; i < sessionStates.size(); i++) {
-                SplitInstallInternalSessionState sessionState = sessionStates.get(i);
-                for (String moduleName : moduleNames) {
-                    if (sessionState.moduleNames().contains(moduleName)) {
-                        incompatibleWithExistingSession = true;
-                        break;
-                    }
-                    if (incompatibleWithExistingSession) {
+            List<SplitInstallInternalSessionState> sessionStates = new ArrayList<>(0);
+            for (int i = 0; i < mActiveSessionStates.size(); i++) {
+                SplitInstallInternalSessionState sessionState = mActiveSessionStates.valueAt(i);
+                Set<String> sessionSplitNames = getSplitNames(sessionState);
+                for (String splitName : splitNames) {
+                    if (sessionSplitNames.contains(splitName)) {
+                        sessionStates.add(sessionState);
                         break;
                     }
                 }
             }
-            return incompatibleWithExistingSession;
+            return sessionStates;
+        }
+    }
+
+    @Override
+    public void awaitSessions(Collection<Integer> sessionIds, OnSessionsFinishedListener listener) {
+        SessionsWaiter waiter = new SessionsWaiter(listener);
+        synchronized (mLock) {
+            for (Integer sessionId : sessionIds) {
+                if (mActiveSessionStates.get(sessionId) != null) {
+                    waiter.pendingSessionIds.add(sessionId);
+                } else {
+                    //result of a finished session is unknown, let the caller check its splits.
+                    waiter.allInstalled = false;
+                }
+            }
+            if (!waiter.pendingSessionIds.isEmpty()) {
+                mSessionsWaiters.add(waiter);
+                return;
+            }
         }
+        listener.onSessionsFinished(waiter.allInstalled);
     }
 
     @Override
     public void emitSessionState(SplitInstallInternalSessionState sessionState) {
-        Bundle bundle = SplitInstallInternalSessionState.transform2Bundle(sessionState);
-        Intent intent = new Intent();
-        intent.putExtra("session_state", bundle);
-        intent.setPackage(mPackageName);
-        intent.setAction("com.iqiyi.android.play.core.splitinstall.receiver.SplitInstallUpdateIntentService");
-        mContext.sendBroadcast(intent);
+        mDispatcher.dispatch(sessionState);
+    }
+
+    @Override
+    public void registerSessionListener(ISplitInstallSessionListener listener) {
+        mDispatcher.registerListener(listener);
+    }
+
+    @Override
+    public void unregisterSessionListener(ISplitInstallSessionListener listener) {
+        mDispatcher.unregisterListener(listener);
+    }
+
+    private List<SessionsWaiter> onSessionFinished(int sessionId, boolean installed) {
+        List<SessionsWaiter> finishedWaiters = null;
+        Iterator<SessionsWaiter> iterator = mSessionsWaiters.iterator();
+        while (iterator.hasNext()) {
+            SessionsWaiter waiter = iterator.next();
+            if (waiter.pendingSessionIds.remove(sessionId)) {
+                waiter.allInstalled &= installed;
+                if (waiter.pendingSessionIds.isEmpty()) {
+                    iterator.remove();
+                    if (finishedWaiters == null) {
+                        finishedWaiters = new ArrayList<>(1);
+                    }
+                    finishedWaiters.add(waiter);
+                }
+            }
+        }
+        return finishedWaiters;
+    }
+
+    private static Set<String> getSplitNames(SplitInstallInternalSessionState sessionState) {
+        Set<String> splitNames = new HashSet<>(sessionState.needInstalledSplits.size());
+        for (SplitInfo info : sessionState.needInstalledSplits) {
+            splitNames.add(info.getSplitName());
+        }
+        return splitNames;
     }
 
     private static <C> List<C> asList(SparseArray<C> sparseArray) {
@@ -147,4 +203,17 @@ final class SplitInstallSessionManagerImpl implements SplitInstallSessionManager
         }
         return arrayList;
     }
+
+    private static final class SessionsWaiter {
+
+        final Set<Integer> pendingSessionIds = new HashSet<>();
+
+        final OnSessionsFinishedListener listener;
+
+        boolean allInstalled = true;
+
+        SessionsWaiter(OnSessionsFinishedListener listener) {
+            this.listener = listener;
+        }
+    }
 }
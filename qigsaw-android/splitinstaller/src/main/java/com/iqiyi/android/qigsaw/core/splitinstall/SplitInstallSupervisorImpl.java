@@ -38,6 +38,7 @@ import com.iqiyi.android.qigsaw.core.common.SplitBaseInfoProvider;
 import com.iqiyi.android.qigsaw.core.common.SplitConstants;
 import com.iqiyi.android.qigsaw.core.common.SplitAABInfoProvider;
 import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.splitdownload.DownloadCallback;
 import com.iqiyi.android.qigsaw.core.splitdownload.DownloadRequest;
 import com.iqiyi.android.qigsaw.core.splitdownload.Downloader;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfo;
@@ -45,6 +46,7 @@ import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfoManager;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfoManagerService;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitPathManager;
 import com.iqiyi.android.qigsaw.core.splitinstall.remote.SplitInstallSupervisor;
+import com.iqiyi.android.qigsaw.core.splitinstall.protocol.ISplitInstallSessionListener;
 
 import java.io.File;
 import java.io.IOException;
@@ -52,8 +54,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 final class SplitInstallSupervisorImpl extends SplitInstallSupervisor {
@@ -66,6 +70,8 @@ final class SplitInstallSupervisorImpl extends SplitInstallSupervisor {
 
     private final Downloader userDownloader;
 
+    private final SplitDownloadScheduler downloadScheduler;
+
     private final long downloadSizeThresholdValue;
 
     private final Set<String> installedSplitForAAB;
@@ -78,6 +84,23 @@ final class SplitInstallSupervisorImpl extends SplitInstallSupervisor {
 
     private final List<String> dynamicFeatures;
 
+    /**
+     * Sessions whose splits are being preprocessed before downloading.
+     */
+    private final Set<Integer> preprocessingSessionIds = new HashSet<>();
+
+    /**
+     * Sessions which have downloaded their own splits and wait for sessions sharing splits with them,
+     * they have nothing scheduled to download. Guarded by {@link #preprocessingSessionIds}.
+     */
+    private final Set<Integer> awaitingSessionIds = new HashSet<>();
+
+    /**
+     * Splits of deferred installations being downloaded or installed, they have no session state.
+     * Values are counts of deferred installations of each split.
+     */
+    private final Map<String, Integer> deferredInstallingSplits = new HashMap<>();
+
     SplitInstallSupervisorImpl(Context appContext,
                                SplitInstallSessionManager sessionManager,
                                Downloader userDownloader,
@@ -86,6 +109,7 @@ final class SplitInstallSupervisorImpl extends SplitInstallSupervisor {
         this.appContext = appContext;
         this.sessionManager = sessionManager;
         this.userDownloader = userDownloader;
+        this.downloadScheduler = new SplitDownloadScheduler(userDownloader);
         long downloadSizeThreshold = userDownloader.getDownloadSizeThresholdWhenUsingMobileData();
         this.downloadSizeThresholdValue = downloadSizeThreshold < 0 ? Long.MAX_VALUE : downloadSizeThreshold;
         this.installedSplitForAAB = new SplitAABInfoProvider(this.appContext).getInstalledSplitsForAAB();
@@ -172,7 +196,17 @@ final class SplitInstallSupervisorImpl extends SplitInstallSupervisor {
         }
         if (sessionState.status() == SplitInstallInternalSessionStatus.PENDING
                 || sessionState.status() == SplitInstallInternalSessionStatus.DOWNLOADING) {
-            boolean ret = userDownloader.cancelDownloadSync(sessionId);
+            boolean ret;
+            synchronized (preprocessingSessionIds) {
+                if (preprocessingSessionIds.remove(sessionId) || awaitingSessionIds.remove(sessionId)) {
+                    //splits are still being preprocessed or shared splits are awaited, nothing is scheduled to download.
+                    sessionManager.changeSessionState(sessionId, SplitInstallInternalSessionStatus.CANCELED);
+                    sessionManager.emitSessionState(sessionState);
+                    ret = true;
+                } else {
+                    ret = downloadScheduler.cancel(sessionId);
+                }
+            }
             SplitLog.d(TAG, "result of cancel request : " + ret);
             if (ret) {
                 callback.onCancelInstall(sessionId, null);
@@ -208,15 +242,35 @@ final class SplitInstallSupervisorImpl extends SplitInstallSupervisor {
         }
     }
 
+    @Override
+    protected boolean isSplitInstalling(String splitName) {
+        if (!sessionManager.getSessionsOverlappingSplits(Collections.singletonList(splitName)).isEmpty()) {
+            return true;
+        }
+        synchronized (deferredInstallingSplits) {
+            return deferredInstallingSplits.containsKey(splitName);
+        }
+    }
+
+    @Override
+    public void registerSessionListener(ISplitInstallSessionListener listener) {
+        sessionManager.registerSessionListener(listener);
+    }
+
+    @Override
+    public void unregisterSessionListener(ISplitInstallSessionListener listener) {
+        sessionManager.unregisterSessionListener(listener);
+    }
+
     @Override
     public boolean continueInstallWithUserConfirmation(int sessionId) {
         SplitInstallInternalSessionState sessionState = sessionManager.getSessionState(sessionId);
         if (sessionState != null) {
-            StartDownloadCallback downloadCallback = new StartDownloadCallback(
-                    splitInstaller, sessionId, sessionManager, sessionState.needInstalledSplits);
+            DownloadCallback downloadCallback = createStartDownloadCallback(sessionState);
             sessionManager.changeSessionState(sessionId, SplitInstallInternalSessionStatus.PENDING);
             sessionManager.emitSessionState(sessionState);
-            userDownloader.startDownload(sessionState.sessionId(), sessionState.downloadRequests, downloadCallback);
+            downloadScheduler.schedule(sessionState.sessionId(), SplitDownloadScheduler.PRIORITY_USER_BLOCKING,
+                    sessionState.downloadRequests, true, downloadCallback);
             return true;
         }
         return false;
@@ -318,61 +372,156 @@ final class SplitInstallSupervisorImpl extends SplitInstallSupervisor {
     }
 
     private void deferredDownloadSplits(final List<SplitInfo> needInstallSplits, final Callback callback) {
+        final List<String> needInstallSplitNames = getSplitNames(needInstallSplits);
+        markDeferredInstalling(needInstallSplitNames);
         try {
             long[] result = onPreDownloadSplits(needInstallSplits);
             callback.onDeferredInstall(null);
             long realTotalBytesNeedToDownload = result[1];
             int sessionId = createSessionId(needInstallSplits);
             SplitLog.d(TAG, "DeferredInstall session id: " + sessionId);
-            DeferredDownloadCallback downloadCallback = new DeferredDownloadCallback(splitInstaller, needInstallSplits);
+            DeferredDownloadCallback downloadCallback = new DeferredDownloadCallback(splitInstaller, needInstallSplits, new Runnable() {
+                @Override
+                public void run() {
+                    unmarkDeferredInstalling(needInstallSplitNames);
+                }
+            });
             if (realTotalBytesNeedToDownload == 0) {
                 SplitLog.d(TAG, "Splits have been downloaded, install them directly!");
                 downloadCallback.onCompleted();
             } else {
                 boolean usingMobileDataPermitted = realTotalBytesNeedToDownload < downloadSizeThresholdValue && !userDownloader.isDeferredDownloadOnlyWhenUsingWifiData();
-                userDownloader.deferredDownload(sessionId, createDownloadRequests(needInstallSplits), downloadCallback, usingMobileDataPermitted);
+                downloadScheduler.schedule(sessionId, SplitDownloadScheduler.PRIORITY_DEFERRED,
+                        createDownloadRequests(needInstallSplits), usingMobileDataPermitted, downloadCallback);
             }
         } catch (IOException e) {
+            unmarkDeferredInstalling(needInstallSplitNames);
             callback.onError(bundleErrorCode(SplitInstallInternalErrorCode.BUILTIN_SPLIT_APK_COPIED_FAILED));
             SplitLog.printErrStackTrace(TAG, e, "Failed to copy builtin split apks(%s)", "onDeferredInstall");
         }
     }
 
+    private void markDeferredInstalling(List<String> splitNames) {
+        synchronized (deferredInstallingSplits) {
+            for (String splitName : splitNames) {
+                Integer count = deferredInstallingSplits.get(splitName);
+                deferredInstallingSplits.put(splitName, count == null ? 1 : count + 1);
+            }
+        }
+    }
+
+    private void unmarkDeferredInstalling(List<String> splitNames) {
+        synchronized (deferredInstallingSplits) {
+            for (String splitName : splitNames) {
+                Integer count = deferredInstallingSplits.get(splitName);
+                if (count == null || count <= 1) {
+                    deferredInstallingSplits.remove(splitName);
+                } else {
+                    deferredInstallingSplits.put(splitName, count - 1);
+                }
+            }
+        }
+    }
+
     private void startDownloadSplits(final List<String> moduleNames,
                                      final List<SplitInfo> needInstallSplits,
                                      final Callback callback) {
-        if (sessionManager.isActiveSessionsLimitExceeded()) {
-            SplitLog.w(TAG, "Start install request error code: ACTIVE_SESSIONS_LIMIT_EXCEEDED");
-            callback.onError(bundleErrorCode(SplitInstallInternalErrorCode.ACTIVE_SESSIONS_LIMIT_EXCEEDED));
+        List<String> needInstallSplitNames = getSplitNames(needInstallSplits);
+        SplitInstallInternalSessionState coveringSession = sessionManager.getSessionCoveringSplits(needInstallSplitNames);
+        if (coveringSession != null) {
+            //attach to the in-flight session, its downloads and install results are shared.
+            SplitLog.i(TAG, "Splits %s are being installed by session %d, attach to it!", needInstallSplitNames.toString(), coveringSession.sessionId());
+            callback.onStartInstall(coveringSession.sessionId(), null);
+            sessionManager.emitSessionState(coveringSession);
             return;
         }
         int sessionId = createSessionId(needInstallSplits);
-        SplitInstallInternalSessionState sessionState = sessionManager.getSessionState(sessionId);
-        boolean needUserConfirmation = (sessionState != null && sessionState.status() == SplitInstallInternalSessionStatus.REQUIRES_USER_CONFIRMATION);
-        if (!needUserConfirmation && sessionManager.isIncompatibleWithExistingSession(moduleNames)) {
+        if (sessionManager.getSessionState(sessionId) != null) {
+            //same session is still being canceled.
             SplitLog.w(TAG, "Start install request error code: INCOMPATIBLE_WITH_EXISTING_SESSION");
             callback.onError(bundleErrorCode(SplitInstallInternalErrorCode.INCOMPATIBLE_WITH_EXISTING_SESSION));
             return;
         }
+        //splits being downloaded by other sessions are not downloaded again.
+        List<Integer> sharedSessionIds = new ArrayList<>(0);
+        Set<String> sharedSplitNames = new HashSet<>(0);
+        for (SplitInstallInternalSessionState overlappingSession : sessionManager.getSessionsOverlappingSplits(needInstallSplitNames)) {
+            sharedSessionIds.add(overlappingSession.sessionId());
+            sharedSplitNames.addAll(getSplitNames(overlappingSession.needInstalledSplits));
+        }
+        final List<SplitInfo> ownSplits = new ArrayList<>(needInstallSplits.size());
+        List<SplitInfo> sharedSplits = new ArrayList<>(0);
+        for (SplitInfo info : needInstallSplits) {
+            if (sharedSplitNames.contains(info.getSplitName())) {
+                sharedSplits.add(info);
+            } else {
+                ownSplits.add(info);
+            }
+        }
         SplitLog.d(TAG, "startInstall session id: " + sessionId);
+        final List<DownloadRequest> downloadRequests;
         try {
-            List<DownloadRequest> downloadRequests = createDownloadRequests(needInstallSplits);
-            if (sessionState == null) {
-                sessionState = new SplitInstallInternalSessionState(sessionId, moduleNames, needInstallSplits, downloadRequests);
+            downloadRequests = createDownloadRequests(ownSplits);
+        } catch (IOException e) {
+            SplitLog.w(TAG, "Failed to create download requests", e);
+            callback.onError(bundleErrorCode(SplitInstallInternalErrorCode.BUILTIN_SPLIT_APK_COPIED_FAILED));
+            return;
+        }
+        final SplitInstallInternalSessionState sessionState = new SplitInstallInternalSessionState(
+                sessionId, moduleNames, needInstallSplits, downloadRequests, sharedSplits, sharedSessionIds);
+        if (!sharedSessionIds.isEmpty()) {
+            SplitLog.i(TAG, "Session %d shares splits %s with sessions %s", sessionId, getSplitNames(sharedSplits).toString(), sharedSessionIds.toString());
+        }
+        sessionManager.setSessionState(sessionId, sessionState);
+        synchronized (preprocessingSessionIds) {
+            preprocessingSessionIds.add(sessionId);
+        }
+        //return session id at once, splits are preprocessed as the first stage of session.
+        callback.onStartInstall(sessionId, null);
+        sessionManager.changeSessionState(sessionId, SplitInstallInternalSessionStatus.PENDING);
+        sessionManager.emitSessionState(sessionState);
+        SplitInstallerExecutor.getPreprocessExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                preprocessSplits(sessionState, ownSplits, downloadRequests);
             }
+        });
+    }
+
+    /**
+     * Copy built-in splits and check downloaded splits of a pending session, then download the rest.
+     */
+    private void preprocessSplits(SplitInstallInternalSessionState sessionState,
+                                  List<SplitInfo> ownSplits,
+                                  List<DownloadRequest> downloadRequests) {
+        int sessionId = sessionState.sessionId();
+        long[] result = null;
+        try {
             //1.copy built-in apk if need
             //2.check signature
-            //3.create list of download request
-            long[] result = onPreDownloadSplits(needInstallSplits);
-            //wait util builtin splits are copied completely.
-            callback.onStartInstall(sessionId, null);
-            sessionManager.setSessionState(sessionId, sessionState);
-            //calculate bytes to download
+            //3.calculate bytes to download
+            result = onPreDownloadSplits(ownSplits);
+        } catch (IOException e) {
+            //copy local split file failed!
+            SplitLog.w(TAG, "Failed to copy internal splits", e);
+        }
+        //session can't be canceled between preprocessing and scheduling download.
+        synchronized (preprocessingSessionIds) {
+            if (!preprocessingSessionIds.remove(sessionId)) {
+                SplitLog.i(TAG, "Session %d has been canceled while its splits are preprocessed", sessionId);
+                return;
+            }
+            if (result == null) {
+                sessionState.setErrorCode(SplitInstallInternalErrorCode.BUILTIN_SPLIT_APK_COPIED_FAILED);
+                sessionManager.changeSessionState(sessionId, SplitInstallInternalSessionStatus.FAILED);
+                sessionManager.emitSessionState(sessionState);
+                return;
+            }
             long totalBytesToDownload = result[0];
             long realTotalBytesNeedToDownload = result[1];
             SplitLog.d(TAG, "totalBytesToDownload: %d, realTotalBytesNeedToDownload: %d ", totalBytesToDownload, realTotalBytesNeedToDownload);
             sessionState.setTotalBytesToDownload(totalBytesToDownload);
-            StartDownloadCallback downloadCallback = new StartDownloadCallback(splitInstaller, sessionId, sessionManager, needInstallSplits);
+            DownloadCallback downloadCallback = createStartDownloadCallback(sessionState);
             if (realTotalBytesNeedToDownload <= 0) {
                 SplitLog.d(TAG, "Splits have been downloaded, install them directly!");
                 downloadCallback.onCompleted();
@@ -383,17 +532,21 @@ final class SplitInstallSupervisorImpl extends SplitInstallSupervisor {
                         return;
                     }
                 }
-                sessionManager.changeSessionState(sessionId, SplitInstallInternalSessionStatus.PENDING);
-                sessionManager.emitSessionState(sessionState);
-                userDownloader.startDownload(sessionId, downloadRequests, downloadCallback);
+                downloadScheduler.schedule(sessionId, SplitDownloadScheduler.PRIORITY_USER_BLOCKING,
+                        downloadRequests, true, downloadCallback);
             }
-        } catch (IOException e) {
-            //copy local split file failed!
-            SplitLog.w(TAG, "Failed to copy internal splits", e);
-            callback.onError(bundleErrorCode(SplitInstallInternalErrorCode.BUILTIN_SPLIT_APK_COPIED_FAILED));
         }
     }
 
+    private DownloadCallback createStartDownloadCallback(SplitInstallInternalSessionState sessionState) {
+        StartDownloadCallback downloadCallback = new StartDownloadCallback(
+                splitInstaller, sessionState.sessionId(), sessionManager, sessionState.needInstalledSplits);
+        if (sessionState.sharedSessionIds.isEmpty()) {
+            return downloadCallback;
+        }
+        return new SharedSplitsDownloadCallback(sessionState, downloadCallback);
+    }
+
     private void startUserConfirmationActivity(SplitInstallInternalSessionState sessionState,
                                                long realTotalBytesNeedToDownload,
                                                List<DownloadRequest> requests) {
@@ -463,6 +616,7 @@ final class SplitInstallSupervisorImpl extends SplitInstallSupervisor {
                         .fileDir(splitDir.getAbsolutePath())
                         .fileName(splitInfo.getSplitName() + "-" + apkData.getAbi() + SplitConstants.DOT_APK)
                         .fileMD5(apkData.getMd5())
+                        .fileSize(apkData.getSize())
                         .moduleName(splitInfo.getSplitName())
                         .build();
                 requests.add(request);
@@ -471,6 +625,14 @@ final class SplitInstallSupervisorImpl extends SplitInstallSupervisor {
         return requests;
     }
 
+    private static List<String> getSplitNames(Collection<SplitInfo> splitInfoList) {
+        List<String> splitNames = new ArrayList<>(splitInfoList.size());
+        for (SplitInfo info : splitInfoList) {
+            splitNames.add(info.getSplitName());
+        }
+        return splitNames;
+    }
+
     private long[] onPreDownloadSplits(Collection<SplitInfo> splitInfoList) throws IOException {
         long totalBytesToDownload = 0L;
         long realTotalBytesNeedToDownload = 0L;
@@ -493,4 +655,130 @@ final class SplitInstallSupervisorImpl extends SplitInstallSupervisor {
         }
         return new long[]{totalBytesToDownload, realTotalBytesNeedToDownload};
     }
+
+    /**
+     * Download callback of a session which shares splits with earlier sessions.
+     * Once its own splits are downloaded, it waits for those sessions, and downloads shared splits
+     * by itself only if any of them failed or was canceled.
+     */
+    private final class SharedSplitsDownloadCallback implements DownloadCallback, SplitInstallSessionManager.OnSessionsFinishedListener {
+
+        private final SplitInstallInternalSessionState sessionState;
+
+        private final DownloadCallback delegate;
+
+        /**
+         * Bytes of own splits, added to progress of shared splits downloaded by this session.
+         */
+        private volatile long progressOffset;
+
+        private volatile boolean sharedSplitsScheduled;
+
+        SharedSplitsDownloadCallback(SplitInstallInternalSessionState sessionState, DownloadCallback delegate) {
+            this.sessionState = sessionState;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onStart() {
+            delegate.onStart();
+        }
+
+        @Override
+        public void onCanceled() {
+            delegate.onCanceled();
+        }
+
+        @Override
+        public void onCanceling() {
+            delegate.onCanceling();
+        }
+
+        @Override
+        public void onProgress(long currentBytes) {
+            delegate.onProgress(progressOffset + currentBytes);
+        }
+
+        @Override
+        public void onCompleted() {
+            if (sharedSplitsScheduled) {
+                delegate.onCompleted();
+                return;
+            }
+            if (sessionState.status() == SplitInstallInternalSessionStatus.UNKNOWN) {
+                //nothing to download by itself, wait for shared splits.
+                sessionManager.changeSessionState(sessionState.sessionId(), SplitInstallInternalSessionStatus.PENDING);
+                sessionManager.emitSessionState(sessionState);
+            }
+            synchronized (preprocessingSessionIds) {
+                awaitingSessionIds.add(sessionState.sessionId());
+            }
+            sessionManager.awaitSessions(sessionState.sharedSessionIds, this);
+        }
+
+        @Override
+        public void onError(int errorCode) {
+            delegate.onError(errorCode);
+        }
+
+        @Override
+        public void onSessionsFinished(final boolean allInstalled) {
+            SplitInstallerExecutor.getPreprocessExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    onSharedSplitsReady(allInstalled);
+                }
+            });
+        }
+
+        private void onSharedSplitsReady(boolean allInstalled) {
+            int sessionId = sessionState.sessionId();
+            long[] result = null;
+            if (!allInstalled) {
+                try {
+                    result = onPreDownloadSplits(sessionState.sharedSplits);
+                } catch (IOException e) {
+                    SplitLog.w(TAG, "Failed to copy internal splits", e);
+                }
+            }
+            //session can't be canceled between awaiting and scheduling download.
+            synchronized (preprocessingSessionIds) {
+                if (!awaitingSessionIds.remove(sessionId) || sessionManager.getSessionState(sessionId) == null) {
+                    SplitLog.i(TAG, "Session %d has been finished while waiting for shared splits", sessionId);
+                    return;
+                }
+                if (allInstalled) {
+                    delegate.onCompleted();
+                    return;
+                }
+                if (result == null) {
+                    sessionState.setErrorCode(SplitInstallInternalErrorCode.BUILTIN_SPLIT_APK_COPIED_FAILED);
+                    sessionManager.changeSessionState(sessionId, SplitInstallInternalSessionStatus.FAILED);
+                    sessionManager.emitSessionState(sessionState);
+                    return;
+                }
+                if (result[1] <= 0) {
+                    delegate.onCompleted();
+                    return;
+                }
+                SplitLog.i(TAG, "Shared splits of session %d are not downloaded, download them now", sessionId);
+                List<DownloadRequest> downloadRequests;
+                try {
+                    downloadRequests = createDownloadRequests(sessionState.sharedSplits);
+                } catch (IOException e) {
+                    SplitLog.w(TAG, "Failed to create download requests", e);
+                    sessionState.setErrorCode(SplitInstallInternalErrorCode.BUILTIN_SPLIT_APK_COPIED_FAILED);
+                    sessionManager.changeSessionState(sessionId, SplitInstallInternalSessionStatus.FAILED);
+                    sessionManager.emitSessionState(sessionState);
+                    return;
+                }
+                //shared splits were not counted when session was created.
+                progressOffset = sessionState.totalBytesToDownload();
+                sessionState.setTotalBytesToDownload(progressOffset + result[0]);
+                sharedSplitsScheduled = true;
+                downloadScheduler.schedule(sessionId, SplitDownloadScheduler.PRIORITY_USER_BLOCKING,
+                        downloadRequests, true, this);
+            }
+        }
+    }
 }
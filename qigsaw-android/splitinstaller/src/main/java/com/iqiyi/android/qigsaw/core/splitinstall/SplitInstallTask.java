@@ -24,6 +24,7 @@
 
 package com.iqiyi.android.qigsaw.core.splitinstall;
 
+import com.iqiyi.android.qigsaw.core.common.SplitTrace;
 import com.iqiyi.android.qigsaw.core.splitreport.SplitBriefInfo;
 import com.iqiyi.android.qigsaw.core.splitreport.SplitInstallError;
 import com.iqiyi.android.qigsaw.core.splitreport.SplitInstallReporter;
@@ -49,6 +50,15 @@ abstract class SplitInstallTask implements Runnable {
 
     @Override
     public final void run() {
+        SplitTrace.beginSection(SplitTrace.INSTALL_SPLITS);
+        try {
+            installSplits();
+        } finally {
+            SplitTrace.endSection();
+        }
+    }
+
+    private void installSplits() {
         onPreInstall();
         long totalInstallStart = System.currentTimeMillis();
         boolean installCompleted = true;
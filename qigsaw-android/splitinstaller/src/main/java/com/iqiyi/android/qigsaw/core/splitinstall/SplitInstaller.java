@@ -28,6 +28,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfo;
+import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInstallJournal;
 
 import java.io.File;
 import java.util.List;
@@ -73,17 +74,18 @@ abstract class SplitInstaller {
      * @param splitApk file of split apk.
      * @param libDir   directory of split so files.
      * @param libData  {@link SplitInfo.LibData}
+     * @return a list of extracted library files.
      */
-    protected abstract void extractLib(File splitApk, File libDir, @NonNull SplitInfo.LibData libData) throws InstallException;
+    protected abstract List<File> extractLib(File splitApk, File libDir, @NonNull SplitInfo.LibData libData) throws InstallException;
 
     /**
-     * create a mark file to record that this split has been installed successfully.
+     * Commit a record to install journal to indicate that this split has been installed successfully.
      *
+     * @param stage {@link SplitInstallJournal#STAGE_INSTALLED} or {@link SplitInstallJournal#STAGE_OAT_UNCHECKED}.
      * @return if {@code true} means the split is first installed, otherwise {@code false} means the split has been install.
      */
-    protected abstract boolean createInstalledMark(File markFile) throws InstallException;
-
-    protected abstract boolean createInstalledMarkLock(File markFile, File lockFile) throws InstallException;
+    protected abstract boolean commitInstalledStage(SplitInstallJournal journal, SplitInstallJournal.Snapshot snapshot,
+                                                    int stage, String installedMark) throws InstallException;
 
     static class InstallResult {
 
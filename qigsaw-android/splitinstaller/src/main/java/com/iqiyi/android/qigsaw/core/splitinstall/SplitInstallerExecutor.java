@@ -31,7 +31,17 @@ final class SplitInstallerExecutor {
 
     private static final Executor sExecutor = Executors.newSingleThreadScheduledExecutor(new SplitInstallerThread());
 
+    /**
+     * Splits are copied and checked before downloading on their own thread, so new sessions are not queued behind
+     * installing ones. It is a single thread, because split dirs are locked by file locks which are held per process.
+     */
+    private static final Executor sPreprocessExecutor = Executors.newSingleThreadExecutor(new SplitInstallerThread("split_preprocess_thread"));
+
     static Executor getExecutor() {
         return sExecutor;
     }
+
+    static Executor getPreprocessExecutor() {
+        return sPreprocessExecutor;
+    }
 }
@@ -35,8 +35,11 @@ import com.iqiyi.android.qigsaw.core.common.OEMCompat;
 import com.iqiyi.android.qigsaw.core.common.SplitBaseInfoProvider;
 import com.iqiyi.android.qigsaw.core.common.SplitConstants;
 import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.common.SplitTrace;
 import com.iqiyi.android.qigsaw.core.splitreport.SplitInstallError;
+import com.iqiyi.android.qigsaw.core.splitreport.SplitMetrics;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfo;
+import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInstallJournal;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitPathManager;
 
 import java.io.File;
@@ -44,6 +47,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.security.SignatureException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -68,6 +72,17 @@ final class SplitInstallerImpl extends SplitInstaller {
 
     @Override
     public InstallResult install(boolean startInstall, @NonNull SplitInfo info) throws InstallException {
+        SplitTrace.beginSection(SplitTrace.INSTALL_SPLIT);
+        long startTime = SplitMetrics.startTimer();
+        try {
+            return installInternal(info);
+        } finally {
+            SplitMetrics.recordLatency(SplitMetrics.INSTALL_SPLIT_LATENCY, startTime);
+            SplitTrace.endSection();
+        }
+    }
+
+    private InstallResult installInternal(@NonNull SplitInfo info) throws InstallException {
         File splitDir = SplitPathManager.require().getSplitDir(info);
         List<SplitInfo.ApkData> apkDataList;
         SplitInfo.LibData libData;
@@ -83,7 +98,9 @@ final class SplitInstallerImpl extends SplitInstaller {
         List<String> addedDexPaths = null;
         File optimizedDirectory = null;
         File splitMasterApk = null;
-        File markFile = SplitPathManager.require().getSplitMarkFile(info, installedMark);
+        SplitInstallJournal journal = SplitPathManager.require().getSplitInstallJournal(info);
+        SplitInstallJournal.Snapshot snapshot = journal.read();
+        boolean installed = snapshot.isInstalled(installedMark);
         for (SplitInfo.ApkData apkData : apkDataList) {
             File splitApk;
             if (info.isBuiltIn() && apkData.getUrl().startsWith(SplitConstants.URL_NATIVE)) {
@@ -97,15 +114,26 @@ final class SplitInstallerImpl extends SplitInstaller {
                         new FileNotFoundException("Split apk " + splitApk.getAbsolutePath() + " is illegal!")
                 );
             }
-            if (verifySignature) {
-                SplitLog.d(TAG, "Need to verify split %s signature!", splitApk.getAbsolutePath());
-                verifySignature(splitApk);
+            if (!isApkVerified(snapshot, splitApk, apkData.getMd5())) {
+                if (verifySignature) {
+                    SplitLog.d(TAG, "Need to verify split %s signature!", splitApk.getAbsolutePath());
+                    verifySignature(splitApk);
+                }
+                checkSplitMD5(splitApk, apkData.getMd5());
+                journal.append(SplitInstallJournal.STAGE_APK_VERIFIED, splitApk.getName(),
+                        apkData.getMd5(), String.valueOf(splitApk.length()), String.valueOf(splitApk.lastModified()));
             }
-            checkSplitMD5(splitApk, apkData.getMd5());
             if (!SplitConstants.MASTER.equals(apkData.getAbi())) {
                 if (libData != null) {
                     splitLibDir = SplitPathManager.require().getSplitLibDir(info, libData.getAbi());
-                    extractLib(splitApk, splitLibDir, libData);
+                    if (!isFilesExisted(snapshot.get(SplitInstallJournal.STAGE_LIB_EXTRACTED, libData.getAbi()))) {
+                        List<File> libFiles = extractLib(splitApk, splitLibDir, libData);
+                        String[] libPaths = new String[libFiles.size()];
+                        for (int i = 0; i < libPaths.length; i++) {
+                            libPaths[i] = libFiles.get(i).getAbsolutePath();
+                        }
+                        journal.append(SplitInstallJournal.STAGE_LIB_EXTRACTED, libData.getAbi(), libPaths);
+                    }
                 }
             } else {
                 splitMasterApk = splitApk;
@@ -115,21 +143,37 @@ final class SplitInstallerImpl extends SplitInstaller {
                     addedDexPaths.add(splitApk.getAbsolutePath());
                     if (!isVMMultiDexCapable()) {
                         if (info.isMultiDex()) {
-                            File codeCacheDir = SplitPathManager.require().getSplitCodeCacheDir(info);
-                            addedDexPaths.addAll(extractMultiDex(splitApk, codeCacheDir, info));
+                            String[] extractedDexPaths = snapshot.get(SplitInstallJournal.STAGE_MULTI_DEX_EXTRACTED, SplitInstallJournal.NO_KEY);
+                            if (isFilesExisted(extractedDexPaths)) {
+                                addedDexPaths.addAll(Arrays.asList(extractedDexPaths));
+                            } else {
+                                File codeCacheDir = SplitPathManager.require().getSplitCodeCacheDir(info);
+                                List<String> dexPaths = extractMultiDex(splitApk, codeCacheDir, info);
+                                addedDexPaths.addAll(dexPaths);
+                                journal.append(SplitInstallJournal.STAGE_MULTI_DEX_EXTRACTED, SplitInstallJournal.NO_KEY,
+                                        dexPaths.toArray(new String[0]));
+                            }
                         }
                     }
                     String dexPath = TextUtils.join(File.pathSeparator, addedDexPaths);
                     String librarySearchPath = splitLibDir == null ? null : splitLibDir.getAbsolutePath();
                     //trigger oat if need
-                    if (!markFile.exists()) {
+                    if (!installed && !snapshot.has(SplitInstallJournal.STAGE_DEX_OPTIMIZED, SplitInstallJournal.NO_KEY)) {
+                        //dex2oat may crash the process, keep stages finished before it.
+                        commitJournal(journal);
+                        SplitTrace.beginSection(SplitTrace.DEX_OPT);
+                        long dexOptStartTime = SplitMetrics.startTimer();
                         try {
                             new DexClassLoader(dexPath, optimizedDirectory.getAbsolutePath(), librarySearchPath, SplitInstallerImpl.class.getClassLoader());
                         } catch (Throwable error) {
                             throw new InstallException(
                                     SplitInstallError.CLASSLOADER_CREATE_FAILED,
                                     error);
+                        } finally {
+                            SplitMetrics.recordLatency(SplitMetrics.INSTALL_DEX_OPT_LATENCY, dexOptStartTime);
+                            SplitTrace.endSection();
                         }
+                        journal.append(SplitInstallJournal.STAGE_DEX_OPTIMIZED, SplitInstallJournal.NO_KEY);
                     }
                     //check oat file. We found many native crash in libart.so, especially vivo & oppo.
                     if (OEMCompat.shouldCheckOatFileInCurrentSys()) {
@@ -137,20 +181,21 @@ final class SplitInstallerImpl extends SplitInstaller {
                         boolean specialManufacturer = OEMCompat.isSpecialManufacturer();
                         File oatFile = OEMCompat.getOatFilePath(splitApk, optimizedDirectory);
                         if (FileUtil.isLegalFile(oatFile)) {
-                            boolean checkResult = OEMCompat.checkOatFile(oatFile);
+                            boolean checkResult;
+                            SplitTrace.beginSection(SplitTrace.CHECK_OAT);
+                            long checkOatStartTime = SplitMetrics.startTimer();
+                            try {
+                                checkResult = OEMCompat.checkOatFile(oatFile);
+                            } finally {
+                                SplitMetrics.recordLatency(SplitMetrics.INSTALL_OAT_LATENCY, checkOatStartTime);
+                                SplitTrace.endSection();
+                            }
                             SplitLog.v(TAG, "Result of oat file %s is " + checkResult, oatFile.getAbsoluteFile());
                             if (!checkResult) {
                                 SplitLog.w(TAG, "Failed to check oat file " + oatFile.getAbsolutePath());
-                                if (specialManufacturer) {
-                                    File lockFile = SplitPathManager.require().getSplitSpecialLockFile(info);
-                                    try {
-                                        FileUtil.deleteFileSafelyLock(oatFile, lockFile);
-                                    } catch (IOException error) {
-                                        SplitLog.w(TAG, "Failed to delete corrupted oat file " + oatFile.exists());
-                                    }
-                                } else {
-                                    FileUtil.deleteFileSafely(oatFile);
-                                }
+                                FileUtil.deleteFileSafely(oatFile);
+                                journal.revoke(SplitInstallJournal.STAGE_DEX_OPTIMIZED, SplitInstallJournal.NO_KEY);
+                                commitJournal(journal);
                                 throw new InstallException(
                                         SplitInstallError.DEX_OAT_FAILED,
                                         new FileNotFoundException("System generate split " + info.getSplitName() + " oat file failed!")
@@ -159,10 +204,8 @@ final class SplitInstallerImpl extends SplitInstaller {
                         } else {
                             if (specialManufacturer) {
                                 SplitLog.v(TAG, "Oat file %s is not exist in vivo & oppo, system would use interpreter mode.", oatFile.getAbsoluteFile());
-                                File specialMarkFile = SplitPathManager.require().getSplitSpecialMarkFile(info, installedMark);
-                                if (!markFile.exists() && !specialMarkFile.exists()) {
-                                    File lockFile = SplitPathManager.require().getSplitSpecialLockFile(info);
-                                    boolean firstInstalled = createInstalledMarkLock(specialMarkFile, lockFile);
+                                if (!installed && !snapshot.isOatUnchecked(installedMark)) {
+                                    boolean firstInstalled = commitInstalledStage(journal, snapshot, SplitInstallJournal.STAGE_OAT_UNCHECKED, installedMark);
                                     return new InstallResult(info.getSplitName(), splitApk, optimizedDirectory, splitLibDir, addedDexPaths, firstInstalled);
                                 }
                             }
@@ -172,13 +215,22 @@ final class SplitInstallerImpl extends SplitInstaller {
             }
         }
         assert splitMasterApk != null;
-        boolean firstInstalled = createInstalledMark(markFile);
+        boolean firstInstalled = commitInstalledStage(journal, snapshot, SplitInstallJournal.STAGE_INSTALLED, installedMark);
         return new InstallResult(info.getSplitName(), splitMasterApk, optimizedDirectory, splitLibDir, addedDexPaths, firstInstalled);
     }
 
     @Override
     protected void verifySignature(File splitApk) throws InstallException {
-        if (!SignatureValidator.validateSplit(appContext, splitApk)) {
+        boolean validated;
+        SplitTrace.beginSection(SplitTrace.VERIFY_SIGNATURE);
+        long startTime = SplitMetrics.startTimer();
+        try {
+            validated = SignatureValidator.validateSplit(appContext, splitApk);
+        } finally {
+            SplitMetrics.recordLatency(SplitMetrics.INSTALL_SIGNATURE_LATENCY, startTime);
+            SplitTrace.endSection();
+        }
+        if (!validated) {
             deleteCorruptedFiles(Collections.singletonList(splitApk));
             throw new InstallException(
                     SplitInstallError.SIGNATURE_MISMATCH,
@@ -189,7 +241,16 @@ final class SplitInstallerImpl extends SplitInstaller {
 
     @Override
     protected void checkSplitMD5(File splitApk, String splitApkMd5) throws InstallException {
-        String curMd5 = FileUtil.getMD5(splitApk);
+        String curMd5;
+        SplitTrace.beginSection(SplitTrace.CHECK_MD5);
+        long startTime = SplitMetrics.startTimer();
+        try {
+            curMd5 = FileUtil.getMD5(splitApk);
+            SplitMetrics.add(SplitMetrics.BYTES_HASHED, splitApk.length());
+        } finally {
+            SplitMetrics.recordLatency(SplitMetrics.INSTALL_MD5_LATENCY, startTime);
+            SplitTrace.endSection();
+        }
         if (!splitApkMd5.equals(curMd5)) {
             deleteCorruptedFiles(Collections.singletonList(splitApk));
             throw new InstallException(SplitInstallError.MD5_ERROR, new IOException("Failed to check split apk md5, expect " + splitApkMd5 + " but " + curMd5));
@@ -201,11 +262,13 @@ final class SplitInstallerImpl extends SplitInstaller {
         SplitLog.w(TAG,
                 "VM do not support multi-dex, but split %s has multi dex files, so we need install other dex files manually",
                 splitApk.getName());
-        String prefsKeyPrefix = splitInfo.getSplitName() + "@" + SplitBaseInfoProvider.getVersionName() + "@" + splitInfo.getSplitVersion();
+        String manifestKey = splitInfo.getSplitName() + "@" + SplitBaseInfoProvider.getVersionName() + "@" + splitInfo.getSplitVersion();
+        SplitTrace.beginSection(SplitTrace.EXTRACT_MULTI_DEX);
+        long startTime = SplitMetrics.startTimer();
         try {
             SplitMultiDexExtractor extractor = new SplitMultiDexExtractor(splitApk, codeCacheDir);
             try {
-                List<? extends File> dexFiles = extractor.load(appContext, prefsKeyPrefix, false);
+                List<? extends File> dexFiles = extractor.load(manifestKey, false);
                 List<String> dexPaths = new ArrayList<>(dexFiles.size());
                 for (File dexFile : dexFiles) {
                     dexPaths.add(dexFile.getAbsolutePath());
@@ -220,16 +283,22 @@ final class SplitInstallerImpl extends SplitInstaller {
             }
         } catch (IOException ioError) {
             throw new InstallException(SplitInstallError.DEX_EXTRACT_FAILED, ioError);
+        } finally {
+            SplitMetrics.recordLatency(SplitMetrics.INSTALL_MULTI_DEX_LATENCY, startTime);
+            SplitTrace.endSection();
         }
     }
 
     @Override
-    protected void extractLib(File splitApk, File libDir, @NonNull SplitInfo.LibData libData) throws InstallException {
+    protected List<File> extractLib(File splitApk, File libDir, @NonNull SplitInfo.LibData libData) throws InstallException {
+        SplitTrace.beginSection(SplitTrace.EXTRACT_LIB);
+        long startTime = SplitMetrics.startTimer();
         try {
             SplitLibExtractor extractor = new SplitLibExtractor(splitApk, libDir);
             try {
                 List<File> libFiles = extractor.load(libData, false);
                 SplitLog.i(TAG, "Succeed to extract libs:  %s", libFiles.toString());
+                return libFiles;
             } catch (IOException e) {
                 SplitLog.w(TAG, "Failed to load or extract lib files", e);
                 throw new InstallException(SplitInstallError.LIB_EXTRACT_FAILED, e);
@@ -238,33 +307,59 @@ final class SplitInstallerImpl extends SplitInstaller {
             }
         } catch (IOException ioError) {
             throw new InstallException(SplitInstallError.LIB_EXTRACT_FAILED, ioError);
+        } finally {
+            SplitMetrics.recordLatency(SplitMetrics.INSTALL_LIB_LATENCY, startTime);
+            SplitTrace.endSection();
         }
     }
 
     @Override
-    protected boolean createInstalledMark(File markFile) throws InstallException {
-        if (!markFile.exists()) {
-            try {
-                FileUtil.createFileSafely(markFile);
-                return true;
-            } catch (IOException e) {
-                throw new InstallException(SplitInstallError.MARK_CREATE_FAILED, e);
-            }
+    protected boolean commitInstalledStage(SplitInstallJournal journal, SplitInstallJournal.Snapshot snapshot,
+                                           int stage, String installedMark) throws InstallException {
+        boolean committed = stage == SplitInstallJournal.STAGE_INSTALLED
+                ? snapshot.isInstalled(installedMark) : snapshot.isOatUnchecked(installedMark);
+        if (committed) {
+            commitJournal(journal);
+            return false;
+        }
+        journal.append(stage, installedMark);
+        try {
+            journal.commit();
+            return true;
+        } catch (IOException e) {
+            throw new InstallException(SplitInstallError.MARK_CREATE_FAILED, e);
         }
-        return false;
     }
 
-    @Override
-    protected boolean createInstalledMarkLock(File markFile, File lockFile) throws InstallException {
-        if (!markFile.exists()) {
-            try {
-                FileUtil.createFileSafelyLock(markFile, lockFile);
-                return true;
-            } catch (IOException e) {
-                throw new InstallException(SplitInstallError.MARK_CREATE_FAILED, e);
+    /**
+     * Records of intermediate stages only save work of next installation, so failure is ignored.
+     */
+    private void commitJournal(SplitInstallJournal journal) {
+        try {
+            journal.commit();
+        } catch (IOException e) {
+            SplitLog.w(TAG, "Failed to commit install journal", e);
+        }
+    }
+
+    private static boolean isApkVerified(SplitInstallJournal.Snapshot snapshot, File splitApk, String splitApkMd5) {
+        String[] values = snapshot.get(SplitInstallJournal.STAGE_APK_VERIFIED, splitApk.getName());
+        return values != null && values.length == 3
+                && values[0].equals(splitApkMd5)
+                && values[1].equals(String.valueOf(splitApk.length()))
+                && values[2].equals(String.valueOf(splitApk.lastModified()));
+    }
+
+    private static boolean isFilesExisted(String[] paths) {
+        if (paths == null) {
+            return false;
+        }
+        for (String path : paths) {
+            if (!new File(path).exists()) {
+                return false;
             }
         }
-        return false;
+        return true;
     }
 
     /**
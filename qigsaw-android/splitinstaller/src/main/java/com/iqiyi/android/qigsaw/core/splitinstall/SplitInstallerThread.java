@@ -32,9 +32,19 @@ import java.util.concurrent.ThreadFactory;
 
 final class SplitInstallerThread implements ThreadFactory {
 
+    private final String threadName;
+
+    SplitInstallerThread() {
+        this("split_install_thread");
+    }
+
+    SplitInstallerThread(String threadName) {
+        this.threadName = threadName;
+    }
+
     @SuppressLint("NewThreadDirectly")
     @Override
     public Thread newThread(@NonNull Runnable r) {
-        return new Thread(r, "split_install_thread");
+        return new Thread(r, threadName);
     }
 }
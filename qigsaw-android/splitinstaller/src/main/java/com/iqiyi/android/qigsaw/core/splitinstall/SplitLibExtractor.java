@@ -27,6 +27,7 @@ package com.iqiyi.android.qigsaw.core.splitinstall;
 import com.iqiyi.android.qigsaw.core.common.FileUtil;
 import com.iqiyi.android.qigsaw.core.common.SplitConstants;
 import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.splitreport.SplitMetrics;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfo;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitPathManager;
 
@@ -127,6 +128,7 @@ final class SplitLibExtractor implements Closeable {
             }
             File extractedLib = new File(libDir, libName);
             if (extractedLib.exists()) {
+                SplitMetrics.add(SplitMetrics.BYTES_HASHED, extractedLib.length());
                 if (lib.getMd5().equals(FileUtil.getMD5(extractedLib))) {
                     libFiles.add(extractedLib);
                     continue;
@@ -157,6 +159,8 @@ final class SplitLibExtractor implements Closeable {
                 }
                 SplitLog.i(TAG, "Extraction " + (isExtractionSuccessful ? "succeeded" : "failed") + " '" + extractedLib.getAbsolutePath() + "': length " + extractedLib.length());
                 //check md5
+                SplitMetrics.add(SplitMetrics.BYTES_EXTRACTED, extractedLib.length());
+                SplitMetrics.add(SplitMetrics.BYTES_HASHED, extractedLib.length());
                 String libFileMd5 = FileUtil.getMD5(extractedLib);
                 if (!lib.getMd5().equals(libFileMd5)) {
                     SplitLog.w(TAG, "Failed to check %s md5, excepted %s but %s", libName, lib.getMd5(), libFileMd5);
@@ -204,6 +208,7 @@ final class SplitLibExtractor implements Closeable {
             for (File file : files) {
                 if (lib.getName().equals(file.getName())) {
                     hasSo = true;
+                    SplitMetrics.add(SplitMetrics.BYTES_HASHED, file.length());
                     if (!lib.getMd5().equals(FileUtil.getMD5(file))) {
                         throw new IOException("Invalid extracted lib : file md5 is unmatched!");
                     } else {
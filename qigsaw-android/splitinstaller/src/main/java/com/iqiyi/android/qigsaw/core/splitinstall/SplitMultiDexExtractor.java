@@ -24,12 +24,13 @@
 
 package com.iqiyi.android.qigsaw.core.splitinstall;
 
-import android.content.Context;
-import android.content.SharedPreferences;
-import android.content.SharedPreferences.Editor;
+import android.annotation.SuppressLint;
+
+import androidx.annotation.NonNull;
 
 import com.iqiyi.android.qigsaw.core.common.SplitConstants;
 import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.splitreport.SplitMetrics;
 
 import java.io.BufferedOutputStream;
 import java.io.Closeable;
@@ -42,8 +43,13 @@ import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
@@ -55,26 +61,20 @@ final class SplitMultiDexExtractor implements Closeable {
     private static final String TAG = "Split:MultiDexExtractor";
     private static final String DEX_PREFIX = "classes";
     private static final String EXTRACTED_NAME_EXT = ".classes";
-    private static final String PREFS_FILE = "split.multidex.version";
-    private static final String KEY_TIME_STAMP = "timestamp";
-    private static final String KEY_CRC = "crc";
-    private static final String KEY_DEX_NUMBER = "dex.number";
-    private static final String KEY_DEX_CRC = "dex.crc.";
-    private static final String KEY_DEX_TIME = "dex.time.";
     private static final long NO_VALUE = -1L;
     private static final String LOCK_FILENAME = "SplitMultiDex.lock";
+    private static final int MAX_EXTRACT_THREADS = 4;
     private final File sourceApk;
-    private final long sourceCrc;
     private final File dexDir;
     private final RandomAccessFile lockRaf;
     private final FileChannel lockChannel;
     private final FileLock cacheLock;
+    private long sourceCrc = NO_VALUE;
 
     SplitMultiDexExtractor(File sourceApk, File dexDir) throws IOException {
         SplitLog.i(TAG, "SplitMultiDexExtractor(" + sourceApk.getPath() + ", " + dexDir.getPath() + ")");
         this.sourceApk = sourceApk;
         this.dexDir = dexDir;
-        this.sourceCrc = getZipCrc(sourceApk);
         File lockFile = new File(dexDir, LOCK_FILENAME);
         this.lockRaf = new RandomAccessFile(lockFile, "rw");
         try {
@@ -93,19 +93,22 @@ final class SplitMultiDexExtractor implements Closeable {
         }
     }
 
-    List<? extends File> load(Context context, String prefsKeyPrefix, boolean forceReload) throws IOException {
-        SplitLog.i(TAG, "SplitMultiDexExtractor.load(" + this.sourceApk.getPath() + ", " + forceReload + ", " + prefsKeyPrefix + ")");
+    /**
+     * @param manifestKey identity of split apk, extracted files of another identity are never reused.
+     */
+    List<? extends File> load(String manifestKey, boolean forceReload) throws IOException {
+        SplitLog.i(TAG, "SplitMultiDexExtractor.load(" + this.sourceApk.getPath() + ", " + forceReload + ", " + manifestKey + ")");
         if (!this.cacheLock.isValid()) {
             throw new IllegalStateException("SplitMultiDexExtractor was closed");
         } else {
-            List files;
-            if (!forceReload && !isModified(context, this.sourceApk, this.sourceCrc, prefsKeyPrefix)) {
+            List<? extends File> files;
+            SplitMultiDexManifest manifest = forceReload ? null : SplitMultiDexManifest.read(dexDir);
+            if (manifest != null && !isModified(manifest, manifestKey)) {
                 try {
-                    files = loadExistingExtractions(context, prefsKeyPrefix);
+                    files = loadExistingExtractions(manifest);
                 } catch (IOException var6) {
                     SplitLog.w(TAG, "Failed to reload existing extracted secondary dex files, falling back to fresh extraction", var6);
-                    files = this.performExtractions();
-                    putStoredApkInfo(context, prefsKeyPrefix, getTimeStamp(this.sourceApk), this.sourceCrc, files);
+                    files = extractAndStore(manifestKey);
                 }
             } else {
                 if (forceReload) {
@@ -113,8 +116,7 @@ final class SplitMultiDexExtractor implements Closeable {
                 } else {
                     SplitLog.i(TAG, "Detected that extraction must be performed.");
                 }
-                files = this.performExtractions();
-                putStoredApkInfo(context, prefsKeyPrefix, getTimeStamp(this.sourceApk), this.sourceCrc, files);
+                files = extractAndStore(manifestKey);
             }
 
             SplitLog.i(TAG, "load found " + files.size() + " secondary dex files");
@@ -128,25 +130,44 @@ final class SplitMultiDexExtractor implements Closeable {
         this.lockRaf.close();
     }
 
-    private List<? extends File> loadExistingExtractions(Context context, String prefsKeyPrefix) throws IOException {
+    private List<ExtractedDex> extractAndStore(String manifestKey) throws IOException {
+        List<ExtractedDex> files = this.performExtractions();
+        SplitMultiDexManifest manifest = new SplitMultiDexManifest(
+                manifestKey, getTimeStamp(sourceApk), sourceApk.length(), getSourceCrc(), files.size());
+        for (int i = 0; i < files.size(); i++) {
+            ExtractedDex dex = files.get(i);
+            manifest.dexCrcs[i] = dex.crc;
+            manifest.dexTimeStamps[i] = dex.lastModified();
+            manifest.dexLengths[i] = dex.length();
+        }
+        manifest.write(dexDir);
+        return files;
+    }
+
+    private List<? extends File> loadExistingExtractions(SplitMultiDexManifest manifest) throws IOException {
         SplitLog.i(TAG, "loading existing secondary dex files");
         String extractedFilePrefix = sourceApk.getName() + EXTRACTED_NAME_EXT;
-        SharedPreferences multiDexPreferences = getMultiDexPreferences(context);
-        int totalDexNumber = multiDexPreferences.getInt(prefsKeyPrefix + KEY_DEX_NUMBER, 1);
-        List<ExtractedDex> files = new ArrayList<>(totalDexNumber - 1);
-
-        for (int secondaryNumber = 2; secondaryNumber <= totalDexNumber; ++secondaryNumber) {
+        int secondaryDexNumber = manifest.getSecondaryDexNumber();
+        List<ExtractedDex> files = new ArrayList<>(secondaryDexNumber);
+        for (int i = 0; i < secondaryDexNumber; ++i) {
+            int secondaryNumber = i + 2;
             String fileName = extractedFilePrefix + secondaryNumber + SplitConstants.DOT_ZIP;
             SplitMultiDexExtractor.ExtractedDex extractedFile = new SplitMultiDexExtractor.ExtractedDex(dexDir, fileName);
-            if (!extractedFile.isFile()) {
+            long length = extractedFile.length();
+            if (length == 0L || !extractedFile.isFile()) {
                 throw new IOException("Missing extracted secondary dex file '" + extractedFile.getPath() + "'");
             }
-            extractedFile.crc = getZipCrc(extractedFile);
-            long expectedCrc = multiDexPreferences.getLong(prefsKeyPrefix + KEY_DEX_CRC + secondaryNumber, NO_VALUE);
-            long expectedModTime = multiDexPreferences.getLong(prefsKeyPrefix + KEY_DEX_TIME + secondaryNumber, NO_VALUE);
+            long expectedCrc = manifest.dexCrcs[i];
+            long expectedModTime = manifest.dexTimeStamps[i];
             long lastModified = extractedFile.lastModified();
-            if (expectedModTime != lastModified || expectedCrc != extractedFile.crc) {
-                throw new IOException("Invalid extracted dex: " + extractedFile + " (key \"" + prefsKeyPrefix + "\"), expected modification time: " + expectedModTime + ", modification time: " + lastModified + ", expected crc: " + expectedCrc + ", file crc: " + extractedFile.crc);
+            if (expectedModTime == lastModified && manifest.dexLengths[i] == length) {
+                // unchanged since extraction, skip reading central directory.
+                extractedFile.crc = expectedCrc;
+            } else {
+                extractedFile.crc = getZipCrc(extractedFile);
+                if (expectedCrc != extractedFile.crc) {
+                    throw new IOException("Invalid extracted dex: " + extractedFile + " (key \"" + manifest.key + "\"), expected modification time: " + expectedModTime + ", modification time: " + lastModified + ", expected crc: " + expectedCrc + ", file crc: " + extractedFile.crc);
+                }
             }
             files.add(extractedFile);
         }
@@ -154,9 +175,25 @@ final class SplitMultiDexExtractor implements Closeable {
         return files;
     }
 
-    private static boolean isModified(Context context, File archive, long currentCrc, String prefsKeyPrefix) {
-        SharedPreferences prefs = getMultiDexPreferences(context);
-        return prefs.getLong(prefsKeyPrefix + KEY_TIME_STAMP, -NO_VALUE) != getTimeStamp(archive) || prefs.getLong(prefsKeyPrefix + KEY_CRC, -NO_VALUE) != currentCrc;
+    /**
+     * Split apk is regarded as unmodified if its size and modification time are recorded in manifest,
+     * otherwise crc of its central directory is compared.
+     */
+    private boolean isModified(SplitMultiDexManifest manifest, String manifestKey) throws IOException {
+        if (!manifestKey.equals(manifest.key)) {
+            return true;
+        }
+        if (manifest.sourceTimeStamp == getTimeStamp(sourceApk) && manifest.sourceLength == sourceApk.length()) {
+            return false;
+        }
+        return manifest.sourceCrc != getSourceCrc();
+    }
+
+    private long getSourceCrc() throws IOException {
+        if (sourceCrc == NO_VALUE) {
+            sourceCrc = getZipCrc(sourceApk);
+        }
+        return sourceCrc;
     }
 
     private static long getTimeStamp(File archive) {
@@ -176,72 +213,102 @@ final class SplitMultiDexExtractor implements Closeable {
         return computedValue;
     }
 
-
+    /**
+     * Extract secondary dex files concurrently, entries are inflated independently and
+     * {@link ZipFile} allows concurrent reads.
+     */
     private List<ExtractedDex> performExtractions() throws IOException {
-        String extractedFilePrefix = this.sourceApk.getName() + EXTRACTED_NAME_EXT;
+        final String extractedFilePrefix = this.sourceApk.getName() + EXTRACTED_NAME_EXT;
         this.clearDexDir();
-        List<ExtractedDex> files = new ArrayList<>();
-        ZipFile apk = new ZipFile(this.sourceApk);
+        final ZipFile apk = new ZipFile(this.sourceApk);
         try {
+            List<ZipEntry> dexEntries = new ArrayList<>();
             int secondaryNumber = 2;
             for (ZipEntry dexFile = apk.getEntry(DEX_PREFIX + secondaryNumber + SplitConstants.DOT_DEX); dexFile != null; dexFile = apk.getEntry(DEX_PREFIX + secondaryNumber + SplitConstants.DOT_DEX)) {
-                String fileName = extractedFilePrefix + secondaryNumber + SplitConstants.DOT_ZIP;
-                SplitMultiDexExtractor.ExtractedDex extractedFile = new SplitMultiDexExtractor.ExtractedDex(this.dexDir, fileName);
-                files.add(extractedFile);
-                SplitLog.i(TAG, "Extraction is needed for file " + extractedFile);
-                int numAttempts = 0;
-                boolean isExtractionSuccessful = false;
-                while (numAttempts < SplitConstants.MAX_RETRY_ATTEMPTS && !isExtractionSuccessful) {
-                    ++numAttempts;
-                    extract(apk, dexFile, extractedFile, extractedFilePrefix);
+                dexEntries.add(dexFile);
+                ++secondaryNumber;
+            }
+            List<ExtractedDex> files = new ArrayList<>(dexEntries.size());
+            for (int i = 0; i < dexEntries.size(); i++) {
+                String fileName = extractedFilePrefix + (i + 2) + SplitConstants.DOT_ZIP;
+                files.add(new SplitMultiDexExtractor.ExtractedDex(this.dexDir, fileName));
+            }
+            int threadCount = Math.min(dexEntries.size(), Math.min(MAX_EXTRACT_THREADS, Runtime.getRuntime().availableProcessors()));
+            if (threadCount <= 1) {
+                for (int i = 0; i < dexEntries.size(); i++) {
+                    extractWithRetry(apk, dexEntries.get(i), files.get(i), extractedFilePrefix, i + 2);
+                }
+                return files;
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount, new ExtractThreadFactory());
+            try {
+                List<Future<Void>> futures = new ArrayList<>(dexEntries.size());
+                for (int i = 0; i < dexEntries.size(); i++) {
+                    final ZipEntry dexEntry = dexEntries.get(i);
+                    final ExtractedDex extractedFile = files.get(i);
+                    final int number = i + 2;
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            extractWithRetry(apk, dexEntry, extractedFile, extractedFilePrefix, number);
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<Void> future : futures) {
                     try {
-                        extractedFile.crc = getZipCrc(extractedFile);
-                        isExtractionSuccessful = true;
-                    } catch (IOException var18) {
-                        isExtractionSuccessful = false;
-                        SplitLog.w(TAG, "Failed to read crc from " + extractedFile.getAbsolutePath(), var18);
-                    }
-                    SplitLog.i(TAG, "Extraction " + (isExtractionSuccessful ? "succeeded" : "failed") + " '" + extractedFile.getAbsolutePath() + "': length " + extractedFile.length() + " - crc: " + extractedFile.crc);
-                    if (!isExtractionSuccessful) {
-                        extractedFile.delete();
-                        if (extractedFile.exists()) {
-                            SplitLog.w(TAG, "Failed to delete corrupted secondary dex '" + extractedFile.getPath() + "'");
+                        future.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while extracting secondary dex files", e);
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof IOException) {
+                            throw (IOException) cause;
                         }
+                        throw new IOException("Failed to extract secondary dex files", cause);
                     }
                 }
-                if (!isExtractionSuccessful) {
-                    throw new IOException("Could not create zip file " + extractedFile.getAbsolutePath() + " for secondary dex (" + secondaryNumber + ")");
-                }
-                ++secondaryNumber;
+            } finally {
+                executor.shutdownNow();
             }
+            return files;
         } finally {
             try {
                 apk.close();
             } catch (IOException var17) {
                 SplitLog.w(TAG, "Failed to close resource", var17);
             }
-
         }
-        return files;
     }
 
-    private static void putStoredApkInfo(Context context, String keyPrefix, long timeStamp, long crc, List<ExtractedDex> extractedDexes) {
-        SharedPreferences prefs = getMultiDexPreferences(context);
-        Editor edit = prefs.edit();
-        edit.putLong(keyPrefix + KEY_TIME_STAMP, timeStamp);
-        edit.putLong(keyPrefix + KEY_CRC, crc);
-        edit.putInt(keyPrefix + KEY_DEX_NUMBER, extractedDexes.size() + 1);
-        int extractedDexId = 2;
-        for (Iterator var10 = extractedDexes.iterator(); var10.hasNext(); ++extractedDexId) {
-            SplitMultiDexExtractor.ExtractedDex dex = (SplitMultiDexExtractor.ExtractedDex) var10.next();
-            edit.putLong(keyPrefix + KEY_DEX_CRC + extractedDexId, dex.crc);
-            edit.putLong(keyPrefix + KEY_DEX_TIME + extractedDexId, dex.lastModified());
+    private static void extractWithRetry(ZipFile apk, ZipEntry dexFile, ExtractedDex extractedFile,
+                                         String extractedFilePrefix, int secondaryNumber) throws IOException {
+        SplitLog.i(TAG, "Extraction is needed for file " + extractedFile);
+        int numAttempts = 0;
+        boolean isExtractionSuccessful = false;
+        while (numAttempts < SplitConstants.MAX_RETRY_ATTEMPTS && !isExtractionSuccessful) {
+            ++numAttempts;
+            extract(apk, dexFile, extractedFile, extractedFilePrefix);
+            SplitMetrics.add(SplitMetrics.BYTES_EXTRACTED, extractedFile.length());
+            try {
+                extractedFile.crc = getZipCrc(extractedFile);
+                isExtractionSuccessful = true;
+            } catch (IOException var18) {
+                isExtractionSuccessful = false;
+                SplitLog.w(TAG, "Failed to read crc from " + extractedFile.getAbsolutePath(), var18);
+            }
+            SplitLog.i(TAG, "Extraction " + (isExtractionSuccessful ? "succeeded" : "failed") + " '" + extractedFile.getAbsolutePath() + "': length " + extractedFile.length() + " - crc: " + extractedFile.crc);
+            if (!isExtractionSuccessful) {
+                extractedFile.delete();
+                if (extractedFile.exists()) {
+                    SplitLog.w(TAG, "Failed to delete corrupted secondary dex '" + extractedFile.getPath() + "'");
+                }
+            }
+        }
+        if (!isExtractionSuccessful) {
+            throw new IOException("Could not create zip file " + extractedFile.getAbsolutePath() + " for secondary dex (" + secondaryNumber + ")");
         }
-        edit.apply();
-    }
-
-    private static SharedPreferences getMultiDexPreferences(Context context) {
-        return context.getSharedPreferences(PREFS_FILE, Context.MODE_MULTI_PROCESS);
     }
 
     private void clearDexDir() {
@@ -318,6 +385,15 @@ final class SplitMultiDexExtractor implements Closeable {
         }
     }
 
+    private static final class ExtractThreadFactory implements ThreadFactory {
+
+        @SuppressLint("NewThreadDirectly")
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            return new Thread(r, "split_dex_extract_thread");
+        }
+    }
+
     static final class ZipCrcUtil {
 
         static long getZipCrc(File apk) throws IOException {
@@ -0,0 +1,156 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitinstall;
+
+import com.iqiyi.android.qigsaw.core.common.FileUtil;
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Binary record of extracted secondary dex files, stored in dex dir of each split.
+ * It replaces the shared preferences {@code split.multidex.version}, which had to be parsed entirely
+ * in every process before any split could be checked.
+ */
+final class SplitMultiDexManifest {
+
+    private static final String TAG = "Split:MultiDexManifest";
+
+    static final String FILE_NAME = "SplitMultiDex.manifest";
+
+    private static final int MAGIC = 0x51534d44;
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Identity of split apk, includes split name, app version and split version.
+     */
+    final String key;
+
+    final long sourceTimeStamp;
+
+    final long sourceLength;
+
+    final long sourceCrc;
+
+    /**
+     * crc, last modified time and length of secondary dex {@code i + 2}.
+     */
+    final long[] dexCrcs;
+
+    final long[] dexTimeStamps;
+
+    final long[] dexLengths;
+
+    SplitMultiDexManifest(String key, long sourceTimeStamp, long sourceLength, long sourceCrc, int secondaryDexNumber) {
+        this.key = key;
+        this.sourceTimeStamp = sourceTimeStamp;
+        this.sourceLength = sourceLength;
+        this.sourceCrc = sourceCrc;
+        this.dexCrcs = new long[secondaryDexNumber];
+        this.dexTimeStamps = new long[secondaryDexNumber];
+        this.dexLengths = new long[secondaryDexNumber];
+    }
+
+    int getSecondaryDexNumber() {
+        return dexCrcs.length;
+    }
+
+    /**
+     * @return manifest in the given dir, or {@code null} if it is missing or corrupted.
+     */
+    static SplitMultiDexManifest read(File dexDir) {
+        File file = new File(dexDir, FILE_NAME);
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                SplitLog.w(TAG, "Unknown manifest format " + file.getPath());
+                return null;
+            }
+            String key = in.readUTF();
+            long sourceTimeStamp = in.readLong();
+            long sourceLength = in.readLong();
+            long sourceCrc = in.readLong();
+            int secondaryDexNumber = in.readInt();
+            if (secondaryDexNumber < 0) {
+                return null;
+            }
+            SplitMultiDexManifest manifest = new SplitMultiDexManifest(key, sourceTimeStamp, sourceLength, sourceCrc, secondaryDexNumber);
+            for (int i = 0; i < secondaryDexNumber; i++) {
+                manifest.dexCrcs[i] = in.readLong();
+                manifest.dexTimeStamps[i] = in.readLong();
+                manifest.dexLengths[i] = in.readLong();
+            }
+            return manifest;
+        } catch (IOException e) {
+            SplitLog.w(TAG, "Failed to read manifest " + file.getPath(), e);
+            return null;
+        } finally {
+            FileUtil.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Write to a temp file and rename it, so that a crash never leaves a partially written manifest.
+     */
+    void write(File dexDir) throws IOException {
+        File file = new File(dexDir, FILE_NAME);
+        File tmp = File.createTempFile("tmp-" + FILE_NAME, null, dexDir);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(key);
+            out.writeLong(sourceTimeStamp);
+            out.writeLong(sourceLength);
+            out.writeLong(sourceCrc);
+            out.writeInt(getSecondaryDexNumber());
+            for (int i = 0; i < getSecondaryDexNumber(); i++) {
+                out.writeLong(dexCrcs[i]);
+                out.writeLong(dexTimeStamps[i]);
+                out.writeLong(dexLengths[i]);
+            }
+            out.flush();
+        } finally {
+            FileUtil.closeQuietly(out);
+        }
+        if (!tmp.renameTo(file)) {
+            FileUtil.deleteFileSafely(tmp);
+            throw new IOException("Failed to rename \"" + tmp.getAbsolutePath() + "\" to \"" + file.getAbsolutePath() + "\"");
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitinstall;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.RemoteCallbackList;
+import android.os.RemoteException;
+
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.splitinstall.protocol.ISplitInstallSessionListener;
+import com.iqiyi.android.qigsaw.core.splitreport.SplitMetrics;
+
+import java.util.ArrayList;
+
+import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
+
+/**
+ * Deliver session states to listeners registered by processes which have {@code SplitInstallStateUpdatedListener}.
+ * States are queued in {@link SplitSessionStateQueue} and sent as one batch per listener, progress updates
+ * of a session within {@link #PROGRESS_COALESCE_WINDOW} are merged into the latest one.
+ */
+final class SplitSessionStateDispatcher {
+
+    private static final String TAG = "Split:SessionDispatcher";
+
+    private static final long PROGRESS_COALESCE_WINDOW = 100L;
+
+    private final RemoteCallbackList<ISplitInstallSessionListener> listeners = new RemoteCallbackList<ISplitInstallSessionListener>() {
+        @Override
+        public void onCallbackDied(ISplitInstallSessionListener callback) {
+            synchronized (pendingStates) {
+                listenerCount--;
+            }
+        }
+    };
+
+    private final SplitSessionStateQueue<Bundle> pendingStates = new SplitSessionStateQueue<>();
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private Handler handler;
+
+    private int listenerCount;
+
+    private boolean flushScheduled;
+
+    void registerListener(ISplitInstallSessionListener listener) {
+        if (listeners.register(listener)) {
+            synchronized (pendingStates) {
+                listenerCount++;
+            }
+        }
+    }
+
+    void unregisterListener(ISplitInstallSessionListener listener) {
+        if (listeners.unregister(listener)) {
+            synchronized (pendingStates) {
+                listenerCount--;
+            }
+        }
+    }
+
+    void dispatch(SplitInstallInternalSessionState sessionState) {
+        synchronized (pendingStates) {
+            if (listenerCount <= 0) {
+                return;
+            }
+            boolean urgent = pendingStates.offer(sessionState.sessionId(), sessionState.status(),
+                    SplitInstallInternalSessionState.transform2Bundle(sessionState));
+            if (urgent) {
+                getHandler().removeCallbacks(flushTask);
+                getHandler().post(flushTask);
+                flushScheduled = true;
+            } else if (!flushScheduled) {
+                getHandler().postDelayed(flushTask, PROGRESS_COALESCE_WINDOW);
+                flushScheduled = true;
+            }
+        }
+    }
+
+    private void flush() {
+        ArrayList<Bundle> states;
+        synchronized (pendingStates) {
+            flushScheduled = false;
+            if (pendingStates.isEmpty()) {
+                return;
+            }
+            states = pendingStates.drain();
+        }
+        int count = listeners.beginBroadcast();
+        try {
+            for (int i = 0; i < count; i++) {
+                try {
+                    listeners.getBroadcastItem(i).onSessionStatesUpdated(states);
+                    SplitMetrics.increment(SplitMetrics.SESSION_DELIVERY);
+                } catch (RemoteException e) {
+                    SplitLog.w(TAG, "Failed to deliver session states", e);
+                }
+            }
+        } finally {
+            listeners.finishBroadcast();
+        }
+    }
+
+    private Handler getHandler() {
+        if (handler == null) {
+            HandlerThread handlerThread = new HandlerThread("split_session_dispatcher", THREAD_PRIORITY_BACKGROUND);
+            handlerThread.start();
+            handler = new Handler(handlerThread.getLooper());
+        }
+        return handler;
+    }
+}
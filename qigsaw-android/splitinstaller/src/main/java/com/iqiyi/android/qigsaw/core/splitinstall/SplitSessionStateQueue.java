@@ -0,0 +1,116 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitinstall;
+
+import com.iqiyi.android.qigsaw.core.splitreport.SplitMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Session states waiting to be delivered by {@link SplitSessionStateDispatcher}.
+ * A state replaces the pending one of the same session and status, so a burst of progress updates
+ * is delivered as the latest one. Beyond {@link #MAX_PENDING_STATES}, the oldest progress state is dropped,
+ * other states are never dropped because listeners rely on them to finish a session.
+ */
+final class SplitSessionStateQueue<T> {
+
+    static final int MAX_PENDING_STATES = 64;
+
+    private final List<PendingState<T>> pendingStates = new ArrayList<>();
+
+    /**
+     * @return {@code true} if state should be delivered without waiting for more progress updates.
+     */
+    boolean offer(int sessionId, @SplitInstallInternalSessionStatus int status, T state) {
+        SplitMetrics.increment(SplitMetrics.SESSION_UPDATE);
+        PendingState<T> pendingState = new PendingState<>(sessionId, status, state);
+        int last = lastIndexOf(sessionId);
+        if (last >= 0 && pendingStates.get(last).status == status) {
+            pendingStates.set(last, pendingState);
+            SplitMetrics.increment(SplitMetrics.SESSION_UPDATE_COALESCED);
+        } else {
+            if (pendingStates.size() >= MAX_PENDING_STATES) {
+                int droppable = indexOfProgress();
+                if (droppable >= 0) {
+                    pendingStates.remove(droppable);
+                    SplitMetrics.increment(SplitMetrics.SESSION_UPDATE_DROPPED);
+                } else if (status == SplitInstallInternalSessionStatus.DOWNLOADING) {
+                    //nothing else could be dropped, so drop the incoming progress.
+                    SplitMetrics.increment(SplitMetrics.SESSION_UPDATE_DROPPED);
+                    return false;
+                }
+            }
+            pendingStates.add(pendingState);
+        }
+        return status != SplitInstallInternalSessionStatus.DOWNLOADING;
+    }
+
+    ArrayList<T> drain() {
+        ArrayList<T> states = new ArrayList<>(pendingStates.size());
+        for (PendingState<T> pendingState : pendingStates) {
+            states.add(pendingState.state);
+        }
+        pendingStates.clear();
+        return states;
+    }
+
+    boolean isEmpty() {
+        return pendingStates.isEmpty();
+    }
+
+    private int lastIndexOf(int sessionId) {
+        for (int i = pendingStates.size() - 1; i >= 0; i--) {
+            if (pendingStates.get(i).sessionId == sessionId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOfProgress() {
+        for (int i = 0; i < pendingStates.size(); i++) {
+            if (pendingStates.get(i).status == SplitInstallInternalSessionStatus.DOWNLOADING) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class PendingState<T> {
+
+        final int sessionId;
+
+        final int status;
+
+        final T state;
+
+        PendingState(int sessionId, int status, T state) {
+            this.sessionId = sessionId;
+            this.status = status;
+            this.state = state;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
+import com.iqiyi.android.qigsaw.core.splitreport.AsyncSplitUninstallReporter;
 import com.iqiyi.android.qigsaw.core.splitreport.SplitUninstallReporter;
 
 import java.util.concurrent.atomic.AtomicReference;
@@ -16,7 +17,7 @@ public class SplitUninstallReporterManager {
     private static final AtomicReference<SplitUninstallReporter> sUninstallReporterRef = new AtomicReference<>();
 
     public static void install(@NonNull SplitUninstallReporter uninstallReporter) {
-        sUninstallReporterRef.compareAndSet(null, uninstallReporter);
+        sUninstallReporterRef.compareAndSet(null, new AsyncSplitUninstallReporter(uninstallReporter));
     }
 
     @Nullable
@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitinstall.remote;
+
+import android.content.Context;
+
+import com.iqiyi.android.qigsaw.core.common.FileUtil;
+import com.iqiyi.android.qigsaw.core.common.OEMCompat;
+import com.iqiyi.android.qigsaw.core.common.SplitConstants;
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfo;
+import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInstallJournal;
+import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitPathManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Check oat files generated by system for splits installed without them, one split per step.
+ * Otherwise they are checked when splits are going to be loaded.
+ */
+final class SplitCheckOatTask implements SplitMaintenanceTask {
+
+    private static final String TAG = "SplitCheckOatTask";
+
+    private final Context appContext;
+
+    private final SplitInstallSupervisor supervisor;
+
+    private final List<SplitInfo> allSplits;
+
+    private int nextIndex;
+
+    SplitCheckOatTask(Context appContext, SplitInstallSupervisor supervisor, Collection<SplitInfo> allSplits) {
+        this.appContext = appContext;
+        this.supervisor = supervisor;
+        this.allSplits = new ArrayList<>(allSplits);
+    }
+
+    @Override
+    public boolean run(SplitMaintenanceBudget budget) {
+        while (nextIndex < allSplits.size()) {
+            if (budget.isExhausted()) {
+                return false;
+            }
+            SplitInfo splitInfo = allSplits.get(nextIndex++);
+            //journal of split being installed is written by installation.
+            if (supervisor.isSplitInstalling(splitInfo.getSplitName())) {
+                continue;
+            }
+            try {
+                checkOatFile(splitInfo, budget);
+            } catch (IOException e) {
+                SplitLog.w(TAG, "Failed to check oat file of split " + splitInfo.getSplitName(), e);
+            }
+        }
+        return true;
+    }
+
+    private void checkOatFile(SplitInfo splitInfo, SplitMaintenanceBudget budget) throws IOException {
+        String installedMark = splitInfo.obtainInstalledMark(appContext);
+        SplitInstallJournal journal = SplitPathManager.require().getSplitInstallJournal(splitInfo);
+        SplitInstallJournal.Snapshot snapshot = journal.read();
+        if (snapshot.isInstalled(installedMark) || !snapshot.isOatUnchecked(installedMark)) {
+            return;
+        }
+        File splitApk;
+        if (splitInfo.isBuiltIn() && splitInfo.getApkDataForMaster().getUrl().startsWith(SplitConstants.URL_NATIVE)) {
+            splitApk = new File(appContext.getApplicationInfo().nativeLibraryDir, System.mapLibraryName(SplitConstants.SPLIT_PREFIX + splitInfo.getSplitName()));
+        } else {
+            splitApk = new File(SplitPathManager.require().getSplitDir(splitInfo), splitInfo.getSplitName() + "-" + SplitConstants.MASTER + SplitConstants.DOT_APK);
+        }
+        File oatFile = OEMCompat.getOatFilePath(splitApk, SplitPathManager.require().getSplitOptDir(splitInfo));
+        if (!FileUtil.isLegalFile(oatFile)) {
+            return;
+        }
+        budget.use(oatFile.length());
+        boolean result = OEMCompat.checkOatFile(oatFile);
+        SplitLog.i(TAG, "Check result of oat file %s is " + result, oatFile.getAbsoluteFile());
+        if (result) {
+            journal.append(SplitInstallJournal.STAGE_INSTALLED, installedMark);
+        } else {
+            FileUtil.deleteFileSafely(oatFile);
+            journal.revoke(SplitInstallJournal.STAGE_DEX_OPTIMIZED, SplitInstallJournal.NO_KEY);
+        }
+        journal.commit();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitinstall.remote;
+
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitPathManager;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Delete splits of other app versions file by file.
+ */
+final class SplitCleanStaleCacheTask implements SplitMaintenanceTask {
+
+    private static final String TAG = "SplitCleanStaleCacheTask";
+
+    private List<File> staleDirs;
+
+    private int nextIndex;
+
+    @Override
+    public boolean run(SplitMaintenanceBudget budget) {
+        if (staleDirs == null) {
+            staleDirs = SplitPathManager.require().getStaleCacheDirs();
+        }
+        while (nextIndex < staleDirs.size()) {
+            if (budget.isExhausted()) {
+                return false;
+            }
+            File staleDir = staleDirs.get(nextIndex);
+            if (!budget.deleteDir(staleDir)) {
+                return false;
+            }
+            nextIndex++;
+            SplitLog.i(TAG, "Success to delete obsolete splits %s", staleDir.getName());
+        }
+        return true;
+    }
+}
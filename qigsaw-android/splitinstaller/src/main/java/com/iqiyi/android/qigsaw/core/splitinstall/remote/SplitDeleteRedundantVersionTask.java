@@ -26,79 +26,173 @@ package com.iqiyi.android.qigsaw.core.splitinstall.remote;
 
 import android.content.Context;
 
-import com.iqiyi.android.qigsaw.core.common.FileUtil;
 import com.iqiyi.android.qigsaw.core.common.SplitLog;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfo;
+import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitLastUsedTracker;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitPathManager;
+import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitVersionGuard;
 
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
-final class SplitDeleteRedundantVersionTask implements Runnable {
+/**
+ * Delete redundant versions of splits file by file, splits being installed are skipped.
+ */
+final class SplitDeleteRedundantVersionTask implements SplitMaintenanceTask {
 
     private static final int MAX_SPLIT_CACHE_SIZE = 1;
 
+    /**
+     * Verified versions kept besides the cached one, so that a broken version can be rolled back without downloading.
+     */
+    private static final int MAX_VERIFIED_CACHE_SIZE = 2;
+
+    private static final long MAX_VERIFIED_CACHE_BYTES = 30 * 1024 * 1024L;
+
     private static final String TAG = "SplitDeleteRedundantVersionTask";
 
-    private final Collection<SplitInfo> allSplits;
+    private final List<SplitInfo> allSplits;
 
     private final Context appContext;
 
-    SplitDeleteRedundantVersionTask(Context appContext, Collection<SplitInfo> allSplits) {
-        this.allSplits = allSplits;
+    private final SplitInstallSupervisor supervisor;
+
+    /**
+     * Redundant version dirs of the split at {@code nextIndex - 1} which are not deleted yet.
+     */
+    private final LinkedList<File> redundantVersionDirs = new LinkedList<>();
+
+    private int nextIndex;
+
+    SplitDeleteRedundantVersionTask(Context appContext, SplitInstallSupervisor supervisor, Collection<SplitInfo> allSplits) {
+        this.allSplits = new ArrayList<>(allSplits);
         this.appContext = appContext;
+        this.supervisor = supervisor;
     }
 
     @Override
-    public void run() {
-        if (allSplits != null) {
-            for (SplitInfo splitInfo : allSplits) {
-                File splitDir = SplitPathManager.require().getSplitDir(splitInfo);
-                File splitRootDir = SplitPathManager.require().getSplitRootDir(splitInfo);
-                try {
-                    String installedMark = splitInfo.obtainInstalledMark(appContext);
-                    File installedMarkFile = SplitPathManager.require().getSplitMarkFile(splitInfo, installedMark);
-                    deleteRedundantSplitVersionDirs(splitDir, splitRootDir, installedMarkFile);
-                } catch (IOException ignored) {
-
+    public boolean run(SplitMaintenanceBudget budget) {
+        while (true) {
+            if (budget.isExhausted()) {
+                return false;
+            }
+            if (!redundantVersionDirs.isEmpty()) {
+                if (!budget.deleteDir(redundantVersionDirs.peek())) {
+                    return false;
                 }
+                redundantVersionDirs.remove();
+                continue;
+            }
+            if (nextIndex >= allSplits.size()) {
+                return true;
+            }
+            SplitInfo splitInfo = allSplits.get(nextIndex++);
+            if (supervisor.isSplitInstalling(splitInfo.getSplitName())) {
+                SplitLog.i(TAG, "Split %s is being installed, skip deleting its redundant versions", splitInfo.getSplitName());
+                continue;
+            }
+            File splitDir = SplitPathManager.require().getSplitDir(splitInfo);
+            File splitRootDir = SplitPathManager.require().getSplitRootDir(splitInfo);
+            try {
+                String installedMark = splitInfo.obtainInstalledMark(appContext);
+                boolean installed = SplitPathManager.require().getSplitInstallJournal(splitInfo).read().isInstalled(installedMark);
+                collectRedundantSplitVersionDirs(splitDir, splitRootDir, installed);
+            } catch (IOException ignored) {
+
             }
         }
     }
 
-    private void deleteRedundantSplitVersionDirs(final File currentSplitVersionDir, final File splitRootDir, final File installedMarkFile) {
+    private void collectRedundantSplitVersionDirs(final File currentSplitVersionDir, final File splitRootDir, final boolean installed) {
         final String splitName = splitRootDir.getName();
         File[] files = splitRootDir.listFiles(new FileFilter() {
             @Override
             public boolean accept(File pathname) {
                 if (pathname.isDirectory() && !pathname.equals(currentSplitVersionDir)) {
                     SplitLog.i(TAG, "Split %s version %s has been installed!", splitName, pathname.getName());
-                    return installedMarkFile.exists();
+                    return installed;
                 }
                 return false;
             }
         });
-        if (files != null && files.length > MAX_SPLIT_CACHE_SIZE) {
+        if (files != null && files.length > 0) {
+            SplitLastUsedTracker lastUsedTracker = SplitPathManager.require().getLastUsedTracker();
+            SplitVersionGuard versionGuard = SplitPathManager.require().getVersionGuard();
+            Map<String, Long> lastUsedTimes = lastUsedTracker.getLastUsedTimes(splitName);
+            final Map<File, Long> versionTimes = new HashMap<>(files.length);
+            for (File file : files) {
+                Long lastUsedTime = lastUsedTimes.get(file.getName());
+                //versions never loaded since last used times are tracked.
+                versionTimes.put(file, lastUsedTime != null ? lastUsedTime : file.lastModified());
+            }
             Arrays.sort(files, new Comparator<File>() {
                 @Override
                 public int compare(File o1, File o2) {
-                    if (o1.lastModified() < o2.lastModified()) {
+                    long time1 = versionTimes.get(o1);
+                    long time2 = versionTimes.get(o2);
+                    if (time1 < time2) {
                         return 1;
-                    } else if (o1.lastModified() == o2.lastModified()) {
+                    } else if (time1 == time2) {
                         return 0;
                     } else {
                         return -1;
                     }
                 }
             });
-            for (int i = MAX_SPLIT_CACHE_SIZE; i < files.length; i++) {
-                SplitLog.i(TAG, "Split %s version %s is redundant, so we try to delete it", splitName, files[i].getName());
-                FileUtil.deleteDir(files[i]);
+            int cachedCount = 0;
+            int verifiedCount = 0;
+            long verifiedBytes = 0;
+            for (File file : files) {
+                String version = file.getName();
+                //broken version is never loaded again, its load count is kept so that it isn't installed again.
+                boolean broken = versionGuard.isBroken(splitName, version);
+                if (!broken) {
+                    if (cachedCount < MAX_SPLIT_CACHE_SIZE) {
+                        cachedCount++;
+                        continue;
+                    }
+                    //verified versions are kept for rolling back, within a disk budget.
+                    if (verifiedCount < MAX_VERIFIED_CACHE_SIZE && versionGuard.isVerified(splitName, version)) {
+                        long size = sizeOf(file);
+                        if (verifiedBytes + size <= MAX_VERIFIED_CACHE_BYTES) {
+                            verifiedCount++;
+                            verifiedBytes += size;
+                            SplitLog.i(TAG, "Split %s version %s is verified, keep it for rolling back", splitName, version);
+                            continue;
+                        }
+                    }
+                }
+                SplitLog.i(TAG, "Split %s version %s is redundant, so we try to delete it", splitName, version);
+                //forget it before deleting, so that a partly deleted version is never kept for rolling back.
+                lastUsedTracker.forget(splitName, version);
+                if (!broken) {
+                    versionGuard.forget(splitName, version);
+                }
+                redundantVersionDirs.add(file);
+            }
+        }
+    }
+
+    private static long sizeOf(File file) {
+        if (!file.isDirectory()) {
+            return file.length();
+        }
+        long size = 0;
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                size += sizeOf(child);
             }
         }
+        return size;
     }
 }
@@ -32,8 +32,10 @@ import android.os.HandlerThread;
 import android.os.IBinder;
 import androidx.annotation.RestrictTo;
 
+import com.iqiyi.android.qigsaw.core.splitinstall.SplitApkInstaller;
 import com.iqiyi.android.qigsaw.core.splitinstall.protocol.ISplitInstallService;
 import com.iqiyi.android.qigsaw.core.splitinstall.protocol.ISplitInstallServiceCallback;
+import com.iqiyi.android.qigsaw.core.splitinstall.protocol.ISplitInstallSessionListener;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -79,6 +81,22 @@ public final class SplitInstallService extends Service {
         public void deferredUninstall(String packageName, List<Bundle> moduleNames, Bundle versionCode, ISplitInstallServiceCallback callback) {
             getHandler(packageName).post(new OnDeferredUninstallTask(callback, moduleNames));
         }
+
+        @Override
+        public void registerSessionListener(String packageName, ISplitInstallSessionListener listener) {
+            SplitInstallSupervisor supervisor = SplitApkInstaller.getSplitInstallSupervisor();
+            if (supervisor != null) {
+                supervisor.registerSessionListener(listener);
+            }
+        }
+
+        @Override
+        public void unregisterSessionListener(String packageName, ISplitInstallSessionListener listener) {
+            SplitInstallSupervisor supervisor = SplitApkInstaller.getSplitInstallSupervisor();
+            if (supervisor != null) {
+                supervisor.unregisterSessionListener(listener);
+            }
+        }
     };
 
     @Override
@@ -32,16 +32,17 @@ import android.os.RemoteException;
 
 import androidx.annotation.RestrictTo;
 
-import com.iqiyi.android.qigsaw.core.common.FileUtil;
+import com.iqiyi.android.qigsaw.core.common.OEMCompat;
 import com.iqiyi.android.qigsaw.core.common.ProcessUtil;
 import com.iqiyi.android.qigsaw.core.common.SplitLog;
 import com.iqiyi.android.qigsaw.core.splitinstall.SplitPendingUninstallManager;
+import com.iqiyi.android.qigsaw.core.splitinstall.protocol.ISplitInstallSessionListener;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfo;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfoManager;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfoManagerService;
+import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInstallJournal;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitPathManager;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
@@ -57,7 +58,14 @@ public abstract class SplitInstallSupervisor {
 
     private static final String TAG = "SplitInstallSupervisor";
 
-    public final void startUninstall(Context context) {
+    private volatile SplitMaintenanceScheduler maintenanceScheduler;
+
+    /**
+     * Revoke splits pending uninstall at app start, and enqueue deletion of their files and other disk maintenance,
+     * which is deferred until {@link #scheduleMaintenance()}.
+     */
+    public final void prepareMaintenance(Context context) {
+        SplitMaintenanceScheduler scheduler = new SplitMaintenanceScheduler(context);
         SplitPendingUninstallManager pendingUninstallManager = new SplitPendingUninstallManager();
         List<String> uninstallSplits = pendingUninstallManager.readPendingUninstallSplits();
         SplitInfoManager manager = SplitInfoManagerService.getInstance();
@@ -70,11 +78,11 @@ public abstract class SplitInstallSupervisor {
                 for (SplitInfo uninstallSplitInfo : uninstallSplitInfoList) {
                     try {
                         String installedMark = uninstallSplitInfo.obtainInstalledMark(context);
-                        File installedMarkFile = SplitPathManager.require().getSplitMarkFile(uninstallSplitInfo, installedMark);
-                        boolean ret = FileUtil.deleteFileSafely(installedMarkFile);
-                        if (ret) {
-                            realUninstallSplits.add(uninstallSplitInfo);
-                        }
+                        SplitInstallJournal journal = SplitPathManager.require().getSplitInstallJournal(uninstallSplitInfo);
+                        journal.revoke(SplitInstallJournal.STAGE_INSTALLED, installedMark);
+                        journal.revoke(SplitInstallJournal.STAGE_OAT_UNCHECKED, installedMark);
+                        journal.commit();
+                        realUninstallSplits.add(uninstallSplitInfo);
                     } catch (IOException ignored) {
 
                     }
@@ -82,19 +90,40 @@ public abstract class SplitInstallSupervisor {
             }
         }
         if (realUninstallSplits != null && !realUninstallSplits.isEmpty()) {
-            SplitInstallService.getHandler(context.getPackageName()).post(new SplitStartUninstallTask(realUninstallSplits));
+            scheduler.enqueue(new SplitStartUninstallTask(context, this, realUninstallSplits));
         } else {
             SplitLog.d(TAG, "No splits need to uninstall!");
         }
+        scheduler.enqueue(new SplitCleanStaleCacheTask());
         SplitInfoManager infoManager = SplitInfoManagerService.getInstance();
         if (infoManager != null) {
             Collection<SplitInfo> allSplitInfos = infoManager.getAllSplitInfo(context);
             if (allSplitInfos != null) {
-                SplitInstallService.getHandler(context.getPackageName()).post(new SplitDeleteRedundantVersionTask(context, allSplitInfos));
+                scheduler.enqueue(new SplitDeleteRedundantVersionTask(context, this, allSplitInfos));
+                if (OEMCompat.shouldCheckOatFileInCurrentSys()) {
+                    scheduler.enqueue(new SplitCheckOatTask(context, this, allSplitInfos));
+                }
             }
         }
+        maintenanceScheduler = scheduler;
+    }
+
+    /**
+     * Run maintenance enqueued by {@link #prepareMaintenance(Context)} within budget of one run,
+     * called when app is idle or backgrounded.
+     */
+    public final void scheduleMaintenance() {
+        SplitMaintenanceScheduler scheduler = maintenanceScheduler;
+        if (scheduler != null) {
+            scheduler.schedule();
+        }
     }
 
+    /**
+     * Whether split is being downloaded or installed, called on the thread of {@link SplitInstallService}.
+     */
+    protected abstract boolean isSplitInstalling(String splitName);
+
     public abstract void startInstall(List<Bundle> moduleNames, Callback callback) throws RemoteException;
 
     public abstract void deferredInstall(List<Bundle> moduleNames, Callback callback) throws RemoteException;
@@ -107,6 +136,13 @@ public abstract class SplitInstallSupervisor {
 
     public abstract void getSessionStates(Callback callback) throws RemoteException;
 
+    /**
+     * Session states are delivered to the listener until it is unregistered or its process dies.
+     */
+    public abstract void registerSessionListener(ISplitInstallSessionListener listener);
+
+    public abstract void unregisterSessionListener(ISplitInstallSessionListener listener);
+
     public abstract boolean continueInstallWithUserConfirmation(int sessionId);
 
     public abstract boolean cancelInstallWithoutUserConfirmation(int sessionId);
@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitinstall.remote;
+
+import android.os.SystemClock;
+
+import com.iqiyi.android.qigsaw.core.common.FileUtil;
+
+import java.io.File;
+
+/**
+ * Bytes and time a run of maintenance tasks may use. It is checked before each file read or deleted,
+ * so a run may exceed it by one file.
+ */
+final class SplitMaintenanceBudget {
+
+    private final long maxBytes;
+
+    private final long deadline;
+
+    private long usedBytes;
+
+    SplitMaintenanceBudget(long maxBytes, long maxTime) {
+        this.maxBytes = maxBytes;
+        this.deadline = SystemClock.uptimeMillis() + maxTime;
+    }
+
+    boolean isExhausted() {
+        return usedBytes >= maxBytes || SystemClock.uptimeMillis() >= deadline;
+    }
+
+    long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Use bytes read or written by a step.
+     */
+    void use(long bytes) {
+        usedBytes += bytes;
+    }
+
+    /**
+     * Delete file or dir file by file, and use bytes of deleted files.
+     *
+     * @return {@code true} if all files are deleted, otherwise budget is used up and the rest are left.
+     */
+    boolean deleteDir(File file) {
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            if (files != null) {
+                for (File subFile : files) {
+                    if (!deleteDir(subFile)) {
+                        return false;
+                    }
+                }
+            }
+        } else if (file.exists()) {
+            if (isExhausted()) {
+                return false;
+            }
+            use(file.length());
+        }
+        FileUtil.deleteFileSafely(file);
+        return true;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitinstall.remote;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.splitreport.SplitMetrics;
+
+import java.util.LinkedList;
+
+/**
+ * Run maintenance tasks enqueued at app start when app is idle or backgrounded, instead of right at app start.
+ * Tasks run on the thread of {@link SplitInstallService} in enqueued order, which is where installations are started,
+ * and skip splits being downloaded or installed, see {@link SplitInstallSupervisor#isSplitInstalling(String)}.
+ * Each run is limited by {@link #MAX_BYTES_PER_RUN} and {@link #MAX_TIME_PER_RUN},
+ * unfinished tasks are resumed in next run.
+ */
+final class SplitMaintenanceScheduler {
+
+    private static final String TAG = "SplitMaintenanceScheduler";
+
+    private static final long MAX_BYTES_PER_RUN = 32 * 1024 * 1024L;
+
+    private static final long MAX_TIME_PER_RUN = 1000L;
+
+    private final LinkedList<SplitMaintenanceTask> pendingTasks = new LinkedList<>();
+
+    private final Context context;
+
+    private boolean runScheduled;
+
+    SplitMaintenanceScheduler(Context context) {
+        this.context = context;
+    }
+
+    void enqueue(@NonNull SplitMaintenanceTask task) {
+        synchronized (pendingTasks) {
+            pendingTasks.add(task);
+        }
+    }
+
+    /**
+     * Run pending tasks within budget of one run, called when app is idle or backgrounded.
+     */
+    void schedule() {
+        synchronized (pendingTasks) {
+            if (pendingTasks.isEmpty() || runScheduled) {
+                return;
+            }
+            runScheduled = true;
+        }
+        SplitInstallService.getHandler(context.getPackageName()).post(new Runnable() {
+            @Override
+            public void run() {
+                runPendingTasks();
+            }
+        });
+    }
+
+    private void runPendingTasks() {
+        SplitMaintenanceBudget budget = new SplitMaintenanceBudget(MAX_BYTES_PER_RUN, MAX_TIME_PER_RUN);
+        SplitMetrics.increment(SplitMetrics.MAINTENANCE_RUN);
+        while (!budget.isExhausted()) {
+            SplitMaintenanceTask task;
+            synchronized (pendingTasks) {
+                task = pendingTasks.peek();
+            }
+            if (task == null) {
+                break;
+            }
+            boolean finished;
+            try {
+                finished = task.run(budget);
+            } catch (Exception e) {
+                SplitLog.w(TAG, "Failed to run maintenance task " + task, e);
+                finished = true;
+            }
+            if (finished) {
+                synchronized (pendingTasks) {
+                    pendingTasks.remove(task);
+                }
+            }
+        }
+        SplitMetrics.add(SplitMetrics.MAINTENANCE_BYTES, budget.getUsedBytes());
+        synchronized (pendingTasks) {
+            runScheduled = false;
+            if (!pendingTasks.isEmpty()) {
+                SplitLog.i(TAG, "Budget of maintenance is used up, %d tasks are left to next run.", pendingTasks.size());
+                SplitMetrics.increment(SplitMetrics.MAINTENANCE_PAUSED);
+            }
+        }
+    }
+}
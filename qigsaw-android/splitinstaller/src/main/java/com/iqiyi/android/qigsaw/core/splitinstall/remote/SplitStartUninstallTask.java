@@ -24,7 +24,8 @@
 
 package com.iqiyi.android.qigsaw.core.splitinstall.remote;
 
-import com.iqiyi.android.qigsaw.core.common.FileUtil;
+import android.content.Context;
+
 import com.iqiyi.android.qigsaw.core.common.SplitLog;
 import com.iqiyi.android.qigsaw.core.splitinstall.SplitPendingUninstallManager;
 import com.iqiyi.android.qigsaw.core.splitinstall.SplitUninstallReporterManager;
@@ -33,34 +34,77 @@ import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfo;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitPathManager;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-final class SplitStartUninstallTask implements Runnable {
+/**
+ * Delete files of uninstalled splits file by file, splits requested again are skipped.
+ * Only splits whose files are all deleted are reported.
+ */
+final class SplitStartUninstallTask implements SplitMaintenanceTask {
 
     private static final String TAG = "SplitStartUninstallTask";
 
+    private final Context appContext;
+
+    private final SplitInstallSupervisor supervisor;
+
     private final List<SplitInfo> uninstallSplits;
 
-    SplitStartUninstallTask(List<SplitInfo> uninstallSplits) {
+    private final List<String> realUninstallSplits;
+
+    private int nextIndex;
+
+    private long time;
+
+    SplitStartUninstallTask(Context appContext, SplitInstallSupervisor supervisor, List<SplitInfo> uninstallSplits) {
+        this.appContext = appContext;
+        this.supervisor = supervisor;
         this.uninstallSplits = uninstallSplits;
+        this.realUninstallSplits = new ArrayList<>(uninstallSplits.size());
     }
 
     @Override
-    public void run() {
-        long time = System.currentTimeMillis();
-        List<String> realUninstallSplits = new ArrayList<>(uninstallSplits.size());
-        for (SplitInfo info : uninstallSplits) {
+    public boolean run(SplitMaintenanceBudget budget) {
+        if (nextIndex == 0) {
+            time = System.currentTimeMillis();
+        }
+        while (nextIndex < uninstallSplits.size()) {
+            if (budget.isExhausted()) {
+                return false;
+            }
+            SplitInfo info = uninstallSplits.get(nextIndex);
+            //split may be requested or installed again before this task is run.
+            if (supervisor.isSplitInstalling(info.getSplitName()) || isInstalled(info)) {
+                SplitLog.i(TAG, "split %s is installed again, skip deleting its files", info.getSplitName());
+                nextIndex++;
+                continue;
+            }
             SplitLog.d(TAG, "split %s need to be uninstalled, try to delete its files", info.getSplitName());
             File splitRootDir = SplitPathManager.require().getSplitRootDir(info);
-            FileUtil.deleteDir(splitRootDir);
+            if (!budget.deleteDir(splitRootDir)) {
+                return false;
+            }
+            SplitPathManager.require().getLastUsedTracker().forget(info.getSplitName(), null);
+            SplitPathManager.require().getVersionGuard().forget(info.getSplitName(), null);
             realUninstallSplits.add(info.getSplitName());
+            nextIndex++;
         }
         SplitUninstallReporter uninstallReporter = SplitUninstallReporterManager.getUninstallReporter();
-        if (uninstallReporter != null) {
+        if (uninstallReporter != null && !realUninstallSplits.isEmpty()) {
             uninstallReporter.onSplitUninstallOK(realUninstallSplits, System.currentTimeMillis() - time);
         }
         boolean result = new SplitPendingUninstallManager().deletePendingUninstallSplitsRecord();
         SplitLog.d(TAG, "%s to delete record file of pending uninstall splits!", result ? "Succeed" : "Failed");
+        return true;
+    }
+
+    private boolean isInstalled(SplitInfo info) {
+        try {
+            return SplitPathManager.require().getSplitInstallJournal(info).read().isInstalled(info.obtainInstalledMark(appContext));
+        } catch (IOException e) {
+            return false;
+        }
     }
 }
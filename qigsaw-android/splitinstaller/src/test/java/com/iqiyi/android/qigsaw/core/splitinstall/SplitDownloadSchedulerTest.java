@@ -0,0 +1,397 @@
+package com.iqiyi.android.qigsaw.core.splitinstall;
+
+import com.iqiyi.android.qigsaw.core.splitdownload.DownloadCallback;
+import com.iqiyi.android.qigsaw.core.splitdownload.DownloadRequest;
+import com.iqiyi.android.qigsaw.core.splitdownload.ResumableDownloader;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SplitDownloadSchedulerTest {
+
+    @Test
+    public void startsSessionsByPriorityAndSize() {
+        FakeDownloader downloader = new FakeDownloader(100);
+        SplitDownloadScheduler scheduler = new SplitDownloadScheduler(downloader);
+        scheduler.schedule(1, SplitDownloadScheduler.PRIORITY_DEFERRED, requests(300), false, new RecordingCallback());
+        scheduler.schedule(2, SplitDownloadScheduler.PRIORITY_USER_BLOCKING, requests(100), false, new RecordingCallback());
+        scheduler.schedule(3, SplitDownloadScheduler.PRIORITY_USER_BLOCKING, requests(100), false, new RecordingCallback());
+        scheduler.schedule(4, SplitDownloadScheduler.PRIORITY_USER_BLOCKING, requests(100), false, new RecordingCallback());
+        scheduler.schedule(5, SplitDownloadScheduler.PRIORITY_DEFERRED, requests(100), false, new RecordingCallback());
+        downloader.runUntilIdle();
+        //session 1 starts alone, is paused by user-blocking ones, and resumes after the smaller session 5.
+        assertEquals(list(1, 2, 3, 4, 5, 1), downloader.startedSessions);
+        assertEquals(2, downloader.maxUserBlockingRunning);
+    }
+
+    @Test
+    public void pausesBackgroundSessionAndResumesIt() {
+        FakeDownloader downloader = new FakeDownloader(50);
+        SplitDownloadScheduler scheduler = new SplitDownloadScheduler(downloader);
+        RecordingCallback background = new RecordingCallback();
+        RecordingCallback userBlocking = new RecordingCallback();
+        scheduler.schedule(1, SplitDownloadScheduler.PRIORITY_DEFERRED, requests(200), true, background);
+        downloader.tick();
+        assertEquals(50, downloader.downloadedBytes(1));
+
+        scheduler.schedule(2, SplitDownloadScheduler.PRIORITY_USER_BLOCKING, requests(100), false, userBlocking);
+        assertTrue(downloader.isRunning(2));
+        downloader.tick();
+        assertFalse(downloader.isRunning(1));
+        //pausing is not visible to callers of session 1.
+        assertEquals(0, background.canceled);
+        assertEquals(0, background.canceling);
+
+        downloader.runUntilIdle();
+        assertEquals(1, userBlocking.completed);
+        assertEquals(1, background.completed);
+        assertEquals(list(1, 2, 1), downloader.startedSessions);
+        //resumed from byte 50 instead of starting over.
+        assertEquals(200, downloader.transferredBytes(1));
+        assertEquals(Boolean.TRUE, downloader.usingMobileData.get(1));
+    }
+
+    @Test
+    public void restartsRunningSessionAsUserBlockingWhenPriorityIsRaised() {
+        FakeDownloader downloader = new FakeDownloader(50);
+        SplitDownloadScheduler scheduler = new SplitDownloadScheduler(downloader);
+        RecordingCallback deferred = new RecordingCallback();
+        RecordingCallback started = new RecordingCallback();
+        scheduler.schedule(1, SplitDownloadScheduler.PRIORITY_DEFERRED, requests(200), false, deferred);
+        downloader.tick();
+        scheduler.schedule(1, SplitDownloadScheduler.PRIORITY_USER_BLOCKING, requests(200), false, started);
+        downloader.runUntilIdle();
+        assertEquals(list(false, true), downloader.userBlockingStarts);
+        assertEquals(1, deferred.completed);
+        assertEquals(1, started.completed);
+        assertEquals(200, downloader.transferredBytes(1));
+    }
+
+    @Test
+    public void restartsRaisedSessionAsUserBlockingOnNonResumableDownloader() {
+        FakeDownloader downloader = new FakeDownloader(50, false);
+        SplitDownloadScheduler scheduler = new SplitDownloadScheduler(downloader.plain());
+        RecordingCallback deferred = new RecordingCallback();
+        RecordingCallback started = new RecordingCallback();
+        scheduler.schedule(1, SplitDownloadScheduler.PRIORITY_DEFERRED, requests(200), false, deferred);
+        downloader.tick();
+        scheduler.schedule(1, SplitDownloadScheduler.PRIORITY_USER_BLOCKING, requests(200), false, started);
+        downloader.tick();
+        assertTrue(downloader.isRunning(1));
+        downloader.runUntilIdle();
+        assertEquals(list(false, true), downloader.userBlockingStarts);
+        assertEquals(0, deferred.canceled);
+        assertEquals(0, deferred.canceling);
+        assertEquals(1, deferred.completed);
+        assertEquals(1, started.completed);
+        //started over, bytes of deferred transport are not kept.
+        assertEquals(250, downloader.transferredBytes(1));
+    }
+
+    @Test
+    public void keepsBackgroundSessionRunningOnNonResumableDownloader() {
+        FakeDownloader downloader = new FakeDownloader(50, false);
+        SplitDownloadScheduler scheduler = new SplitDownloadScheduler(downloader.plain());
+        scheduler.schedule(1, SplitDownloadScheduler.PRIORITY_DEFERRED, requests(200), false, new RecordingCallback());
+        downloader.tick();
+        scheduler.schedule(2, SplitDownloadScheduler.PRIORITY_USER_BLOCKING, requests(100), false, new RecordingCallback());
+        downloader.tick();
+        assertTrue(downloader.isRunning(1));
+        assertTrue(downloader.isRunning(2));
+        downloader.runUntilIdle();
+        assertEquals(list(1, 2), downloader.startedSessions);
+        assertEquals(200, downloader.transferredBytes(1));
+    }
+
+    @Test
+    public void cancelsPendingAndRunningSessions() {
+        FakeDownloader downloader = new FakeDownloader(50);
+        SplitDownloadScheduler scheduler = new SplitDownloadScheduler(downloader);
+        RecordingCallback running = new RecordingCallback();
+        RecordingCallback pending = new RecordingCallback();
+        scheduler.schedule(1, SplitDownloadScheduler.PRIORITY_USER_BLOCKING, requests(200), false, running);
+        scheduler.schedule(2, SplitDownloadScheduler.PRIORITY_USER_BLOCKING, requests(200), false, new RecordingCallback());
+        scheduler.schedule(3, SplitDownloadScheduler.PRIORITY_USER_BLOCKING, requests(200), false, pending);
+
+        assertTrue(scheduler.cancel(3));
+        assertEquals(1, pending.canceling);
+        assertEquals(1, pending.canceled);
+
+        assertTrue(scheduler.cancel(1));
+        downloader.runUntilIdle();
+        assertEquals(1, running.canceling);
+        assertEquals(1, running.canceled);
+        assertEquals(0, running.completed);
+        assertEquals(list(1, 2), downloader.startedSessions);
+        assertFalse(scheduler.cancel(1));
+        assertFalse(scheduler.cancel(4));
+    }
+
+    @Test
+    public void attachesCallbackToScheduledSession() {
+        FakeDownloader downloader = new FakeDownloader(100);
+        SplitDownloadScheduler scheduler = new SplitDownloadScheduler(downloader);
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+        scheduler.schedule(1, SplitDownloadScheduler.PRIORITY_USER_BLOCKING, requests(200), false, first);
+        scheduler.schedule(1, SplitDownloadScheduler.PRIORITY_USER_BLOCKING, requests(200), false, second);
+        downloader.runUntilIdle();
+        assertEquals(list(1), downloader.startedSessions);
+        assertEquals(1, first.completed);
+        assertEquals(1, second.completed);
+        assertEquals(200, second.lastProgress);
+    }
+
+    private static List<DownloadRequest> requests(long size) {
+        return Collections.singletonList(DownloadRequest.newBuilder()
+                .url("https://example.com/split.zip")
+                .fileDir("splits")
+                .fileName("split.zip")
+                .moduleName("split")
+                .fileSize(size)
+                .build());
+    }
+
+    @SafeVarargs
+    private static <T> List<T> list(T... values) {
+        List<T> list = new ArrayList<>(values.length);
+        Collections.addAll(list, values);
+        return list;
+    }
+
+    private static final class RecordingCallback implements DownloadCallback {
+
+        int started;
+
+        int canceled;
+
+        int canceling;
+
+        int completed;
+
+        int errors;
+
+        long lastProgress;
+
+        @Override
+        public void onStart() {
+            started++;
+        }
+
+        @Override
+        public void onCanceled() {
+            canceled++;
+        }
+
+        @Override
+        public void onCanceling() {
+            canceling++;
+        }
+
+        @Override
+        public void onProgress(long currentBytes) {
+            lastProgress = currentBytes;
+        }
+
+        @Override
+        public void onCompleted() {
+            completed++;
+        }
+
+        @Override
+        public void onError(int errorCode) {
+            errors++;
+        }
+    }
+
+    /**
+     * Every {@link #tick()} transfers a fixed amount of bytes for each running session, and delivers
+     * cancellation asynchronously like a real downloader. Downloaded bytes are kept across cancellation
+     * only if it is resumable.
+     */
+    private static final class FakeDownloader implements ResumableDownloader {
+
+        final long bytesPerTick;
+
+        final boolean resumable;
+
+        final Map<Integer, Session> running = new LinkedHashMap<>();
+
+        final Map<Integer, Long> downloaded = new HashMap<>();
+
+        final Map<Integer, Long> transferred = new HashMap<>();
+
+        final Map<Integer, Boolean> usingMobileData = new HashMap<>();
+
+        final List<Integer> startedSessions = new ArrayList<>();
+
+        final List<Boolean> userBlockingStarts = new ArrayList<>();
+
+        int maxUserBlockingRunning;
+
+        FakeDownloader(long bytesPerTick) {
+            this(bytesPerTick, true);
+        }
+
+        FakeDownloader(long bytesPerTick, boolean resumable) {
+            this.bytesPerTick = bytesPerTick;
+            this.resumable = resumable;
+        }
+
+        /**
+         * @return the same downloader, but not a {@link ResumableDownloader}.
+         */
+        com.iqiyi.android.qigsaw.core.splitdownload.Downloader plain() {
+            final FakeDownloader fake = this;
+            return new com.iqiyi.android.qigsaw.core.splitdownload.Downloader() {
+                @Override
+                public void startDownload(int sessionId, List<DownloadRequest> requests, DownloadCallback callback) {
+                    fake.startDownload(sessionId, requests, callback);
+                }
+
+                @Override
+                public void deferredDownload(int sessionId, List<DownloadRequest> requests, DownloadCallback callback, boolean usingMobileDataPermitted) {
+                    fake.deferredDownload(sessionId, requests, callback, usingMobileDataPermitted);
+                }
+
+                @Override
+                public boolean cancelDownloadSync(int sessionId) {
+                    return fake.cancelDownloadSync(sessionId);
+                }
+
+                @Override
+                public long getDownloadSizeThresholdWhenUsingMobileData() {
+                    return fake.getDownloadSizeThresholdWhenUsingMobileData();
+                }
+
+                @Override
+                public boolean isDeferredDownloadOnlyWhenUsingWifiData() {
+                    return fake.isDeferredDownloadOnlyWhenUsingWifiData();
+                }
+            };
+        }
+
+        @Override
+        public void startDownload(int sessionId, List<DownloadRequest> requests, DownloadCallback callback) {
+            start(sessionId, requests, callback, true);
+            int userBlocking = 0;
+            for (Session session : running.values()) {
+                if (session.userBlocking) {
+                    userBlocking++;
+                }
+            }
+            maxUserBlockingRunning = Math.max(maxUserBlockingRunning, userBlocking);
+        }
+
+        @Override
+        public void deferredDownload(int sessionId, List<DownloadRequest> requests, DownloadCallback callback, boolean usingMobileDataPermitted) {
+            usingMobileData.put(sessionId, usingMobileDataPermitted);
+            start(sessionId, requests, callback, false);
+        }
+
+        private void start(int sessionId, List<DownloadRequest> requests, DownloadCallback callback, boolean userBlocking) {
+            long total = 0;
+            for (DownloadRequest request : requests) {
+                total += request.getFileSize();
+            }
+            startedSessions.add(sessionId);
+            userBlockingStarts.add(userBlocking);
+            if (!resumable) {
+                downloaded.put(sessionId, 0L);
+            }
+            running.put(sessionId, new Session(sessionId, total, callback, userBlocking));
+            callback.onStart();
+        }
+
+        @Override
+        public boolean cancelDownloadSync(int sessionId) {
+            Session session = running.get(sessionId);
+            if (session == null || session.canceled) {
+                return false;
+            }
+            session.canceled = true;
+            session.callback.onCanceling();
+            return true;
+        }
+
+        @Override
+        public long getDownloadSizeThresholdWhenUsingMobileData() {
+            return -1;
+        }
+
+        @Override
+        public boolean isDeferredDownloadOnlyWhenUsingWifiData() {
+            return false;
+        }
+
+        boolean isRunning(int sessionId) {
+            return running.containsKey(sessionId);
+        }
+
+        long downloadedBytes(int sessionId) {
+            Long bytes = downloaded.get(sessionId);
+            return bytes == null ? 0 : bytes;
+        }
+
+        long transferredBytes(int sessionId) {
+            Long bytes = transferred.get(sessionId);
+            return bytes == null ? 0 : bytes;
+        }
+
+        void tick() {
+            for (Session session : new ArrayList<>(running.values())) {
+                if (session.canceled) {
+                    running.remove(session.sessionId);
+                    session.callback.onCanceled();
+                    continue;
+                }
+                long done = downloadedBytes(session.sessionId);
+                long bytes = Math.min(bytesPerTick, session.totalBytes - done);
+                downloaded.put(session.sessionId, done + bytes);
+                transferred.put(session.sessionId, transferredBytes(session.sessionId) + bytes);
+                session.callback.onProgress(done + bytes);
+                if (done + bytes >= session.totalBytes) {
+                    running.remove(session.sessionId);
+                    session.callback.onCompleted();
+                }
+            }
+        }
+
+        void runUntilIdle() {
+            for (int i = 0; i < 1000 && !running.isEmpty(); i++) {
+                tick();
+            }
+            assertTrue("Downloader is not idle", running.isEmpty());
+        }
+
+        private static final class Session {
+
+            final int sessionId;
+
+            final long totalBytes;
+
+            final DownloadCallback callback;
+
+            final boolean userBlocking;
+
+            boolean canceled;
+
+            Session(int sessionId, long totalBytes, DownloadCallback callback, boolean userBlocking) {
+                this.sessionId = sessionId;
+                this.totalBytes = totalBytes;
+                this.callback = callback;
+                this.userBlocking = userBlocking;
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.iqiyi.android.qigsaw.core.splitinstall;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SplitSessionStateQueueTest {
+
+    @Test
+    public void coalescesProgressUpdatesOfSession() {
+        SplitSessionStateQueue<String> queue = new SplitSessionStateQueue<>();
+        for (int i = 1; i <= 100; i++) {
+            assertFalse(queue.offer(1, SplitInstallInternalSessionStatus.DOWNLOADING, "1:" + i));
+        }
+        List<String> delivered = queue.drain();
+        assertEquals(1, delivered.size());
+        assertEquals("1:100", delivered.get(0));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void deliversEveryStatusChange() {
+        SplitSessionStateQueue<String> queue = new SplitSessionStateQueue<>();
+        assertTrue(queue.offer(1, SplitInstallInternalSessionStatus.PENDING, "pending"));
+        for (int i = 1; i <= 10; i++) {
+            queue.offer(1, SplitInstallInternalSessionStatus.DOWNLOADING, "downloading:" + i);
+        }
+        assertTrue(queue.offer(1, SplitInstallInternalSessionStatus.DOWNLOADED, "downloaded"));
+        assertTrue(queue.offer(1, SplitInstallInternalSessionStatus.INSTALLED, "installed"));
+        List<String> expected = new ArrayList<>();
+        expected.add("pending");
+        expected.add("downloading:10");
+        expected.add("downloaded");
+        expected.add("installed");
+        assertEquals(expected, queue.drain());
+    }
+
+    @Test
+    public void countsDeliveredStatesOfConcurrentSessions() {
+        SplitSessionStateQueue<String> queue = new SplitSessionStateQueue<>();
+        int delivered = 0;
+        int updates = 0;
+        //10 sessions report progress 50 times, delivered once per 10 rounds of updates.
+        for (int round = 1; round <= 50; round++) {
+            for (int session = 1; session <= 10; session++) {
+                queue.offer(session, SplitInstallInternalSessionStatus.DOWNLOADING, session + ":" + round);
+                updates++;
+            }
+            if (round % 10 == 0) {
+                delivered += queue.drain().size();
+            }
+        }
+        assertEquals(500, updates);
+        assertEquals(50, delivered);
+    }
+
+    @Test
+    public void dropsOldestProgressBeyondLimit() {
+        SplitSessionStateQueue<String> queue = new SplitSessionStateQueue<>();
+        for (int session = 0; session < SplitSessionStateQueue.MAX_PENDING_STATES; session++) {
+            queue.offer(session, SplitInstallInternalSessionStatus.DOWNLOADING, "progress:" + session);
+        }
+        queue.offer(1000, SplitInstallInternalSessionStatus.INSTALLED, "installed");
+        List<String> delivered = queue.drain();
+        assertEquals(SplitSessionStateQueue.MAX_PENDING_STATES, delivered.size());
+        assertEquals("progress:1", delivered.get(0));
+        assertEquals("installed", delivered.get(delivered.size() - 1));
+    }
+
+    @Test
+    public void neverDropsTerminalStates() {
+        SplitSessionStateQueue<String> queue = new SplitSessionStateQueue<>();
+        int[] terminalStatuses = {
+                SplitInstallInternalSessionStatus.INSTALLED,
+                SplitInstallInternalSessionStatus.FAILED,
+                SplitInstallInternalSessionStatus.CANCELED
+        };
+        int terminalCount = SplitSessionStateQueue.MAX_PENDING_STATES + 10;
+        for (int session = 0; session < terminalCount; session++) {
+            queue.offer(session, terminalStatuses[session % terminalStatuses.length], "terminal:" + session);
+            //progress of another session arrives between terminal states.
+            queue.offer(10000 + session, SplitInstallInternalSessionStatus.DOWNLOADING, "progress:" + session);
+        }
+        int terminal = 0;
+        for (String state : queue.drain()) {
+            if (state.startsWith("terminal:")) {
+                assertEquals("terminal:" + terminal, state);
+                terminal++;
+            }
+        }
+        assertEquals(terminalCount, terminal);
+    }
+}
@@ -0,0 +1,62 @@
+package com.iqiyi.android.qigsaw.core.splitinstall.remote;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SplitMaintenanceBudgetTest {
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = File.createTempFile("maintenance", "");
+        assertTrue(root.delete());
+        File versionDir = new File(root, "1.0.0");
+        assertTrue(versionDir.mkdirs());
+        for (int i = 0; i < 4; i++) {
+            writeFile(new File(versionDir, "file" + i), 100);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        new SplitMaintenanceBudget(Long.MAX_VALUE, Long.MAX_VALUE).deleteDir(root);
+    }
+
+    @Test
+    public void stopsDeletingWhenBytesAreUsedUp() {
+        SplitMaintenanceBudget budget = new SplitMaintenanceBudget(200, Long.MAX_VALUE / 2);
+        assertFalse(budget.deleteDir(root));
+        assertEquals(200, budget.getUsedBytes());
+        assertTrue(budget.isExhausted());
+        assertTrue(root.exists());
+        assertEquals(2, new File(root, "1.0.0").list().length);
+    }
+
+    @Test
+    public void resumesDeletingInNextRun() {
+        assertFalse(new SplitMaintenanceBudget(200, Long.MAX_VALUE / 2).deleteDir(root));
+        SplitMaintenanceBudget budget = new SplitMaintenanceBudget(1000, Long.MAX_VALUE / 2);
+        assertTrue(budget.deleteDir(root));
+        assertEquals(200, budget.getUsedBytes());
+        assertFalse(root.exists());
+    }
+
+    private static void writeFile(File file, int length) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[length]);
+        } finally {
+            out.close();
+        }
+    }
+}
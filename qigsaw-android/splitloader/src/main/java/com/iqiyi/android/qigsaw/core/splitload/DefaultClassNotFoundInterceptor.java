@@ -28,6 +28,7 @@ import android.content.Context;
 
 import com.iqiyi.android.qigsaw.core.common.SplitLog;
 import com.iqiyi.android.qigsaw.core.extension.AABExtension;
+import com.iqiyi.android.qigsaw.core.splitreport.SplitMetrics;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfoManager;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfoManagerService;
 
@@ -69,6 +70,7 @@ final class DefaultClassNotFoundInterceptor implements ClassNotFoundInterceptor
         }
         Class<?> fakeComponent = AABExtension.getInstance().getFakeComponent(name);
         if (fakeComponent != null || isSplitEntryFragments(name)) {
+            SplitMetrics.increment(SplitMetrics.CLASS_LOOKUP_FALLBACK);
             SplitLoadManagerService.getInstance().loadInstalledSplits();
             ret = findClassInSplits(name);
             if (ret != null) {
@@ -97,6 +99,7 @@ final class DefaultClassNotFoundInterceptor implements ClassNotFoundInterceptor
     private Class<?> onClassNotFound2(String name) {
         Class<?> fakeComponent = AABExtension.getInstance().getFakeComponent(name);
         if (fakeComponent != null || isSplitEntryFragments(name)) {
+            SplitMetrics.increment(SplitMetrics.CLASS_LOOKUP_FALLBACK);
             SplitLoadManagerService.getInstance().loadInstalledSplits();
             try {
                 return originClassLoader.loadClass(name);
@@ -116,8 +119,13 @@ final class DefaultClassNotFoundInterceptor implements ClassNotFoundInterceptor
             try {
                 Class<?> clazz = classLoader.loadClassItself(name);
                 SplitLog.i(TAG, "Class %s is found in %s ClassLoader", name, classLoader.moduleName());
+                //services and receivers are instantiated by system through host class loader.
+                if (AABExtension.getInstance().getFakeComponent(name) != null) {
+                    SplitApplicationLoaders.getInstance().onComponentUsed(classLoader.moduleName());
+                }
                 return clazz;
             } catch (ClassNotFoundException e) {
+                SplitMetrics.increment(SplitMetrics.CLASS_LOOKUP_MISS, classLoader.moduleName());
                 SplitLog.w(TAG, "Class %s is not found in %s ClassLoader", name, classLoader.moduleName());
             }
         }
@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitload;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Members of {@code dalvik.system.DexPathList} which are modified while injecting code of splits,
+ * captured before a batched injection and restored if it fails halfway.
+ */
+final class DexPathListSnapshot {
+
+    private static final String[] FIELD_NAMES = {
+            "dexElements",
+            "nativeLibraryDirectories",
+            "nativeLibraryPathElements"
+    };
+
+    private final Object dexPathList;
+
+    private final List<Field> fields = new ArrayList<>(FIELD_NAMES.length);
+
+    private final List<Object> values = new ArrayList<>(FIELD_NAMES.length);
+
+    private DexPathListSnapshot(Object dexPathList) {
+        this.dexPathList = dexPathList;
+    }
+
+    static DexPathListSnapshot capture(ClassLoader classLoader) throws Throwable {
+        Field pathListField = HiddenApiReflection.findField(classLoader, "pathList");
+        DexPathListSnapshot snapshot = new DexPathListSnapshot(pathListField.get(classLoader));
+        for (String fieldName : FIELD_NAMES) {
+            Field field;
+            try {
+                field = HiddenApiReflection.findField(snapshot.dexPathList, fieldName);
+            } catch (NoSuchFieldException e) {
+                continue;
+            }
+            Object value = field.get(snapshot.dexPathList);
+            //arrays are replaced on injection, but lists are modified in place.
+            snapshot.fields.add(field);
+            snapshot.values.add(value instanceof List ? new ArrayList<>((List<?>) value) : value);
+        }
+        return snapshot;
+    }
+
+    @SuppressWarnings("unchecked")
+    void restore() throws Throwable {
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            Object value = values.get(i);
+            Object current = field.get(dexPathList);
+            if (value instanceof List && current instanceof List) {
+                List<Object> list = (List<Object>) current;
+                list.clear();
+                list.addAll((List<Object>) value);
+            } else {
+                field.set(dexPathList, value);
+            }
+        }
+    }
+}
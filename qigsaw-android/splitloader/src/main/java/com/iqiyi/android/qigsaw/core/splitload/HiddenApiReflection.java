@@ -4,7 +4,10 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Source code from Tinker
@@ -232,5 +235,40 @@ final class HiddenApiReflection {
 
         jlrField.set(instance, combined);
     }
+
+    /**
+     * Replace the value of a field containing a non-null array, by a new array containing the
+     * elements of the original array except {@code elements}, which are compared by identity.
+     *
+     * @param instance  the instance whose field is to be modified.
+     * @param fieldName the field to modify.
+     */
+    static void removeFieldArrayElements(Object instance, String fieldName, Collection<?> elements)
+            throws NoSuchFieldException, IllegalArgumentException, IllegalAccessException {
+        if (elements.isEmpty()) {
+            return;
+        }
+        Field jlrField = findField(instance, fieldName);
+
+        Object[] original = (Object[]) jlrField.get(instance);
+        List<Object> kept = new ArrayList<>(original.length);
+        for (Object element : original) {
+            boolean removed = false;
+            for (Object toRemove : elements) {
+                if (element == toRemove) {
+                    removed = true;
+                    break;
+                }
+            }
+            if (!removed) {
+                kept.add(element);
+            }
+        }
+        if (kept.size() == original.length) {
+            return;
+        }
+        Object[] combined = (Object[]) Array.newInstance(original.getClass().getComponentType(), kept.size());
+        jlrField.set(instance, kept.toArray(combined));
+    }
 }
 
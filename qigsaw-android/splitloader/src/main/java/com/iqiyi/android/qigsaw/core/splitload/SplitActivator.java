@@ -32,7 +32,6 @@ import com.iqiyi.android.qigsaw.core.extension.AABExtension;
 import com.iqiyi.android.qigsaw.core.extension.AABExtensionException;
 import com.iqiyi.android.qigsaw.core.splitreport.SplitLoadError;
 
-import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -78,8 +77,7 @@ final class SplitActivator {
     void invokeOnCreateForSplitApplication(Application application) throws SplitLoadException {
         if (application != null) {
             try {
-                Method method = HiddenApiReflection.findMethod(Application.class, "onCreate");
-                method.invoke(application);
+                application.onCreate();
             } catch (Throwable e) {
                 if (debuggable()) {
                     throw new RuntimeException(e);
@@ -97,6 +95,13 @@ final class SplitActivator {
         }
     }
 
+    /**
+     * Application of unloaded split should not be held, otherwise its class loader can't be reclaimed.
+     */
+    static void removeSplitApplication(String splitName) {
+        sSplitApplicationMap.remove(splitName);
+    }
+
     private boolean debuggable() {
         try {
             ApplicationInfo info = appContext.getApplicationInfo();
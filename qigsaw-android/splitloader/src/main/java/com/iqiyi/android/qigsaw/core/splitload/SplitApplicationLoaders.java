@@ -24,11 +24,15 @@
 
 package com.iqiyi.android.qigsaw.core.splitload;
 
+import android.os.SystemClock;
+
 import androidx.annotation.Nullable;
 
+import java.lang.ref.WeakReference;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
@@ -37,6 +41,21 @@ final class SplitApplicationLoaders {
 
     private final Set<SplitDexClassLoader> splitDexClassLoaders = Collections.newSetFromMap(new ConcurrentHashMap<SplitDexClassLoader, Boolean>());
 
+    /**
+     * Class loaders of unloaded splits, which can be reclaimed once their classes are unreachable.
+     */
+    private final Map<String, WeakReference<SplitDexClassLoader>> unloadedClassLoaders = new ConcurrentHashMap<>();
+
+    /**
+     * Number of alive components of each split.
+     */
+    private final Map<String, Integer> aliveComponents = new ConcurrentHashMap<>();
+
+    /**
+     * Uptime when a service or receiver class of each split was last instantiated through host class loader.
+     */
+    private final Map<String, Long> componentUsedTimes = new ConcurrentHashMap<>();
+
     private static final AtomicReference<SplitApplicationLoaders> sInstance = new AtomicReference<>();
 
     public static SplitApplicationLoaders getInstance() {
@@ -46,8 +65,29 @@ final class SplitApplicationLoaders {
         return sInstance.get();
     }
 
-    void addClassLoader(SplitDexClassLoader classLoader) {
+    /**
+     * Register class loader of split unless another one has been registered.
+     *
+     * @return class loader registered before, or {@code null} if the given one is registered.
+     */
+    @Nullable
+    synchronized SplitDexClassLoader addClassLoaderIfAbsent(SplitDexClassLoader classLoader) {
+        SplitDexClassLoader registeredClassLoader = getClassLoader(classLoader.moduleName());
+        if (registeredClassLoader != null) {
+            return registeredClassLoader;
+        }
         splitDexClassLoaders.add(classLoader);
+        return null;
+    }
+
+    /**
+     * Get class loader registered for split, or revive the one of unloaded split.
+     * Class loader is not valid until its split is published.
+     */
+    @Nullable
+    synchronized SplitDexClassLoader getOrReviveClassLoader(String moduleName) {
+        SplitDexClassLoader classLoader = getClassLoader(moduleName);
+        return classLoader != null ? classLoader : reviveClassLoader(moduleName);
     }
 
     Set<SplitDexClassLoader> getValidClassLoaders() {
@@ -60,6 +100,24 @@ final class SplitApplicationLoaders {
         return validClassLoaders;
     }
 
+    /**
+     * Get class loaders of splits whether they are published or not,
+     * so that a split can depend on splits published with it.
+     */
+    @Nullable
+    Set<SplitDexClassLoader> getClassLoaders(@Nullable List<String> moduleNames) {
+        if (moduleNames == null) {
+            return null;
+        }
+        Set<SplitDexClassLoader> loaders = new HashSet<>(moduleNames.size());
+        for (SplitDexClassLoader classLoader : splitDexClassLoaders) {
+            if (moduleNames.contains(classLoader.moduleName())) {
+                loaders.add(classLoader);
+            }
+        }
+        return loaders;
+    }
+
     @Nullable
     Set<SplitDexClassLoader> getValidClassLoaders(@Nullable List<String> moduleNames) {
         if (moduleNames == null) {
@@ -94,4 +152,68 @@ final class SplitApplicationLoaders {
         return null;
     }
 
+    synchronized void acquire(String moduleName) {
+        Integer count = aliveComponents.get(moduleName);
+        aliveComponents.put(moduleName, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * @return number of alive components of split after release.
+     */
+    synchronized int release(String moduleName) {
+        Integer count = aliveComponents.get(moduleName);
+        if (count == null || count <= 1) {
+            aliveComponents.remove(moduleName);
+            return 0;
+        }
+        aliveComponents.put(moduleName, count - 1);
+        return count - 1;
+    }
+
+    boolean hasAliveComponents(String moduleName) {
+        return aliveComponents.containsKey(moduleName);
+    }
+
+    /**
+     * Services and receivers have no lifecycle callbacks, the time their classes are found is tracked instead.
+     */
+    void onComponentUsed(String moduleName) {
+        componentUsedTimes.put(moduleName, SystemClock.uptimeMillis());
+    }
+
+    /**
+     * @return uptime when component of split was last used, or {@code 0} if never.
+     */
+    long getComponentUsedTime(String moduleName) {
+        Long time = componentUsedTimes.get(moduleName);
+        return time == null ? 0 : time;
+    }
+
+    /**
+     * Remove class loader of split, it is weakly held until the split is loaded again.
+     */
+    synchronized boolean unloadClassLoader(String moduleName) {
+        SplitDexClassLoader classLoader = getClassLoader(moduleName);
+        if (classLoader == null) {
+            return false;
+        }
+        classLoader.setValid(false);
+        unloadedClassLoaders.put(moduleName, new WeakReference<>(classLoader));
+        splitDexClassLoaders.remove(classLoader);
+        return true;
+    }
+
+    /**
+     * Class loader of unloaded split must be reused if it is still alive,
+     * otherwise classes of split would be defined twice.
+     */
+    @Nullable
+    private SplitDexClassLoader reviveClassLoader(String moduleName) {
+        WeakReference<SplitDexClassLoader> reference = unloadedClassLoaders.remove(moduleName);
+        SplitDexClassLoader classLoader = reference == null ? null : reference.get();
+        if (classLoader != null) {
+            splitDexClassLoaders.add(classLoader);
+        }
+        return classLoader;
+    }
 }
@@ -0,0 +1,87 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitload;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Code of splits to be injected into host class loader at once in single class loader mode.
+ */
+final class SplitCodeBatch {
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    void add(String splitName,
+             @Nullable List<String> dexPaths,
+             @Nullable File optimizedDirectory,
+             @Nullable File librarySearchPath) {
+        entries.add(new Entry(splitName, dexPaths, optimizedDirectory, librarySearchPath));
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    List<File> getLibraryDirs() {
+        List<File> libraryDirs = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            if (entry.librarySearchPath != null) {
+                libraryDirs.add(entry.librarySearchPath);
+            }
+        }
+        return libraryDirs;
+    }
+
+    static final class Entry {
+
+        final String splitName;
+
+        final List<String> dexPaths;
+
+        final File optimizedDirectory;
+
+        final File librarySearchPath;
+
+        Entry(String splitName, List<String> dexPaths, File optimizedDirectory, File librarySearchPath) {
+            this.splitName = splitName;
+            this.dexPaths = dexPaths;
+            this.optimizedDirectory = optimizedDirectory;
+            this.librarySearchPath = librarySearchPath;
+        }
+    }
+}
@@ -10,7 +10,11 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Source code from Tinker
@@ -19,66 +23,111 @@ final class SplitCompatDexLoader {
 
     private static final String TAG = "SplitCompatDexLoader";
 
-    private static int sPatchDexCount = 0;
+    /**
+     * Dex elements injected for each split, guarded by lock of callers which serialize injections.
+     */
+    private static final Map<String, List<Object>> sInjectedElements = new HashMap<>();
 
-    static void load(ClassLoader classLoader, File dexOptDir, List<File> files)
+    /**
+     * Inject dex files of splits into {@code classLoader}, dex elements are made for each split
+     * and {@code dexElements} is expanded only once. Elements of each split are recorded, so it can be unloaded alone.
+     */
+    static void load(ClassLoader classLoader, SplitCodeBatch codeBatch)
             throws Throwable {
-        if (!files.isEmpty()) {
+        if (codeBatch.isEmpty()) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT < 14) {
+            throw new UnsupportedOperationException("don't support under SDK version 14!");
+        }
+        /* The patched class loader is expected to be a descendant of
+         * dalvik.system.BaseDexClassLoader. We modify its
+         * dalvik.system.DexPathList pathList field to append additional DEX
+         * file entries.
+         */
+        Field pathListField = HiddenApiReflection.findField(classLoader, "pathList");
+        Object dexPathList = pathListField.get(classLoader);
+        ArrayList<IOException> suppressedExceptions = new ArrayList<>();
+        List<Object> elements = new ArrayList<>();
+        Map<String, List<Object>> splitElements = new HashMap<>(codeBatch.getEntries().size());
+        for (SplitCodeBatch.Entry entry : codeBatch.getEntries()) {
+            if (entry.dexPaths == null || entry.dexPaths.isEmpty()) {
+                continue;
+            }
+            ArrayList<File> files = new ArrayList<>(entry.dexPaths.size());
+            for (String dexPath : entry.dexPaths) {
+                files.add(new File(dexPath));
+            }
+            Object[] dexElements;
             if (Build.VERSION.SDK_INT >= 23) {
-                V23.load(classLoader, files, dexOptDir);
+                dexElements = V23.makePathElements(dexPathList, files, entry.optimizedDirectory, suppressedExceptions);
             } else if (Build.VERSION.SDK_INT >= 19) {
-                V19.load(classLoader, files, dexOptDir);
-            } else if (Build.VERSION.SDK_INT >= 14) {
-                V14.load(classLoader, files, dexOptDir);
+                dexElements = V19.makeDexElements(dexPathList, files, entry.optimizedDirectory, suppressedExceptions);
             } else {
-                throw new UnsupportedOperationException("don't support under SDK version 14!");
+                dexElements = V14.makeDexElements(dexPathList, files, entry.optimizedDirectory);
+            }
+            Collections.addAll(elements, dexElements);
+            List<Object> injected = new ArrayList<>(dexElements.length);
+            Collections.addAll(injected, dexElements);
+            splitElements.put(entry.splitName, injected);
+        }
+        if (!elements.isEmpty()) {
+            HiddenApiReflection.expandFieldArray(dexPathList, "dexElements", elements.toArray());
+            sInjectedElements.putAll(splitElements);
+        }
+        if (suppressedExceptions.size() > 0) {
+            for (IOException e : suppressedExceptions) {
+                SplitLog.e(TAG, "Exception in makePathElement", e);
+                throw e;
+            }
+        }
+        for (SplitCodeBatch.Entry entry : codeBatch.getEntries()) {
+            if (entry.dexPaths == null) {
+                continue;
+            }
+            Object[] dexElements = SplitUnKnownFileTypeDexLoader.loadDex(classLoader, entry.dexPaths, entry.optimizedDirectory);
+            if (dexElements.length > 0) {
+                List<Object> injected = sInjectedElements.get(entry.splitName);
+                if (injected == null) {
+                    injected = new ArrayList<>(dexElements.length);
+                    sInjectedElements.put(entry.splitName, injected);
+                }
+                Collections.addAll(injected, dexElements);
             }
-            sPatchDexCount = files.size();
         }
     }
 
-    static void unLoad(ClassLoader classLoader) throws Throwable {
-        if (sPatchDexCount <= 0) {
+    /**
+     * Remove dex elements injected for {@code splitName}, elements of other splits are kept.
+     */
+    static void unLoad(ClassLoader classLoader, String splitName) throws Throwable {
+        List<Object> injected = sInjectedElements.remove(splitName);
+        if (injected == null || injected.isEmpty()) {
             return;
         }
         if (Build.VERSION.SDK_INT >= 14) {
             Field pathListField = HiddenApiReflection.findField(classLoader, "pathList");
             Object dexPathList = pathListField.get(classLoader);
-            HiddenApiReflection.reduceFieldArray(dexPathList, "dexElements", sPatchDexCount);
+            HiddenApiReflection.removeFieldArrayElements(dexPathList, "dexElements", injected);
         } else {
             throw new RuntimeException("don't support under SDK version 14!");
         }
     }
 
+    /**
+     * Forget elements of {@code splitNames} after {@code dexElements} is restored by other means.
+     */
+    static void forget(Collection<String> splitNames) {
+        for (String splitName : splitNames) {
+            sInjectedElements.remove(splitName);
+        }
+    }
+
     /**
      * Installer for platform versions 19.
      */
     private static final class V23 {
 
-        private static void load(ClassLoader loader, List<File> additionalClassPathEntries,
-                                 File optimizedDirectory)
-                throws IllegalArgumentException, IllegalAccessException,
-                NoSuchFieldException, InvocationTargetException, NoSuchMethodException, IOException {
-            /* The patched class loader is expected to be a descendant of
-             * dalvik.system.BaseDexClassLoader. We modify its
-             * dalvik.system.DexPathList pathList field to append additional DEX
-             * file entries.
-             */
-            Field pathListField = HiddenApiReflection.findField(loader, "pathList");
-            Object dexPathList = pathListField.get(loader);
-            ArrayList<IOException> suppressedExceptions = new ArrayList<>();
-            HiddenApiReflection.expandFieldArray(dexPathList, "dexElements", makePathElements(dexPathList,
-                    new ArrayList<>(additionalClassPathEntries), optimizedDirectory,
-                    suppressedExceptions));
-            if (suppressedExceptions.size() > 0) {
-                for (IOException e : suppressedExceptions) {
-                    SplitLog.e(TAG, "Exception in makePathElement", e);
-                    throw e;
-                }
-
-            }
-        }
-
         /**
          * A wrapper around
          * {@code private static final dalvik.system.DexPathList#makePathElements}.
@@ -117,29 +166,6 @@ final class SplitCompatDexLoader {
      */
     private static final class V19 {
 
-        private static void load(ClassLoader loader, List<File> additionalClassPathEntries,
-                                 File optimizedDirectory)
-                throws IllegalArgumentException, IllegalAccessException,
-                NoSuchFieldException, InvocationTargetException, NoSuchMethodException, IOException {
-            /* The patched class loader is expected to be a descendant of
-             * dalvik.system.BaseDexClassLoader. We modify its
-             * dalvik.system.DexPathList pathList field to append additional DEX
-             * file entries.
-             */
-            Field pathListField = HiddenApiReflection.findField(loader, "pathList");
-            Object dexPathList = pathListField.get(loader);
-            ArrayList<IOException> suppressedExceptions = new ArrayList<>();
-            HiddenApiReflection.expandFieldArray(dexPathList, "dexElements", makeDexElements(dexPathList,
-                    new ArrayList<>(additionalClassPathEntries), optimizedDirectory,
-                    suppressedExceptions));
-            if (suppressedExceptions.size() > 0) {
-                for (IOException e : suppressedExceptions) {
-                    SplitLog.e(TAG, "Exception in makeDexElement", e);
-                    throw e;
-                }
-            }
-        }
-
         /**
          * A wrapper around
          * {@code private static final dalvik.system.DexPathList#makeDexElements}.
@@ -172,21 +198,6 @@ final class SplitCompatDexLoader {
      */
     private static final class V14 {
 
-        private static void load(ClassLoader loader, List<File> additionalClassPathEntries,
-                                 File optimizedDirectory)
-                throws IllegalArgumentException, IllegalAccessException,
-                NoSuchFieldException, InvocationTargetException, NoSuchMethodException {
-            /* The patched class loader is expected to be a descendant of
-             * dalvik.system.BaseDexClassLoader. We modify its
-             * dalvik.system.DexPathList pathList field to append additional DEX
-             * file entries.
-             */
-            Field pathListField = HiddenApiReflection.findField(loader, "pathList");
-            Object dexPathList = pathListField.get(loader);
-            HiddenApiReflection.expandFieldArray(dexPathList, "dexElements", makeDexElements(dexPathList,
-                    new ArrayList<>(additionalClassPathEntries), optimizedDirectory));
-        }
-
         /**
          * A wrapper around
          * {@code private static final dalvik.system.DexPathList#makeDexElements}.
@@ -9,7 +9,7 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -21,16 +21,25 @@ final class SplitCompatLibraryLoader {
 
     /**
      * All versions of load logic follow these rules:
-     * 1. If path of {@code folder} is not injected into the classloader, inject it to the
+     * 1. If path of a folder in {@code folders} is not injected into the classloader, inject it to the
      * beginning of pathList in the classloader.
      * <p>
-     * 2. Otherwise remove path of {@code folder} first, then re-inject it to the
+     * 2. Otherwise remove path of the folder first, then re-inject it to the
      * beginning of pathList in the classloader.
+     * <p>
+     * Folders of all splits are injected in order at once, so native library elements are made only once.
      */
-    static void load(ClassLoader classLoader, File folder)
+    static void load(ClassLoader classLoader, List<File> folders)
             throws Throwable {
-        if (folder == null || !folder.exists()) {
-            SplitLog.e(TAG, "load, folder %s is illegal", folder);
+        List<File> validFolders = new ArrayList<>(folders.size());
+        for (File folder : folders) {
+            if (folder == null || !folder.exists()) {
+                SplitLog.e(TAG, "load, folder %s is illegal", folder);
+            } else if (!validFolders.contains(folder)) {
+                validFolders.add(folder);
+            }
+        }
+        if (validFolders.isEmpty()) {
             return;
         }
         // android o sdk_int 26
@@ -38,52 +47,60 @@ final class SplitCompatLibraryLoader {
         if ((Build.VERSION.SDK_INT == 25 && Build.VERSION.PREVIEW_SDK_INT != 0)
                 || Build.VERSION.SDK_INT > 25) {
             try {
-                V25.load(classLoader, folder);
+                V25.load(classLoader, validFolders);
             } catch (Throwable throwable) {
                 // load fail, try to treat it as v23
                 // some preview N version may go here
                 SplitLog.e(TAG, "load, v25 fail, sdk: %d, error: %s, try to fallback to V23",
                         Build.VERSION.SDK_INT, throwable.getMessage());
-                V23.load(classLoader, folder);
+                V23.load(classLoader, validFolders);
             }
         } else if (Build.VERSION.SDK_INT >= 23) {
             try {
-                V23.load(classLoader, folder);
+                V23.load(classLoader, validFolders);
             } catch (Throwable throwable) {
                 // load fail, try to treat it as v14
                 SplitLog.e(TAG, "load, v23 fail, sdk: %d, error: %s, try to fallback to V14",
                         Build.VERSION.SDK_INT, throwable.getMessage());
 
-                V14.load(classLoader, folder);
+                V14.load(classLoader, validFolders);
             }
         } else if (Build.VERSION.SDK_INT >= 14) {
-            V14.load(classLoader, folder);
+            V14.load(classLoader, validFolders);
         } else {
             throw new UnsupportedOperationException("don't support under SDK version 14!");
         }
     }
 
+    /**
+     * @return {@code folders} followed by {@code origLibDirs} without folders.
+     */
+    private static List<File> prependFolders(List<File> folders, List<File> origLibDirs) {
+        final List<File> newLibDirs = new ArrayList<>(folders.size() + origLibDirs.size());
+        newLibDirs.addAll(folders);
+        for (File origLibDir : origLibDirs) {
+            if (!folders.contains(origLibDir)) {
+                newLibDirs.add(origLibDir);
+            }
+        }
+        return newLibDirs;
+    }
+
     private static final class V14 {
-        private static void load(ClassLoader classLoader, File folder) throws Throwable {
+        private static void load(ClassLoader classLoader, List<File> folders) throws Throwable {
             final Field pathListField = HiddenApiReflection.findField(classLoader, "pathList");
             final Object dexPathList = pathListField.get(classLoader);
 
             final Field nativeLibDirField = HiddenApiReflection.findField(dexPathList, "nativeLibraryDirectories");
             final File[] origNativeLibDirs = (File[]) nativeLibDirField.get(dexPathList);
 
-            final List<File> newNativeLibDirList = new ArrayList<>(origNativeLibDirs.length + 1);
-            newNativeLibDirList.add(folder);
-            for (File origNativeLibDir : origNativeLibDirs) {
-                if (!folder.equals(origNativeLibDir)) {
-                    newNativeLibDirList.add(origNativeLibDir);
-                }
-            }
+            final List<File> newNativeLibDirList = prependFolders(folders, Arrays.asList(origNativeLibDirs));
             nativeLibDirField.set(dexPathList, newNativeLibDirList.toArray(new File[0]));
         }
     }
 
     private static final class V23 {
-        private static void load(ClassLoader classLoader, File folder) throws Throwable {
+        private static void load(ClassLoader classLoader, List<File> folders) throws Throwable {
             final Field pathListField = HiddenApiReflection.findField(classLoader, "pathList");
             final Object dexPathList = pathListField.get(classLoader);
 
@@ -93,15 +110,9 @@ final class SplitCompatLibraryLoader {
             if (origLibDirs == null) {
                 origLibDirs = new ArrayList<>(2);
             }
-            final Iterator<File> libDirIt = origLibDirs.iterator();
-            while (libDirIt.hasNext()) {
-                final File libDir = libDirIt.next();
-                if (folder.equals(libDir)) {
-                    libDirIt.remove();
-                    break;
-                }
-            }
-            origLibDirs.add(0, folder);
+            final List<File> libDirs = prependFolders(folders, origLibDirs);
+            origLibDirs.clear();
+            origLibDirs.addAll(libDirs);
 
             final Field systemNativeLibraryDirectories = HiddenApiReflection.findField(dexPathList, "systemNativeLibraryDirectories");
             List<File> origSystemLibDirs = (List<File>) systemNativeLibraryDirectories.get(dexPathList);
@@ -125,7 +136,7 @@ final class SplitCompatLibraryLoader {
     }
 
     private static final class V25 {
-        private static void load(ClassLoader classLoader, File folder) throws Throwable {
+        private static void load(ClassLoader classLoader, List<File> folders) throws Throwable {
             final Field pathListField = HiddenApiReflection.findField(classLoader, "pathList");
             final Object dexPathList = pathListField.get(classLoader);
 
@@ -135,15 +146,9 @@ final class SplitCompatLibraryLoader {
             if (origLibDirs == null) {
                 origLibDirs = new ArrayList<>(2);
             }
-            final Iterator<File> libDirIt = origLibDirs.iterator();
-            while (libDirIt.hasNext()) {
-                final File libDir = libDirIt.next();
-                if (folder.equals(libDir)) {
-                    libDirIt.remove();
-                    break;
-                }
-            }
-            origLibDirs.add(0, folder);
+            final List<File> libDirs = prependFolders(folders, origLibDirs);
+            origLibDirs.clear();
+            origLibDirs.addAll(libDirs);
             final Field systemNativeLibraryDirectories = HiddenApiReflection.findField(dexPathList, "systemNativeLibraryDirectories");
             List<File> origSystemLibDirs = (List<File>) systemNativeLibraryDirectories.get(dexPathList);
             if (origSystemLibDirs == null) {
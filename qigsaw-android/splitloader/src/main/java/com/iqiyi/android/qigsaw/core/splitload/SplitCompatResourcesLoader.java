@@ -43,6 +43,8 @@ import android.util.DisplayMetrics;
 import android.view.ContextThemeWrapper;
 
 import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.common.SplitTrace;
+import com.iqiyi.android.qigsaw.core.splitreport.SplitMetrics;
 
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
@@ -71,6 +73,7 @@ public class SplitCompatResourcesLoader {
      * After Android 7.0, WebView.apk resources is added dynamically.
      */
     public static void loadResources(Context context, Resources resources) throws Throwable {
+        SplitMetrics.increment(SplitMetrics.RESOURCES_CHECK);
         checkOrUpdateResources(context, resources);
     }
 
@@ -116,6 +119,16 @@ public class SplitCompatResourcesLoader {
     }
 
     private static void installSplitResDirs(final Context context, final Resources resources, final List<String> splitResPaths) throws Throwable {
+        SplitTrace.beginSection(SplitTrace.INJECT_RESOURCES);
+        SplitMetrics.add(SplitMetrics.RESOURCES_INJECT, splitResPaths.size());
+        try {
+            installSplitResDirsInternal(context, resources, splitResPaths);
+        } finally {
+            SplitTrace.endSection();
+        }
+    }
+
+    private static void installSplitResDirsInternal(final Context context, final Resources resources, final List<String> splitResPaths) throws Throwable {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
             V21.installSplitResDirs(resources, splitResPaths);
         } else {
@@ -147,6 +160,7 @@ public class SplitCompatResourcesLoader {
 
     private static List<String> getLoadedResourcesDirs(AssetManager asset) throws NoSuchFieldException,
             IllegalAccessException, NoSuchMethodException, InvocationTargetException, ClassNotFoundException {
+        SplitMetrics.increment(SplitMetrics.RESOURCES_REFLECT);
         List<String> existedAppResDirList = new ArrayList<>();
         if (Build.VERSION.SDK_INT >= 28) {
             Object[] apkAssets = (Object[]) VersionCompat.getGetApkAssetsMethod().invoke(asset);
@@ -29,6 +29,7 @@ import android.text.TextUtils;
 import androidx.annotation.Keep;
 
 import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.splitreport.SplitMetrics;
 
 import java.io.File;
 import java.net.URL;
@@ -45,7 +46,9 @@ final class SplitDexClassLoader extends BaseDexClassLoader {
 
     private final String moduleName;
 
-    private boolean valid;
+    private volatile boolean valid;
+
+    private boolean activated;
 
     private Set<SplitDexClassLoader> dependenciesLoaders;
 
@@ -57,7 +60,7 @@ final class SplitDexClassLoader extends BaseDexClassLoader {
                                 ClassLoader parent) throws Throwable {
         super((dexPaths == null) ? "" : TextUtils.join(File.pathSeparator, dexPaths), optimizedDirectory, librarySearchPath, parent);
         this.moduleName = moduleName;
-        this.dependenciesLoaders = SplitApplicationLoaders.getInstance().getValidClassLoaders(dependencies);
+        this.dependenciesLoaders = SplitApplicationLoaders.getInstance().getClassLoaders(dependencies);
         SplitUnKnownFileTypeDexLoader.loadDex(this, dexPaths, optimizedDirectory);
     }
 
@@ -89,6 +92,7 @@ final class SplitDexClassLoader extends BaseDexClassLoader {
                     try {
                         return loader.loadClassItself(name);
                     } catch (ClassNotFoundException e2) {
+                        SplitMetrics.increment(SplitMetrics.CLASS_LOOKUP_MISS, loader.moduleName());
                         SplitLog.w(TAG, "SplitDexClassLoader: Class %s is not found in %s ClassLoader", name, loader.moduleName());
                     }
                 }
@@ -105,6 +109,28 @@ final class SplitDexClassLoader extends BaseDexClassLoader {
         return valid;
     }
 
+    /**
+     * Application and content providers of split have been created by this class loader.
+     */
+    void setActivated(boolean activated) {
+        this.activated = activated;
+    }
+
+    boolean isActivated() {
+        return activated;
+    }
+
+    boolean dependsOn(String moduleName) {
+        if (dependenciesLoaders != null) {
+            for (SplitDexClassLoader loader : dependenciesLoaders) {
+                if (loader.moduleName().equals(moduleName)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     String moduleName() {
         return moduleName;
     }
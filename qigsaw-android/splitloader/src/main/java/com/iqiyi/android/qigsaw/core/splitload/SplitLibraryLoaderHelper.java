@@ -28,8 +28,10 @@ import android.annotation.SuppressLint;
 import android.app.Application;
 import android.content.Context;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfo;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfoManager;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfoManagerService;
@@ -38,15 +40,43 @@ import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitPathManager;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
 
+/**
+ * Load split libraries by the index of library owners in split-details file.
+ * Before a library is loaded, libraries of splits which its owner depends on are loaded in one pass,
+ * so that it can be linked against them.
+ */
 @RestrictTo(LIBRARY_GROUP)
 public class SplitLibraryLoaderHelper {
 
-    @SuppressLint("UnsafeDynamicallyLoadedCode")
+    private static final String TAG = "SplitLibraryLoaderHelper";
+
+    private static final String LIB_PREFIX = "lib";
+
+    private static final String LIB_SUFFIX = ".so";
+
+    /**
+     * File names of libraries loaded for base apk, by name of split which ships them.
+     */
+    private static final Map<String, Set<String>> sBaseLoadedLibraries = new HashMap<>();
+
+    /**
+     * File names of libraries loaded by class loaders of splits, by name of split.
+     * Entries of a split are dropped once it is unloaded, its next class loader has to load them again.
+     */
+    private static final Map<String, Set<String>> sSplitLoadedLibraries = new HashMap<>();
+
+    private static final Map<ClassLoader, SplitLibraryLoader> sSplitLibraryLoaders = new WeakHashMap<>();
+
     public static boolean loadSplitLibrary(Context context, String libraryName) {
         if (!SplitLoadManagerService.hasInstance()) {
             return false;
@@ -56,54 +86,165 @@ public class SplitLibraryLoaderHelper {
         }
         SplitInfoManager manager = SplitInfoManagerService.getInstance();
         assert manager != null;
-        Collection<SplitInfo> splits = manager.getAllSplitInfo(context);
-        if (splits == null) {
+        String libraryFileName = System.mapLibraryName(libraryName);
+        String owner = manager.getLibraryOwner(context, libraryFileName);
+        if (owner == null) {
+            return false;
+        }
+        SplitInfo info = manager.getSplitInfo(context, owner);
+        if (info == null) {
             return false;
         }
-        for (SplitInfo info : splits) {
+        boolean forBase = context instanceof Application;
+        synchronized (SplitLibraryLoaderHelper.class) {
+            if (!forBase && SplitApplicationLoaders.getInstance().getValidClassLoader(owner) == null) {
+                return false;
+            }
+            preloadDependencyLibraries(context, manager, info, forBase);
+            return loadLibrary(context, info, libraryFileName, forBase);
+        }
+    }
+
+    private static void preloadDependencyLibraries(Context context, SplitInfoManager manager, SplitInfo info, boolean forBase) {
+        List<SplitInfo> dependencies = new ArrayList<>();
+        collectDependencies(context, manager, info, dependencies, new HashSet<String>());
+        for (SplitInfo dependency : dependencies) {
             try {
-                SplitInfo.LibData libData = info.getPrimaryLibData(context);
+                SplitInfo.LibData libData = dependency.getPrimaryLibData(context);
                 if (libData == null) {
                     continue;
                 }
-                List<SplitInfo.LibData.Lib> libs = libData.getLibs();
-                for (SplitInfo.LibData.Lib lib : libs) {
-                    if (lib.getName().equals(System.mapLibraryName(libraryName))) {
-                        if (context instanceof Application) {
-                            String libPath = SplitPathManager.require().getSplitLibDir(info, libData.getAbi()).getAbsolutePath() + File.separator + lib.getName();
-                            try {
-                                System.load(libPath);
-                                return true;
-                            } catch (UnsatisfiedLinkError error) {
-                                return false;
-                            }
-                        } else {
-                            SplitDexClassLoader classLoader = SplitApplicationLoaders.getInstance().getValidClassLoader(info.getSplitName());
-                            if (classLoader != null) {
-                                return loadSplitLibrary0(classLoader, info.getSplitName(), libraryName);
-                            }
-                        }
-                        break;
+                for (SplitInfo.LibData.Lib lib : libData.getLibs()) {
+                    if (!loadLibrary(context, dependency, lib.getName(), forBase)) {
+                        SplitLog.w(TAG, "Failed to preload library %s of split %s", lib.getName(), dependency.getSplitName());
                     }
                 }
-            } catch (IOException ignored) {
+            } catch (IOException e) {
+                SplitLog.w(TAG, "Failed to get lib data of split " + dependency.getSplitName(), e);
+            }
+        }
+    }
+
+    /**
+     * Collect dependencies of split recursively, deepest dependency comes first.
+     */
+    private static void collectDependencies(Context context, SplitInfoManager manager, SplitInfo info,
+                                            List<SplitInfo> dependencies, Set<String> visited) {
+        List<String> dependencyNames = info.getDependencies();
+        if (dependencyNames == null) {
+            return;
+        }
+        for (String dependencyName : dependencyNames) {
+            if (!visited.add(dependencyName)) {
+                continue;
+            }
+            SplitInfo dependency = manager.getSplitInfo(context, dependencyName);
+            if (dependency != null) {
+                collectDependencies(context, manager, dependency, dependencies, visited);
+                dependencies.add(dependency);
+            }
+        }
+    }
+
+    /**
+     * Called when class loader of split is unloaded.
+     */
+    static void onSplitUnloaded(String splitName) {
+        synchronized (SplitLibraryLoaderHelper.class) {
+            sSplitLoadedLibraries.remove(splitName);
+        }
+    }
 
+    @SuppressLint("UnsafeDynamicallyLoadedCode")
+    private static boolean loadLibrary(Context context, SplitInfo info, String libraryFileName, boolean forBase) {
+        Map<String, Set<String>> loadedLibrariesOfSplits = forBase ? sBaseLoadedLibraries : sSplitLoadedLibraries;
+        Set<String> loadedLibraries = loadedLibrariesOfSplits.get(info.getSplitName());
+        if (loadedLibraries != null && loadedLibraries.contains(libraryFileName)) {
+            return true;
+        }
+        if (forBase) {
+            try {
+                SplitInfo.LibData libData = info.getPrimaryLibData(context);
+                if (libData == null) {
+                    return false;
+                }
+                String libPath = SplitPathManager.require().getSplitLibDir(info, libData.getAbi()).getAbsolutePath() + File.separator + libraryFileName;
+                System.load(libPath);
+            } catch (IOException | UnsatisfiedLinkError e) {
+                return false;
+            }
+        } else {
+            SplitDexClassLoader classLoader = SplitApplicationLoaders.getInstance().getValidClassLoader(info.getSplitName());
+            if (classLoader == null) {
+                return false;
+            }
+            SplitLibraryLoader splitLibraryLoader = getSplitLibraryLoader(classLoader, info.getSplitName());
+            if (splitLibraryLoader == null) {
+                return false;
+            }
+            try {
+                splitLibraryLoader.loadSplitLibrary(toLibraryName(libraryFileName));
+            } catch (Throwable e) {
+                return false;
             }
         }
-        return false;
+        if (loadedLibraries == null) {
+            loadedLibraries = new HashSet<>();
+            loadedLibrariesOfSplits.put(info.getSplitName(), loadedLibraries);
+        }
+        loadedLibraries.add(libraryFileName);
+        return true;
     }
 
-    private static boolean loadSplitLibrary0(ClassLoader classLoader, String splitName, String name) {
+    @Nullable
+    private static SplitLibraryLoader getSplitLibraryLoader(ClassLoader classLoader, String splitName) {
+        SplitLibraryLoader splitLibraryLoader = sSplitLibraryLoaders.get(classLoader);
+        if (splitLibraryLoader != null) {
+            return splitLibraryLoader;
+        }
         try {
             Class<?> splitLoaderCl = classLoader.loadClass("com.iqiyi.android.qigsaw.core.splitlib." + splitName + "SplitLibraryLoader");
             Object splitLoader = splitLoaderCl.newInstance();
-            Method method = HiddenApiReflection.findMethod(splitLoaderCl, "loadSplitLibrary", String.class);
-            method.invoke(splitLoader, name);
-            return true;
+            if (splitLoader instanceof SplitLibraryLoader) {
+                splitLibraryLoader = (SplitLibraryLoader) splitLoader;
+            } else {
+                //generated by old gradle plugin.
+                splitLibraryLoader = new ReflectiveSplitLibraryLoader(splitLoader,
+                        HiddenApiReflection.findMethod(splitLoaderCl, "loadSplitLibrary", String.class));
+            }
+            sSplitLibraryLoaders.put(classLoader, splitLibraryLoader);
+            return splitLibraryLoader;
         } catch (Throwable ignored) {
 
         }
-        return false;
+        return null;
+    }
+
+    private static String toLibraryName(String libraryFileName) {
+        if (libraryFileName.startsWith(LIB_PREFIX) && libraryFileName.endsWith(LIB_SUFFIX)) {
+            return libraryFileName.substring(LIB_PREFIX.length(), libraryFileName.length() - LIB_SUFFIX.length());
+        }
+        return libraryFileName;
     }
 
+    private static final class ReflectiveSplitLibraryLoader implements SplitLibraryLoader {
+
+        private final Object splitLoader;
+
+        private final Method method;
+
+        ReflectiveSplitLibraryLoader(Object splitLoader, Method method) {
+            this.splitLoader = splitLoader;
+            this.method = method;
+        }
+
+        @Override
+        public void loadSplitLibrary(String libraryName) {
+            try {
+                method.invoke(splitLoader, libraryName);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
 }
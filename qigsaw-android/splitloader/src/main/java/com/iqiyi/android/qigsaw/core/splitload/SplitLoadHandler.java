@@ -30,13 +30,16 @@ import android.content.Intent;
 import android.os.Handler;
 import android.os.Looper;
 
+import androidx.annotation.AnyThread;
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 
 import com.iqiyi.android.qigsaw.core.common.SplitConstants;
 import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.common.SplitTrace;
 import com.iqiyi.android.qigsaw.core.splitreport.SplitBriefInfo;
 import com.iqiyi.android.qigsaw.core.splitreport.SplitLoadError;
+import com.iqiyi.android.qigsaw.core.splitreport.SplitMetrics;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfo;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfoManager;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfoManagerService;
@@ -46,7 +49,9 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 final class SplitLoadHandler {
@@ -82,14 +87,40 @@ final class SplitLoadHandler {
 
     @MainThread
     final void loadSplitsSync(final OnSplitLoadFinishListener loadFinishListener) {
-        loadSplits(loadFinishListener);
+        publishSplitsSync(prepareSplitsSync(), loadFinishListener);
     }
 
-    private void loadSplits(final OnSplitLoadFinishListener loadFinishListener) {
-        long totalLoadStart = System.currentTimeMillis();
-        Set<Split> loadedSpits = new HashSet<>();
-        List<SplitLoadError> loadErrorInfos = new ArrayList<>(0);
-        List<SplitBriefInfo> loadOKInfos = new ArrayList<>(splitFileIntents.size());
+    /**
+     * Load code of splits, which is the most time-consuming part of loading and may run on any thread.
+     * Splits are not visible to host until {@link #publishSplitsSync(PreparedSplits, OnSplitLoadFinishListener)}.
+     */
+    @AnyThread
+    final PreparedSplits prepareSplitsSync() {
+        SplitTrace.beginSection(SplitTrace.LOAD_SPLITS);
+        try {
+            return prepareSplits();
+        } finally {
+            SplitTrace.endSection();
+        }
+    }
+
+    /**
+     * Create applications and content-providers of prepared splits, then mark them loaded.
+     */
+    @MainThread
+    final void publishSplitsSync(PreparedSplits preparedSplits, OnSplitLoadFinishListener loadFinishListener) {
+        SplitTrace.beginSection(SplitTrace.PUBLISH_SPLITS);
+        long publishStart = SplitMetrics.startTimer();
+        try {
+            publishSplits(preparedSplits, loadFinishListener);
+        } finally {
+            SplitMetrics.recordLatency(SplitMetrics.LOAD_PUBLISH_LATENCY, publishStart);
+            SplitTrace.endSection();
+        }
+    }
+
+    private PreparedSplits prepareSplits() {
+        PreparedSplits preparedSplits = new PreparedSplits(System.currentTimeMillis(), splitFileIntents.size());
         for (Intent splitFileIntent : splitFileIntents) {
             long loadStart = System.currentTimeMillis();
             final String splitName = splitFileIntent.getStringExtra(SplitConstants.KET_NAME);
@@ -107,14 +138,14 @@ final class SplitLoadHandler {
             String splitApkPath = splitFileIntent.getStringExtra(SplitConstants.KEY_APK);
             if (splitApkPath == null) {
                 SplitLog.w(TAG, "Failed to read split %s apk path", splitName);
-                loadErrorInfos.add(new SplitLoadError(splitBriefInfo, SplitLoadError.INTERNAL_ERROR, new Exception("split apk path " + splitName + " is missing!")));
+                preparedSplits.loadErrorInfos.add(new SplitLoadError(splitBriefInfo, SplitLoadError.INTERNAL_ERROR, new Exception("split apk path " + splitName + " is missing!")));
                 continue;
             }
             String dexOptPath = splitFileIntent.getStringExtra(SplitConstants.KEY_DEX_OPT_DIR);
             //check opt-path for split.
             if (info.hasDex() && dexOptPath == null) {
                 SplitLog.w(TAG, "Failed to %s get dex-opt-dir", splitName);
-                loadErrorInfos.add(new SplitLoadError(splitBriefInfo, SplitLoadError.INTERNAL_ERROR, new Exception("dex-opt-dir of " + splitName + " is missing!")));
+                preparedSplits.loadErrorInfos.add(new SplitLoadError(splitBriefInfo, SplitLoadError.INTERNAL_ERROR, new Exception("dex-opt-dir of " + splitName + " is missing!")));
                 continue;
             }
             //check native library path for split.
@@ -123,16 +154,20 @@ final class SplitLoadHandler {
                 SplitInfo.LibData libData = info.getPrimaryLibData(getContext());
                 if (libData != null && nativeLibPath == null) {
                     SplitLog.w(TAG, "Failed to get %s native-lib-dir", splitName);
-                    loadErrorInfos.add(new SplitLoadError(splitBriefInfo, SplitLoadError.INTERNAL_ERROR, new Exception("native-lib-dir of " + splitName + " is missing!")));
+                    preparedSplits.loadErrorInfos.add(new SplitLoadError(splitBriefInfo, SplitLoadError.INTERNAL_ERROR, new Exception("native-lib-dir of " + splitName + " is missing!")));
                     continue;
                 }
             } catch (IOException e) {
-                loadErrorInfos.add(new SplitLoadError(splitBriefInfo, SplitLoadError.INTERNAL_ERROR, e));
+                preparedSplits.loadErrorInfos.add(new SplitLoadError(splitBriefInfo, SplitLoadError.INTERNAL_ERROR, e));
                 continue;
             }
+            //counted before loading, so a crash while loading or activating this version is counted too.
+            SplitPathManager.require().getVersionGuard().onLoadStarted(info);
             //load split's dex files
             List<String> addedDexPaths = splitFileIntent.getStringArrayListExtra(SplitConstants.KEY_ADDED_DEX);
             ClassLoader classLoader;
+            SplitTrace.beginSection(SplitTrace.LOAD_CODE);
+            long loadCodeStart = SplitMetrics.startTimer();
             try {
                 classLoader = splitLoader.loadCode(splitName,
                         addedDexPaths, dexOptPath == null ? null : new File(dexOptPath),
@@ -141,68 +176,167 @@ final class SplitLoadHandler {
                 );
             } catch (SplitLoadException e) {
                 SplitLog.printErrStackTrace(TAG, e, "Failed to load split %s code!", splitName);
-                loadErrorInfos.add(new SplitLoadError(splitBriefInfo, e.getErrorCode(), e.getCause()));
+                preparedSplits.loadErrorInfos.add(new SplitLoadError(splitBriefInfo, e.getErrorCode(), e.getCause()));
                 continue;
+            } finally {
+                SplitMetrics.recordLatency(SplitMetrics.LOAD_CODE_LATENCY, loadCodeStart);
+                SplitTrace.endSection();
             }
-            //create split application instance.
-            final Application application;
-            try {
-                application = activator.createSplitApplication(classLoader, splitName);
-            } catch (SplitLoadException e) {
-                SplitLog.printErrStackTrace(TAG, e, "Failed to create %s application ", splitName);
-                loadErrorInfos.add(new SplitLoadError(splitBriefInfo, e.getErrorCode(), e.getCause()));
-                splitLoader.unloadCode(classLoader);
-                continue;
+            preparedSplits.splits.add(new PreparedSplit(info, splitBriefInfo, splitApkPath, classLoader, loadStart));
+        }
+        flushCode(preparedSplits);
+        return preparedSplits;
+    }
+
+    private void flushCode(PreparedSplits preparedSplits) {
+        Map<String, SplitLoadException> errors;
+        SplitTrace.beginSection(SplitTrace.LOAD_CODE);
+        long flushCodeStart = SplitMetrics.startTimer();
+        try {
+            errors = splitLoader.flushCode();
+        } finally {
+            SplitMetrics.recordLatency(SplitMetrics.LOAD_CODE_LATENCY, flushCodeStart);
+            SplitTrace.endSection();
+        }
+        if (errors.isEmpty()) {
+            return;
+        }
+        Iterator<PreparedSplit> iterator = preparedSplits.splits.iterator();
+        while (iterator.hasNext()) {
+            PreparedSplit preparedSplit = iterator.next();
+            SplitLoadException e = errors.get(preparedSplit.info.getSplitName());
+            if (e != null) {
+                SplitLog.printErrStackTrace(TAG, e, "Failed to load split %s code!", preparedSplit.info.getSplitName());
+                preparedSplits.loadErrorInfos.add(new SplitLoadError(preparedSplit.briefInfo, e.getErrorCode(), e.getCause()));
+                iterator.remove();
             }
-            try {
-                activateSplit(splitName, splitApkPath, application, classLoader);
-            } catch (SplitLoadException e) {
-                loadErrorInfos.add(new SplitLoadError(splitBriefInfo, e.getErrorCode(), e.getCause()));
-                splitLoader.unloadCode(classLoader);
+        }
+    }
+
+    private void publishSplits(PreparedSplits preparedSplits, OnSplitLoadFinishListener loadFinishListener) {
+        Set<Split> loadedSpits = new HashSet<>();
+        List<SplitLoadError> loadErrorInfos = preparedSplits.loadErrorInfos;
+        List<SplitBriefInfo> loadOKInfos = new ArrayList<>(preparedSplits.splits.size());
+        List<SplitInfo> loadOKSplitInfos = new ArrayList<>(preparedSplits.splits.size());
+        for (PreparedSplit preparedSplit : preparedSplits.splits) {
+            String splitName = preparedSplit.info.getSplitName();
+            String splitApkPath = preparedSplit.splitApkPath;
+            ClassLoader classLoader = preparedSplit.classLoader;
+            SplitBriefInfo splitBriefInfo = preparedSplit.briefInfo;
+            //split may be published by another task while its code is loading.
+            if (checkSplitLoaded(splitName)) {
+                SplitLog.i(TAG, "Split %s has been loaded!", splitName);
                 continue;
             }
-            File splitDir = SplitPathManager.require().getSplitDir(info);
-            if (!splitDir.setLastModified(System.currentTimeMillis())) {
-                SplitLog.w(TAG, "Failed to set last modified time for " + splitName);
+            //class loader of unloaded split is revived, its application and content-providers are still alive.
+            if (isActivated(classLoader)) {
+                SplitLog.i(TAG, "Split %s is revived, skip activating it.", splitName);
+                setValid(classLoader);
+                try {
+                    splitLoader.loadResources(splitApkPath);
+                } catch (SplitLoadException e) {
+                    SplitLog.printErrStackTrace(TAG, e, "Failed to load %s resources", splitApkPath);
+                }
+            } else {
+                //create split application instance.
+                final Application application;
+                SplitTrace.beginSection(SplitTrace.CREATE_APPLICATION);
+                long createApplicationStart = SplitMetrics.startTimer();
+                try {
+                    application = activator.createSplitApplication(classLoader, splitName);
+                } catch (SplitLoadException e) {
+                    SplitLog.printErrStackTrace(TAG, e, "Failed to create %s application ", splitName);
+                    loadErrorInfos.add(new SplitLoadError(splitBriefInfo, e.getErrorCode(), e.getCause()));
+                    splitLoader.unloadCode(splitName, classLoader);
+                    continue;
+                } finally {
+                    SplitMetrics.recordLatency(SplitMetrics.LOAD_APPLICATION_LATENCY, createApplicationStart);
+                    SplitTrace.endSection();
+                }
+                //application and content-providers may load classes and libraries of split through host.
+                setValid(classLoader);
+                long activateStart = SplitMetrics.startTimer();
+                try {
+                    activateSplit(splitName, splitApkPath, application, classLoader);
+                } catch (SplitLoadException e) {
+                    loadErrorInfos.add(new SplitLoadError(splitBriefInfo, e.getErrorCode(), e.getCause()));
+                    splitLoader.unloadCode(splitName, classLoader);
+                    continue;
+                } finally {
+                    SplitMetrics.recordLatency(SplitMetrics.LOAD_ACTIVATE_LATENCY, activateStart);
+                }
+                if (classLoader instanceof SplitDexClassLoader) {
+                    ((SplitDexClassLoader) classLoader).setActivated(true);
+                }
             }
-            loadOKInfos.add(splitBriefInfo.setTimeCost(System.currentTimeMillis() - loadStart));
+            SplitPathManager.require().getLastUsedTracker().recordUsed(splitName, preparedSplit.info.getSplitVersion());
+            long timeCost = System.currentTimeMillis() - preparedSplit.loadStart;
+            SplitMetrics.record(SplitMetrics.LOAD_SPLIT_LATENCY, timeCost);
+            loadOKInfos.add(splitBriefInfo.setTimeCost(timeCost));
             loadedSpits.add(new Split(splitName, splitApkPath));
+            loadOKSplitInfos.add(preparedSplit.info);
         }
         loadManager.putSplits(loadedSpits);
+        SplitPathManager.require().getVersionGuard().onLoadSucceeded(loadOKSplitInfos);
         if (loadFinishListener != null) {
-            loadFinishListener.onLoadFinish(loadOKInfos, loadErrorInfos, loadManager.currentProcessName, System.currentTimeMillis() - totalLoadStart);
+            loadFinishListener.onLoadFinish(loadOKInfos, loadErrorInfos, loadManager.currentProcessName, System.currentTimeMillis() - preparedSplits.totalLoadStart);
         }
     }
 
     private void activateSplit(String splitName, String splitApkPath, Application application, ClassLoader classLoader) throws SplitLoadException {
+        SplitTrace.beginSection(SplitTrace.LOAD_RESOURCES);
         try {
             splitLoader.loadResources(splitApkPath);
         } catch (SplitLoadException e) {
             SplitLog.printErrStackTrace(TAG, e, "Failed to load %s resources", splitApkPath);
+        } finally {
+            SplitTrace.endSection();
         }
         //attach split application.
+        SplitTrace.beginSection(SplitTrace.ATTACH_APPLICATION);
         try {
             activator.attachSplitApplication(application);
         } catch (SplitLoadException e) {
             SplitLog.printErrStackTrace(TAG, e, "Failed to attach %s application", splitName);
             throw e;
+        } finally {
+            SplitTrace.endSection();
         }
         //create split content-provider instance.
+        SplitTrace.beginSection(SplitTrace.CREATE_PROVIDERS);
         try {
             activator.createAndActivateSplitContentProviders(classLoader, splitName);
         } catch (SplitLoadException e) {
             SplitLog.printErrStackTrace(TAG, e, "Failed to create %s content-provider ", splitName);
             throw e;
+        } finally {
+            SplitTrace.endSection();
         }
         //invoke onCreate for split application.
+        SplitTrace.beginSection(SplitTrace.INVOKE_ON_CREATE);
         try {
             activator.invokeOnCreateForSplitApplication(application);
         } catch (SplitLoadException e) {
             SplitLog.printErrStackTrace(TAG, e, "Failed to invoke onCreate for %s application", splitName);
             throw e;
+        } finally {
+            SplitTrace.endSection();
+        }
+    }
+
+    /**
+     * Class loader of split is visible to host from now on, it is made invalid again if split fails to be published.
+     */
+    private void setValid(ClassLoader classLoader) {
+        if (classLoader instanceof SplitDexClassLoader) {
+            ((SplitDexClassLoader) classLoader).setValid(true);
         }
     }
 
+    private boolean isActivated(ClassLoader classLoader) {
+        return classLoader instanceof SplitDexClassLoader && ((SplitDexClassLoader) classLoader).isActivated();
+    }
+
     private boolean checkSplitLoaded(String splitName) {
         for (Split split : loadManager.getLoadedSplits()) {
             if (split.splitName.equals(splitName)) {
@@ -216,6 +350,44 @@ final class SplitLoadHandler {
         return loadManager.getContext();
     }
 
+    /**
+     * Splits whose code is loaded but not published yet.
+     */
+    static final class PreparedSplits {
+
+        final long totalLoadStart;
+
+        final List<PreparedSplit> splits;
+
+        final List<SplitLoadError> loadErrorInfos = new ArrayList<>(0);
+
+        PreparedSplits(long totalLoadStart, int capacity) {
+            this.totalLoadStart = totalLoadStart;
+            this.splits = new ArrayList<>(capacity);
+        }
+    }
+
+    private static final class PreparedSplit {
+
+        final SplitInfo info;
+
+        final SplitBriefInfo briefInfo;
+
+        final String splitApkPath;
+
+        final ClassLoader classLoader;
+
+        final long loadStart;
+
+        PreparedSplit(SplitInfo info, SplitBriefInfo briefInfo, String splitApkPath, ClassLoader classLoader, long loadStart) {
+            this.info = info;
+            this.briefInfo = briefInfo;
+            this.splitApkPath = splitApkPath;
+            this.classLoader = classLoader;
+            this.loadStart = loadStart;
+        }
+    }
+
     interface OnSplitLoadFinishListener {
 
         void onLoadFinish(List<SplitBriefInfo> loadOKSplits, List<SplitLoadError> loadErrorSplits, String process, long totalTimeCost);
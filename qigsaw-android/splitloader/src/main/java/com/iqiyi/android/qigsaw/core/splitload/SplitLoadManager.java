@@ -99,6 +99,19 @@ public abstract class SplitLoadManager {
      */
     public abstract void loadInstalledSplits();
 
+    /**
+     * Load installed splits whose load policy is "eager" in current process.
+     */
+    public abstract void loadEagerSplits();
+
+    /**
+     * Unload splits which have no alive activity after a while or when memory is trimmed,
+     * they would be loaded again on demand.
+     *
+     * @param application used to observe lifecycle of activities and memory trimming.
+     */
+    public abstract void enableSplitUnloading(Application application);
+
     /**
      * Get names of loaded splits
      *
@@ -142,6 +155,10 @@ public abstract class SplitLoadManager {
         loadedSplits.addAll(splits);
     }
 
+    final void removeSplits(Collection<Split> splits) {
+        loadedSplits.removeAll(splits);
+    }
+
     final Set<Split> getLoadedSplits() {
         return loadedSplits;
     }
@@ -24,6 +24,7 @@
 
 package com.iqiyi.android.qigsaw.core.splitload;
 
+import android.app.Application;
 import android.content.Context;
 import android.content.ContextWrapper;
 import android.content.Intent;
@@ -37,18 +38,21 @@ import android.text.TextUtils;
 
 import com.iqiyi.android.qigsaw.core.common.FileUtil;
 import com.iqiyi.android.qigsaw.core.common.OEMCompat;
+import com.iqiyi.android.qigsaw.core.common.SplitBaseInfoProvider;
 import com.iqiyi.android.qigsaw.core.common.SplitConstants;
 import com.iqiyi.android.qigsaw.core.common.SplitLog;
 import com.iqiyi.android.qigsaw.core.splitload.listener.OnSplitLoadListener;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfo;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfoManager;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInfoManagerService;
+import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitInstallJournal;
 import com.iqiyi.android.qigsaw.core.splitrequest.splitinfo.SplitPathManager;
 
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -60,6 +64,8 @@ final class SplitLoadManagerImpl extends SplitLoadManager {
 
     private final String[] workProcesses;
 
+    private final SplitLoadPolicies loadPolicies;
+
     SplitLoadManagerImpl(Context context,
                          int splitLoadMode,
                          boolean qigsawMode,
@@ -71,6 +77,7 @@ final class SplitLoadManagerImpl extends SplitLoadManager {
         this.qigsawMode = qigsawMode;
         this.workProcesses = workProcesses;
         this.forbiddenWorkProcesses = forbiddenWorkProcesses;
+        this.loadPolicies = SplitLoadPolicies.create(SplitBaseInfoProvider.getSplitLoadPolicies(), getSimpleProcessName());
         SplitInfoManagerService.install(context, isMainProcess);
         SplitPathManager.install(context);
     }
@@ -110,10 +117,19 @@ final class SplitLoadManagerImpl extends SplitLoadManager {
 
     @Override
     public Runnable createSplitLoadTask(List<Intent> splitFileIntents, @Nullable OnSplitLoadListener loadListener) {
+        List<Intent> allowedSplitFileIntents = new ArrayList<>(splitFileIntents.size());
+        for (Intent splitFileIntent : splitFileIntents) {
+            String splitName = splitFileIntent.getStringExtra(SplitConstants.KET_NAME);
+            if (loadPolicies.getPolicy(splitName) == SplitLoadPolicies.NEVER) {
+                SplitLog.i(TAG, "Split %s is never loaded in process %s", splitName, currentProcessName);
+            } else {
+                allowedSplitFileIntents.add(splitFileIntent);
+            }
+        }
         if (splitLoadMode() == SplitLoad.MULTIPLE_CLASSLOADER) {
-            return new SplitLoadTaskImpl(this, splitFileIntents, loadListener);
+            return new SplitLoadTaskImpl(this, allowedSplitFileIntents, loadListener);
         } else {
-            return new SplitLoadTaskImpl2(this, splitFileIntents, loadListener);
+            return new SplitLoadTaskImpl2(this, allowedSplitFileIntents, loadListener);
         }
     }
 
@@ -122,6 +138,44 @@ final class SplitLoadManagerImpl extends SplitLoadManager {
         loadInstalledSplitsInternal(null);
     }
 
+    @Override
+    public void loadEagerSplits() {
+        if (!qigsawMode || !isProcessAllowedToWork()) {
+            return;
+        }
+        SplitInfoManager manager = SplitInfoManagerService.getInstance();
+        if (manager == null) {
+            return;
+        }
+        Collection<SplitInfo> splitInfoList = manager.getAllSplitInfo(getContext());
+        if (splitInfoList == null) {
+            return;
+        }
+        List<String> eagerSplits = new ArrayList<>();
+        for (SplitInfo splitInfo : splitInfoList) {
+            if (loadPolicies.getPolicy(splitInfo.getSplitName()) == SplitLoadPolicies.EAGER) {
+                eagerSplits.add(splitInfo.getSplitName());
+            }
+        }
+        if (!eagerSplits.isEmpty()) {
+            SplitLog.i(TAG, "Load splits %s eagerly in process %s", eagerSplits, currentProcessName);
+            loadInstalledSplitsInternal(eagerSplits);
+        }
+    }
+
+    @Override
+    public void enableSplitUnloading(Application application) {
+        if (!qigsawMode || splitLoadMode() != SplitLoad.MULTIPLE_CLASSLOADER) {
+            SplitLog.w(TAG, "Splits can only be unloaded in multiple class loader mode.");
+            return;
+        }
+        if (isProcessAllowedToWork()) {
+            SplitUnloader unloader = new SplitUnloader(this);
+            application.registerActivityLifecycleCallbacks(unloader);
+            application.registerComponentCallbacks(unloader);
+        }
+    }
+
     private void loadInstalledSplitsInternal(Collection<String> splitNames) {
         SplitInfoManager manager = SplitInfoManagerService.getInstance();
         if (manager == null) {
@@ -192,56 +246,68 @@ final class SplitLoadManagerImpl extends SplitLoadManager {
     }
 
     private boolean canBeWorkedInThisProcessForSplit(SplitInfo splitInfo) {
+        if (loadPolicies.getPolicy(splitInfo.getSplitName()) == SplitLoadPolicies.NEVER) {
+            return false;
+        }
+        String neverLoadedDependency = loadPolicies.findNeverLoadedDependency(splitInfo.getDependencies());
+        if (neverLoadedDependency != null) {
+            SplitLog.w(TAG, "Split %s depends on %s which is never loaded in process %s", splitInfo.getSplitName(), neverLoadedDependency, currentProcessName);
+            return false;
+        }
         List<String> workProcesses = splitInfo.getWorkProcesses();
         if (workProcesses != null && !workProcesses.isEmpty()) {
-            String packageName = getContext().getPackageName();
-            String simpleProcessName = currentProcessName.replace(packageName, "");
-            return workProcesses.contains(simpleProcessName);
+            return workProcesses.contains(getSimpleProcessName());
         }
         return true;
     }
 
+    private String getSimpleProcessName() {
+        if (currentProcessName == null) {
+            return "";
+        }
+        return currentProcessName.replace(getContext().getPackageName(), "");
+    }
+
     /**
      * fast check operation
      */
     private Intent createLastInstalledSplitFileIntent(boolean libBuiltIn, String mark, File splitLibDir, SplitInfo splitInfo) {
         String splitName = splitInfo.getSplitName();
         File splitDir = SplitPathManager.require().getSplitDir(splitInfo);
-        File markFile = SplitPathManager.require().getSplitMarkFile(splitInfo, mark);
-        File specialMarkFile = SplitPathManager.require().getSplitSpecialMarkFile(splitInfo, mark);
+        SplitInstallJournal journal = SplitPathManager.require().getSplitInstallJournal(splitInfo);
+        SplitInstallJournal.Snapshot snapshot = journal.read();
+        boolean installed = snapshot.isInstalled(mark);
+        boolean oatUnchecked = !installed && snapshot.isOatUnchecked(mark);
         File splitApk;
         if (libBuiltIn) {
             splitApk = new File(getContext().getApplicationInfo().nativeLibraryDir, System.mapLibraryName(SplitConstants.SPLIT_PREFIX + splitInfo.getSplitName()));
         } else {
             splitApk = new File(splitDir, splitName + "-" + SplitConstants.MASTER + SplitConstants.DOT_APK);
         }
-        //check oat file if special mark file is exist.
-        if (specialMarkFile.exists() && !markFile.exists()) {
+        //check oat file if split is installed without oat file.
+        if (oatUnchecked) {
             SplitLog.v(TAG, "In vivo & oppo, we need to check oat file when split is going to be loaded.");
             File optimizedDirectory = SplitPathManager.require().getSplitOptDir(splitInfo);
             File oatFile = OEMCompat.getOatFilePath(splitApk, optimizedDirectory);
             if (FileUtil.isLegalFile(oatFile)) {
                 boolean result = OEMCompat.checkOatFile(oatFile);
                 SplitLog.v(TAG, "Check result of oat file %s is " + result, oatFile.getAbsoluteFile());
-                File lockFile = SplitPathManager.require().getSplitSpecialLockFile(splitInfo);
                 if (result) {
-                    try {
-                        FileUtil.createFileSafelyLock(markFile, lockFile);
-                    } catch (IOException e) {
-                        SplitLog.w(TAG, "Failed to create installed mark file " + oatFile.exists());
-                    }
+                    journal.append(SplitInstallJournal.STAGE_INSTALLED, mark);
                 } else {
-                    try {
-                        FileUtil.deleteFileSafelyLock(oatFile, lockFile);
-                    } catch (IOException e) {
-                        SplitLog.w(TAG, "Failed to delete corrupted oat file " + oatFile.exists());
-                    }
+                    FileUtil.deleteFileSafely(oatFile);
+                    journal.revoke(SplitInstallJournal.STAGE_DEX_OPTIMIZED, SplitInstallJournal.NO_KEY);
+                }
+                try {
+                    journal.commit();
+                } catch (IOException e) {
+                    SplitLog.w(TAG, "Failed to commit install journal of split " + splitName, e);
                 }
             } else {
                 SplitLog.v(TAG, "Oat file %s is still not exist in vivo & oppo, system continue to use interpreter mode.", oatFile.getAbsoluteFile());
             }
         }
-        if (markFile.exists() || specialMarkFile.exists()) {
+        if (installed || oatUnchecked) {
             List<String> dependencies = splitInfo.getDependencies();
             if (dependencies != null) {
                 SplitLog.i(TAG, "Split %s has dependencies %s !", splitName, dependencies);
@@ -249,9 +315,8 @@ final class SplitLoadManagerImpl extends SplitLoadManager {
                     SplitInfo dependSplitInfo = SplitInfoManagerService.getInstance().getSplitInfo(getContext(), dependency);
                     try {
                         String dependInstalledMark = dependSplitInfo.obtainInstalledMark(getContext());
-                        File dependMarkFile = SplitPathManager.require().getSplitMarkFile(dependSplitInfo, dependInstalledMark);
-                        if (!dependMarkFile.exists()) {
-                            SplitLog.i(TAG, "Dependency %s mark file is not existed!", dependency);
+                        if (!SplitPathManager.require().getSplitInstallJournal(dependSplitInfo).read().isInstalled(dependInstalledMark)) {
+                            SplitLog.i(TAG, "Dependency %s is not installed!", dependency);
                             return null;
                         }
                     } catch (IOException e) {
@@ -265,15 +330,21 @@ final class SplitLoadManagerImpl extends SplitLoadManager {
                 optimizedDirectory = SplitPathManager.require().getSplitOptDir(splitInfo);
                 addedDexPaths = new ArrayList<>();
                 addedDexPaths.add(splitApk.getAbsolutePath());
-                File[] results = SplitPathManager.require().getSplitCodeCacheDir(splitInfo).listFiles(new FilenameFilter() {
-                    @Override
-                    public boolean accept(File dir, String name) {
-                        return name.endsWith(SplitConstants.DOT_ZIP);
-                    }
-                });
-                if (results != null && results.length > 0) {
-                    for (File result : results) {
-                        addedDexPaths.add(result.getAbsolutePath());
+                String[] extractedDexPaths = snapshot.get(SplitInstallJournal.STAGE_MULTI_DEX_EXTRACTED, SplitInstallJournal.NO_KEY);
+                if (extractedDexPaths != null) {
+                    addedDexPaths.addAll(Arrays.asList(extractedDexPaths));
+                } else if (snapshot.isEmpty()) {
+                    //split is installed before install journal is introduced.
+                    File[] results = SplitPathManager.require().getSplitCodeCacheDir(splitInfo).listFiles(new FilenameFilter() {
+                        @Override
+                        public boolean accept(File dir, String name) {
+                            return name.endsWith(SplitConstants.DOT_ZIP);
+                        }
+                    });
+                    if (results != null && results.length > 0) {
+                        for (File result : results) {
+                            addedDexPaths.add(result.getAbsolutePath());
+                        }
                     }
                 }
             }
@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitload;
+
+import androidx.annotation.Nullable;
+
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Load policies of splits in current process, declared by {@code qigsawSplit.splitLoadPolicies} of gradle plugin.
+ * Each entry is formatted as "process/split=policy", split "*" matches splits not declared.
+ */
+final class SplitLoadPolicies {
+
+    private static final String TAG = "SplitLoadPolicies";
+
+    private static final String ALL_SPLITS = "*";
+
+    /**
+     * Split is loaded when its components or classes are requested, or it is preloaded by app.
+     */
+    static final int LAZY = 0;
+
+    /**
+     * Split is never loaded in this process.
+     */
+    static final int NEVER = 1;
+
+    /**
+     * Split is loaded when application is created.
+     */
+    static final int EAGER = 2;
+
+    private final Map<String, Integer> policies;
+
+    private final int defaultPolicy;
+
+    private SplitLoadPolicies(Map<String, Integer> policies, int defaultPolicy) {
+        this.policies = policies;
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    /**
+     * @param entries           all declared policies.
+     * @param simpleProcessName  process name without package name, empty for main process.
+     */
+    static SplitLoadPolicies create(@Nullable String[] entries, String simpleProcessName) {
+        Map<String, Integer> policies = new HashMap<>();
+        int defaultPolicy = LAZY;
+        if (entries != null) {
+            String prefix = simpleProcessName + "/";
+            for (String entry : entries) {
+                int separator = entry.lastIndexOf('=');
+                if (!entry.startsWith(prefix) || separator <= prefix.length()) {
+                    continue;
+                }
+                String splitName = entry.substring(prefix.length(), separator);
+                int policy = parsePolicy(entry.substring(separator + 1));
+                if (ALL_SPLITS.equals(splitName)) {
+                    defaultPolicy = policy;
+                } else {
+                    policies.put(splitName, policy);
+                }
+            }
+        }
+        return new SplitLoadPolicies(policies, defaultPolicy);
+    }
+
+    int getPolicy(String splitName) {
+        Integer policy = policies.get(splitName);
+        return policy == null ? defaultPolicy : policy;
+    }
+
+    /**
+     * A split can't be loaded if any of its dependencies is never loaded.
+     *
+     * @return the first dependency which is never loaded, or {@code null} if there is none.
+     */
+    @Nullable
+    String findNeverLoadedDependency(@Nullable List<String> dependencies) {
+        if (dependencies != null) {
+            for (String dependency : dependencies) {
+                if (getPolicy(dependency) == NEVER) {
+                    return dependency;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int parsePolicy(String value) {
+        switch (value) {
+            case "never":
+                return NEVER;
+            case "eager":
+                return EAGER;
+            case "lazy":
+                return LAZY;
+            default:
+                SplitLog.w(TAG, "Unknown split load policy %s, load split lazily.", value);
+                return LAZY;
+        }
+    }
+}
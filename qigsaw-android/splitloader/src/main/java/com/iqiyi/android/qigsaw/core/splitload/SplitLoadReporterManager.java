@@ -28,6 +28,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
+import com.iqiyi.android.qigsaw.core.splitreport.AsyncSplitLoadReporter;
 import com.iqiyi.android.qigsaw.core.splitreport.SplitLoadReporter;
 
 import java.util.concurrent.atomic.AtomicReference;
@@ -40,7 +41,7 @@ public class SplitLoadReporterManager {
     private static final AtomicReference<SplitLoadReporter> sLoadReporterRef = new AtomicReference<>();
 
     public static void install(@NonNull SplitLoadReporter installReporter) {
-        sLoadReporterRef.compareAndSet(null, installReporter);
+        sLoadReporterRef.compareAndSet(null, new AsyncSplitLoadReporter(installReporter));
     }
 
     @Nullable
@@ -77,13 +77,15 @@ abstract class SplitLoadTask implements SplitLoaderWrapper, Runnable, SplitLoadH
         if (Looper.getMainLooper().getThread() == Thread.currentThread()) {
             loadHandler.loadSplitsSync(this);
         } else {
+            //load code on current thread, only publishing splits is posted to main thread.
+            final SplitLoadHandler.PreparedSplits preparedSplits = loadHandler.prepareSplitsSync();
             synchronized (this) {
                 loadHandler.getMainHandler().post(new Runnable() {
 
                     @Override
                     public void run() {
                         synchronized (SplitLoadTask.this) {
-                            loadHandler.loadSplitsSync(SplitLoadTask.this);
+                            loadHandler.publishSplitsSync(preparedSplits, SplitLoadTask.this);
                             SplitLoadTask.this.notifyAll();
                         }
                     }
@@ -32,7 +32,9 @@ import androidx.annotation.Nullable;
 import com.iqiyi.android.qigsaw.core.splitload.listener.OnSplitLoadListener;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 final class SplitLoadTaskImpl extends SplitLoadTask {
 
@@ -53,17 +55,25 @@ final class SplitLoadTaskImpl extends SplitLoadTask {
                                 File optimizedDirectory,
                                 File librarySearchPath,
                                 List<String> dependencies) throws SplitLoadException {
-        SplitDexClassLoader classLoader = SplitApplicationLoaders.getInstance().getClassLoader(splitName);
-        if (classLoader == null) {
-            classLoader = getSplitLoader().loadCode(splitName, addedDexPaths, optimizedDirectory, librarySearchPath, dependencies);
-            classLoader.setValid(true);
-            SplitApplicationLoaders.getInstance().addClassLoader(classLoader);
+        SplitApplicationLoaders applicationLoaders = SplitApplicationLoaders.getInstance();
+        SplitDexClassLoader classLoader = applicationLoaders.getOrReviveClassLoader(splitName);
+        if (classLoader != null) {
+            return classLoader;
         }
-        return classLoader;
+        //loaders are not locked while loading code, so that main thread is never blocked by acquiring or releasing components.
+        classLoader = getSplitLoader().loadCode(splitName, addedDexPaths, optimizedDirectory, librarySearchPath, dependencies);
+        //splits may be loaded by background and main thread at the same time, register only one class loader for each split.
+        SplitDexClassLoader registeredClassLoader = applicationLoaders.addClassLoaderIfAbsent(classLoader);
+        return registeredClassLoader != null ? registeredClassLoader : classLoader;
     }
 
     @Override
-    public void unloadCode(ClassLoader classLoader) {
+    public Map<String, SplitLoadException> flushCode() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public void unloadCode(String splitName, ClassLoader classLoader) {
         if (classLoader instanceof SplitDexClassLoader) {
             ((SplitDexClassLoader) classLoader).setValid(false);
         }
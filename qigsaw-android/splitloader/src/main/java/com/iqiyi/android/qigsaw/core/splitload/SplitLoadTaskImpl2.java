@@ -30,16 +30,25 @@ import android.content.Intent;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
 import com.iqiyi.android.qigsaw.core.splitload.listener.OnSplitLoadListener;
+import com.iqiyi.android.qigsaw.core.splitreport.SplitLoadError;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Loading split for single class loader mode.
  */
 final class SplitLoadTaskImpl2 extends SplitLoadTask {
 
+    private static final String TAG = "SplitLoadTaskImpl2";
+
+    private final SplitCodeBatch codeBatch = new SplitCodeBatch();
+
     SplitLoadTaskImpl2(@NonNull SplitLoadManager loadManager,
                        @NonNull List<Intent> splitFileIntents,
                        @Nullable OnSplitLoadListener loadListener) {
@@ -56,17 +65,63 @@ final class SplitLoadTaskImpl2 extends SplitLoadTask {
                                 List<String> addedDexPaths,
                                 File optimizedDirectory,
                                 File librarySearchPath,
-                                List<String> dependencies) throws SplitLoadException {
-        getSplitLoader().loadCode2(addedDexPaths, optimizedDirectory, librarySearchPath);
+                                List<String> dependencies) {
+        //code of all splits is injected at once in flushCode.
+        codeBatch.add(splitName, addedDexPaths, optimizedDirectory, librarySearchPath);
         return SplitLoadTask.class.getClassLoader();
     }
 
     @Override
-    public void unloadCode(ClassLoader classLoader) {
-        try {
-            SplitCompatDexLoader.unLoad(classLoader);
-        } catch (Throwable ignored) {
+    public Map<String, SplitLoadException> flushCode() {
+        if (codeBatch.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        //dex elements of host class loader are replaced as a whole, serialize injections of concurrent tasks.
+        synchronized (SplitLoadTaskImpl2.class) {
+            try {
+                getSplitLoader().loadCode2(codeBatch);
+                return Collections.emptyMap();
+            } catch (SplitLoadException e) {
+                if (e.getErrorCode() == SplitLoadError.INTERNAL_ERROR) {
+                    //code injected halfway is still there, loading it again would inject it twice.
+                    SplitLog.printErrStackTrace(TAG, e, "Failed to load code of %d splits at once", codeBatch.getEntries().size());
+                    Map<String, SplitLoadException> errors = new HashMap<>(codeBatch.getEntries().size());
+                    for (SplitCodeBatch.Entry entry : codeBatch.getEntries()) {
+                        errors.put(entry.splitName, e);
+                    }
+                    return errors;
+                }
+                //code of batch has been rolled back.
+                SplitLog.printErrStackTrace(TAG, e, "Failed to load code of %d splits at once, try one by one", codeBatch.getEntries().size());
+                return loadCodeOneByOne();
+            } finally {
+                codeBatch.clear();
+            }
+        }
+    }
+
+    private Map<String, SplitLoadException> loadCodeOneByOne() {
+        Map<String, SplitLoadException> errors = new HashMap<>(0);
+        for (SplitCodeBatch.Entry entry : codeBatch.getEntries()) {
+            SplitCodeBatch singleBatch = new SplitCodeBatch();
+            singleBatch.add(entry.splitName, entry.dexPaths, entry.optimizedDirectory, entry.librarySearchPath);
+            try {
+                getSplitLoader().loadCode2(singleBatch);
+            } catch (SplitLoadException e) {
+                errors.put(entry.splitName, e);
+            }
+        }
+        return errors;
+    }
+
+    @Override
+    public void unloadCode(String splitName, ClassLoader classLoader) {
+        synchronized (SplitLoadTaskImpl2.class) {
+            try {
+                SplitCompatDexLoader.unLoad(classLoader, splitName);
+            } catch (Throwable ignored) {
 
+            }
         }
     }
 }
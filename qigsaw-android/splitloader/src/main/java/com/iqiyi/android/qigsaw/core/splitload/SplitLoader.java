@@ -56,11 +56,9 @@ abstract class SplitLoader {
     }
 
     /**
-     * Load split' code for single class loader mode.
+     * Load code of splits for single class loader mode.
      */
-    void loadCode2(@Nullable List<String> dexPaths,
-                   File optimizedDirectory,
-                   @Nullable File librarySearchPath) throws SplitLoadException {
+    void loadCode2(SplitCodeBatch codeBatch) throws SplitLoadException {
 
     }
 
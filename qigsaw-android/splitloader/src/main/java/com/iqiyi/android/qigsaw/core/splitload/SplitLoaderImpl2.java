@@ -25,8 +25,8 @@
 package com.iqiyi.android.qigsaw.core.splitload;
 
 import android.content.Context;
-import androidx.annotation.Nullable;
 
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
 import com.iqiyi.android.qigsaw.core.splitreport.SplitLoadError;
 
 import java.io.File;
@@ -35,42 +35,61 @@ import java.util.List;
 
 final class SplitLoaderImpl2 extends SplitLoader {
 
+    private static final String TAG = "SplitLoaderImpl2";
+
     SplitLoaderImpl2(Context context) {
         super(context);
     }
 
+    /**
+     * Injected code of all splits in {@code codeBatch} is rolled back if any of them fails.
+     *
+     * @throws SplitLoadException with {@link SplitLoadError#INTERNAL_ERROR} if code can't be rolled back.
+     */
     @Override
-    void loadCode2(@Nullable List<String> dexPaths,
-                   File optimizedDirectory,
-                   @Nullable File librarySearchPath) throws SplitLoadException {
+    void loadCode2(SplitCodeBatch codeBatch) throws SplitLoadException {
         ClassLoader curCl = SplitLoader.class.getClassLoader();
-        loadLibrary(curCl, librarySearchPath);
-        loadDex(curCl, dexPaths, optimizedDirectory);
-    }
-
-    private void loadLibrary(ClassLoader classLoader, File librarySearchPath) throws SplitLoadException {
-        if (librarySearchPath != null) {
+        DexPathListSnapshot snapshot;
+        try {
+            snapshot = DexPathListSnapshot.capture(curCl);
+        } catch (Throwable cause) {
+            throw new SplitLoadException(SplitLoadError.INTERNAL_ERROR, cause);
+        }
+        try {
+            loadLibrary(curCl, codeBatch.getLibraryDirs());
+            loadDex(curCl, codeBatch);
+        } catch (SplitLoadException e) {
+            List<String> splitNames = new ArrayList<>(codeBatch.getEntries().size());
+            for (SplitCodeBatch.Entry entry : codeBatch.getEntries()) {
+                splitNames.add(entry.splitName);
+            }
+            SplitCompatDexLoader.forget(splitNames);
             try {
-                SplitCompatLibraryLoader.load(classLoader, librarySearchPath);
+                snapshot.restore();
             } catch (Throwable cause) {
-                throw new SplitLoadException(SplitLoadError.LOAD_LIB_FAILED, cause);
+                SplitLog.printErrStackTrace(TAG, cause, "Failed to roll back code of %d splits", splitNames.size());
+                throw new SplitLoadException(SplitLoadError.INTERNAL_ERROR, cause);
             }
+            throw e;
         }
     }
 
-    private void loadDex(ClassLoader classLoader, List<String> dexPaths, File optimizedDirectory) throws SplitLoadException {
-        if (dexPaths != null) {
-            List<File> dexFiles = new ArrayList<>(dexPaths.size());
-            for (String dexPath : dexPaths) {
-                dexFiles.add(new File(dexPath));
-            }
+    private void loadLibrary(ClassLoader classLoader, List<File> librarySearchPaths) throws SplitLoadException {
+        if (!librarySearchPaths.isEmpty()) {
             try {
-                SplitCompatDexLoader.load(classLoader, optimizedDirectory, dexFiles);
-                SplitUnKnownFileTypeDexLoader.loadDex(classLoader, dexPaths, optimizedDirectory);
+                SplitCompatLibraryLoader.load(classLoader, librarySearchPaths);
             } catch (Throwable cause) {
-                throw new SplitLoadException(SplitLoadError.LOAD_DEX_FAILED, cause);
+                throw new SplitLoadException(SplitLoadError.LOAD_LIB_FAILED, cause);
             }
         }
     }
 
+    private void loadDex(ClassLoader classLoader, SplitCodeBatch codeBatch) throws SplitLoadException {
+        try {
+            SplitCompatDexLoader.load(classLoader, codeBatch);
+        } catch (Throwable cause) {
+            throw new SplitLoadException(SplitLoadError.LOAD_DEX_FAILED, cause);
+        }
+    }
+
 }
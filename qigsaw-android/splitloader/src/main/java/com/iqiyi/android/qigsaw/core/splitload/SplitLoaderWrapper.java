@@ -26,6 +26,7 @@ package com.iqiyi.android.qigsaw.core.splitload;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 
 interface SplitLoaderWrapper {
 
@@ -37,7 +38,17 @@ interface SplitLoaderWrapper {
                          File librarySearchPath,
                          List<String> dependencies) throws SplitLoadException;
 
-    void unloadCode(ClassLoader classLoader);
+    /**
+     * Called once after {@link #loadCode} of all splits, code deferred by {@link #loadCode} is injected here.
+     *
+     * @return exceptions keyed by name of splits whose code failed to be injected.
+     */
+    Map<String, SplitLoadException> flushCode();
+
+    /**
+     * Unload code of a split whose application failed to be created or activated.
+     */
+    void unloadCode(String splitName, ClassLoader classLoader);
 
     void loadResources(String splitApkPath) throws SplitLoadException;
 }
@@ -20,7 +20,10 @@ final class SplitUnKnownFileTypeDexLoader {
 
     private static final String TAG = "SplitUnKnownFileTypeDexLoader";
 
-    static void loadDex(ClassLoader classLoader, List<String> dexPaths, File optimizedDirectory) throws Throwable {
+    /**
+     * @return elements injected into {@code dexElements}.
+     */
+    static Object[] loadDex(ClassLoader classLoader, List<String> dexPaths, File optimizedDirectory) throws Throwable {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
             if (dexPaths != null) {
                 List<File> unsupportedZips = new ArrayList<>();
@@ -68,10 +71,13 @@ final class SplitUnKnownFileTypeDexLoader {
                         elements.add(element);
                     }
                     if (!elements.isEmpty()) {
-                        HiddenApiReflection.expandFieldArray(pathList, "dexElements", elements.toArray());
+                        Object[] dexElements = elements.toArray();
+                        HiddenApiReflection.expandFieldArray(pathList, "dexElements", dexElements);
+                        return dexElements;
                     }
                 }
             }
         }
+        return new Object[0];
     }
 }
@@ -0,0 +1,239 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitload;
+
+import android.app.Activity;
+import android.app.ActivityManager;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.extension.AABExtension;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Unload splits whose activities are all destroyed once they have no other alive component,
+ * so that their class loaders could be reclaimed by runtime. Splits which never had an activity are kept loaded.
+ * Alive activities of split are counted via activity lifecycle callbacks. Services and receivers have no such callbacks,
+ * so a split is kept while its service is running or within {@link #IDLE_UNLOAD_DELAY} after its service or receiver
+ * is instantiated. Splits which declare content-providers are never unloaded.
+ * Only works for {@link SplitLoad#MULTIPLE_CLASSLOADER}.
+ */
+final class SplitUnloader implements Application.ActivityLifecycleCallbacks, ComponentCallbacks2 {
+
+    private static final String TAG = "SplitUnloader";
+
+    /**
+     * Delay to unload a split after its last activity is destroyed, in case it is opened again soon.
+     */
+    private static final long IDLE_UNLOAD_DELAY = 60 * 1000L;
+
+    private final SplitLoadManager loadManager;
+
+    /**
+     * Splits whose last activity is destroyed, only they are unloaded. Accessed on main thread.
+     */
+    private final Set<String> releasedSplits = new HashSet<>();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final Runnable unloadTask = new Runnable() {
+        @Override
+        public void run() {
+            unloadIdleSplits();
+        }
+    };
+
+    SplitUnloader(SplitLoadManager loadManager) {
+        this.loadManager = loadManager;
+    }
+
+    @Override
+    public void onActivityCreated(@NonNull Activity activity, Bundle savedInstanceState) {
+        String splitName = AABExtension.getInstance().getSplitNameForActivityName(activity.getClass().getName());
+        if (splitName != null) {
+            SplitApplicationLoaders.getInstance().acquire(splitName);
+            releasedSplits.remove(splitName);
+        }
+    }
+
+    @Override
+    public void onActivityDestroyed(@NonNull Activity activity) {
+        String splitName = AABExtension.getInstance().getSplitNameForActivityName(activity.getClass().getName());
+        if (splitName != null && SplitApplicationLoaders.getInstance().release(splitName) == 0) {
+            releasedSplits.add(splitName);
+            scheduleUnload();
+        }
+    }
+
+    @Override
+    public void onActivityStarted(@NonNull Activity activity) {
+
+    }
+
+    @Override
+    public void onActivityResumed(@NonNull Activity activity) {
+
+    }
+
+    @Override
+    public void onActivityPaused(@NonNull Activity activity) {
+
+    }
+
+    @Override
+    public void onActivityStopped(@NonNull Activity activity) {
+
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
+
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            mainHandler.removeCallbacks(unloadTask);
+            unloadIdleSplits();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+
+    }
+
+    private void scheduleUnload() {
+        mainHandler.removeCallbacks(unloadTask);
+        mainHandler.postDelayed(unloadTask, IDLE_UNLOAD_DELAY);
+    }
+
+    private void unloadIdleSplits() {
+        if (releasedSplits.isEmpty()) {
+            return;
+        }
+        Set<String> runningServices = getRunningServices();
+        List<Split> unloadedSplits = new ArrayList<>(0);
+        boolean recentlyUsed = false;
+        //dependencies are unloaded after splits depending on them.
+        boolean unloaded;
+        do {
+            unloaded = false;
+            for (Split split : loadManager.getLoadedSplits()) {
+                if (!releasedSplits.contains(split.splitName) || unloadedSplits.contains(split)) {
+                    continue;
+                }
+                if (isRecentlyUsed(split.splitName)) {
+                    recentlyUsed = true;
+                    continue;
+                }
+                if (isIdle(split.splitName, runningServices)
+                        && SplitApplicationLoaders.getInstance().unloadClassLoader(split.splitName)) {
+                    SplitActivator.removeSplitApplication(split.splitName);
+                    SplitLibraryLoaderHelper.onSplitUnloaded(split.splitName);
+                    releasedSplits.remove(split.splitName);
+                    unloadedSplits.add(split);
+                    unloaded = true;
+                }
+            }
+        } while (unloaded);
+        if (!unloadedSplits.isEmpty()) {
+            loadManager.removeSplits(unloadedSplits);
+            SplitLog.i(TAG, "Splits %s are unloaded.", unloadedSplits);
+        }
+        if (recentlyUsed) {
+            scheduleUnload();
+        }
+    }
+
+    private boolean isRecentlyUsed(String splitName) {
+        long usedTime = SplitApplicationLoaders.getInstance().getComponentUsedTime(splitName);
+        return usedTime > 0 && SystemClock.uptimeMillis() - usedTime < IDLE_UNLOAD_DELAY;
+    }
+
+    private boolean isIdle(String splitName, Set<String> runningServices) {
+        if (SplitApplicationLoaders.getInstance().hasAliveComponents(splitName)) {
+            return false;
+        }
+        AABExtension aabExtension = AABExtension.getInstance();
+        if (aabExtension.hasSplitContentProviders(splitName)) {
+            return false;
+        }
+        for (String service : aabExtension.getSplitServices(splitName)) {
+            if (runningServices.contains(service)) {
+                return false;
+            }
+        }
+        for (SplitDexClassLoader classLoader : SplitApplicationLoaders.getInstance().getValidClassLoaders()) {
+            if (classLoader.dependsOn(splitName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Services running in current process, app's own services are still returned since Android O.
+     */
+    @SuppressWarnings("deprecation")
+    private Set<String> getRunningServices() {
+        Set<String> runningServices = new HashSet<>();
+        ActivityManager activityManager = (ActivityManager) loadManager.getContext().getSystemService(Context.ACTIVITY_SERVICE);
+        List<ActivityManager.RunningServiceInfo> serviceInfoList = null;
+        try {
+            serviceInfoList = activityManager == null ? null : activityManager.getRunningServices(Integer.MAX_VALUE);
+        } catch (RuntimeException e) {
+            SplitLog.w(TAG, "Failed to get running services", e);
+        }
+        if (serviceInfoList != null) {
+            int pid = Process.myPid();
+            for (ActivityManager.RunningServiceInfo serviceInfo : serviceInfoList) {
+                if (serviceInfo.pid == pid && serviceInfo.service != null) {
+                    runningServices.add(serviceInfo.service.getClassName());
+                }
+            }
+        }
+        return runningServices;
+    }
+}
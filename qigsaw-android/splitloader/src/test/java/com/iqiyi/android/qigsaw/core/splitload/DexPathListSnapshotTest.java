@@ -0,0 +1,62 @@
+package com.iqiyi.android.qigsaw.core.splitload;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class DexPathListSnapshotTest {
+
+    @Test
+    public void restoresMembersModifiedByInjection() throws Throwable {
+        HostClassLoader classLoader = new HostClassLoader();
+        Object[] dexElements = classLoader.pathList.dexElements;
+        Object[] nativeLibraryPathElements = classLoader.pathList.nativeLibraryPathElements;
+        DexPathListSnapshot snapshot = DexPathListSnapshot.capture(classLoader);
+
+        HiddenApiReflection.expandFieldArray(classLoader.pathList, "dexElements", new Object[]{"split.dex"});
+        classLoader.pathList.nativeLibraryDirectories.add(0, new File("split/lib"));
+        classLoader.pathList.nativeLibraryPathElements = new Object[]{"split/lib", "lib"};
+        snapshot.restore();
+
+        assertSame(dexElements, classLoader.pathList.dexElements);
+        assertSame(nativeLibraryPathElements, classLoader.pathList.nativeLibraryPathElements);
+        assertEquals(Collections.singletonList(new File("lib")), classLoader.pathList.nativeLibraryDirectories);
+    }
+
+    @Test
+    public void removesOnlyElementsOfUnloadedSplit() throws Throwable {
+        HostClassLoader classLoader = new HostClassLoader();
+        Object first = new Object();
+        Object second = new Object();
+        Object third = new Object();
+        HiddenApiReflection.expandFieldArray(classLoader.pathList, "dexElements", new Object[]{first, second, third});
+
+        List<Object> unloaded = new ArrayList<>();
+        unloaded.add(second);
+        HiddenApiReflection.removeFieldArrayElements(classLoader.pathList, "dexElements", unloaded);
+
+        assertArrayEquals(new Object[]{first, third, "base.dex"}, classLoader.pathList.dexElements);
+    }
+
+    private static final class HostClassLoader extends ClassLoader {
+
+        final DexPathList pathList = new DexPathList();
+    }
+
+    private static final class DexPathList {
+
+        Object[] dexElements = {"base.dex"};
+
+        final List<File> nativeLibraryDirectories = new ArrayList<>(Arrays.asList(new File("lib")));
+
+        Object[] nativeLibraryPathElements = {"lib"};
+    }
+}
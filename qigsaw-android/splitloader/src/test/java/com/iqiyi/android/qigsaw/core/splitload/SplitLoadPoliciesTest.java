@@ -0,0 +1,71 @@
+package com.iqiyi.android.qigsaw.core.splitload;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SplitLoadPoliciesTest {
+
+    private static final String[] ENTRIES = {
+            "/java=eager",
+            "/native=never",
+            ":push/*=never",
+            ":push/java=lazy",
+            ":pushservice/native=eager"
+    };
+
+    @Test
+    public void mainProcessUsesEntriesWithEmptyProcessName() {
+        SplitLoadPolicies policies = SplitLoadPolicies.create(ENTRIES, "");
+
+        assertEquals(SplitLoadPolicies.EAGER, policies.getPolicy("java"));
+        assertEquals(SplitLoadPolicies.NEVER, policies.getPolicy("native"));
+        assertEquals(SplitLoadPolicies.LAZY, policies.getPolicy("assets"));
+    }
+
+    @Test
+    public void processOnlyMatchesItsOwnPrefix() {
+        SplitLoadPolicies push = SplitLoadPolicies.create(ENTRIES, ":push");
+        SplitLoadPolicies pushService = SplitLoadPolicies.create(ENTRIES, ":pushservice");
+
+        assertEquals(SplitLoadPolicies.LAZY, push.getPolicy("java"));
+        //":pushservice/native" is not an entry of ":push".
+        assertEquals(SplitLoadPolicies.NEVER, push.getPolicy("native"));
+        assertEquals(SplitLoadPolicies.EAGER, pushService.getPolicy("native"));
+        assertEquals(SplitLoadPolicies.LAZY, pushService.getPolicy("java"));
+    }
+
+    @Test
+    public void allSplitsEntryIsDefaultOfUndeclaredSplits() {
+        SplitLoadPolicies policies = SplitLoadPolicies.create(ENTRIES, ":push");
+
+        assertEquals(SplitLoadPolicies.NEVER, policies.getPolicy("assets"));
+        assertEquals(SplitLoadPolicies.LAZY, policies.getPolicy("java"));
+    }
+
+    @Test
+    public void undeclaredProcessLoadsSplitsLazily() {
+        assertEquals(SplitLoadPolicies.LAZY, SplitLoadPolicies.create(ENTRIES, ":remote").getPolicy("native"));
+        assertEquals(SplitLoadPolicies.LAZY, SplitLoadPolicies.create(null, "").getPolicy("native"));
+    }
+
+    @Test
+    public void unknownPolicyIsLazy() {
+        SplitLoadPolicies policies = SplitLoadPolicies.create(new String[]{"/java=sometimes"}, "");
+
+        assertEquals(SplitLoadPolicies.LAZY, policies.getPolicy("java"));
+    }
+
+    @Test
+    public void findsNeverLoadedDependency() {
+        SplitLoadPolicies policies = SplitLoadPolicies.create(ENTRIES, "");
+
+        assertEquals("native", policies.findNeverLoadedDependency(Arrays.asList("java", "native")));
+        assertNull(policies.findNeverLoadedDependency(Collections.singletonList("java")));
+        assertNull(policies.findNeverLoadedDependency(null));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitreport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+import static com.iqiyi.android.qigsaw.core.splitreport.AsyncSplitLoadReporter.copyOf;
+
+/**
+ * Post install events of splits to {@link SplitReportDispatcher}, instead of reporting them on installing thread.
+ */
+@RestrictTo(LIBRARY_GROUP)
+public final class AsyncSplitInstallReporter implements SplitInstallReporter {
+
+    private final SplitInstallReporter reporter;
+
+    public AsyncSplitInstallReporter(@NonNull SplitInstallReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    @Override
+    public void onStartInstallOK(@NonNull List<SplitBriefInfo> installOKSplits, long cost) {
+        SplitReportDispatcher.post(new InstallOKEvent(reporter, false, installOKSplits, cost));
+    }
+
+    @Override
+    public void onStartInstallFailed(@NonNull List<SplitBriefInfo> installOKSplits, @NonNull final SplitInstallError installErrorSplit, final long cost) {
+        final List<SplitBriefInfo> okSplits = copyOf(installOKSplits);
+        SplitReportDispatcher.post(new SplitReportDispatcher.Event() {
+            @Override
+            protected void deliver() {
+                reporter.onStartInstallFailed(okSplits, installErrorSplit, cost);
+            }
+
+            @Override
+            protected boolean isDroppable() {
+                return false;
+            }
+        });
+    }
+
+    @Override
+    public void onDeferredInstallOK(@NonNull List<SplitBriefInfo> installOKSplits, long cost) {
+        SplitReportDispatcher.post(new InstallOKEvent(reporter, true, installOKSplits, cost));
+    }
+
+    @Override
+    public void onDeferredInstallFailed(@NonNull List<SplitBriefInfo> installOKSplits, @NonNull List<SplitInstallError> installErrorSplits, final long cost) {
+        final List<SplitBriefInfo> okSplits = copyOf(installOKSplits);
+        final List<SplitInstallError> errorSplits = copyOf(installErrorSplits);
+        SplitReportDispatcher.post(new SplitReportDispatcher.Event() {
+            @Override
+            protected void deliver() {
+                reporter.onDeferredInstallFailed(okSplits, errorSplits, cost);
+            }
+
+            @Override
+            protected boolean isDroppable() {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Successful installations of the same kind can be reported together.
+     */
+    private static final class InstallOKEvent extends SplitReportDispatcher.Event {
+
+        final SplitInstallReporter reporter;
+
+        final boolean deferred;
+
+        final List<SplitBriefInfo> installOKSplits;
+
+        final long cost;
+
+        InstallOKEvent(SplitInstallReporter reporter, boolean deferred, List<SplitBriefInfo> installOKSplits, long cost) {
+            this.reporter = reporter;
+            this.deferred = deferred;
+            this.installOKSplits = copyOf(installOKSplits);
+            this.cost = cost;
+        }
+
+        @Override
+        protected void deliver() {
+            if (deferred) {
+                reporter.onDeferredInstallOK(installOKSplits, cost);
+            } else {
+                reporter.onStartInstallOK(installOKSplits, cost);
+            }
+        }
+
+        @Nullable
+        @Override
+        protected SplitReportDispatcher.Event mergeWith(@NonNull SplitReportDispatcher.Event later) {
+            if (!(later instanceof InstallOKEvent) || deferred != ((InstallOKEvent) later).deferred) {
+                return null;
+            }
+            InstallOKEvent laterEvent = (InstallOKEvent) later;
+            List<SplitBriefInfo> splits = new ArrayList<>(installOKSplits);
+            splits.addAll(laterEvent.installOKSplits);
+            return new InstallOKEvent(reporter, deferred, splits, cost + laterEvent.cost);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitreport;
+
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+
+/**
+ * Post load events of splits to {@link SplitReportDispatcher}, instead of reporting them on loading thread.
+ */
+@RestrictTo(LIBRARY_GROUP)
+public final class AsyncSplitLoadReporter implements SplitLoadReporter {
+
+    private final SplitLoadReporter reporter;
+
+    public AsyncSplitLoadReporter(@NonNull SplitLoadReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    @Override
+    public void onLoadOK(String processName, @NonNull List<SplitBriefInfo> loadOKSplits, long cost) {
+        SplitReportDispatcher.post(new LoadOKEvent(reporter, processName, loadOKSplits, cost));
+    }
+
+    @Override
+    public void onLoadFailed(final String processName, @NonNull List<SplitBriefInfo> loadOKSplits, @NonNull List<SplitLoadError> loadErrorSplits, final long cost) {
+        final List<SplitBriefInfo> okSplits = copyOf(loadOKSplits);
+        final List<SplitLoadError> errorSplits = copyOf(loadErrorSplits);
+        SplitReportDispatcher.post(new SplitReportDispatcher.Event() {
+            @Override
+            protected void deliver() {
+                reporter.onLoadFailed(processName, okSplits, errorSplits, cost);
+            }
+
+            @Override
+            protected boolean isDroppable() {
+                return false;
+            }
+        });
+    }
+
+    static <T> List<T> copyOf(List<T> list) {
+        return Collections.unmodifiableList(new ArrayList<>(list));
+    }
+
+    /**
+     * Successful loads of the same process can be reported together.
+     */
+    private static final class LoadOKEvent extends SplitReportDispatcher.Event {
+
+        final SplitLoadReporter reporter;
+
+        final String processName;
+
+        final List<SplitBriefInfo> loadOKSplits;
+
+        final long cost;
+
+        LoadOKEvent(SplitLoadReporter reporter, String processName, List<SplitBriefInfo> loadOKSplits, long cost) {
+            this.reporter = reporter;
+            this.processName = processName;
+            this.loadOKSplits = copyOf(loadOKSplits);
+            this.cost = cost;
+        }
+
+        @Override
+        protected void deliver() {
+            reporter.onLoadOK(processName, loadOKSplits, cost);
+        }
+
+        @Nullable
+        @Override
+        protected SplitReportDispatcher.Event mergeWith(@NonNull SplitReportDispatcher.Event later) {
+            if (!(later instanceof LoadOKEvent) || !TextUtils.equals(processName, ((LoadOKEvent) later).processName)) {
+                return null;
+            }
+            LoadOKEvent laterEvent = (LoadOKEvent) later;
+            List<SplitBriefInfo> splits = new ArrayList<>(loadOKSplits);
+            splits.addAll(laterEvent.loadOKSplits);
+            return new LoadOKEvent(reporter, processName, splits, cost + laterEvent.cost);
+        }
+    }
+}
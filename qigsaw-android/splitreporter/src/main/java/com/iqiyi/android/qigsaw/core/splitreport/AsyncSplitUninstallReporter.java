@@ -0,0 +1,85 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitreport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+import static com.iqiyi.android.qigsaw.core.splitreport.AsyncSplitLoadReporter.copyOf;
+
+/**
+ * Post uninstall events of splits to {@link SplitReportDispatcher}.
+ */
+@RestrictTo(LIBRARY_GROUP)
+public final class AsyncSplitUninstallReporter implements SplitUninstallReporter {
+
+    private final SplitUninstallReporter reporter;
+
+    public AsyncSplitUninstallReporter(@NonNull SplitUninstallReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    @Override
+    public void onSplitUninstallOK(List<String> uninstalledSplits, long cost) {
+        SplitReportDispatcher.post(new UninstallOKEvent(reporter, uninstalledSplits, cost));
+    }
+
+    private static final class UninstallOKEvent extends SplitReportDispatcher.Event {
+
+        final SplitUninstallReporter reporter;
+
+        final List<String> uninstalledSplits;
+
+        final long cost;
+
+        UninstallOKEvent(SplitUninstallReporter reporter, List<String> uninstalledSplits, long cost) {
+            this.reporter = reporter;
+            this.uninstalledSplits = copyOf(uninstalledSplits);
+            this.cost = cost;
+        }
+
+        @Override
+        protected void deliver() {
+            reporter.onSplitUninstallOK(uninstalledSplits, cost);
+        }
+
+        @Nullable
+        @Override
+        protected SplitReportDispatcher.Event mergeWith(@NonNull SplitReportDispatcher.Event later) {
+            if (!(later instanceof UninstallOKEvent)) {
+                return null;
+            }
+            UninstallOKEvent laterEvent = (UninstallOKEvent) later;
+            List<String> splits = new ArrayList<>(uninstalledSplits);
+            splits.addAll(laterEvent.uninstalledSplits);
+            return new UninstallOKEvent(reporter, splits, cost + laterEvent.cost);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitreport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+
+import java.util.List;
+
+import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+import static com.iqiyi.android.qigsaw.core.splitreport.AsyncSplitLoadReporter.copyOf;
+
+/**
+ * Post update events of split info to {@link SplitReportDispatcher}.
+ */
+@RestrictTo(LIBRARY_GROUP)
+public final class AsyncSplitUpdateReporter implements SplitUpdateReporter {
+
+    private final SplitUpdateReporter reporter;
+
+    public AsyncSplitUpdateReporter(@NonNull SplitUpdateReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    @Override
+    public void onUpdateOK(final String oldSplitInfoVersion, final String newSplitInfoVersion, List<String> updateSplits) {
+        final List<String> splits = updateSplits == null ? null : copyOf(updateSplits);
+        SplitReportDispatcher.post(new SplitReportDispatcher.Event() {
+            @Override
+            protected void deliver() {
+                reporter.onUpdateOK(oldSplitInfoVersion, newSplitInfoVersion, splits);
+            }
+
+            @Override
+            protected boolean isDroppable() {
+                return false;
+            }
+        });
+    }
+
+    @Override
+    public void onUpdateFailed(final String oldSplitInfoVersion, final String newSplitInfoVersion, final int errorCode) {
+        SplitReportDispatcher.post(new SplitReportDispatcher.Event() {
+            @Override
+            protected void deliver() {
+                reporter.onUpdateFailed(oldSplitInfoVersion, newSplitInfoVersion, errorCode);
+            }
+
+            @Override
+            protected boolean isDroppable() {
+                return false;
+            }
+        });
+    }
+
+    @Override
+    public void onNewSplitInfoVersionLoaded(final String newSplitInfoVersion) {
+        SplitReportDispatcher.post(new SplitReportDispatcher.Event() {
+            @Override
+            protected void deliver() {
+                reporter.onNewSplitInfoVersionLoaded(newSplitInfoVersion);
+            }
+        });
+    }
+
+    @Override
+    public void onSplitRolledBack(final String splitName, final String brokenVersion, final String rollbackVersion) {
+        SplitReportDispatcher.post(new SplitReportDispatcher.Event() {
+            @Override
+            protected void deliver() {
+                reporter.onSplitRolledBack(splitName, brokenVersion, rollbackVersion);
+            }
+
+            @Override
+            protected boolean isDroppable() {
+                return false;
+            }
+        });
+    }
+}
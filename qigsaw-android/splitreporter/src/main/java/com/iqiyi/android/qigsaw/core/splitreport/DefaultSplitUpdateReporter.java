@@ -54,4 +54,9 @@ public class DefaultSplitUpdateReporter implements SplitUpdateReporter {
     public void onNewSplitInfoVersionLoaded(String newSplitInfoVersion) {
         SplitLog.i(TAG, "Success to load new split info version ", newSplitInfoVersion);
     }
+
+    @Override
+    public void onSplitRolledBack(String splitName, String brokenVersion, String rollbackVersion) {
+        SplitLog.w(TAG, "Split %s version %s is broken, roll back to version %s.", splitName, brokenVersion, rollbackVersion);
+    }
 }
@@ -0,0 +1,166 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitreport;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram with exponential buckets, bucket {@code i} counts values in [2^(i-1), 2^i),
+ * bucket 0 counts values less than 1 and the last bucket counts everything above.
+ */
+public final class SplitHistogram {
+
+    static final int BUCKET_COUNT = 24;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong sum = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+    SplitHistogram() {
+
+    }
+
+    void record(long value) {
+        buckets.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long curMax;
+        while (value > (curMax = max.get())) {
+            if (max.compareAndSet(curMax, value)) {
+                break;
+            }
+        }
+        long curMin;
+        while (value < (curMin = min.get())) {
+            if (min.compareAndSet(curMin, value)) {
+                break;
+            }
+        }
+    }
+
+    Snapshot snapshot() {
+        long[] bucketCounts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            bucketCounts[i] = buckets.get(i);
+        }
+        long total = count.get();
+        return new Snapshot(total, sum.get(), total == 0 ? 0 : min.get(), total == 0 ? 0 : max.get(), bucketCounts);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < 1) {
+            return 0;
+        }
+        int index = 64 - Long.numberOfLeadingZeros(value);
+        return index < BUCKET_COUNT ? index : BUCKET_COUNT - 1;
+    }
+
+    /**
+     * Upper bound (exclusive) of the given bucket, {@link Long#MAX_VALUE} for the last one.
+     */
+    public static long bucketUpperBound(int bucketIndex) {
+        if (bucketIndex >= BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        return 1L << bucketIndex;
+    }
+
+    /**
+     * Immutable view of a {@link SplitHistogram}.
+     */
+    public static final class Snapshot {
+
+        public final long count;
+
+        public final long sum;
+
+        public final long min;
+
+        public final long max;
+
+        private final long[] buckets;
+
+        Snapshot(long count, long sum, long min, long max, long[] buckets) {
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+            this.buckets = buckets;
+        }
+
+        /**
+         * @return a copy of bucket counts, see {@link SplitHistogram#bucketUpperBound(int)} for bounds.
+         */
+        public long[] getBuckets() {
+            return buckets.clone();
+        }
+
+        public long mean() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        /**
+         * Estimate percentile by upper bound of the bucket which contains it.
+         *
+         * @param percentile value in (0, 100].
+         */
+        public long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "{\"count\":" + count
+                    + ",\"sum\":" + sum
+                    + ",\"min\":" + min
+                    + ",\"max\":" + max
+                    + ",\"p50\":" + percentile(50)
+                    + ",\"p90\":" + percentile(90)
+                    + ",\"p99\":" + percentile(99)
+                    + "}";
+        }
+    }
+}
@@ -24,13 +24,13 @@
 
 package com.iqiyi.android.qigsaw.core.splitreport;
 
-import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
 
 import java.util.List;
 
 /**
- * report load status of split APKs.
+ * report load status of split APKs, called on a background thread.
  */
 public interface SplitLoadReporter {
 
@@ -41,7 +41,7 @@ public interface SplitLoadReporter {
      * @param loadOKSplits splits which have been loaded successfully.
      * @param cost         time in ms.
      */
-    @MainThread
+    @WorkerThread
     void onLoadOK(String processName, @NonNull List<SplitBriefInfo> loadOKSplits, long cost);
 
     /**
@@ -52,7 +52,7 @@ public interface SplitLoadReporter {
      * @param loadErrorSplits splits which have been loaded unsuccessfully.
      * @param cost            time in ms.
      */
-    @MainThread
+    @WorkerThread
     void onLoadFailed(String processName, @NonNull List<SplitBriefInfo> loadOKSplits, @NonNull List<SplitLoadError> loadErrorSplits, long cost);
 
 }
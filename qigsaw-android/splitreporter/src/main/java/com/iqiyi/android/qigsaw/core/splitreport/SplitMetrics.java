@@ -0,0 +1,327 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitreport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process counters and histograms for loading, installing and class lookup hot paths.
+ * Metrics are disabled by default, every recording method is a single volatile read when disabled.
+ * Hosts pull values via {@link #snapshot()} and export them to their own telemetry.
+ */
+public final class SplitMetrics {
+
+    /**
+     * Class not found in a split class loader, suffixed with split name.
+     */
+    public static final String CLASS_LOOKUP_MISS = "class_lookup_miss";
+
+    /**
+     * Class not found in loaded splits, so all installed splits are loaded or a fake component is returned.
+     */
+    public static final String CLASS_LOOKUP_FALLBACK = "class_lookup_fallback";
+
+    public static final String RESOURCES_CHECK = "resources_check";
+
+    /**
+     * Reflective reads of loaded asset paths.
+     */
+    public static final String RESOURCES_REFLECT = "resources_reflect";
+
+    /**
+     * Split asset paths injected into resources.
+     */
+    public static final String RESOURCES_INJECT = "resources_inject";
+
+    public static final String BYTES_HASHED = "bytes_hashed";
+
+    public static final String BYTES_EXTRACTED = "bytes_extracted";
+
+    /**
+     * Session states emitted while any process listens to them.
+     */
+    public static final String SESSION_UPDATE = "session_update";
+
+    /**
+     * Session states merged into a later progress update of the same session before delivery.
+     */
+    public static final String SESSION_UPDATE_COALESCED = "session_update_coalesced";
+
+    public static final String SESSION_UPDATE_DROPPED = "session_update_dropped";
+
+    /**
+     * Batches of session states delivered to listener processes.
+     */
+    public static final String SESSION_DELIVERY = "session_delivery";
+
+    /**
+     * Splits requested by predictive prefetch.
+     */
+    public static final String PREFETCH_REQUESTED = "prefetch_requested";
+
+    public static final String PREFETCH_BYTES = "prefetch_bytes";
+
+    /**
+     * Prefetched splits opened by user, hit rate is {@code prefetch_hit / prefetch_requested}.
+     */
+    public static final String PREFETCH_HIT = "prefetch_hit";
+
+    /**
+     * Prefetched splits not opened within a week.
+     */
+    public static final String PREFETCH_MISS = "prefetch_miss";
+
+    /**
+     * Split loads recorded by last used tracker, each of them used to touch the split dir on loading thread.
+     */
+    public static final String LAST_USED_RECORD = "last_used_record";
+
+    /**
+     * Batched writes of last used times, compare with {@code last_used_record}.
+     */
+    public static final String LAST_USED_FLUSH = "last_used_flush";
+
+    /**
+     * Broken split versions replaced by their last verified versions at launch.
+     */
+    public static final String VERSION_ROLLBACK = "version_rollback";
+
+    /**
+     * Runs of deferred disk maintenance, e.g. deleting uninstalled splits and redundant versions.
+     */
+    public static final String MAINTENANCE_RUN = "maintenance_run";
+
+    /**
+     * Runs of maintenance which used up their budget, the rest is done in next run.
+     */
+    public static final String MAINTENANCE_PAUSED = "maintenance_paused";
+
+    /**
+     * Bytes deleted or read by maintenance.
+     */
+    public static final String MAINTENANCE_BYTES = "maintenance_bytes";
+
+    /**
+     * Events posted to reporters of host app.
+     */
+    public static final String REPORT_EVENT = "report_event";
+
+    /**
+     * Report events merged into a pending event of the same kind when too many events are pending.
+     */
+    public static final String REPORT_MERGED = "report_merged";
+
+    public static final String REPORT_DROPPED = "report_dropped";
+
+    /**
+     * Batches of report events delivered on background thread.
+     */
+    public static final String REPORT_BATCH = "report_batch";
+
+    public static final String INSTALL_SPLIT_LATENCY = "install_split_latency";
+
+    public static final String INSTALL_SIGNATURE_LATENCY = "install_signature_latency";
+
+    public static final String INSTALL_MD5_LATENCY = "install_md5_latency";
+
+    public static final String INSTALL_LIB_LATENCY = "install_lib_latency";
+
+    public static final String INSTALL_MULTI_DEX_LATENCY = "install_multi_dex_latency";
+
+    public static final String INSTALL_DEX_OPT_LATENCY = "install_dex_opt_latency";
+
+    public static final String INSTALL_OAT_LATENCY = "install_oat_latency";
+
+    public static final String LOAD_SPLIT_LATENCY = "load_split_latency";
+
+    public static final String LOAD_CODE_LATENCY = "load_code_latency";
+
+    public static final String LOAD_APPLICATION_LATENCY = "load_application_latency";
+
+    public static final String LOAD_ACTIVATE_LATENCY = "load_activate_latency";
+
+    /**
+     * Time spent on main thread to publish loaded splits.
+     */
+    public static final String LOAD_PUBLISH_LATENCY = "load_publish_latency";
+
+    private static final ConcurrentHashMap<String, AtomicLong> sCounters = new ConcurrentHashMap<>();
+
+    private static final ConcurrentHashMap<String, SplitHistogram> sHistograms = new ConcurrentHashMap<>();
+
+    private static volatile boolean sEnabled;
+
+    private SplitMetrics() {
+
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public static void increment(String name, String splitName) {
+        if (sEnabled) {
+            getOrCreateCounter(name + "." + splitName).incrementAndGet();
+        }
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public static void add(String name, long delta) {
+        if (sEnabled) {
+            getOrCreateCounter(name).addAndGet(delta);
+        }
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public static void record(String name, long value) {
+        if (sEnabled) {
+            getOrCreateHistogram(name).record(value);
+        }
+    }
+
+    /**
+     * @return start time in ms, or {@code 0} if metrics are disabled.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public static long startTimer() {
+        return sEnabled ? System.currentTimeMillis() : 0;
+    }
+
+    /**
+     * Record time in ms elapsed from {@link #startTimer()}.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public static void recordLatency(String name, long startTime) {
+        if (startTime > 0 && sEnabled) {
+            getOrCreateHistogram(name).record(System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * Get current values of all metrics of this process.
+     */
+    @NonNull
+    public static Snapshot snapshot() {
+        Map<String, Long> counters = new HashMap<>(sCounters.size());
+        for (Map.Entry<String, AtomicLong> entry : sCounters.entrySet()) {
+            counters.put(entry.getKey(), entry.getValue().get());
+        }
+        Map<String, SplitHistogram.Snapshot> histograms = new HashMap<>(sHistograms.size());
+        for (Map.Entry<String, SplitHistogram> entry : sHistograms.entrySet()) {
+            histograms.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return new Snapshot(counters, histograms);
+    }
+
+    /**
+     * Clear all metrics, e.g. after they have been exported.
+     */
+    public static void reset() {
+        sCounters.clear();
+        sHistograms.clear();
+    }
+
+    private static AtomicLong getOrCreateCounter(String name) {
+        AtomicLong counter = sCounters.get(name);
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+            counter = sCounters.putIfAbsent(name, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        return counter;
+    }
+
+    private static SplitHistogram getOrCreateHistogram(String name) {
+        SplitHistogram histogram = sHistograms.get(name);
+        if (histogram == null) {
+            SplitHistogram newHistogram = new SplitHistogram();
+            histogram = sHistograms.putIfAbsent(name, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Immutable view of all metrics.
+     */
+    public static final class Snapshot {
+
+        private final Map<String, Long> counters;
+
+        private final Map<String, SplitHistogram.Snapshot> histograms;
+
+        Snapshot(Map<String, Long> counters, Map<String, SplitHistogram.Snapshot> histograms) {
+            this.counters = counters;
+            this.histograms = histograms;
+        }
+
+        public long getCounter(String name) {
+            Long value = counters.get(name);
+            return value == null ? 0 : value;
+        }
+
+        @Nullable
+        public SplitHistogram.Snapshot getHistogram(String name) {
+            return histograms.get(name);
+        }
+
+        @NonNull
+        public Map<String, Long> getCounters() {
+            return new HashMap<>(counters);
+        }
+
+        @NonNull
+        public Map<String, SplitHistogram.Snapshot> getHistograms() {
+            return new HashMap<>(histograms);
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "{\"counters\":" + counters + ",\"histograms\":" + histograms + "}";
+        }
+    }
+}
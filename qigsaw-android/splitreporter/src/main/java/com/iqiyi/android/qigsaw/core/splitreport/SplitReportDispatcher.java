@@ -0,0 +1,153 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitreport;
+
+import android.annotation.SuppressLint;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
+
+import java.util.List;
+
+import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
+import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+
+/**
+ * Deliver report events to reporters of host app on a background thread.
+ * Events posted within {@link #BATCH_DELAY} are delivered as one batch in posted order,
+ * see {@link SplitReportEventQueue} for how events are merged or dropped under pressure.
+ */
+@RestrictTo(LIBRARY_GROUP)
+public final class SplitReportDispatcher {
+
+    private static final String TAG = "Split:ReportDispatcher";
+
+    private static final long BATCH_DELAY = 500L;
+
+    private static final SplitReportEventQueue sPendingEvents = new SplitReportEventQueue();
+
+    private static final Object sDeliverLock = new Object();
+
+    private static final Runnable sFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            deliverPendingEvents();
+        }
+    };
+
+    private static Handler sHandler;
+
+    private static boolean sFlushScheduled;
+
+    private SplitReportDispatcher() {
+
+    }
+
+    public static void post(@NonNull Event event) {
+        synchronized (sPendingEvents) {
+            sPendingEvents.offer(event);
+            if (!sFlushScheduled) {
+                getHandler().postDelayed(sFlushTask, BATCH_DELAY);
+                sFlushScheduled = true;
+            }
+        }
+    }
+
+    /**
+     * Deliver pending events as soon as possible, called when process is likely to be killed.
+     */
+    public static void flush() {
+        synchronized (sPendingEvents) {
+            if (sPendingEvents.isEmpty()) {
+                return;
+            }
+            getHandler().removeCallbacks(sFlushTask);
+            getHandler().postAtFrontOfQueue(sFlushTask);
+            sFlushScheduled = true;
+        }
+    }
+
+    private static void deliverPendingEvents() {
+        List<Event> events;
+        synchronized (sPendingEvents) {
+            sFlushScheduled = false;
+            if (sPendingEvents.isEmpty()) {
+                return;
+            }
+            events = sPendingEvents.drain();
+        }
+        SplitMetrics.increment(SplitMetrics.REPORT_BATCH);
+        synchronized (sDeliverLock) {
+            for (Event event : events) {
+                try {
+                    event.deliver();
+                } catch (Throwable e) {
+                    SplitLog.w(TAG, "Failed to deliver report event " + event, e);
+                }
+            }
+        }
+    }
+
+    @SuppressLint("NewThreadDirectly")
+    private static Handler getHandler() {
+        if (sHandler == null) {
+            HandlerThread handlerThread = new HandlerThread("split_report_dispatcher", THREAD_PRIORITY_BACKGROUND);
+            handlerThread.start();
+            sHandler = new Handler(handlerThread.getLooper());
+            //deliver events left when process exits normally.
+            Runtime.getRuntime().addShutdownHook(new Thread(sFlushTask, "split_report_shutdown"));
+        }
+        return sHandler;
+    }
+
+    /**
+     * Immutable report event, which calls reporter of host app when delivered.
+     */
+    public abstract static class Event {
+
+        protected abstract void deliver();
+
+        /**
+         * @param later event posted after this one.
+         * @return an event which reports both events, or {@code null} if they can't be merged.
+         */
+        @Nullable
+        protected Event mergeWith(@NonNull Event later) {
+            return null;
+        }
+
+        /**
+         * @return {@code false} if this event should be kept under pressure, e.g. a failure.
+         */
+        protected boolean isDroppable() {
+            return true;
+        }
+    }
+}
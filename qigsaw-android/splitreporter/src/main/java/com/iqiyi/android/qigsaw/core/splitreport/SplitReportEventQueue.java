@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitreport;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Events waiting to be delivered by {@link SplitReportDispatcher}, in posted order.
+ * Beyond {@link #MAX_PENDING_EVENTS}, a new event is merged into the last pending one if possible,
+ * so that merged events are still delivered after the events posted before them.
+ * Otherwise the oldest droppable event is dropped, or the new one if it is droppable,
+ * events which are not droppable are always kept even if the queue grows beyond its limit.
+ */
+final class SplitReportEventQueue {
+
+    static final int MAX_PENDING_EVENTS = 64;
+
+    private final List<SplitReportDispatcher.Event> pendingEvents = new ArrayList<>();
+
+    void offer(@NonNull SplitReportDispatcher.Event event) {
+        SplitMetrics.increment(SplitMetrics.REPORT_EVENT);
+        if (pendingEvents.size() < MAX_PENDING_EVENTS) {
+            pendingEvents.add(event);
+            return;
+        }
+        int last = pendingEvents.size() - 1;
+        SplitReportDispatcher.Event merged = pendingEvents.get(last).mergeWith(event);
+        if (merged != null) {
+            pendingEvents.set(last, merged);
+            SplitMetrics.increment(SplitMetrics.REPORT_MERGED);
+            return;
+        }
+        int droppable = indexOfDroppable();
+        if (droppable >= 0) {
+            pendingEvents.remove(droppable);
+            SplitMetrics.increment(SplitMetrics.REPORT_DROPPED);
+        } else if (event.isDroppable()) {
+            //nothing pending could be dropped, so drop the incoming event.
+            SplitMetrics.increment(SplitMetrics.REPORT_DROPPED);
+            return;
+        }
+        pendingEvents.add(event);
+    }
+
+    List<SplitReportDispatcher.Event> drain() {
+        List<SplitReportDispatcher.Event> events = new ArrayList<>(pendingEvents);
+        pendingEvents.clear();
+        return events;
+    }
+
+    boolean isEmpty() {
+        return pendingEvents.isEmpty();
+    }
+
+    private int indexOfDroppable() {
+        for (int i = 0; i < pendingEvents.size(); i++) {
+            if (pendingEvents.get(i).isDroppable()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -24,7 +24,6 @@
 
 package com.iqiyi.android.qigsaw.core.splitreport;
 
-import androidx.annotation.MainThread;
 import androidx.annotation.WorkerThread;
 
 import java.util.List;
@@ -60,7 +59,17 @@ public interface SplitUpdateReporter {
      *
      * @param newSplitInfoVersion new version of split info file.
      */
-    @MainThread
+    @WorkerThread
     void onNewSplitInfoVersionLoaded(String newSplitInfoVersion);
 
+    /**
+     * Called when a split version failed to load too many times and its last verified version is loaded instead.
+     *
+     * @param splitName       name of split.
+     * @param brokenVersion   version of split which is not loaded.
+     * @param rollbackVersion version of split which is loaded instead.
+     */
+    @WorkerThread
+    void onSplitRolledBack(String splitName, String brokenVersion, String rollbackVersion);
+
 }
@@ -0,0 +1,129 @@
+package com.iqiyi.android.qigsaw.core.splitreport;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SplitReportEventQueueTest {
+
+    private static final int CAPACITY = SplitReportEventQueue.MAX_PENDING_EVENTS;
+
+    @Test
+    public void keepsFailuresWhenNothingIsDroppable() {
+        SplitReportEventQueue queue = new SplitReportEventQueue();
+        for (int i = 0; i < CAPACITY + 10; i++) {
+            queue.offer(new TestEvent("failure" + i, false, false));
+        }
+        List<String> delivered = names(queue.drain());
+        assertEquals(CAPACITY + 10, delivered.size());
+        for (int i = 0; i < delivered.size(); i++) {
+            assertEquals("failure" + i, delivered.get(i));
+        }
+    }
+
+    @Test
+    public void dropsIncomingDroppableEventWhenNothingIsDroppable() {
+        SplitReportEventQueue queue = new SplitReportEventQueue();
+        for (int i = 0; i < CAPACITY; i++) {
+            queue.offer(new TestEvent("failure" + i, false, false));
+        }
+        queue.offer(new TestEvent("ok", true, false));
+        List<String> delivered = names(queue.drain());
+        assertEquals(CAPACITY, delivered.size());
+        assertEquals("failure0", delivered.get(0));
+        assertEquals("failure" + (CAPACITY - 1), delivered.get(CAPACITY - 1));
+    }
+
+    @Test
+    public void dropsOldestDroppableEventForFailure() {
+        SplitReportEventQueue queue = new SplitReportEventQueue();
+        queue.offer(new TestEvent("failure", false, false));
+        for (int i = 0; i < CAPACITY - 1; i++) {
+            queue.offer(new TestEvent("ok" + i, true, false));
+        }
+        queue.offer(new TestEvent("update", false, false));
+        List<String> delivered = names(queue.drain());
+        assertEquals(CAPACITY, delivered.size());
+        assertEquals("failure", delivered.get(0));
+        assertEquals("ok1", delivered.get(1));
+        assertEquals("update", delivered.get(CAPACITY - 1));
+    }
+
+    @Test
+    public void mergesOnlyIntoLastEventToKeepPostedOrder() {
+        SplitReportEventQueue queue = new SplitReportEventQueue();
+        queue.offer(new TestEvent("ok0", true, true));
+        for (int i = 1; i < CAPACITY - 1; i++) {
+            queue.offer(new TestEvent("failure" + i, false, false));
+        }
+        queue.offer(new TestEvent("ok1", true, true));
+        queue.offer(new TestEvent("ok2", true, true));
+        List<String> delivered = names(queue.drain());
+        assertEquals(CAPACITY, delivered.size());
+        assertEquals("ok0", delivered.get(0));
+        assertEquals("failure" + (CAPACITY - 2), delivered.get(CAPACITY - 2));
+        assertEquals("ok1+ok2", delivered.get(CAPACITY - 1));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void neverMergesAheadOfNewerEvents() {
+        SplitReportEventQueue queue = new SplitReportEventQueue();
+        queue.offer(new TestEvent("ok0", true, true));
+        for (int i = 1; i < CAPACITY; i++) {
+            queue.offer(new TestEvent("failure" + i, false, false));
+        }
+        queue.offer(new TestEvent("ok1", true, true));
+        List<String> delivered = names(queue.drain());
+        assertEquals(CAPACITY, delivered.size());
+        assertEquals("failure1", delivered.get(0));
+        assertEquals("ok1", delivered.get(CAPACITY - 1));
+    }
+
+    private static List<String> names(List<SplitReportDispatcher.Event> events) {
+        List<String> names = new ArrayList<>(events.size());
+        for (SplitReportDispatcher.Event event : events) {
+            names.add(((TestEvent) event).name);
+        }
+        return names;
+    }
+
+    private static final class TestEvent extends SplitReportDispatcher.Event {
+
+        final String name;
+
+        final boolean droppable;
+
+        final boolean mergeable;
+
+        TestEvent(String name, boolean droppable, boolean mergeable) {
+            this.name = name;
+            this.droppable = droppable;
+            this.mergeable = mergeable;
+        }
+
+        @Override
+        protected void deliver() {
+
+        }
+
+        @Override
+        protected SplitReportDispatcher.Event mergeWith(@NonNull SplitReportDispatcher.Event later) {
+            if (!mergeable || !((TestEvent) later).mergeable) {
+                return null;
+            }
+            return new TestEvent(name + "+" + ((TestEvent) later).name, true, true);
+        }
+
+        @Override
+        protected boolean isDroppable() {
+            return droppable;
+        }
+    }
+}
@@ -25,6 +25,7 @@
 package com.iqiyi.android.qigsaw.core.splitrequest.splitinfo;
 
 import java.util.List;
+import java.util.Map;
 
 final class SplitDetails {
 
@@ -38,16 +39,23 @@ final class SplitDetails {
 
     private final SplitInfoListing splitInfoListing;
 
+    /**
+     * Owners of native libraries, indexed by abi and then by library file name.
+     */
+    private final Map<String, Map<String, String>> libraryOwners;
+
     SplitDetails(String qigsawId,
                  String appVersionName,
                  List<String> updateSplits,
                  List<String> splitEntryFragments,
-                 SplitInfoListing splitInfoListing) {
+                 SplitInfoListing splitInfoListing,
+                 Map<String, Map<String, String>> libraryOwners) {
         this.qigsawId = qigsawId;
         this.appVersionName = appVersionName;
         this.updateSplits = updateSplits;
         this.splitEntryFragments = splitEntryFragments;
         this.splitInfoListing = splitInfoListing;
+        this.libraryOwners = libraryOwners;
     }
 
     String getQigsawId() {
@@ -69,4 +77,8 @@ final class SplitDetails {
     SplitInfoListing getSplitInfoListing() {
         return splitInfoListing;
     }
+
+    Map<String, Map<String, String>> getLibraryOwners() {
+        return libraryOwners;
+    }
 }
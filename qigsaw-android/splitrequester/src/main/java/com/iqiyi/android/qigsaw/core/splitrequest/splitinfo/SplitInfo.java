@@ -32,6 +32,8 @@ import android.content.Context;
 import com.iqiyi.android.qigsaw.core.common.AbiUtil;
 import com.iqiyi.android.qigsaw.core.common.SplitConstants;
 
+import org.json.JSONObject;
+
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -64,6 +66,8 @@ public class SplitInfo {
 
     private final List<SplitInfo.LibData> libDataList;
 
+    private final JSONObject rawData;
+
     private AtomicReference<LibData> primaryLibData = new AtomicReference<>();
 
     private List<SplitInfo.ApkData> primaryApkDataList;
@@ -77,7 +81,8 @@ public class SplitInfo {
               List<String> workProcesses,
               List<String> dependencies,
               List<SplitInfo.ApkData> apkDataList,
-              List<SplitInfo.LibData> libDataList) {
+              List<SplitInfo.LibData> libDataList,
+              JSONObject rawData) {
         this.splitName = splitName;
         this.appVersion = appVersion;
         this.splitVersion = version;
@@ -89,6 +94,7 @@ public class SplitInfo {
         this.dependencies = dependencies;
         this.apkDataList = apkDataList;
         this.libDataList = libDataList;
+        this.rawData = rawData;
     }
 
     public String getSplitName() {
@@ -181,6 +187,17 @@ public class SplitInfo {
         return primaryLibData.get();
     }
 
+    List<LibData> getLibDataList() {
+        return libDataList;
+    }
+
+    /**
+     * @return item of this split in split-details file.
+     */
+    JSONObject getRawData() {
+        return rawData;
+    }
+
     public List<String> getDependencies() {
         return dependencies;
     }
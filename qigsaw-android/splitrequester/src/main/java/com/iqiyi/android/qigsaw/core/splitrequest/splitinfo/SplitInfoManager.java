@@ -26,6 +26,7 @@ package com.iqiyi.android.qigsaw.core.splitrequest.splitinfo;
 
 import android.content.Context;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
 import java.io.File;
@@ -81,6 +82,16 @@ public interface SplitInfoManager {
      */
     Collection<SplitInfo> getAllSplitInfo(Context context);
 
+    /**
+     * Get name of split which owns a native library for the abi the split is loaded with.
+     *
+     * @param context
+     * @param libraryFileName file name of library, such as "libfoo.so".
+     * @return name of split, or {@code null} if no split owns this library.
+     */
+    @Nullable
+    String getLibraryOwner(Context context, String libraryFileName);
+
     /**
      * Create {@link SplitDetails} instance for new split info json file.
      *
@@ -35,6 +35,9 @@ import android.text.TextUtils;
 import com.iqiyi.android.qigsaw.core.common.FileUtil;
 import com.iqiyi.android.qigsaw.core.common.SplitConstants;
 import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.common.SplitTrace;
+import com.iqiyi.android.qigsaw.core.splitreport.SplitMetrics;
+import com.iqiyi.android.qigsaw.core.splitreport.SplitUpdateReporter;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -48,8 +51,11 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
 final class SplitInfoManagerImpl implements SplitInfoManager {
@@ -115,12 +121,7 @@ final class SplitInfoManagerImpl implements SplitInfoManager {
     public SplitInfo getSplitInfo(Context context, String splitName) {
         SplitDetails details = getOrCreateSplitDetails(context);
         if (details != null) {
-            Collection<SplitInfo> splits = details.getSplitInfoListing().getSplitInfoMap().values();
-            for (SplitInfo split : splits) {
-                if (split.getSplitName().equals(splitName)) {
-                    return split;
-                }
-            }
+            return details.getSplitInfoListing().getSplitInfoMap().get(splitName);
         }
         return null;
     }
@@ -150,6 +151,33 @@ final class SplitInfoManagerImpl implements SplitInfoManager {
         return null;
     }
 
+    @Override
+    @Nullable
+    public String getLibraryOwner(Context context, String libraryFileName) {
+        SplitDetails details = getOrCreateSplitDetails(context);
+        if (details == null) {
+            return null;
+        }
+        Map<String, SplitInfo> splitInfoMap = details.getSplitInfoListing().getSplitInfoMap();
+        //library is owned by the split which ships it for the abi that split is loaded with.
+        for (Map.Entry<String, Map<String, String>> entry : details.getLibraryOwners().entrySet()) {
+            String owner = entry.getValue().get(libraryFileName);
+            SplitInfo info = owner == null ? null : splitInfoMap.get(owner);
+            if (info == null) {
+                continue;
+            }
+            try {
+                SplitInfo.LibData libData = info.getPrimaryLibData(context);
+                if (libData != null && libData.getAbi().equals(entry.getKey())) {
+                    return owner;
+                }
+            } catch (IOException e) {
+                SplitLog.w(TAG, "Failed to get lib data of split " + owner, e);
+            }
+        }
+        return null;
+    }
+
     @Override
     @Nullable
     public SplitDetails createSplitDetailsForJsonFile(@NonNull String newSplitInfoPath) {
@@ -177,7 +205,13 @@ final class SplitInfoManagerImpl implements SplitInfoManager {
             String defaultSplitInfoFileName = SplitConstants.QIGSAW + "/" + SplitConstants.QIGSAW_PREFIX + defaultVersion + SplitConstants.DOT_JSON;
             SplitLog.i(TAG, "Default split file name: " + defaultSplitInfoFileName);
             long currentTime = System.currentTimeMillis();
-            SplitDetails details = parseSplitContentsForDefaultVersion(context, defaultSplitInfoFileName);
+            SplitDetails details;
+            SplitTrace.beginSection(SplitTrace.PARSE_SPLIT_DETAILS);
+            try {
+                details = parseSplitContentsForDefaultVersion(context, defaultSplitInfoFileName);
+            } finally {
+                SplitTrace.endSection();
+            }
             SplitLog.i(TAG, "Cost %d mil-second to parse default split info", (System.currentTimeMillis() - currentTime));
             return details;
         } catch (Throwable e) {
@@ -190,7 +224,13 @@ final class SplitInfoManagerImpl implements SplitInfoManager {
         try {
             SplitLog.i(TAG, "Updated split file path: " + newSplitInfoFile.getAbsolutePath());
             long currentTime = System.currentTimeMillis();
-            SplitDetails details = parseSplitContentsForNewVersion(newSplitInfoFile);
+            SplitDetails details;
+            SplitTrace.beginSection(SplitTrace.PARSE_SPLIT_DETAILS);
+            try {
+                details = parseSplitContentsForNewVersion(newSplitInfoFile);
+            } finally {
+                SplitTrace.endSection();
+            }
             SplitLog.i(TAG, "Cost %d mil-second to parse updated split info", (System.currentTimeMillis() - currentTime));
             return details;
         } catch (Throwable e) {
@@ -216,12 +256,63 @@ final class SplitInfoManagerImpl implements SplitInfoManager {
                 if (TextUtils.isEmpty(details.getQigsawId())) {
                     return null;
                 }
+                rollbackBrokenSplits(context, details);
             }
             splitDetailsRef.compareAndSet(null, details);
         }
         return details;
     }
 
+    /**
+     * Replace info of split whose version is broken with its most recently verified version which is still installed,
+     * so that it is loaded without downloading.
+     */
+    private void rollbackBrokenSplits(Context context, SplitDetails details) {
+        if (!SplitPathManager.hasInstance()) {
+            return;
+        }
+        SplitVersionGuard versionGuard = SplitPathManager.require().getVersionGuard();
+        for (Map.Entry<String, SplitInfo> entry : details.getSplitInfoListing().getSplitInfoMap().entrySet()) {
+            SplitInfo brokenInfo = entry.getValue();
+            if (!versionGuard.isBroken(brokenInfo.getSplitName(), brokenInfo.getSplitVersion())) {
+                continue;
+            }
+            SplitInfo rollbackInfo = findRollbackSplitInfo(context, versionGuard, brokenInfo, details.getAppVersionName());
+            if (rollbackInfo == null) {
+                SplitLog.w(TAG, "Split %s version %s is broken, but no verified version is installed.",
+                        brokenInfo.getSplitName(), brokenInfo.getSplitVersion());
+                continue;
+            }
+            entry.setValue(rollbackInfo);
+            SplitLog.w(TAG, "Split %s version %s is broken, roll back to version %s.",
+                    brokenInfo.getSplitName(), brokenInfo.getSplitVersion(), rollbackInfo.getSplitVersion());
+            SplitMetrics.increment(SplitMetrics.VERSION_ROLLBACK, brokenInfo.getSplitName());
+            SplitUpdateReporter updateReporter = SplitUpdateReporterManager.getUpdateReporter();
+            if (updateReporter != null) {
+                updateReporter.onSplitRolledBack(brokenInfo.getSplitName(), brokenInfo.getSplitVersion(), rollbackInfo.getSplitVersion());
+            }
+        }
+    }
+
+    @Nullable
+    private static SplitInfo findRollbackSplitInfo(Context context, SplitVersionGuard versionGuard,
+                                                   SplitInfo brokenInfo, String appVersionName) {
+        for (JSONObject infoObj : versionGuard.getVerifiedInfos(brokenInfo.getSplitName())) {
+            try {
+                SplitInfo info = parseSplitInfo(infoObj, appVersionName);
+                if (info.getSplitVersion().equals(brokenInfo.getSplitVersion())) {
+                    continue;
+                }
+                if (SplitPathManager.require().getSplitInstallJournal(info).read().isInstalled(info.obtainInstalledMark(context))) {
+                    return info;
+                }
+            } catch (JSONException | IOException | RuntimeException e) {
+                SplitLog.w(TAG, "Failed to read verified version of split " + brokenInfo.getSplitName(), e);
+            }
+        }
+        return null;
+    }
+
     private static SplitDetails parseSplitContentsForDefaultVersion(Context context, String fileName)
             throws IOException, JSONException {
         String content = readInputStreamContent(createInputStreamFromAssets(context, fileName));
@@ -296,73 +387,117 @@ final class SplitInfoManagerImpl implements SplitInfoManager {
             throw new RuntimeException("No splits found in split-details file!");
         }
         for (int i = 0; i < array.length(); i++) {
-            JSONObject itemObj = array.getJSONObject(i);
-            boolean builtIn = itemObj.optBoolean("builtIn");
-            String splitName = itemObj.optString("splitName");
-            String version = itemObj.optString("version");
-            int minSdkVersion = itemObj.optInt("minSdkVersion");
-            int dexNumber = itemObj.optInt("dexNumber");
-            JSONArray processes = itemObj.optJSONArray("workProcesses");
-            List<String> workProcesses = null;
-            if (processes != null && processes.length() > 0) {
-                workProcesses = new ArrayList<>(processes.length());
-                for (int k = 0; k < processes.length(); k++) {
-                    workProcesses.add(processes.optString(k));
-                }
+            SplitInfo splitInfo = parseSplitInfo(array.getJSONObject(i), appVersionName);
+            splitInfoMap.put(splitInfo.getSplitName(), splitInfo);
+        }
+        SplitInfoListing splitInfoListing = new SplitInfoListing(splitInfoMap);
+        Map<String, Map<String, String>> libraryOwners = parseLibraryOwners(contentObj.optJSONObject("libraryOwners"), splitInfoMap);
+        return new SplitDetails(qigsawId, appVersionName, updateSplits, splitEntryFragments, splitInfoListing, libraryOwners);
+    }
+
+    static SplitInfo parseSplitInfo(JSONObject itemObj, String appVersionName) throws JSONException {
+        boolean builtIn = itemObj.optBoolean("builtIn");
+        String splitName = itemObj.optString("splitName");
+        String version = itemObj.optString("version");
+        int minSdkVersion = itemObj.optInt("minSdkVersion");
+        int dexNumber = itemObj.optInt("dexNumber");
+        JSONArray processes = itemObj.optJSONArray("workProcesses");
+        List<String> workProcesses = null;
+        if (processes != null && processes.length() > 0) {
+            workProcesses = new ArrayList<>(processes.length());
+            for (int k = 0; k < processes.length(); k++) {
+                workProcesses.add(processes.optString(k));
+            }
+        }
+        JSONArray dependenciesArray = itemObj.optJSONArray("dependencies");
+        List<String> dependencies = null;
+        if (dependenciesArray != null && dependenciesArray.length() > 0) {
+            dependencies = new ArrayList<>(dependenciesArray.length());
+            for (int m = 0; m < dependenciesArray.length(); m++) {
+                dependencies.add(dependenciesArray.optString(m));
             }
-            JSONArray dependenciesArray = itemObj.optJSONArray("dependencies");
-            List<String> dependencies = null;
-            if (dependenciesArray != null && dependenciesArray.length() > 0) {
-                dependencies = new ArrayList<>(dependenciesArray.length());
-                for (int m = 0; m < dependenciesArray.length(); m++) {
-                    dependencies.add(dependenciesArray.optString(m));
+        }
+        JSONArray apkDataArray = itemObj.optJSONArray("apkData");
+        if (apkDataArray == null || apkDataArray.length() == 0) {
+            throw new RuntimeException("No apkData found in split-details file!");
+        }
+        List<SplitInfo.ApkData> apkDataList = new ArrayList<>(apkDataArray.length());
+        for (int n = 0; n < apkDataArray.length(); n++) {
+            JSONObject apkDataObj = apkDataArray.optJSONObject(n);
+            String abi = apkDataObj.optString("abi");
+            String url = apkDataObj.optString("url");
+            String md5 = apkDataObj.optString("md5");
+            long size = apkDataObj.optLong("size");
+            apkDataList.add(new SplitInfo.ApkData(abi, url, md5, size));
+        }
+        JSONArray libDataArray = itemObj.optJSONArray("libData");
+        List<SplitInfo.LibData> libDataList = null;
+        if (libDataArray != null && libDataArray.length() > 0) {
+            libDataList = new ArrayList<>(libDataArray.length());
+            for (int j = 0; j < libDataArray.length(); j++) {
+                JSONObject libDataObj = libDataArray.optJSONObject(j);
+                String cpuAbi = libDataObj.optString("abi");
+                JSONArray jniLibsArray = libDataObj.optJSONArray("jniLibs");
+                List<SplitInfo.LibData.Lib> jniLibs = new ArrayList<>();
+                if (jniLibsArray != null && jniLibsArray.length() > 0) {
+                    for (int k = 0; k < jniLibsArray.length(); k++) {
+                        JSONObject libObj = jniLibsArray.optJSONObject(k);
+                        String name = libObj.optString("name");
+                        String soMd5 = libObj.optString("md5");
+                        long soSize = libObj.optLong("size");
+                        SplitInfo.LibData.Lib lib = new SplitInfo.LibData.Lib(name, soMd5, soSize);
+                        jniLibs.add(lib);
+                    }
                 }
+                SplitInfo.LibData libInfo = new SplitInfo.LibData(cpuAbi, jniLibs);
+                libDataList.add(libInfo);
             }
-            JSONArray apkDataArray = itemObj.optJSONArray("apkData");
-            if (apkDataArray == null || apkDataArray.length() == 0) {
-                throw new RuntimeException("No apkData found in split-details file!");
+        }
+        return new SplitInfo(
+                splitName, appVersionName, version,
+                builtIn, minSdkVersion, dexNumber,
+                workProcesses, dependencies, apkDataList,
+                libDataList, itemObj
+        );
+    }
+
+    static Map<String, Map<String, String>> parseLibraryOwners(@Nullable JSONObject libraryOwnersObj,
+                                                               Map<String, SplitInfo> splitInfoMap) throws JSONException {
+        Map<String, Map<String, String>> libraryOwners = new HashMap<>();
+        if (libraryOwnersObj != null) {
+            Iterator<String> abis = libraryOwnersObj.keys();
+            while (abis.hasNext()) {
+                String abi = abis.next();
+                JSONObject abiOwnersObj = libraryOwnersObj.getJSONObject(abi);
+                Map<String, String> abiOwners = new HashMap<>();
+                Iterator<String> names = abiOwnersObj.keys();
+                while (names.hasNext()) {
+                    String name = names.next();
+                    abiOwners.put(name, abiOwnersObj.getString(name));
+                }
+                libraryOwners.put(abi, abiOwners);
             }
-            List<SplitInfo.ApkData> apkDataList = new ArrayList<>(apkDataArray.length());
-            for (int n = 0; n < apkDataArray.length(); n++) {
-                JSONObject apkDataObj = apkDataArray.optJSONObject(n);
-                String abi = apkDataObj.optString("abi");
-                String url = apkDataObj.optString("url");
-                String md5 = apkDataObj.optString("md5");
-                long size = apkDataObj.optLong("size");
-                apkDataList.add(new SplitInfo.ApkData(abi, url, md5, size));
+            return libraryOwners;
+        }
+        //split-details file generated by old gradle plugin has no index, build it from lib data.
+        for (SplitInfo splitInfo : splitInfoMap.values()) {
+            List<SplitInfo.LibData> libDataList = splitInfo.getLibDataList();
+            if (libDataList == null) {
+                continue;
             }
-            JSONArray libDataArray = itemObj.optJSONArray("libData");
-            List<SplitInfo.LibData> libDataList = null;
-            if (libDataArray != null && libDataArray.length() > 0) {
-                libDataList = new ArrayList<>(libDataArray.length());
-                for (int j = 0; j < libDataArray.length(); j++) {
-                    JSONObject libDataObj = libDataArray.optJSONObject(j);
-                    String cpuAbi = libDataObj.optString("abi");
-                    JSONArray jniLibsArray = libDataObj.optJSONArray("jniLibs");
-                    List<SplitInfo.LibData.Lib> jniLibs = new ArrayList<>();
-                    if (jniLibsArray != null && jniLibsArray.length() > 0) {
-                        for (int k = 0; k < jniLibsArray.length(); k++) {
-                            JSONObject libObj = jniLibsArray.optJSONObject(k);
-                            String name = libObj.optString("name");
-                            String soMd5 = libObj.optString("md5");
-                            long soSize = libObj.optLong("size");
-                            SplitInfo.LibData.Lib lib = new SplitInfo.LibData.Lib(name, soMd5, soSize);
-                            jniLibs.add(lib);
-                        }
+            for (SplitInfo.LibData libData : libDataList) {
+                Map<String, String> abiOwners = libraryOwners.get(libData.getAbi());
+                if (abiOwners == null) {
+                    abiOwners = new HashMap<>();
+                    libraryOwners.put(libData.getAbi(), abiOwners);
+                }
+                for (SplitInfo.LibData.Lib lib : libData.getLibs()) {
+                    if (!abiOwners.containsKey(lib.getName())) {
+                        abiOwners.put(lib.getName(), splitInfo.getSplitName());
                     }
-                    SplitInfo.LibData libInfo = new SplitInfo.LibData(cpuAbi, jniLibs);
-                    libDataList.add(libInfo);
                 }
             }
-            SplitInfo splitInfo = new SplitInfo(
-                    splitName, appVersionName, version,
-                    builtIn, minSdkVersion, dexNumber,
-                    workProcesses, dependencies, apkDataList,
-                    libDataList
-            );
-            splitInfoMap.put(splitName, splitInfo);
         }
-        SplitInfoListing splitInfoListing = new SplitInfoListing(splitInfoMap);
-        return new SplitDetails(qigsawId, appVersionName, updateSplits, splitEntryFragments, splitInfoListing);
+        return libraryOwners;
     }
 }
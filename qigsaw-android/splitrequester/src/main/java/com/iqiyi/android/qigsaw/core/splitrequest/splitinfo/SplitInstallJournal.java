@@ -0,0 +1,399 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitrequest.splitinfo;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import com.iqiyi.android.qigsaw.core.common.FileUtil;
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+
+/**
+ * Append-only journal of install stages for a split version, stored in its split dir.
+ * Records appended between two {@link #commit()} calls are written as one checksummed batch and synced to disk,
+ * a batch torn by crash is discarded as a whole, so a reader always sees the stages committed before.
+ * Journal is shared by all processes, commits are serialized by a separate lock file,
+ * since compaction replaces journal file and a lock held on the replaced file would no longer exclude other writers.
+ */
+@RestrictTo(LIBRARY_GROUP)
+public final class SplitInstallJournal {
+
+    private static final String TAG = "Split.SplitInstallJournal";
+
+    private static final String JOURNAL_NAME = "install.journal";
+
+    private static final String LOCK_NAME = JOURNAL_NAME + ".lock";
+
+    /**
+     * File lock is held by process, so commits of threads in a process are serialized by this.
+     */
+    private static final Object COMMIT_LOCK = new Object();
+
+    private static final int BATCH_MAGIC = 0x514A524E;
+
+    private static final int BATCH_HEADER_SIZE = 16;
+
+    private static final int MAX_BATCH_SIZE = 1024 * 1024;
+
+    private static final long COMPACT_THRESHOLD = 32 * 1024;
+
+    private static final byte OP_PUT = 1;
+
+    private static final byte OP_REVOKE = 2;
+
+    /**
+     * Split apk passed signature and md5 check, keyed by apk name. Values are length and last modified time of apk.
+     */
+    public static final int STAGE_APK_VERIFIED = 1;
+
+    /**
+     * Native libraries are extracted, keyed by abi. Values are paths of extracted libraries.
+     */
+    public static final int STAGE_LIB_EXTRACTED = 2;
+
+    /**
+     * Secondary dex files are extracted for VM without multi-dex support. Values are paths of extracted dex files.
+     */
+    public static final int STAGE_MULTI_DEX_EXTRACTED = 3;
+
+    /**
+     * Dex files of split are optimized.
+     */
+    public static final int STAGE_DEX_OPTIMIZED = 4;
+
+    /**
+     * Split is installed but its oat file has not been generated yet, keyed by installed mark.
+     * On some vivo & oppo devices, oat file must be checked before the split is loaded.
+     */
+    public static final int STAGE_OAT_UNCHECKED = 5;
+
+    /**
+     * Split is installed, keyed by installed mark.
+     */
+    public static final int STAGE_INSTALLED = 6;
+
+    public static final String NO_KEY = "";
+
+    private final File splitDir;
+
+    private final File journalFile;
+
+    private final File lockFile;
+
+    private final List<Record> pendingRecords = new ArrayList<>();
+
+    SplitInstallJournal(File splitDir) {
+        this.splitDir = splitDir;
+        this.journalFile = new File(splitDir, JOURNAL_NAME);
+        this.lockFile = new File(splitDir, LOCK_NAME);
+    }
+
+    /**
+     * Read all committed stages.
+     */
+    @NonNull
+    public Snapshot read() {
+        Snapshot snapshot = new Snapshot(splitDir);
+        if (!journalFile.exists()) {
+            return snapshot;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(journalFile, "r");
+            readBatches(raf, snapshot);
+        } catch (IOException e) {
+            SplitLog.w(TAG, "Failed to read journal " + journalFile.getAbsolutePath(), e);
+        } finally {
+            FileUtil.closeQuietly(raf);
+        }
+        return snapshot;
+    }
+
+    public void append(int stage, @NonNull String key, String... values) {
+        synchronized (pendingRecords) {
+            pendingRecords.add(new Record(OP_PUT, stage, key, values));
+        }
+    }
+
+    public void revoke(int stage, @NonNull String key) {
+        synchronized (pendingRecords) {
+            pendingRecords.add(new Record(OP_REVOKE, stage, key, new String[0]));
+        }
+    }
+
+    /**
+     * Write all appended records as one batch.
+     */
+    public void commit() throws IOException {
+        List<Record> records;
+        synchronized (pendingRecords) {
+            if (pendingRecords.isEmpty()) {
+                return;
+            }
+            records = new ArrayList<>(pendingRecords);
+            pendingRecords.clear();
+        }
+        byte[] batch = encodeBatch(records);
+        synchronized (COMMIT_LOCK) {
+            commitBatch(records, batch);
+        }
+    }
+
+    private void commitBatch(List<Record> records, byte[] batch) throws IOException {
+        RandomAccessFile lockRaf = new RandomAccessFile(lockFile, "rw");
+        FileChannel lockChannel = lockRaf.getChannel();
+        FileLock lock = null;
+        RandomAccessFile raf = null;
+        try {
+            lock = lockChannel.lock();
+            //open journal after locking, so that a journal replaced by compaction of other writer is not written.
+            raf = new RandomAccessFile(journalFile, "rw");
+            //drop batch torn by a crashed writer, otherwise batches after it can't be read.
+            Snapshot snapshot = new Snapshot(splitDir);
+            long validLength = readBatches(raf, snapshot);
+            if (validLength + batch.length > COMPACT_THRESHOLD) {
+                for (Record record : records) {
+                    snapshot.apply(record);
+                }
+                compact(snapshot);
+                return;
+            }
+            if (validLength != raf.length()) {
+                SplitLog.w(TAG, "Discard %d bytes of torn batch in %s", raf.length() - validLength, journalFile.getAbsolutePath());
+                raf.setLength(validLength);
+            }
+            raf.seek(validLength);
+            raf.write(batch);
+            raf.getFD().sync();
+        } finally {
+            if (lock != null) {
+                try {
+                    lock.release();
+                } catch (IOException ignored) {
+
+                }
+            }
+            FileUtil.closeQuietly(raf);
+            FileUtil.closeQuietly(lockChannel);
+            FileUtil.closeQuietly(lockRaf);
+        }
+    }
+
+    private void compact(Snapshot snapshot) throws IOException {
+        List<Record> records = new ArrayList<>(snapshot.records.size() + snapshot.revokedKeys.size());
+        for (Map.Entry<String, Record> entry : snapshot.records.entrySet()) {
+            records.add(entry.getValue());
+        }
+        for (String revokedKey : snapshot.revokedKeys) {
+            //keep revoked legacy marks revoked.
+            int index = revokedKey.indexOf('/');
+            records.add(new Record(OP_REVOKE, Integer.parseInt(revokedKey.substring(0, index)), revokedKey.substring(index + 1), new String[0]));
+        }
+        File tmpFile = new File(splitDir, JOURNAL_NAME + ".tmp");
+        FileOutputStream os = new FileOutputStream(tmpFile);
+        try {
+            os.write(encodeBatch(records));
+            os.getFD().sync();
+        } finally {
+            FileUtil.closeQuietly(os);
+        }
+        if (!tmpFile.renameTo(journalFile)) {
+            FileUtil.deleteFileSafely(tmpFile);
+            throw new IOException("Failed to compact journal " + journalFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * @return length of valid batches.
+     */
+    private static long readBatches(RandomAccessFile raf, Snapshot snapshot) throws IOException {
+        long length = raf.length();
+        long position = 0;
+        raf.seek(0);
+        while (position + BATCH_HEADER_SIZE <= length) {
+            int magic = raf.readInt();
+            int size = raf.readInt();
+            long crc = raf.readLong();
+            if (magic != BATCH_MAGIC || size < 0 || size > MAX_BATCH_SIZE || position + BATCH_HEADER_SIZE + size > length) {
+                break;
+            }
+            byte[] payload = new byte[size];
+            raf.readFully(payload);
+            CRC32 crc32 = new CRC32();
+            crc32.update(payload);
+            if (crc32.getValue() != crc) {
+                break;
+            }
+            for (Record record : decodeRecords(payload)) {
+                snapshot.apply(record);
+            }
+            position += BATCH_HEADER_SIZE + size;
+        }
+        return position;
+    }
+
+    private static byte[] encodeBatch(List<Record> records) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeInt(records.size());
+        for (Record record : records) {
+            payload.writeByte(record.op);
+            payload.writeInt(record.stage);
+            payload.writeUTF(record.key);
+            payload.writeInt(record.values.length);
+            for (String value : record.values) {
+                payload.writeUTF(value);
+            }
+        }
+        payload.flush();
+        byte[] payloadArray = payloadBytes.toByteArray();
+        CRC32 crc32 = new CRC32();
+        crc32.update(payloadArray);
+        ByteArrayOutputStream batchBytes = new ByteArrayOutputStream(BATCH_HEADER_SIZE + payloadArray.length);
+        DataOutputStream batch = new DataOutputStream(batchBytes);
+        batch.writeInt(BATCH_MAGIC);
+        batch.writeInt(payloadArray.length);
+        batch.writeLong(crc32.getValue());
+        batch.write(payloadArray);
+        batch.flush();
+        return batchBytes.toByteArray();
+    }
+
+    private static List<Record> decodeRecords(byte[] payload) throws IOException {
+        DataInputStream is = new DataInputStream(new ByteArrayInputStream(payload));
+        int count = is.readInt();
+        List<Record> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte op = is.readByte();
+            int stage = is.readInt();
+            String key = is.readUTF();
+            String[] values = new String[is.readInt()];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = is.readUTF();
+            }
+            records.add(new Record(op, stage, key, values));
+        }
+        return records;
+    }
+
+    private static String recordKey(int stage, String key) {
+        return stage + "/" + key;
+    }
+
+    /**
+     * Committed stages of a split version.
+     */
+    public static final class Snapshot {
+
+        private final File splitDir;
+
+        private final Map<String, Record> records = new LinkedHashMap<>();
+
+        private final Set<String> revokedKeys = new HashSet<>();
+
+        Snapshot(File splitDir) {
+            this.splitDir = splitDir;
+        }
+
+        void apply(Record record) {
+            String recordKey = recordKey(record.stage, record.key);
+            if (record.op == OP_PUT) {
+                records.put(recordKey, record);
+                revokedKeys.remove(recordKey);
+            } else {
+                records.remove(recordKey);
+                revokedKeys.add(recordKey);
+            }
+        }
+
+        public boolean has(int stage, @NonNull String key) {
+            return records.containsKey(recordKey(stage, key));
+        }
+
+        @Nullable
+        public String[] get(int stage, @NonNull String key) {
+            Record record = records.get(recordKey(stage, key));
+            return record == null ? null : record.values;
+        }
+
+        /**
+         * @return {@code true} if nothing is committed, split may be installed before journal is introduced.
+         */
+        public boolean isEmpty() {
+            return records.isEmpty() && revokedKeys.isEmpty();
+        }
+
+        public boolean isInstalled(@NonNull String installedMark) {
+            return has(STAGE_INSTALLED, installedMark) || hasLegacyMark(STAGE_INSTALLED, installedMark, installedMark);
+        }
+
+        public boolean isOatUnchecked(@NonNull String installedMark) {
+            return has(STAGE_OAT_UNCHECKED, installedMark) || hasLegacyMark(STAGE_OAT_UNCHECKED, installedMark, installedMark + ".ov");
+        }
+
+        private boolean hasLegacyMark(int stage, String key, String markFileName) {
+            return !revokedKeys.contains(recordKey(stage, key)) && new File(splitDir, markFileName).exists();
+        }
+    }
+
+    private static final class Record {
+
+        final byte op;
+
+        final int stage;
+
+        final String key;
+
+        final String[] values;
+
+        Record(byte op, int stage, String key, String[] values) {
+            this.op = op;
+            this.stage = stage;
+            this.key = key;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitrequest.splitinfo;
+
+import android.annotation.SuppressLint;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import com.iqiyi.android.qigsaw.core.common.FileUtil;
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
+import com.iqiyi.android.qigsaw.core.splitreport.SplitMetrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+
+/**
+ * Last used time of each split version, which decides the versions to keep when redundant versions are deleted.
+ * Loads are recorded in memory and written in one batch off loading thread a few seconds later,
+ * instead of touching split dir for every loaded split. Records of all processes are merged under a file lock.
+ */
+@RestrictTo(LIBRARY_GROUP)
+public final class SplitLastUsedTracker {
+
+    private static final String TAG = "Split.SplitLastUsedTracker";
+
+    private static final String FILE_NAME = "last_used";
+
+    private static final String LOCK_FILE_NAME = "last_used.lock";
+
+    private static final int FILE_VERSION = 1;
+
+    private static final long FLUSH_DELAY = 5000L;
+
+    private static volatile ScheduledThreadPoolExecutor sFlushExecutor;
+
+    private final File trackerFile;
+
+    private final File lockFile;
+
+    private final Map<String, Long> pendingTimes = new HashMap<>();
+
+    private boolean flushScheduled;
+
+    SplitLastUsedTracker(File rootDir) {
+        this.trackerFile = new File(rootDir, FILE_NAME);
+        this.lockFile = new File(rootDir, LOCK_FILE_NAME);
+    }
+
+    /**
+     * Record that a split version is used now, it will be written later.
+     */
+    public void recordUsed(@NonNull String splitName, @NonNull String splitVersion) {
+        SplitMetrics.increment(SplitMetrics.LAST_USED_RECORD);
+        synchronized (pendingTimes) {
+            pendingTimes.put(entryKey(splitName, splitVersion), System.currentTimeMillis());
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        getFlushExecutor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write recorded times right away.
+     */
+    public void flush() {
+        final Map<String, Long> times;
+        synchronized (pendingTimes) {
+            flushScheduled = false;
+            if (pendingTimes.isEmpty()) {
+                return;
+            }
+            times = new HashMap<>(pendingTimes);
+            pendingTimes.clear();
+        }
+        update(new Updater() {
+            @Override
+            public void update(Map<String, Long> entries) {
+                for (Map.Entry<String, Long> entry : times.entrySet()) {
+                    Long time = entries.get(entry.getKey());
+                    if (time == null || time < entry.getValue()) {
+                        entries.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        });
+        SplitMetrics.increment(SplitMetrics.LAST_USED_FLUSH);
+    }
+
+    /**
+     * Remove records of deleted split versions.
+     *
+     * @param splitVersion version of split, or {@code null} for all versions.
+     */
+    public void forget(@NonNull String splitName, @Nullable String splitVersion) {
+        final String prefix = splitVersion == null ? entryKey(splitName, "") : entryKey(splitName, splitVersion);
+        final boolean allVersions = splitVersion == null;
+        synchronized (pendingTimes) {
+            removeEntries(pendingTimes, prefix, allVersions);
+        }
+        update(new Updater() {
+            @Override
+            public void update(Map<String, Long> entries) {
+                removeEntries(entries, prefix, allVersions);
+            }
+        });
+    }
+
+    /**
+     * @return last used time of each version of split, including times not written yet.
+     */
+    @NonNull
+    public Map<String, Long> getLastUsedTimes(@NonNull String splitName) {
+        Map<String, Long> entries = new HashMap<>();
+        synchronized (this) {
+            readEntries(entries);
+        }
+        synchronized (pendingTimes) {
+            entries.putAll(pendingTimes);
+        }
+        String prefix = entryKey(splitName, "");
+        Map<String, Long> versionTimes = new HashMap<>();
+        for (Map.Entry<String, Long> entry : entries.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                versionTimes.put(entry.getKey().substring(prefix.length()), entry.getValue());
+            }
+        }
+        return versionTimes;
+    }
+
+    private synchronized void update(Updater updater) {
+        RandomAccessFile raf = null;
+        FileChannel channel = null;
+        FileLock lock = null;
+        try {
+            raf = new RandomAccessFile(lockFile, "rw");
+            channel = raf.getChannel();
+            lock = channel.lock();
+            Map<String, Long> entries = new HashMap<>();
+            readEntries(entries);
+            updater.update(entries);
+            writeEntries(entries);
+        } catch (IOException e) {
+            SplitLog.w(TAG, "Failed to update last used times.", e);
+        } finally {
+            if (lock != null) {
+                try {
+                    lock.release();
+                } catch (IOException ignored) {
+
+                }
+            }
+            FileUtil.closeQuietly(channel);
+            FileUtil.closeQuietly(raf);
+        }
+    }
+
+    private void readEntries(Map<String, Long> entries) {
+        if (!trackerFile.exists()) {
+            return;
+        }
+        DataInputStream is = null;
+        try {
+            is = new DataInputStream(new BufferedInputStream(new FileInputStream(trackerFile)));
+            if (is.readInt() != FILE_VERSION) {
+                return;
+            }
+            int count = is.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = is.readUTF();
+                entries.put(key, is.readLong());
+            }
+        } catch (IOException e) {
+            SplitLog.w(TAG, "Failed to read last used times, start over.", e);
+            entries.clear();
+        } finally {
+            FileUtil.closeQuietly(is);
+        }
+    }
+
+    private void writeEntries(Map<String, Long> entries) throws IOException {
+        File tmpFile = new File(trackerFile.getAbsolutePath() + ".tmp");
+        DataOutputStream os = null;
+        try {
+            os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            os.writeInt(FILE_VERSION);
+            os.writeInt(entries.size());
+            for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                os.writeUTF(entry.getKey());
+                os.writeLong(entry.getValue());
+            }
+            os.flush();
+        } catch (IOException e) {
+            FileUtil.closeQuietly(os);
+            FileUtil.deleteFileSafely(tmpFile);
+            throw e;
+        }
+        FileUtil.closeQuietly(os);
+        if (!tmpFile.renameTo(trackerFile)) {
+            FileUtil.deleteFileSafely(tmpFile);
+            throw new IOException("Failed to rename " + tmpFile.getAbsolutePath());
+        }
+    }
+
+    private static void removeEntries(Map<String, Long> entries, String prefix, boolean allVersions) {
+        Iterator<String> iterator = entries.keySet().iterator();
+        while (iterator.hasNext()) {
+            String key = iterator.next();
+            if (allVersions ? key.startsWith(prefix) : key.equals(prefix)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static String entryKey(String splitName, String splitVersion) {
+        return splitName + File.separator + splitVersion;
+    }
+
+    private static ScheduledThreadPoolExecutor getFlushExecutor() {
+        if (sFlushExecutor == null) {
+            synchronized (SplitLastUsedTracker.class) {
+                if (sFlushExecutor == null) {
+                    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                        @SuppressLint("NewThreadDirectly")
+                        @Override
+                        public Thread newThread(@NonNull Runnable r) {
+                            return new Thread(r, "split_last_used_thread");
+                        }
+                    });
+                    executor.setKeepAliveTime(30L, TimeUnit.SECONDS);
+                    executor.allowCoreThreadTimeOut(true);
+                    sFlushExecutor = executor;
+                }
+            }
+        }
+        return sFlushExecutor;
+    }
+
+    private interface Updater {
+
+        void update(Map<String, Long> entries);
+    }
+}
@@ -26,6 +26,7 @@ package com.iqiyi.android.qigsaw.core.splitrequest.splitinfo;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.RestrictTo;
 
 import com.iqiyi.android.qigsaw.core.common.FileUtil;
@@ -34,6 +35,8 @@ import com.iqiyi.android.qigsaw.core.common.SplitConstants;
 import com.iqiyi.android.qigsaw.core.common.SplitLog;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
@@ -49,9 +52,15 @@ public final class SplitPathManager {
 
     private final String qigsawId;
 
+    private final SplitLastUsedTracker lastUsedTracker;
+
+    private final SplitVersionGuard versionGuard;
+
     private SplitPathManager(File rootDir, String qigsawId) {
         this.rootDir = new File(rootDir, qigsawId);
         this.qigsawId = qigsawId;
+        this.lastUsedTracker = new SplitLastUsedTracker(this.rootDir);
+        this.versionGuard = new SplitVersionGuard(this.rootDir);
     }
 
     public static void install(Context context) {
@@ -64,6 +73,10 @@ public final class SplitPathManager {
         return new SplitPathManager(baseRootDir, qigsawId);
     }
 
+    static boolean hasInstance() {
+        return sSplitPathManagerRef.get() != null;
+    }
+
     public static SplitPathManager require() {
         if (sSplitPathManagerRef.get() == null) {
             throw new RuntimeException("SplitPathManager must be initialized firstly!");
@@ -101,28 +114,26 @@ public final class SplitPathManager {
     }
 
     /**
-     * Get mark file for split, if file is existed, indicate the split has been installed.
+     * Get install journal of split, which records the install stages that have been finished.
      *
      * @param info split info.
      */
-    public File getSplitMarkFile(SplitInfo info, String mark) {
-        File splitDir = getSplitDir(info);
-        return new File(splitDir, mark);
+    public SplitInstallJournal getSplitInstallJournal(SplitInfo info) {
+        return new SplitInstallJournal(getSplitDir(info));
     }
 
     /**
-     * Get special mark file for split(), if file is existed, indicate the split has been installed.
-     *
-     * @param info split info.
+     * Get tracker of last used time of split versions, which is shared by all splits.
      */
-    public File getSplitSpecialMarkFile(SplitInfo info, String mark) {
-        File splitDir = getSplitDir(info);
-        return new File(splitDir, mark + ".ov");
+    public SplitLastUsedTracker getLastUsedTracker() {
+        return lastUsedTracker;
     }
 
-    public File getSplitSpecialLockFile(SplitInfo info) {
-        File splitDir = getSplitDir(info);
-        return new File(splitDir, "ov.lock");
+    /**
+     * Get guard of split versions, which decides whether a split is rolled back to a verified version.
+     */
+    public SplitVersionGuard getVersionGuard() {
+        return versionGuard;
     }
 
     /**
@@ -175,15 +186,27 @@ public final class SplitPathManager {
     }
 
     public void clearCache() {
+        for (File file : getStaleCacheDirs()) {
+            FileUtil.deleteDir(file);
+            SplitLog.i(TAG, "Success to delete all obsolete splits for current app version!");
+        }
+    }
+
+    /**
+     * @return dirs of splits for other app versions.
+     */
+    @NonNull
+    public List<File> getStaleCacheDirs() {
+        List<File> staleDirs = new ArrayList<>();
         File qigsawIdDir = rootDir.getParentFile();
         File[] qigsawIdFiles = qigsawIdDir.listFiles();
         if (qigsawIdFiles != null && qigsawIdFiles.length > 0) {
             for (File file : qigsawIdFiles) {
                 if (file.isDirectory() && !file.getName().equals(qigsawId)) {
-                    FileUtil.deleteDir(file);
-                    SplitLog.i(TAG, "Success to delete all obsolete splits for current app version!");
+                    staleDirs.add(file);
                 }
             }
         }
+        return staleDirs;
     }
 }
@@ -28,6 +28,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
+import com.iqiyi.android.qigsaw.core.splitreport.AsyncSplitUpdateReporter;
 import com.iqiyi.android.qigsaw.core.splitreport.SplitUpdateReporter;
 
 import java.util.concurrent.atomic.AtomicReference;
@@ -40,7 +41,7 @@ public class SplitUpdateReporterManager {
     private static final AtomicReference<SplitUpdateReporter> sUpdateReporterRef = new AtomicReference<>();
 
     public static void install(@NonNull SplitUpdateReporter installReporter) {
-        sUpdateReporterRef.compareAndSet(null, installReporter);
+        sUpdateReporterRef.compareAndSet(null, new AsyncSplitUpdateReporter(installReporter));
     }
 
     @Nullable
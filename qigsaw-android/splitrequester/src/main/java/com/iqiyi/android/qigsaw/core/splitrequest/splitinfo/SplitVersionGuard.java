@@ -0,0 +1,484 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019-present, iQIYI, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.iqiyi.android.qigsaw.core.splitrequest.splitinfo;
+
+import android.annotation.SuppressLint;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import com.iqiyi.android.qigsaw.core.common.FileUtil;
+import com.iqiyi.android.qigsaw.core.common.SplitLog;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+
+/**
+ * Health of split versions, which decides whether a split is rolled back to a version verified before.
+ * A version is verified once it has been loaded and activated successfully. Before that, every load of it is counted
+ * by appending a byte to a marker file of that version before its code is loaded, so a crash while loading or
+ * activating is counted too, and counting needs neither reading nor locking.
+ * A version which fails {@link #MAX_UNVERIFIED_LOADS} times is broken, and the most recent verified version
+ * which is still installed is used instead of it at next launch. Verified versions of all processes are merged
+ * under a file lock off the loading thread. Each process reads records once and then keeps its own ones in memory.
+ */
+@RestrictTo(LIBRARY_GROUP)
+public final class SplitVersionGuard {
+
+    private static final String TAG = "Split.SplitVersionGuard";
+
+    private static final String FILE_NAME = "version_guard.json";
+
+    private static final String LOCK_FILE_NAME = "version_guard.lock";
+
+    private static final String LOADS_DIR_NAME = "version_guard_loads";
+
+    private static final String LOADS_FILE_SUFFIX = ".loads";
+
+    /**
+     * Number of unverified loads after which a version is broken.
+     */
+    private static final int MAX_UNVERIFIED_LOADS = 3;
+
+    /**
+     * Number of verified versions recorded for each split, older ones are forgotten.
+     */
+    private static final int MAX_VERIFIED_VERSIONS = 3;
+
+    private static final String KEY_VERIFIED = "verified";
+
+    private static final String KEY_VERSION = "version";
+
+    private static final String KEY_INFO = "info";
+
+    private static volatile ThreadPoolExecutor sWriteExecutor;
+
+    private final File guardFile;
+
+    private final File lockFile;
+
+    private final File loadsDir;
+
+    private final Object recordsLock = new Object();
+
+    /**
+     * Verified versions known by this process, which are checked before every load without reading file.
+     */
+    private final Set<String> verifiedVersions = new HashSet<>();
+
+    /**
+     * Counts of unverified loads known by this process, keyed like {@link #verifiedVersions},
+     * each is read from its marker file when it is needed at the first time.
+     */
+    private final Map<String, Integer> unverifiedLoads = new HashMap<>();
+
+    private boolean recordsRead;
+
+    SplitVersionGuard(File rootDir) {
+        this.guardFile = new File(rootDir, FILE_NAME);
+        this.lockFile = new File(rootDir, LOCK_FILE_NAME);
+        this.loadsDir = new File(rootDir, LOADS_DIR_NAME);
+    }
+
+    /**
+     * Count a load of split version which is not verified yet, called before its code is loaded.
+     * The count is written before returning, it is a single byte appended to marker file, so it is cheap on main thread.
+     */
+    public void onLoadStarted(@NonNull SplitInfo info) {
+        String splitName = info.getSplitName();
+        String version = info.getSplitVersion();
+        synchronized (recordsLock) {
+            readRecordsIfNeeded();
+            String key = entryKey(splitName, version);
+            if (verifiedVersions.contains(key)) {
+                return;
+            }
+            unverifiedLoads.put(key, getUnverifiedLoads(splitName, version) + 1);
+        }
+        File loadsFile = getLoadsFile(splitName, version);
+        OutputStream os = null;
+        try {
+            if (!loadsDir.exists() && !loadsDir.mkdirs() && !loadsDir.exists()) {
+                throw new IOException("Failed to create dir " + loadsDir.getAbsolutePath());
+            }
+            os = new FileOutputStream(loadsFile, true);
+            os.write(0);
+        } catch (IOException e) {
+            SplitLog.printErrStackTrace(TAG, e, "Failed to count load of split %s version %s.", splitName, version);
+        } finally {
+            FileUtil.closeQuietly(os);
+        }
+    }
+
+    /**
+     * Mark split versions verified, called on main thread when they are loaded and activated successfully,
+     * so they are written off main thread.
+     */
+    public void onLoadSucceeded(@NonNull Collection<SplitInfo> infos) {
+        final List<SplitInfo> unverifiedInfos = new ArrayList<>(infos.size());
+        for (SplitInfo info : infos) {
+            if (!isVerified(info.getSplitName(), info.getSplitVersion())) {
+                unverifiedInfos.add(info);
+            }
+        }
+        if (unverifiedInfos.isEmpty()) {
+            return;
+        }
+        synchronized (recordsLock) {
+            for (SplitInfo info : unverifiedInfos) {
+                String key = entryKey(info.getSplitName(), info.getSplitVersion());
+                verifiedVersions.add(key);
+                unverifiedLoads.remove(key);
+                SplitLog.i(TAG, "Split %s version %s is verified.", info.getSplitName(), info.getSplitVersion());
+            }
+        }
+        getWriteExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                update(new Updater() {
+                    @Override
+                    public void update(JSONObject guardObj) throws JSONException {
+                        for (SplitInfo info : unverifiedInfos) {
+                            markVerified(getOrCreateObject(guardObj, info.getSplitName()), info);
+                        }
+                    }
+                });
+                //loads are not counted for verified versions any more.
+                for (SplitInfo info : unverifiedInfos) {
+                    FileUtil.deleteFileSafely(getLoadsFile(info.getSplitName(), info.getSplitVersion()));
+                }
+            }
+        });
+    }
+
+    public boolean isVerified(@NonNull String splitName, @NonNull String splitVersion) {
+        synchronized (recordsLock) {
+            readRecordsIfNeeded();
+            return verifiedVersions.contains(entryKey(splitName, splitVersion));
+        }
+    }
+
+    /**
+     * @return {@code true} if split version is not verified and has failed too many times.
+     */
+    public boolean isBroken(@NonNull String splitName, @NonNull String splitVersion) {
+        synchronized (recordsLock) {
+            readRecordsIfNeeded();
+            String key = entryKey(splitName, splitVersion);
+            if (verifiedVersions.contains(key)) {
+                return false;
+            }
+            return getUnverifiedLoads(splitName, splitVersion) >= MAX_UNVERIFIED_LOADS;
+        }
+    }
+
+    /**
+     * @return items in split-details file of verified versions of split, the most recently verified one comes first.
+     */
+    @NonNull
+    List<JSONObject> getVerifiedInfos(@NonNull String splitName) {
+        List<JSONObject> infos = new ArrayList<>();
+        JSONObject splitObj = readGuard().optJSONObject(splitName);
+        JSONArray verifiedArray = splitObj == null ? null : splitObj.optJSONArray(KEY_VERIFIED);
+        for (int i = 0; verifiedArray != null && i < verifiedArray.length(); i++) {
+            JSONObject verifiedObj = verifiedArray.optJSONObject(i);
+            if (verifiedObj != null && verifiedObj.optJSONObject(KEY_INFO) != null) {
+                infos.add(verifiedObj.optJSONObject(KEY_INFO));
+            }
+        }
+        return infos;
+    }
+
+    /**
+     * Remove records of deleted split versions.
+     *
+     * @param splitVersion version of split, or {@code null} for all versions.
+     */
+    public void forget(@NonNull final String splitName, @Nullable final String splitVersion) {
+        update(new Updater() {
+            @Override
+            public void update(JSONObject guardObj) throws JSONException {
+                JSONObject splitObj = guardObj.optJSONObject(splitName);
+                if (splitObj == null) {
+                    return;
+                }
+                if (splitVersion == null) {
+                    guardObj.remove(splitName);
+                    return;
+                }
+                int index = findVerified(splitObj, splitVersion);
+                if (index >= 0) {
+                    JSONArray verifiedArray = splitObj.getJSONArray(KEY_VERIFIED);
+                    JSONArray remained = new JSONArray();
+                    for (int i = 0; i < verifiedArray.length(); i++) {
+                        if (i != index) {
+                            remained.put(verifiedArray.get(i));
+                        }
+                    }
+                    splitObj.put(KEY_VERIFIED, remained);
+                }
+            }
+        });
+        synchronized (recordsLock) {
+            if (splitVersion == null) {
+                removeEntries(verifiedVersions.iterator(), splitName);
+                removeEntries(unverifiedLoads.keySet().iterator(), splitName);
+                File[] loadsFiles = loadsDir.listFiles();
+                if (loadsFiles != null) {
+                    for (File loadsFile : loadsFiles) {
+                        if (loadsFile.getName().startsWith(splitName + "@")) {
+                            FileUtil.deleteFileSafely(loadsFile);
+                        }
+                    }
+                }
+            } else {
+                verifiedVersions.remove(entryKey(splitName, splitVersion));
+                unverifiedLoads.remove(entryKey(splitName, splitVersion));
+                FileUtil.deleteFileSafely(getLoadsFile(splitName, splitVersion));
+            }
+        }
+    }
+
+    /**
+     * Must be called with {@link #recordsLock} held.
+     */
+    private int getUnverifiedLoads(String splitName, String splitVersion) {
+        String key = entryKey(splitName, splitVersion);
+        Integer loads = unverifiedLoads.get(key);
+        if (loads == null) {
+            //every load appends a single byte.
+            loads = (int) Math.min(getLoadsFile(splitName, splitVersion).length(), Integer.MAX_VALUE);
+            unverifiedLoads.put(key, loads);
+        }
+        return loads;
+    }
+
+    private File getLoadsFile(String splitName, String splitVersion) {
+        return new File(loadsDir, splitName + "@" + splitVersion + LOADS_FILE_SUFFIX);
+    }
+
+    private static void removeEntries(Iterator<String> keys, String splitName) {
+        while (keys.hasNext()) {
+            if (keys.next().startsWith(entryKey(splitName, ""))) {
+                keys.remove();
+            }
+        }
+    }
+
+    /**
+     * Read verified versions of all processes once, later changes of this process are kept in memory as well as written.
+     */
+    private void readRecordsIfNeeded() {
+        if (recordsRead) {
+            return;
+        }
+        JSONObject guardObj = readGuard();
+        Iterator<String> splitNames = guardObj.keys();
+        while (splitNames.hasNext()) {
+            String name = splitNames.next();
+            JSONObject splitObj = guardObj.optJSONObject(name);
+            if (splitObj == null) {
+                continue;
+            }
+            JSONArray verifiedArray = splitObj.optJSONArray(KEY_VERIFIED);
+            for (int i = 0; verifiedArray != null && i < verifiedArray.length(); i++) {
+                JSONObject verifiedObj = verifiedArray.optJSONObject(i);
+                if (verifiedObj != null) {
+                    verifiedVersions.add(entryKey(name, verifiedObj.optString(KEY_VERSION)));
+                }
+            }
+        }
+        recordsRead = true;
+    }
+
+    private synchronized void update(Updater updater) {
+        RandomAccessFile raf = null;
+        FileChannel channel = null;
+        FileLock lock = null;
+        try {
+            raf = new RandomAccessFile(lockFile, "rw");
+            channel = raf.getChannel();
+            lock = channel.lock();
+            JSONObject guardObj = readGuard();
+            updater.update(guardObj);
+            writeGuard(guardObj);
+        } catch (IOException | JSONException e) {
+            SplitLog.w(TAG, "Failed to update versions of splits.", e);
+        } finally {
+            if (lock != null) {
+                try {
+                    lock.release();
+                } catch (IOException ignored) {
+
+                }
+            }
+            FileUtil.closeQuietly(channel);
+            FileUtil.closeQuietly(raf);
+        }
+    }
+
+    @NonNull
+    private JSONObject readGuard() {
+        if (!guardFile.exists()) {
+            return new JSONObject();
+        }
+        InputStream is = null;
+        try {
+            is = new FileInputStream(guardFile);
+            byte[] content = new byte[(int) guardFile.length()];
+            int offset = 0;
+            int count;
+            while (offset < content.length && (count = is.read(content, offset, content.length - offset)) != -1) {
+                offset += count;
+            }
+            return new JSONObject(new String(content, 0, offset, "UTF-8"));
+        } catch (IOException | JSONException e) {
+            SplitLog.w(TAG, "Failed to read versions of splits, start over.", e);
+            return new JSONObject();
+        } finally {
+            FileUtil.closeQuietly(is);
+        }
+    }
+
+    private void writeGuard(JSONObject guardObj) throws IOException {
+        File tmpFile = new File(guardFile.getAbsolutePath() + ".tmp");
+        OutputStream os = null;
+        try {
+            os = new FileOutputStream(tmpFile);
+            os.write(guardObj.toString().getBytes("UTF-8"));
+            os.flush();
+        } catch (IOException e) {
+            FileUtil.closeQuietly(os);
+            FileUtil.deleteFileSafely(tmpFile);
+            throw e;
+        }
+        FileUtil.closeQuietly(os);
+        if (!tmpFile.renameTo(guardFile)) {
+            FileUtil.deleteFileSafely(tmpFile);
+            throw new IOException("Failed to rename " + tmpFile.getAbsolutePath());
+        }
+    }
+
+    private static void markVerified(JSONObject splitObj, SplitInfo info) throws JSONException {
+        String version = info.getSplitVersion();
+        JSONArray verifiedArray = getOrCreateArray(splitObj, KEY_VERIFIED);
+        int index = findVerified(splitObj, version);
+        JSONArray verified = new JSONArray();
+        JSONObject verifiedObj = new JSONObject();
+        verifiedObj.put(KEY_VERSION, version);
+        verifiedObj.put(KEY_INFO, info.getRawData());
+        verified.put(verifiedObj);
+        for (int i = 0; i < verifiedArray.length() && verified.length() < MAX_VERIFIED_VERSIONS; i++) {
+            if (i != index) {
+                verified.put(verifiedArray.get(i));
+            }
+        }
+        splitObj.put(KEY_VERIFIED, verified);
+    }
+
+    private static int findVerified(JSONObject splitObj, String splitVersion) {
+        JSONArray verifiedArray = splitObj.optJSONArray(KEY_VERIFIED);
+        for (int i = 0; verifiedArray != null && i < verifiedArray.length(); i++) {
+            JSONObject verifiedObj = verifiedArray.optJSONObject(i);
+            if (verifiedObj != null && splitVersion.equals(verifiedObj.optString(KEY_VERSION))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static JSONObject getOrCreateObject(JSONObject parent, String name) throws JSONException {
+        JSONObject obj = parent.optJSONObject(name);
+        if (obj == null) {
+            obj = new JSONObject();
+            parent.put(name, obj);
+        }
+        return obj;
+    }
+
+    private static JSONArray getOrCreateArray(JSONObject parent, String name) throws JSONException {
+        JSONArray array = parent.optJSONArray(name);
+        if (array == null) {
+            array = new JSONArray();
+            parent.put(name, array);
+        }
+        return array;
+    }
+
+    private static String entryKey(String splitName, String splitVersion) {
+        return splitName + File.separator + splitVersion;
+    }
+
+    private static ThreadPoolExecutor getWriteExecutor() {
+        if (sWriteExecutor == null) {
+            synchronized (SplitVersionGuard.class) {
+                if (sWriteExecutor == null) {
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                            30L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @SuppressLint("NewThreadDirectly")
+                        @Override
+                        public Thread newThread(@NonNull Runnable r) {
+                            return new Thread(r, "split_version_guard_thread");
+                        }
+                    });
+                    executor.allowCoreThreadTimeOut(true);
+                    sWriteExecutor = executor;
+                }
+            }
+        }
+        return sWriteExecutor;
+    }
+
+    private interface Updater {
+
+        void update(JSONObject guardObj) throws JSONException;
+    }
+}
@@ -0,0 +1,58 @@
+package com.iqiyi.android.qigsaw.core.splitrequest.splitinfo;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SplitInfoManagerImplTest {
+
+    @Test
+    public void buildsLibraryOwnersOfEachAbiFromLibData() throws Exception {
+        Map<String, SplitInfo> splitInfoMap = new HashMap<>();
+        putSplit(splitInfoMap, "java", "armeabi-v7a", "libfoo.so", "libjava.so");
+        putSplit(splitInfoMap, "native", "arm64-v8a", "libfoo.so");
+
+        Map<String, Map<String, String>> owners = SplitInfoManagerImpl.parseLibraryOwners(null, splitInfoMap);
+
+        assertEquals(2, owners.size());
+        assertEquals("java", owners.get("armeabi-v7a").get("libfoo.so"));
+        assertEquals("java", owners.get("armeabi-v7a").get("libjava.so"));
+        //owner of armeabi-v7a library doesn't take the arm64-v8a one.
+        assertEquals("native", owners.get("arm64-v8a").get("libfoo.so"));
+        assertNull(owners.get("arm64-v8a").get("libjava.so"));
+    }
+
+    @Test
+    public void readsLibraryOwnersOfEachAbiFromIndex() throws Exception {
+        Map<String, SplitInfo> splitInfoMap = new HashMap<>();
+        putSplit(splitInfoMap, "java", "armeabi-v7a", "libfoo.so");
+        JSONObject index = new JSONObject()
+                .put("armeabi-v7a", new JSONObject().put("libfoo.so", "java"))
+                .put("arm64-v8a", new JSONObject().put("libfoo.so", "native"));
+
+        Map<String, Map<String, String>> owners = SplitInfoManagerImpl.parseLibraryOwners(index, splitInfoMap);
+
+        assertEquals(2, owners.size());
+        assertEquals("java", owners.get("armeabi-v7a").get("libfoo.so"));
+        assertEquals("native", owners.get("arm64-v8a").get("libfoo.so"));
+    }
+
+    private static void putSplit(Map<String, SplitInfo> splitInfoMap, String splitName, String abi, String... libs) throws Exception {
+        JSONArray jniLibs = new JSONArray();
+        for (String lib : libs) {
+            jniLibs.put(new JSONObject().put("name", lib).put("md5", "md5").put("size", 1));
+        }
+        JSONObject item = new JSONObject()
+                .put("splitName", splitName)
+                .put("version", "1.0@1")
+                .put("apkData", new JSONArray().put(new JSONObject().put("abi", "master").put("url", "url").put("md5", "md5").put("size", 1)))
+                .put("libData", new JSONArray().put(new JSONObject().put("abi", abi).put("jniLibs", jniLibs)));
+        splitInfoMap.put(splitName, SplitInfoManagerImpl.parseSplitInfo(item, "1.0"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.iqiyi.android.qigsaw.core.splitrequest.splitinfo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SplitInstallJournalTest {
+
+    private File splitDir;
+
+    @Before
+    public void setUp() throws IOException {
+        splitDir = File.createTempFile("journal", "");
+        assertTrue(splitDir.delete());
+        assertTrue(splitDir.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = splitDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        splitDir.delete();
+    }
+
+    @Test
+    public void keepsCommitsOfConcurrentWritersAcrossCompaction() throws Exception {
+        final int writerCount = 4;
+        final int commitCount = 250;
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> writers = new ArrayList<>(writerCount);
+        for (int i = 0; i < writerCount; i++) {
+            final int writer = i;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < commitCount; j++) {
+                            //every commit uses a new journal, as SplitPathManager does.
+                            SplitInstallJournal journal = new SplitInstallJournal(splitDir);
+                            journal.append(SplitInstallJournal.STAGE_APK_VERIFIED, writer + "-" + j, "value-" + j);
+                            journal.commit();
+                        }
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            });
+            writers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : writers) {
+            thread.join();
+        }
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+        SplitInstallJournal.Snapshot snapshot = new SplitInstallJournal(splitDir).read();
+        for (int i = 0; i < writerCount; i++) {
+            for (int j = 0; j < commitCount; j++) {
+                assertArrayEquals(new String[]{"value-" + j}, snapshot.get(SplitInstallJournal.STAGE_APK_VERIFIED, i + "-" + j));
+            }
+        }
+    }
+
+    @Test
+    public void keepsRevokedStagesAfterCompaction() throws IOException {
+        SplitInstallJournal journal = new SplitInstallJournal(splitDir);
+        journal.append(SplitInstallJournal.STAGE_INSTALLED, "mark");
+        journal.commit();
+        journal.revoke(SplitInstallJournal.STAGE_INSTALLED, "mark");
+        journal.commit();
+        for (int i = 0; i < 1000; i++) {
+            journal.append(SplitInstallJournal.STAGE_LIB_EXTRACTED, "abi", "lib-" + i);
+            journal.commit();
+        }
+        SplitInstallJournal.Snapshot snapshot = new SplitInstallJournal(splitDir).read();
+        assertNull(snapshot.get(SplitInstallJournal.STAGE_INSTALLED, "mark"));
+        assertArrayEquals(new String[]{"lib-999"}, snapshot.get(SplitInstallJournal.STAGE_LIB_EXTRACTED, "abi"));
+        assertTrue(new File(splitDir, "install.journal").length() < 32 * 1024);
+    }
+}
@@ -0,0 +1,75 @@
+package com.iqiyi.android.qigsaw.core.splitrequest.splitinfo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SplitLastUsedTrackerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsRecordsNotWrittenYet() {
+        SplitLastUsedTracker tracker = new SplitLastUsedTracker(folder.getRoot());
+        tracker.recordUsed("java", "1.0");
+
+        assertTrue(tracker.getLastUsedTimes("java").containsKey("1.0"));
+        assertFalse(new File(folder.getRoot(), "last_used").exists());
+    }
+
+    @Test
+    public void mergesRecordsOfTrackersInOtherProcesses() {
+        //each process has its own tracker of the same dir.
+        SplitLastUsedTracker main = new SplitLastUsedTracker(folder.getRoot());
+        SplitLastUsedTracker push = new SplitLastUsedTracker(folder.getRoot());
+        main.recordUsed("java", "1.0");
+        push.recordUsed("java", "2.0");
+        push.recordUsed("native", "1.0");
+        main.flush();
+        push.flush();
+
+        Map<String, Long> times = new SplitLastUsedTracker(folder.getRoot()).getLastUsedTimes("java");
+        assertEquals(2, times.size());
+        assertTrue(times.containsKey("1.0"));
+        assertTrue(times.containsKey("2.0"));
+    }
+
+    @Test
+    public void keepsLatestTimeOfVersion() throws Exception {
+        SplitLastUsedTracker main = new SplitLastUsedTracker(folder.getRoot());
+        SplitLastUsedTracker push = new SplitLastUsedTracker(folder.getRoot());
+        main.recordUsed("java", "1.0");
+        Thread.sleep(5);
+        push.recordUsed("java", "1.0");
+        long latest = push.getLastUsedTimes("java").get("1.0");
+        //the older record is written last.
+        push.flush();
+        main.flush();
+
+        assertEquals(latest, (long) new SplitLastUsedTracker(folder.getRoot()).getLastUsedTimes("java").get("1.0"));
+    }
+
+    @Test
+    public void forgetsOneOrAllVersions() {
+        SplitLastUsedTracker tracker = new SplitLastUsedTracker(folder.getRoot());
+        tracker.recordUsed("java", "1.0");
+        tracker.recordUsed("java", "2.0");
+        tracker.recordUsed("native", "1.0");
+        tracker.flush();
+        tracker.recordUsed("java", "3.0");
+
+        tracker.forget("java", "1.0");
+        assertEquals(2, tracker.getLastUsedTimes("java").size());
+        tracker.forget("java", null);
+        assertTrue(tracker.getLastUsedTimes("java").isEmpty());
+        assertEquals(1, tracker.getLastUsedTimes("native").size());
+    }
+}
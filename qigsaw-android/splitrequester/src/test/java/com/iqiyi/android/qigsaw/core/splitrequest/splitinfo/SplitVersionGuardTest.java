@@ -0,0 +1,94 @@
+package com.iqiyi.android.qigsaw.core.splitrequest.splitinfo;
+
+import com.iqiyi.android.qigsaw.core.common.FileUtil;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SplitVersionGuardTest {
+
+    private static final long WRITE_TIMEOUT_MILLIS = 5000L;
+
+    private File rootDir;
+
+    @Before
+    public void setUp() throws IOException {
+        rootDir = File.createTempFile("guard", "");
+        assertTrue(rootDir.delete());
+        assertTrue(rootDir.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.deleteDir(rootDir);
+    }
+
+    @Test
+    public void countsLoadsOfThisProcess() {
+        SplitVersionGuard guard = new SplitVersionGuard(rootDir);
+        SplitInfo info = createSplitInfo("java", "1.0.1");
+        guard.onLoadStarted(info);
+        guard.onLoadStarted(info);
+        assertFalse(guard.isBroken("java", "1.0.1"));
+        guard.onLoadStarted(info);
+        assertTrue(guard.isBroken("java", "1.0.1"));
+        assertFalse(guard.isBroken("java", "1.0.0"));
+    }
+
+    @Test
+    public void keepsLoadsOfProcessKilledRightAfterLoadStarted() {
+        SplitInfo info = createSplitInfo("java", "1.0.1");
+        for (int i = 0; i < 3; i++) {
+            //every process dies while loading, nothing queued for writing is waited for.
+            new SplitVersionGuard(rootDir).onLoadStarted(info);
+            assertEquals(i == 2, new SplitVersionGuard(rootDir).isBroken("java", "1.0.1"));
+        }
+    }
+
+    @Test
+    public void forgetsLoadsOfDeletedVersion() {
+        SplitVersionGuard guard = new SplitVersionGuard(rootDir);
+        SplitInfo info = createSplitInfo("java", "1.0.1");
+        for (int i = 0; i < 3; i++) {
+            guard.onLoadStarted(info);
+        }
+        guard.forget("java", null);
+        assertFalse(guard.isBroken("java", "1.0.1"));
+        assertFalse(new SplitVersionGuard(rootDir).isBroken("java", "1.0.1"));
+    }
+
+    @Test
+    public void stopsCountingVerifiedVersion() throws InterruptedException {
+        SplitVersionGuard guard = new SplitVersionGuard(rootDir);
+        SplitInfo info = createSplitInfo("java", "1.0.1");
+        guard.onLoadStarted(info);
+        guard.onLoadStarted(info);
+        guard.onLoadSucceeded(Collections.singletonList(info));
+        guard.onLoadStarted(info);
+        guard.onLoadStarted(info);
+        assertTrue(guard.isVerified("java", "1.0.1"));
+        assertFalse(guard.isBroken("java", "1.0.1"));
+        long deadline = System.currentTimeMillis() + WRITE_TIMEOUT_MILLIS;
+        while (!new SplitVersionGuard(rootDir).isVerified("java", "1.0.1")) {
+            assertTrue("Verified version is not written.", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertFalse(new SplitVersionGuard(rootDir).isBroken("java", "1.0.1"));
+    }
+
+    private static SplitInfo createSplitInfo(String splitName, String version) {
+        return new SplitInfo(splitName, "1.0.0", version, false, 14, 1,
+                Collections.<String>emptyList(), Collections.<String>emptyList(),
+                Collections.<SplitInfo.ApkData>emptyList(), Collections.<SplitInfo.LibData>emptyList(), new JSONObject());
+    }
+}